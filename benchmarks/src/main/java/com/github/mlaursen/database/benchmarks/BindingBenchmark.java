@@ -0,0 +1,151 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.mlaursen.annotations.DatabaseField;
+import com.github.mlaursen.annotations.DatabaseFieldType;
+import com.github.mlaursen.annotations.MultipleDatabaseField;
+import com.github.mlaursen.database.managers.ConnectionManager;
+import com.github.mlaursen.database.managers.ObjectManager;
+import com.github.mlaursen.database.objects.DatabaseObject;
+import com.github.mlaursen.database.objects.MyResultRow;
+import com.github.mlaursen.database.objects.Package;
+import com.github.mlaursen.database.procedures.Createable;
+import com.github.mlaursen.examples.PersonJobExample.Person;
+
+/**
+ * Building procedure parameters from DatabaseFields and binding them to a statement.
+ * 
+ * @author mlaursen
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BindingBenchmark {
+	
+	/**
+	 * An object whose person is sent as two parameters through a MultipleDatabaseField
+	 */
+	public static class Assignment extends DatabaseObject implements Createable {
+		
+		private static final long serialVersionUID = 1L;
+		
+		@MultipleDatabaseField(values = { DatabaseFieldType.NEW }, names = { "personFirstName", "personLastName" })
+		protected Person person;
+		
+		@DatabaseField(values = { DatabaseFieldType.NEW })
+		protected String role;
+		
+		public Assignment() {}
+		
+		public Assignment(MyResultRow r) {
+			super(r);
+		}
+		
+		public Assignment(Person person, String role) {
+			this.person = person;
+			this.role = role;
+		}
+	}
+	
+	/**
+	 * Gives the benchmarks access to the parameter builders
+	 */
+	public static class Parameters extends ObjectManager {
+		
+		@SuppressWarnings("unchecked")
+		public Parameters() {
+			super(Person.class, Assignment.class);
+		}
+		
+		public Map<Integer, Object> build(DatabaseObject o, String procedureName) {
+			Package pkg = getPackage(o.getClass());
+			return getParametersMap(DatabaseFieldType.NEW, o, pkg, procedureName);
+		}
+	}
+	
+	/**
+	 * Gives the benchmarks access to the binder without opening a connection
+	 */
+	public static abstract class Binder extends ConnectionManager {
+		
+		public static void bind(Object p, int i, Connection conn, CallableStatement cs) throws SQLException {
+			bindWithDatatype(p, i, conn, cs);
+		}
+	}
+	
+	/**
+	 * A statement that hands every bound value to a Blackhole
+	 */
+	@State(Scope.Thread)
+	public static class Statement {
+		
+		public Parameters parameters;
+		public Person person;
+		public Assignment assignment;
+		public CallableStatement cs;
+		public Blackhole bh;
+		public Object[] values;
+		
+		@Setup
+		public void setup(Blackhole blackhole) {
+			bh = blackhole;
+			parameters = new Parameters();
+			person = new Person("Mikkel", "Laursen", "7", 52000.5);
+			assignment = new Assignment(person, "Developer");
+			values = new Object[] { 42, "42", "Laursen", 52000.5, new Date(1392732918000L), person, null };
+			cs = (CallableStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { CallableStatement.class },
+					new InvocationHandler() {
+						
+						@Override
+						public Object invoke(Object proxy, Method method, Object[] args) {
+							bh.consume(args);
+							return null;
+						}
+					});
+		}
+	}
+	
+	@Benchmark
+	public Map<Integer, Object> getParametersMapDatabaseField(Statement s) {
+		return s.parameters.build(s.person, "new");
+	}
+	
+	@Benchmark
+	public Map<Integer, Object> getParametersMapMultipleDatabaseField(Statement s) {
+		return s.parameters.build(s.assignment, "new");
+	}
+	
+	@Benchmark
+	public void bindWithDatatype(Statement s) throws SQLException {
+		for(int i = 0; i < s.values.length; i++) {
+			Binder.bind(s.values[i], i + 1, null, s.cs);
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.benchmarks;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.mlaursen.database.objects.MyResultRow;
+import com.github.mlaursen.database.objects.MyResultSet;
+import com.github.mlaursen.examples.PersonJobExample.Person;
+import com.github.mlaursen.examples.PersonJobExample.PersonView;
+
+/**
+ * Reading a cursor into a MyResultSet, reading cells from a MyResultRow and constructing DatabaseObjects from rows.
+ * 
+ * @author mlaursen
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+	
+	private static final String[] PERSON_COLUMNS = { "id", "job_id", "first_name", "last_name", "salary", "created" };
+	private static final String[] PERSON_VALUES = { "42", "7", "Mikkel", "Laursen", "52000.50", "2014-02-18" };
+	
+	/**
+	 * Synthetic cursors of different shapes
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		
+		@Param({ "4", "16", "64" })
+		public int width;
+		
+		@Param({ "1", "100", "10000" })
+		public int length;
+		
+		public SyntheticResultSet rs;
+		
+		@Setup
+		public void setup() {
+			rs = new SyntheticResultSet(width, length);
+		}
+	}
+	
+	/**
+	 * Synthetic cursors shaped like the PERSON_PKG cursor, so every column is mapped onto a Person
+	 */
+	@State(Scope.Thread)
+	public static class People {
+		
+		@Param({ "1", "100", "10000" })
+		public int length;
+		
+		public SyntheticResultSet rs;
+		
+		@Setup
+		public void setup() {
+			rs = new SyntheticResultSet(PERSON_COLUMNS, PERSON_VALUES, length);
+		}
+	}
+	
+	/**
+	 * Rows shaped like the PERSON_PKG and PERSON_VIEW_PKG cursors
+	 */
+	@State(Scope.Thread)
+	public static class Rows {
+		
+		public MyResultRow person, personView;
+		
+		@Setup
+		public void setup() {
+			person = new MyResultRow();
+			for(int i = 0; i < PERSON_COLUMNS.length; i++) {
+				person.add(PERSON_COLUMNS[i], PERSON_VALUES[i]);
+			}
+			personView = new MyResultRow();
+			personView.add("id", "42");
+			personView.add("person_name", "Mikkel Laursen");
+			personView.add("first_name", "Mikkel");
+			personView.add("last_name", "Laursen");
+			personView.add("person_salary", "52000.50");
+			personView.add("job_name", "Developer");
+			personView.add("type", "Full Time");
+			personView.add("job_description", "Writes the database manager");
+		}
+	}
+	
+	@Benchmark
+	public MyResultSet toMyResultSet(Cursor c) throws SQLException {
+		return MyResultSet.toMyResultSet(c.rs.rewind());
+	}
+	
+	@Benchmark
+	public String get(Rows r) {
+		return r.person.get("first_name");
+	}
+	
+	@Benchmark
+	public int getInt(Rows r) {
+		return r.person.getInt("job_id");
+	}
+	
+	@Benchmark
+	public double getDouble(Rows r) {
+		return r.person.getDouble("salary");
+	}
+	
+	@Benchmark
+	public Date getDate(Rows r) {
+		return r.person.getDate("created");
+	}
+	
+	@Benchmark
+	public Person constructPerson(Rows r) {
+		return r.person.construct(Person.class);
+	}
+	
+	@Benchmark
+	public PersonView constructPersonView(Rows r) {
+		return r.personView.construct(PersonView.class);
+	}
+	
+	@Benchmark
+	public void setAllPerson(Rows r, Blackhole bh) {
+		// the MyResultRow constructor is the only way to reach setAll from outside the object
+		bh.consume(new Person(r.person));
+	}
+	
+	@Benchmark
+	public List<Person> toListOf(People p) throws SQLException {
+		return MyResultSet.toMyResultSet(p.rs.rewind()).toListOf(Person.class);
+	}
+}
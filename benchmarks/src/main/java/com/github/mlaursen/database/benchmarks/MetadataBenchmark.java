@@ -0,0 +1,83 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.mlaursen.database.managers.ObjectManager;
+import com.github.mlaursen.database.objects.Package;
+import com.github.mlaursen.database.utils.SqlFormatUtil;
+import com.github.mlaursen.examples.PersonJobExample.Job;
+import com.github.mlaursen.examples.PersonJobExample.JobType;
+import com.github.mlaursen.examples.PersonJobExample.Person;
+import com.github.mlaursen.examples.PersonJobExample.PersonView;
+
+/**
+ * Generating packages from DatabaseObjects, creating ObjectManagers and formatting SQL scripts for testing.
+ * 
+ * @author mlaursen
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetadataBenchmark {
+	
+	/**
+	 * The person and job creation script
+	 */
+	@State(Scope.Benchmark)
+	public static class Script {
+		
+		public static final String PATH = "../examples/sqlscripts/person_job_init.sql";
+		public static final List<String> KEY_WORDS = Arrays.asList("PERSON", "JOB", "JOB_TYPE", "PERSON_VIEW");
+		
+		public String sql;
+		
+		@Setup
+		public void setup() throws IOException {
+			sql = new String(Files.readAllBytes(Paths.get(System.getProperty("benchmarks.sql", PATH))), Charset.forName("UTF-8"));
+		}
+	}
+	
+	@Benchmark
+	public Package person() {
+		return new Package(Person.class);
+	}
+	
+	@Benchmark
+	public Package personView() {
+		return new Package(PersonView.class);
+	}
+	
+	@Benchmark
+	@SuppressWarnings("unchecked")
+	public ObjectManager objectManager() {
+		return new ObjectManager(Person.class, Job.class, JobType.class);
+	}
+	
+	@Benchmark
+	public String formatSqlForTesting(Script s) {
+		return SqlFormatUtil.formatSqlForTesting(s.sql, Script.KEY_WORDS);
+	}
+}
@@ -0,0 +1,135 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+
+/**
+ * A ResultSet over rows that are already in memory, so MyResultSet.toMyResultSet can be measured without a database. Only the methods
+ * toMyResultSet uses are implemented. The same data can be read again after {@link #rewind()}.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class SyntheticResultSet implements InvocationHandler {
+	
+	private final String[] columns;
+	private final String[][] rows;
+	private final ResultSetMetaData metaData;
+	private int row = -1;
+	
+	/**
+	 * Creates rows where every fourth column is a string, a number, a decimal and a date
+	 * 
+	 * @param width
+	 *            The number of columns
+	 * @param length
+	 *            The number of rows
+	 */
+	public SyntheticResultSet(int width, int length) {
+		columns = new String[width];
+		for(int c = 0; c < width; c++) {
+			columns[c] = "COLUMN_" + c;
+		}
+		rows = new String[length][width];
+		for(int r = 0; r < length; r++) {
+			for(int c = 0; c < width; c++) {
+				rows[r][c] = value(r, c);
+			}
+		}
+		metaData = metaData();
+	}
+	
+	/**
+	 * Creates rows that repeat the values of one row, with the row number in the first column so every row has its own primary key
+	 * 
+	 * @param columns
+	 *            The column names
+	 * @param values
+	 *            The values of a row
+	 * @param length
+	 *            The number of rows
+	 */
+	public SyntheticResultSet(String[] columns, String[] values, int length) {
+		this.columns = new String[columns.length];
+		for(int c = 0; c < columns.length; c++) {
+			this.columns[c] = columns[c].toUpperCase();
+		}
+		rows = new String[length][];
+		for(int r = 0; r < length; r++) {
+			rows[r] = values.clone();
+			rows[r][0] = String.valueOf(r + 1);
+		}
+		metaData = metaData();
+	}
+	
+	private ResultSetMetaData metaData() {
+		return (ResultSetMetaData) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ResultSetMetaData.class },
+				new InvocationHandler() {
+					
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						switch(method.getName()) {
+							case "getColumnCount":
+								return columns.length;
+							case "getColumnName":
+							case "getColumnLabel":
+								return columns[(Integer) args[0] - 1];
+							default:
+								throw new UnsupportedOperationException(method.getName());
+						}
+					}
+				});
+	}
+	
+	private static String value(int r, int c) {
+		switch(c % 4) {
+			case 0:
+				return "value " + r + "-" + c;
+			case 1:
+				return String.valueOf(r * 31 + c);
+			case 2:
+				return String.valueOf((r * 31 + c) / 7.0);
+			default:
+				return "2014-02-" + (10 + r % 18);
+		}
+	}
+	
+	/**
+	 * @return a ResultSet positioned before the first row
+	 */
+	public ResultSet rewind() {
+		row = -1;
+		return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ResultSet.class }, this);
+	}
+	
+	/**
+	 * @return the column names
+	 */
+	public String[] getColumns() {
+		return columns;
+	}
+	
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) {
+		switch(method.getName()) {
+			case "next":
+				return ++row < rows.length;
+			case "getString":
+				return rows[row][(Integer) args[0] - 1];
+			case "getMetaData":
+				return metaData;
+			case "wasNull":
+				return false;
+			case "close":
+				return null;
+			default:
+				throw new UnsupportedOperationException(method.getName());
+		}
+	}
+}
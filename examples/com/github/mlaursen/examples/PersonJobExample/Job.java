@@ -11,6 +11,7 @@ import com.github.mlaursen.database.procedures.Createable;
 import com.github.mlaursen.database.procedures.Deleteable;
 import com.github.mlaursen.database.procedures.GetAllable;
 import com.github.mlaursen.database.procedures.Getable;
+import com.github.mlaursen.database.procedures.Pageable;
 import com.github.mlaursen.database.procedures.Updateable;
 
 /**
@@ -24,12 +25,12 @@ import com.github.mlaursen.database.procedures.Updateable;
  * searching for the primary key (which is an integer id) GET(:CURSOR) --> Returns a List of ALL Jobs NEW(:JOBTYPE, NAME, DESCRIPTION) -->
  * Creates a new Job in the database with the ID being the next value in the sequence UPDATEJOB(:PRIMARYKEY, :JOBTYPE, :NAME, :DESCRIPTION)
  * --> Updates all the values in the database for a job based on the job id DELETE(:PRIMARYKEY) --> Deletes a job in the database by the
- * primary key id
+ * primary key id GETPAGE(:AFTERKEY, :LIMIT, :CURSOR) --> Returns the next :LIMIT jobs in id order after :AFTERKEY
  * 
  * @author mlaursen
  * 
  */
-public class Job extends DatabaseObject implements Getable, GetAllable, Updateable, Createable, Deleteable {
+public class Job extends DatabaseObject implements Getable, GetAllable, Updateable, Createable, Deleteable, Pageable {
 	
 	private static final long serialVersionUID = -1933741156454496778L;
 
@@ -206,6 +206,12 @@ CREATE OR REPLACE PACKAGE JOB_PKG AS
   -- Get all the jobs
   PROCEDURE GET(PCURSOR OUT SYS_REFCURSOR);
   
+  -- Get a page of jobs in id order
+  PROCEDURE GETPAGE(PAFTERKEY IN JOB.ID%TYPE, PLIMIT IN INTEGER, PCURSOR OUT SYS_REFCURSOR);
+  
+  -- Get the jobs changed since a time, for a replicated Job
+  PROCEDURE GETCHANGEDSINCE(PTS IN TIMESTAMP, PCURSOR OUT SYS_REFCURSOR);
+  
   -- Create a new job
   PROCEDURE NEW(PTYPE IN JOB.TYPE%TYPE, PNAME IN JOB.NAME%TYPE, PDESC IN JOB.DESCRIPTION%TYPE, PID IN JOB.ID%TYPE DEFAULT SEQ_JOB_ID.NEXTVAL);
   
@@ -245,6 +251,27 @@ CREATE OR REPLACE PACKAGE BODY JOB_PKG AS
       FROM JOB;
   END GET;
   
+  PROCEDURE GETPAGE(PAFTERKEY IN JOB.ID%TYPE, PLIMIT IN INTEGER, PCURSOR OUT SYS_REFCURSOR)
+  IS
+  BEGIN
+    OPEN PCURSOR FOR
+      SELECT *
+      FROM (SELECT *
+            FROM JOB
+            WHERE PAFTERKEY IS NULL OR ID > PAFTERKEY
+            ORDER BY ID)
+      WHERE ROWNUM <= PLIMIT;
+  END GETPAGE;
+  
+  PROCEDURE GETCHANGEDSINCE(PTS IN TIMESTAMP, PCURSOR OUT SYS_REFCURSOR)
+  IS
+  BEGIN
+    OPEN PCURSOR FOR
+      SELECT *
+      FROM JOB
+      WHERE SCN_TO_TIMESTAMP(ORA_ROWSCN) >= PTS;
+  END GETCHANGEDSINCE;
+  
   PROCEDURE NEW(PTYPE IN JOB.TYPE%TYPE, PNAME IN JOB.NAME%TYPE, PDESC IN JOB.DESCRIPTION%TYPE, PID IN JOB.ID%TYPE DEFAULT SEQ_JOB_ID.NEXTVAL)
   IS
   BEGIN
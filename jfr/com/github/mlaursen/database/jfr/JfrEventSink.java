@@ -0,0 +1,133 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.jfr;
+
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+
+import com.github.mlaursen.database.metrics.EventSink;
+import com.github.mlaursen.database.metrics.Events;
+import com.github.mlaursen.database.metrics.Phase;
+
+/**
+ * Sends procedure calls and row mapping to Java Flight Recorder. This needs Java 11 or newer, so it is kept out of the main source folder
+ * which is still compiled for Java 7. Install it once at startup:
+ * 
+ * <pre>
+ * JfrEventSink.install();
+ * </pre>
+ * 
+ * A call event is begun when the call is admitted and committed when it finishes, and a mapping event is begun when the mapping starts,
+ * so every event lines up with the GC and thread events from the same time.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class JfrEventSink implements EventSink {
+	
+	private static final EventType CALL = EventType.getEventType(ProcedureCallEvent.class);
+	private static final EventType RESULT = EventType.getEventType(ResultMappedEvent.class);
+	private static final EventType OBJECT = EventType.getEventType(ObjectMappedEvent.class);
+	
+	/**
+	 * Registers the events with the flight recorder and makes this the sink for {@link Events}
+	 */
+	public static void install() {
+		FlightRecorder.register(ProcedureCallEvent.class);
+		FlightRecorder.register(ResultMappedEvent.class);
+		FlightRecorder.register(ObjectMappedEvent.class);
+		Events.setSink(new JfrEventSink());
+	}
+	
+	@Override
+	public boolean isEnabled() {
+		return CALL.isEnabled() || RESULT.isEnabled() || OBJECT.isEnabled();
+	}
+	
+	@Override
+	public Object callStarted(String packageName, String procedureName) {
+		if(!CALL.isEnabled()) {
+			return null;
+		}
+		ProcedureCallEvent e = new ProcedureCallEvent();
+		e.begin();
+		return e;
+	}
+	
+	@Override
+	public void callFinished(Object context, String packageName, String procedureName, int parameters, long rows, long[] phaseNanos,
+			long nanos, boolean failed) {
+		if(!(context instanceof ProcedureCallEvent)) {
+			return;
+		}
+		ProcedureCallEvent e = (ProcedureCallEvent) context;
+		e.end();
+		if(e.shouldCommit()) {
+			e.packageName = packageName;
+			e.procedureName = procedureName;
+			e.parameters = parameters;
+			e.rows = rows;
+			e.failed = failed;
+			e.callTime = nanos;
+			e.borrowTime = phaseNanos[Phase.BORROW.ordinal()];
+			e.prepareTime = phaseNanos[Phase.PREPARE.ordinal()];
+			e.bindTime = phaseNanos[Phase.BIND.ordinal()];
+			e.executeTime = phaseNanos[Phase.EXECUTE.ordinal()];
+			e.fetchTime = phaseNanos[Phase.FETCH.ordinal()];
+			e.commit();
+		}
+	}
+	
+	@Override
+	public Object resultMappingStarted(String packageName, String procedureName, Class<?> type) {
+		if(!RESULT.isEnabled()) {
+			return null;
+		}
+		ResultMappedEvent e = new ResultMappedEvent();
+		e.begin();
+		return e;
+	}
+	
+	@Override
+	public void resultMapped(Object context, String packageName, String procedureName, Class<?> type, int rows, long nanos) {
+		if(!(context instanceof ResultMappedEvent)) {
+			return;
+		}
+		ResultMappedEvent e = (ResultMappedEvent) context;
+		e.end();
+		if(e.shouldCommit()) {
+			e.packageName = packageName;
+			e.procedureName = procedureName;
+			e.type = type;
+			e.rows = rows;
+			e.mapTime = nanos;
+			e.commit();
+		}
+	}
+	
+	@Override
+	public Object objectMappingStarted(Class<?> type) {
+		if(!OBJECT.isEnabled()) {
+			return null;
+		}
+		ObjectMappedEvent e = new ObjectMappedEvent();
+		e.begin();
+		return e;
+	}
+	
+	@Override
+	public void objectMapped(Object context, Class<?> type, int setters, long nanos) {
+		if(!(context instanceof ObjectMappedEvent)) {
+			return;
+		}
+		ObjectMappedEvent e = (ObjectMappedEvent) context;
+		e.end();
+		if(e.shouldCommit()) {
+			e.type = type;
+			e.setters = setters;
+			e.mapTime = nanos;
+			e.commit();
+		}
+	}
+}
@@ -0,0 +1,38 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A DatabaseObject having its setters called by reflection in setAll. There is one for every row, so it is off by default.
+ * 
+ * @author mlaursen
+ * 
+ */
+@Name("com.github.mlaursen.database.ObjectMapped")
+@Label("Object Mapped")
+@Category({ "Database Manager" })
+@Description("A DatabaseObject's setters were invoked by reflection")
+@StackTrace(false)
+@Enabled(false)
+public class ObjectMappedEvent extends Event {
+	
+	@Label("Type")
+	Class<?> type;
+	
+	@Label("Setters")
+	int setters;
+	
+	@Label("Map Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long mapTime;
+}
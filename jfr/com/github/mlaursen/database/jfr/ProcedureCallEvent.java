@@ -0,0 +1,65 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A stored procedure call made through the ConnectionManager.
+ * 
+ * @author mlaursen
+ * 
+ */
+@Name("com.github.mlaursen.database.ProcedureCall")
+@Label("Procedure Call")
+@Category({ "Database Manager" })
+@Description("A stored procedure call with the time spent in each phase")
+@StackTrace(false)
+public class ProcedureCallEvent extends Event {
+	
+	@Label("Package")
+	String packageName;
+	
+	@Label("Procedure")
+	String procedureName;
+	
+	@Label("Parameters")
+	int parameters;
+	
+	@Label("Rows")
+	long rows;
+	
+	@Label("Failed")
+	boolean failed;
+	
+	@Label("Call Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long callTime;
+	
+	@Label("Borrow Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long borrowTime;
+	
+	@Label("Prepare Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long prepareTime;
+	
+	@Label("Bind Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long bindTime;
+	
+	@Label("Execute Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long executeTime;
+	
+	@Label("Fetch Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long fetchTime;
+}
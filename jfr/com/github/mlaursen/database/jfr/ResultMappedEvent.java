@@ -0,0 +1,42 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The rows of a procedure call being turned into DatabaseObjects.
+ * 
+ * @author mlaursen
+ * 
+ */
+@Name("com.github.mlaursen.database.ResultMapped")
+@Label("Result Mapped")
+@Category({ "Database Manager" })
+@Description("The rows of a procedure call were turned into DatabaseObjects")
+@StackTrace(false)
+public class ResultMappedEvent extends Event {
+	
+	@Label("Package")
+	String packageName;
+	
+	@Label("Procedure")
+	String procedureName;
+	
+	@Label("Type")
+	Class<?> type;
+	
+	@Label("Rows")
+	int rows;
+	
+	@Label("Map Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long mapTime;
+}
@@ -26,6 +26,13 @@ public @interface DatabaseField {
 	
 	boolean reorder() default false;
 	
+	/**
+	 * True if the field's value should never be written to a log, like a password.
+	 * 
+	 * @return If the field is redacted
+	 */
+	boolean redact() default false;
+	
 	int getPosition() default -1;
 	
 	int getAllPosition() default -1;
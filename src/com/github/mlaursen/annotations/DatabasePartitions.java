@@ -0,0 +1,50 @@
+/**
+ * 
+ */
+package com.github.mlaursen.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import com.github.mlaursen.database.objects.PartitionStrategy;
+
+/**
+ * Splits a GetAllable DatabaseObject into partitions that ObjectManager.getAllPartitioned reads on separate connections at the same time.
+ * The package gets a GETPARTITION procedure that returns the rows in one partition:
+ * 
+ * <pre>
+ * HASH:  GETPARTITION(:PARTITION, :PARTITIONS, :CURSOR) --> rows where ORA_HASH(id, :PARTITIONS - 1) = :PARTITION
+ * RANGE: GETPARTITION(:LOWERKEY, :UPPERKEY, :CURSOR)    --> rows where id &gt;= :LOWERKEY and id &lt; :UPPERKEY. A null bound is open
+ * </pre>
+ * 
+ * A RANGE split divides min to max evenly, and the first and last partitions are open so keys outside of them are still read.
+ * 
+ * @author mlaursen
+ * 
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface DatabasePartitions {
+	
+	/**
+	 * @return the number of partitions
+	 */
+	int value();
+	
+	/**
+	 * @return how the rows are split
+	 */
+	PartitionStrategy strategy() default PartitionStrategy.HASH;
+	
+	/**
+	 * @return the smallest primary key expected for a RANGE split
+	 */
+	long min() default 0;
+	
+	/**
+	 * @return the largest primary key expected for a RANGE split
+	 */
+	long max() default 0;
+}
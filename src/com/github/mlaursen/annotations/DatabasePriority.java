@@ -0,0 +1,24 @@
+/**
+ * 
+ */
+package com.github.mlaursen.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import com.github.mlaursen.database.concurrency.Priority;
+
+/**
+ * Sets the priority for every procedure call made for a DatabaseObject. This overrides the priority of the procedure itself.
+ * 
+ * @author mlaursen
+ * 
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface DatabasePriority {
+	
+	Priority value();
+}
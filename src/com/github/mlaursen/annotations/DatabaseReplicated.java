@@ -0,0 +1,39 @@
+/**
+ * 
+ */
+package com.github.mlaursen.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Keeps a copy of every row of a small GetAllable DatabaseObject in memory. The ObjectManager reads the whole table with getall the first
+ * time the type is used, answers get, getall and filter from the copy, and refreshes it in the background. The package gets a
+ * GETCHANGEDSINCE procedure that returns the rows changed since a time, so a refresh only reads what changed:
+ * 
+ * <pre>
+ * GETCHANGEDSINCE(:TS, :CURSOR) --> rows where SCN_TO_TIMESTAMP(ORA_ROWSCN) &gt;= :TS
+ * </pre>
+ * 
+ * A delta can not see deleted rows, so every fullEvery refreshes the whole table is read again. Creating, updating or deleting through the
+ * ObjectManager reloads the copy right away.
+ * 
+ * @author mlaursen
+ * 
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface DatabaseReplicated {
+	
+	/**
+	 * @return the seconds between refreshes
+	 */
+	long refresh() default 60;
+	
+	/**
+	 * @return the number of refreshes between full reloads, or 1 to always read the whole table
+	 */
+	int fullEvery() default 10;
+}
@@ -0,0 +1,121 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.concurrency;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.github.mlaursen.database.utils.LocalSettings;
+
+/**
+ * Keeps a separate {@link ConcurrencyLimiter} for every package so each package acts as its own bulkhead. A package that starts timing out
+ * only shrinks its own limit and fills its own queue, so calls to other packages are still let through.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class AdmissionController {
+	
+	private static final String[] SETTINGS = { LocalSettings.LIMIT_INITIAL, LocalSettings.LIMIT_MIN, LocalSettings.LIMIT_MAX,
+			LocalSettings.LIMIT_QUEUE, LocalSettings.LIMIT_WAIT, LocalSettings.LIMIT_LATENCY };
+	private static final ConcurrentMap<String, AdmissionController> shared = new ConcurrentHashMap<String, AdmissionController>();
+	
+	private final ConcurrentMap<String, ConcurrencyLimiter> limiters = new ConcurrentHashMap<String, ConcurrencyLimiter>();
+	private int initialLimit = ConcurrencyLimiter.DEF_INITIAL_LIMIT, minLimit = ConcurrencyLimiter.DEF_MIN_LIMIT,
+			maxLimit = ConcurrencyLimiter.DEF_MAX_LIMIT, maxQueue = ConcurrencyLimiter.DEF_MAX_QUEUE;
+	private long maxWaitMillis = ConcurrencyLimiter.DEF_MAX_WAIT_MILLIS,
+			latencyThresholdMillis = ConcurrencyLimiter.DEF_LATENCY_THRESHOLD_MILLIS;
+	
+	/**
+	 * Creates an admission controller where every package gets the default limiter values
+	 */
+	public AdmissionController() {}
+	
+	/**
+	 * Creates an admission controller with the limiter values from the properties. Any property that is missing keeps the default value.
+	 * 
+	 * @param properties
+	 *            The local settings
+	 */
+	public AdmissionController(Properties properties) {
+		initialLimit = LocalSettings.getInt(properties, LocalSettings.LIMIT_INITIAL, initialLimit);
+		minLimit = LocalSettings.getInt(properties, LocalSettings.LIMIT_MIN, minLimit);
+		maxLimit = LocalSettings.getInt(properties, LocalSettings.LIMIT_MAX, maxLimit);
+		maxQueue = LocalSettings.getInt(properties, LocalSettings.LIMIT_QUEUE, maxQueue);
+		maxWaitMillis = LocalSettings.getInt(properties, LocalSettings.LIMIT_WAIT, (int) maxWaitMillis);
+		latencyThresholdMillis = LocalSettings.getInt(properties, LocalSettings.LIMIT_LATENCY, (int) latencyThresholdMillis);
+	}
+	
+	/**
+	 * Gets the admission controller every connection manager with the same limit settings shares. A new ObjectManager is created for
+	 * almost every call, so limiters that belonged to a single manager would only ever see one call. The first manager with a setting
+	 * creates the controller for it.
+	 * 
+	 * @param properties
+	 *            The local settings
+	 * @return The shared admission controller
+	 */
+	public static AdmissionController getShared(Properties properties) {
+		String key = "";
+		for(String setting : SETTINGS) {
+			key += properties.getProperty(setting, "").trim() + ":";
+		}
+		AdmissionController c = shared.get(key);
+		if(c == null) {
+			c = new AdmissionController(properties);
+			AdmissionController existing = shared.putIfAbsent(key, c);
+			if(existing != null) {
+				c = existing;
+			}
+		}
+		return c;
+	}
+	
+	/**
+	 * Gets the limiter for a package. A new limiter is created the first time a package is seen. Package names are not case sensitive.
+	 * 
+	 * @param packageName
+	 *            The package name
+	 * @return The limiter for the package
+	 */
+	public ConcurrencyLimiter getLimiter(String packageName) {
+		String key = packageName.toUpperCase();
+		ConcurrencyLimiter l = limiters.get(key);
+		if(l == null) {
+			l = new ConcurrencyLimiter(initialLimit, minLimit, maxLimit, maxQueue, maxWaitMillis, latencyThresholdMillis,
+					ConcurrencyLimiter.DEF_BACKOFF_RATIO);
+			ConcurrencyLimiter existing = limiters.putIfAbsent(key, l);
+			if(existing != null) {
+				l = existing;
+			}
+		}
+		return l;
+	}
+	
+	/**
+	 * Replaces the limiter for a single package. This is for packages that need a tighter or looser limit than the rest.
+	 * 
+	 * @param packageName
+	 *            The package name
+	 * @param limiter
+	 *            The limiter to use for the package
+	 */
+	public void setLimiter(String packageName, ConcurrencyLimiter limiter) {
+		limiters.put(packageName.toUpperCase(), limiter);
+	}
+	
+	/**
+	 * @return every limiter that has been created so far, keyed by the upper case package name
+	 */
+	public Map<String, ConcurrencyLimiter> getLimiters() {
+		return limiters;
+	}
+	
+	@Override
+	public String toString() {
+		return "AdmissionController [limiters=" + limiters + "]";
+	}
+}
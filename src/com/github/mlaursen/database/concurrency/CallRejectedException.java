@@ -0,0 +1,65 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.concurrency;
+
+import java.sql.SQLTransientException;
+
+import com.github.mlaursen.database.managers.CursorSessions;
+
+/**
+ * Thrown when a call is not let through to the database because the package's limit has been reached and the wait queue is full or the
+ * wait timed out, when the call's priority lane has no connection left, when the package's circuit breaker is open or when too many cursor
+ * sessions are open. It is a SQLException so it is handled the same way as any other failed call.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class CallRejectedException extends SQLTransientException {
+	
+	private static final long serialVersionUID = 4471523020519716543L;
+	
+	/**
+	 * 
+	 * @param packageName
+	 *            The package that was saturated
+	 * @param limiter
+	 *            The limiter that rejected the call
+	 */
+	public CallRejectedException(String packageName, ConcurrencyLimiter limiter) {
+		super("The call to " + packageName + " was rejected. " + limiter);
+	}
+	
+	/**
+	 * 
+	 * @param packageName
+	 *            The package that was being called
+	 * @param lanes
+	 *            The lanes that did not have a connection available
+	 */
+	public CallRejectedException(String packageName, PriorityLanes lanes) {
+		super("The call to " + packageName + " was rejected. " + lanes);
+	}
+	
+	/**
+	 * 
+	 * @param packageName
+	 *            The package that has been failing
+	 * @param breaker
+	 *            The breaker that is open
+	 */
+	public CallRejectedException(String packageName, CircuitBreaker breaker) {
+		super("The call to " + packageName + " was rejected. " + breaker);
+	}
+	
+	/**
+	 * 
+	 * @param packageName
+	 *            The package the cursor was opened for
+	 * @param sessions
+	 *            The cursor sessions that were at their cap
+	 */
+	public CallRejectedException(String packageName, CursorSessions sessions) {
+		super("The cursor for " + packageName + " was rejected. " + sessions);
+	}
+}
@@ -0,0 +1,138 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.concurrency;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fails calls fast while a package keeps erroring. After failureThreshold transient failures in a row the breaker opens and every call is
+ * rejected without touching the database. Once openMillis has passed a single trial call is let through. If it works the breaker closes
+ * again, otherwise it stays open for another openMillis.
+ * 
+ * Only failures that mean the database is struggling should be recorded. A constraint violation is the caller's fault and counts as a
+ * success since the database answered.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class CircuitBreaker {
+	
+	public static final int DEF_FAILURE_THRESHOLD = 5;
+	public static final long DEF_OPEN_MILLIS = 5000;
+	
+	public static enum State {
+		CLOSED, OPEN, HALF_OPEN;
+	}
+	
+	private final int failureThreshold;
+	private final long openNanos;
+	
+	private State state = State.CLOSED;
+	private int failures;
+	private long openedAt, rejected;
+	private boolean trial;
+	
+	/**
+	 * Creates a breaker with the default values
+	 */
+	public CircuitBreaker() {
+		this(DEF_FAILURE_THRESHOLD, DEF_OPEN_MILLIS);
+	}
+	
+	/**
+	 * 
+	 * @param failureThreshold
+	 *            The number of transient failures in a row that opens the breaker
+	 * @param openMillis
+	 *            How long the breaker stays open before a trial call is let through
+	 */
+	public CircuitBreaker(int failureThreshold, long openMillis) {
+		this.failureThreshold = Math.max(1, failureThreshold);
+		this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+	}
+	
+	/**
+	 * Checks if a call can go to the database. Every call that is allowed must be followed by {@link #onSuccess()}, {@link #onFailure()}
+	 * or {@link #onSkipped()}.
+	 * 
+	 * @return True if the call can go ahead
+	 */
+	public synchronized boolean allow() {
+		switch(state) {
+			case CLOSED:
+				return true;
+			case OPEN:
+				if(System.nanoTime() - openedAt >= openNanos) {
+					state = State.HALF_OPEN;
+					trial = true;
+					return true;
+				}
+				break;
+			case HALF_OPEN:
+				if(!trial) {
+					trial = true;
+					return true;
+				}
+				break;
+		}
+		rejected++;
+		return false;
+	}
+	
+	/**
+	 * Records a call that reached the database and got an answer. This closes the breaker unless it is open.
+	 */
+	public synchronized void onSuccess() {
+		trial = false;
+		if(state != State.OPEN) {
+			state = State.CLOSED;
+			failures = 0;
+		}
+	}
+	
+	/**
+	 * Records a call that failed because the database is struggling.
+	 */
+	public synchronized void onFailure() {
+		trial = false;
+		if(state == State.HALF_OPEN || (state == State.CLOSED && ++failures >= failureThreshold)) {
+			state = State.OPEN;
+			openedAt = System.nanoTime();
+			failures = 0;
+		}
+	}
+	
+	/**
+	 * Records a call that was allowed but never reached the database, like one that was rejected by the limiter.
+	 */
+	public synchronized void onSkipped() {
+		trial = false;
+	}
+	
+	/**
+	 * @return the current state
+	 */
+	public synchronized State getState() {
+		return state;
+	}
+	
+	/**
+	 * @return the number of transient failures in a row while the breaker is closed
+	 */
+	public synchronized int getFailures() {
+		return failures;
+	}
+	
+	/**
+	 * @return the total number of calls the breaker has rejected
+	 */
+	public synchronized long getRejected() {
+		return rejected;
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return "CircuitBreaker [state=" + state + ", failures=" + failures + ", rejected=" + rejected + "]";
+	}
+}
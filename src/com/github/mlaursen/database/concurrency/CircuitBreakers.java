@@ -0,0 +1,128 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.concurrency;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.github.mlaursen.database.utils.LocalSettings;
+
+/**
+ * Keeps a separate {@link CircuitBreaker} for every package, so a package that keeps failing is cut off without affecting the others.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class CircuitBreakers {
+	
+	private static final ConcurrentMap<String, CircuitBreakers> shared = new ConcurrentHashMap<String, CircuitBreakers>();
+	
+	private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<String, CircuitBreaker>();
+	private int failureThreshold = CircuitBreaker.DEF_FAILURE_THRESHOLD;
+	private long openMillis = CircuitBreaker.DEF_OPEN_MILLIS;
+	
+	/**
+	 * Creates breakers with the default values
+	 */
+	public CircuitBreakers() {}
+	
+	/**
+	 * Creates breakers with the values from the properties. Any property that is missing keeps the default value.
+	 * 
+	 * @param properties
+	 *            The local settings
+	 */
+	public CircuitBreakers(Properties properties) {
+		this(LocalSettings.getInt(properties, LocalSettings.BREAKER_FAILURES, CircuitBreaker.DEF_FAILURE_THRESHOLD), LocalSettings.getInt(
+				properties, LocalSettings.BREAKER_OPEN, (int) CircuitBreaker.DEF_OPEN_MILLIS));
+	}
+	
+	/**
+	 * 
+	 * @param failureThreshold
+	 *            The number of failures in a row that opens a package's breaker
+	 * @param openMillis
+	 *            How long a breaker stays open before it lets a trial call through
+	 */
+	public CircuitBreakers(int failureThreshold, long openMillis) {
+		this.failureThreshold = failureThreshold;
+		this.openMillis = openMillis;
+	}
+	
+	/**
+	 * Gets the breakers every connection manager with the same breaker settings shares, so they see enough failures to open. See
+	 * {@link AdmissionController#getShared(Properties)} for why. The first manager with a setting creates the breakers for it.
+	 * 
+	 * @param properties
+	 *            The local settings
+	 * @return The shared breakers
+	 */
+	public static CircuitBreakers getShared(Properties properties) {
+		int failures = LocalSettings.getInt(properties, LocalSettings.BREAKER_FAILURES, CircuitBreaker.DEF_FAILURE_THRESHOLD);
+		int open = LocalSettings.getInt(properties, LocalSettings.BREAKER_OPEN, (int) CircuitBreaker.DEF_OPEN_MILLIS);
+		String key = failures + ":" + open;
+		CircuitBreakers b = shared.get(key);
+		if(b == null) {
+			b = new CircuitBreakers(failures, open);
+			CircuitBreakers existing = shared.putIfAbsent(key, b);
+			if(existing != null) {
+				b = existing;
+			}
+		}
+		return b;
+	}
+	
+	/**
+	 * Gets the breaker for a package. A new breaker is created the first time a package is seen. Package names are not case sensitive.
+	 * 
+	 * @param packageName
+	 *            The package name
+	 * @return The breaker for the package
+	 */
+	public CircuitBreaker getBreaker(String packageName) {
+		String key = packageName.toUpperCase();
+		CircuitBreaker b = breakers.get(key);
+		if(b == null) {
+			b = new CircuitBreaker(failureThreshold, openMillis);
+			CircuitBreaker existing = breakers.putIfAbsent(key, b);
+			if(existing != null) {
+				b = existing;
+			}
+		}
+		return b;
+	}
+	
+	/**
+	 * Replaces the breaker for a single package.
+	 * 
+	 * @param packageName
+	 *            The package name
+	 * @param breaker
+	 *            The breaker to use for the package
+	 */
+	public void setBreaker(String packageName, CircuitBreaker breaker) {
+		breakers.put(packageName.toUpperCase(), breaker);
+	}
+	
+	/**
+	 * @return the number of failures in a row that opens a package's breaker
+	 */
+	public int getFailureThreshold() {
+		return failureThreshold;
+	}
+	
+	/**
+	 * @return every breaker that has been created so far, keyed by the upper case package name
+	 */
+	public Map<String, CircuitBreaker> getBreakers() {
+		return breakers;
+	}
+	
+	@Override
+	public String toString() {
+		return "CircuitBreakers [breakers=" + breakers + "]";
+	}
+}
@@ -0,0 +1,226 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.concurrency;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An adaptive limit on the number of calls that can be in flight at once. The limit is adjusted with AIMD (additive increase,
+ * multiplicative decrease). Every call that finishes under the latency threshold while the limit is being used grows the limit by 1/limit.
+ * Every call that is slower than the threshold or was dropped shrinks the limit by the backoff ratio.
+ * 
+ * When the limit has been reached, callers wait in a bounded queue for up to maxWaitMillis. If the queue is full or the wait runs out the
+ * call is rejected right away instead of piling onto a database that is already slow.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class ConcurrencyLimiter {
+	
+	public static final int DEF_INITIAL_LIMIT = 20, DEF_MIN_LIMIT = 1, DEF_MAX_LIMIT = 200, DEF_MAX_QUEUE = 50;
+	public static final long DEF_MAX_WAIT_MILLIS = 1000, DEF_LATENCY_THRESHOLD_MILLIS = 2000;
+	public static final double DEF_BACKOFF_RATIO = 0.9;
+	
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition available = lock.newCondition();
+	
+	private final int minLimit, maxLimit, maxQueue;
+	private final long maxWaitNanos, latencyThresholdNanos;
+	private final double backoffRatio;
+	
+	private double limit;
+	private int inFlight, waiting;
+	private long accepted, rejected;
+	
+	/**
+	 * Creates a limiter with all of the default values
+	 */
+	public ConcurrencyLimiter() {
+		this(DEF_INITIAL_LIMIT, DEF_MIN_LIMIT, DEF_MAX_LIMIT, DEF_MAX_QUEUE, DEF_MAX_WAIT_MILLIS, DEF_LATENCY_THRESHOLD_MILLIS,
+				DEF_BACKOFF_RATIO);
+	}
+	
+	/**
+	 * 
+	 * @param initialLimit
+	 *            The number of calls allowed in flight before anything has been observed
+	 * @param minLimit
+	 *            The limit will never shrink below this
+	 * @param maxLimit
+	 *            The limit will never grow above this
+	 * @param maxQueue
+	 *            The number of callers that can wait for a permit. Anything past this is rejected immediately
+	 * @param maxWaitMillis
+	 *            How long a caller can wait for a permit before being rejected
+	 * @param latencyThresholdMillis
+	 *            Calls slower than this shrink the limit
+	 * @param backoffRatio
+	 *            The ratio the limit is multiplied by when it shrinks
+	 */
+	public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, int maxQueue, long maxWaitMillis, long latencyThresholdMillis,
+			double backoffRatio) {
+		this.minLimit = Math.max(1, minLimit);
+		this.maxLimit = Math.max(this.minLimit, maxLimit);
+		this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+		this.maxQueue = Math.max(0, maxQueue);
+		this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+		this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+		this.backoffRatio = backoffRatio;
+	}
+	
+	/**
+	 * Attempts to get a permit to call the database. This will wait in the queue if the limit has been reached.
+	 * 
+	 * @return True if a permit was acquired. False if the queue was full, the wait timed out or the thread was interrupted
+	 */
+	public boolean acquire() {
+		return acquire(0);
+	}
+	
+	/**
+	 * Attempts to get a permit to call the database without waiting past a deadline.
+	 * 
+	 * @param deadline
+	 *            The deadline in System.nanoTime() or 0 to wait the full maxWaitMillis
+	 * @return True if a permit was acquired. False if the queue was full, the wait timed out or the thread was interrupted
+	 */
+	public boolean acquire(long deadline) {
+		lock.lock();
+		try {
+			if(inFlight < (int) limit) {
+				inFlight++;
+				accepted++;
+				return true;
+			}
+			if(waiting >= maxQueue) {
+				rejected++;
+				return false;
+			}
+			waiting++;
+			try {
+				long remaining = deadline == 0 ? maxWaitNanos : Math.min(maxWaitNanos, deadline - System.nanoTime());
+				while(inFlight >= (int) limit) {
+					if(remaining <= 0) {
+						rejected++;
+						return false;
+					}
+					remaining = available.awaitNanos(remaining);
+				}
+				inFlight++;
+				accepted++;
+				return true;
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				rejected++;
+				return false;
+			}
+			finally {
+				waiting--;
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Gives back a permit and adjusts the limit based on how the call went.
+	 * 
+	 * @param latencyNanos
+	 *            How long the call took
+	 * @param dropped
+	 *            True if the call failed in a way that means the database is struggling (timeouts, lost connections)
+	 */
+	public void release(long latencyNanos, boolean dropped) {
+		lock.lock();
+		try {
+			boolean saturated = inFlight >= (int) limit;
+			inFlight--;
+			if(dropped || latencyNanos > latencyThresholdNanos) {
+				limit = Math.max(minLimit, limit * backoffRatio);
+			}
+			else if(saturated) {
+				limit = Math.min(maxLimit, limit + 1.0 / limit);
+			}
+			available.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * @return the current limit
+	 */
+	public int getLimit() {
+		lock.lock();
+		try {
+			return (int) limit;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * @return the number of calls currently holding a permit
+	 */
+	public int getInFlight() {
+		lock.lock();
+		try {
+			return inFlight;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * @return the number of callers waiting for a permit
+	 */
+	public int getWaiting() {
+		lock.lock();
+		try {
+			return waiting;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * @return the total number of permits that have been handed out
+	 */
+	public long getAccepted() {
+		lock.lock();
+		try {
+			return accepted;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * @return the total number of calls that were rejected
+	 */
+	public long getRejected() {
+		lock.lock();
+		try {
+			return rejected;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "ConcurrencyLimiter [limit=" + getLimit() + ", inFlight=" + getInFlight() + ", waiting=" + getWaiting() + ", rejected="
+				+ getRejected() + "]";
+	}
+}
@@ -0,0 +1,20 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.concurrency;
+
+/**
+ * The priority class of a procedure call. Each priority gets its own reserved share of connections and threads in {@link PriorityLanes}
+ * so latency sensitive lookups never wait behind long running bulk calls.
+ * 
+ * @author mlaursen
+ * 
+ */
+public enum Priority {
+	INTERACTIVE, BULK;
+	
+	@Override
+	public String toString() {
+		return this.name().toLowerCase();
+	}
+}
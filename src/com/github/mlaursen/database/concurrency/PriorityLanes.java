@@ -0,0 +1,243 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.concurrency;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.mlaursen.database.managers.CallContext;
+import com.github.mlaursen.database.utils.LocalSettings;
+
+/**
+ * Separate execution lanes for each {@link Priority}. Every lane has its own reserved number of connections and its own thread pool, so
+ * a bulk export that is holding every bulk connection for ten minutes does not take anything away from the interactive lane. The
+ * connection managers share one set of lanes for each distinct lane setting, so the reservations and thread pools are process wide and
+ * a manager that is thrown away does not leave a thread pool behind.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class PriorityLanes {
+	
+	public static final int DEF_INTERACTIVE_SHARE = 16, DEF_BULK_SHARE = 4;
+	public static final long DEF_MAX_WAIT_MILLIS = 5000;
+	
+	private static final ConcurrentMap<String, PriorityLanes> shared = new ConcurrentHashMap<String, PriorityLanes>();
+	
+	private final Map<Priority, Integer> shares = new EnumMap<Priority, Integer>(Priority.class);
+	private final Map<Priority, Semaphore> connections = new EnumMap<Priority, Semaphore>(Priority.class);
+	private final Map<Priority, ExecutorService> executors = new EnumMap<Priority, ExecutorService>(Priority.class);
+	private long maxWaitMillis = DEF_MAX_WAIT_MILLIS;
+	
+	/**
+	 * Creates lanes with the default shares
+	 */
+	public PriorityLanes() {
+		this(DEF_INTERACTIVE_SHARE, DEF_BULK_SHARE, DEF_MAX_WAIT_MILLIS);
+	}
+	
+	/**
+	 * Creates lanes with the shares from the properties. Any property that is missing keeps the default value.
+	 * 
+	 * @param properties
+	 *            The local settings
+	 */
+	public PriorityLanes(Properties properties) {
+		this(LocalSettings.getInt(properties, LocalSettings.LANE_INTERACTIVE, DEF_INTERACTIVE_SHARE), LocalSettings.getInt(properties,
+				LocalSettings.LANE_BULK, DEF_BULK_SHARE), LocalSettings.getInt(properties, LocalSettings.LANE_WAIT,
+				(int) DEF_MAX_WAIT_MILLIS));
+	}
+	
+	/**
+	 * 
+	 * @param interactiveShare
+	 *            The number of connections and threads reserved for interactive calls
+	 * @param bulkShare
+	 *            The number of connections and threads reserved for bulk calls
+	 * @param maxWaitMillis
+	 *            How long a call can wait for a connection in its lane before it is rejected
+	 */
+	public PriorityLanes(int interactiveShare, int bulkShare, long maxWaitMillis) {
+		setShare(Priority.INTERACTIVE, interactiveShare);
+		setShare(Priority.BULK, bulkShare);
+		this.maxWaitMillis = maxWaitMillis;
+	}
+	
+	/**
+	 * Gets the lanes that every connection manager with the same lane settings uses. The lanes are created the first time the settings
+	 * are seen.
+	 * 
+	 * @param properties
+	 *            The local settings
+	 * @return The shared lanes
+	 */
+	public static PriorityLanes getShared(Properties properties) {
+		int interactive = LocalSettings.getInt(properties, LocalSettings.LANE_INTERACTIVE, DEF_INTERACTIVE_SHARE);
+		int bulk = LocalSettings.getInt(properties, LocalSettings.LANE_BULK, DEF_BULK_SHARE);
+		int wait = LocalSettings.getInt(properties, LocalSettings.LANE_WAIT, (int) DEF_MAX_WAIT_MILLIS);
+		String key = interactive + ":" + bulk + ":" + wait;
+		PriorityLanes l = shared.get(key);
+		if(l == null) {
+			l = new PriorityLanes(interactive, bulk, wait);
+			PriorityLanes existing = shared.putIfAbsent(key, l);
+			if(existing != null) {
+				l = existing;
+			}
+		}
+		return l;
+	}
+	
+	private void setShare(Priority p, int share) {
+		shares.put(p, Math.max(1, share));
+		connections.put(p, new Semaphore(Math.max(1, share), true));
+	}
+	
+	/**
+	 * Waits for a connection in the lane for the priority.
+	 * 
+	 * @param p
+	 *            The priority of the call
+	 * @return True if the call can go ahead. False if the wait timed out or the thread was interrupted
+	 */
+	public boolean acquire(Priority p) {
+		return acquire(p, 0);
+	}
+	
+	/**
+	 * Waits for a connection in the lane for the priority without waiting past a deadline.
+	 * 
+	 * @param p
+	 *            The priority of the call
+	 * @param deadline
+	 *            The deadline in System.nanoTime() or 0 to wait the full maxWaitMillis
+	 * @return True if the call can go ahead. False if the wait timed out or the thread was interrupted
+	 */
+	public boolean acquire(Priority p, long deadline) {
+		long wait = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+		if(deadline != 0) {
+			wait = Math.min(wait, deadline - System.nanoTime());
+		}
+		try {
+			return connections.get(p).tryAcquire(Math.max(0, wait), TimeUnit.NANOSECONDS);
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+	
+	/**
+	 * Gives back a connection to the lane
+	 * 
+	 * @param p
+	 *            The priority the connection was acquired with
+	 */
+	public void release(Priority p) {
+		connections.get(p).release();
+	}
+	
+	/**
+	 * Runs a task on the thread pool for the priority. Every procedure call made by the task is made with that priority and with the
+	 * deadline the submitting thread had in its {@link CallContext}.
+	 * 
+	 * @param p
+	 *            The priority to run the task with
+	 * @param task
+	 *            The task to run
+	 * @return A future for the task's result
+	 */
+	public <T> Future<T> submit(final Priority p, final Callable<T> task) {
+		final CallContext context = CallContext.capture();
+		return getExecutor(p).submit(new Callable<T>() {
+			
+			@Override
+			public T call() throws Exception {
+				CallContext previous = CallContext.capture();
+				CallContext.restore(context);
+				CallContext.setPriority(p);
+				try {
+					return task.call();
+				}
+				finally {
+					CallContext.restore(previous);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Gets the thread pool for a priority. The pool is created the first time it is needed and has as many threads as the lane has
+	 * connections.
+	 * 
+	 * @param p
+	 *            The priority
+	 * @return The thread pool for the priority
+	 */
+	public synchronized ExecutorService getExecutor(final Priority p) {
+		ExecutorService e = executors.get(p);
+		if(e == null) {
+			e = Executors.newFixedThreadPool(shares.get(p), new ThreadFactory() {
+				
+				private final AtomicInteger count = new AtomicInteger();
+				
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "db-" + p + "-" + count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			executors.put(p, e);
+		}
+		return e;
+	}
+	
+	/**
+	 * @param p
+	 *            The priority
+	 * @return The number of connections reserved for the priority
+	 */
+	public int getShare(Priority p) {
+		return shares.get(p);
+	}
+	
+	/**
+	 * @param p
+	 *            The priority
+	 * @return The number of connections that are not being used in the lane
+	 */
+	public int getAvailable(Priority p) {
+		return connections.get(p).availablePermits();
+	}
+	
+	/**
+	 * Shuts down every thread pool that has been created
+	 */
+	public synchronized void shutdown() {
+		for(ExecutorService e : executors.values()) {
+			e.shutdown();
+		}
+		executors.clear();
+	}
+	
+	@Override
+	public String toString() {
+		String s = "PriorityLanes [";
+		for(Priority p : Priority.values()) {
+			s += p + "=" + (getShare(p) - getAvailable(p)) + "/" + getShare(p) + (p.ordinal() + 1 < Priority.values().length ? ", " : "");
+		}
+		return s + "]";
+	}
+}
@@ -0,0 +1,119 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.concurrency;
+
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.github.mlaursen.database.utils.LocalSettings;
+
+/**
+ * How transient failures are retried. The delay before each retry is picked at random between 0 and an exponentially growing cap ("full
+ * jitter") so callers that failed at the same moment do not all come back at the same moment.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class RetryPolicy {
+	
+	public static final int DEF_MAX_ATTEMPTS = 3;
+	public static final long DEF_BASE_DELAY_MILLIS = 50, DEF_MAX_DELAY_MILLIS = 1000;
+	
+	private final int maxAttempts;
+	private final long baseDelayMillis, maxDelayMillis;
+	
+	/**
+	 * Creates a retry policy with the default values
+	 */
+	public RetryPolicy() {
+		this(DEF_MAX_ATTEMPTS, DEF_BASE_DELAY_MILLIS, DEF_MAX_DELAY_MILLIS);
+	}
+	
+	/**
+	 * Creates a retry policy with the values from the properties. Any property that is missing keeps the default value.
+	 * 
+	 * @param properties
+	 *            The local settings
+	 */
+	public RetryPolicy(Properties properties) {
+		this(LocalSettings.getInt(properties, LocalSettings.RETRY_ATTEMPTS, DEF_MAX_ATTEMPTS), LocalSettings.getInt(properties,
+				LocalSettings.RETRY_DELAY, (int) DEF_BASE_DELAY_MILLIS), LocalSettings.getInt(properties, LocalSettings.RETRY_MAX_DELAY,
+				(int) DEF_MAX_DELAY_MILLIS));
+	}
+	
+	/**
+	 * 
+	 * @param maxAttempts
+	 *            The total number of attempts including the first one. 1 turns retries off
+	 * @param baseDelayMillis
+	 *            The cap on the delay before the first retry. The cap doubles for every retry after that
+	 * @param maxDelayMillis
+	 *            The delay cap never grows past this
+	 */
+	public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+		this.maxAttempts = Math.max(1, maxAttempts);
+		this.baseDelayMillis = Math.max(0, baseDelayMillis);
+		this.maxDelayMillis = Math.max(this.baseDelayMillis, maxDelayMillis);
+	}
+	
+	/**
+	 * @param attempt
+	 *            The attempt that just failed, starting at 1
+	 * @return True if another attempt is allowed
+	 */
+	public boolean canRetry(int attempt) {
+		return attempt < maxAttempts;
+	}
+	
+	/**
+	 * Picks the delay before the next attempt
+	 * 
+	 * @param attempt
+	 *            The attempt that just failed, starting at 1
+	 * @return The delay in milliseconds
+	 */
+	public long getDelayMillis(int attempt) {
+		long cap = baseDelayMillis << Math.min(30, attempt - 1);
+		cap = cap < 0 || cap > maxDelayMillis ? maxDelayMillis : cap;
+		return cap == 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+	}
+	
+	/**
+	 * Sleeps before the next attempt. Nothing happens if the sleep would go past the deadline.
+	 * 
+	 * @param attempt
+	 *            The attempt that just failed, starting at 1
+	 * @param deadline
+	 *            The deadline in System.nanoTime() or 0 if there is none
+	 * @return True if the next attempt should be made. False if the deadline would pass or the thread was interrupted
+	 */
+	public boolean backoff(int attempt, long deadline) {
+		long delay = getDelayMillis(attempt);
+		if(deadline != 0 && deadline - System.nanoTime() <= TimeUnit.MILLISECONDS.toNanos(delay)) {
+			return false;
+		}
+		try {
+			Thread.sleep(delay);
+			return true;
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+	
+	/**
+	 * @return the total number of attempts including the first one
+	 */
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+	
+	@Override
+	public String toString() {
+		return "RetryPolicy [maxAttempts=" + maxAttempts + ", baseDelayMillis=" + baseDelayMillis + ", maxDelayMillis=" + maxDelayMillis
+				+ "]";
+	}
+}
@@ -0,0 +1,104 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.concurrency;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cancels statements that are still running when their deadline passes. The driver's query timeout only covers the time the statement
+ * spends executing, so this also catches calls that are stuck on the network or on fetching a cursor.
+ * 
+ * Every watchdog shares one daemon timer thread, for the same reason the limiters are shared in {@link AdmissionController#getShared}.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class StatementWatchdog {
+	
+	private static ScheduledThreadPoolExecutor timer;
+	
+	private static synchronized ScheduledThreadPoolExecutor getTimer() {
+		if(timer == null) {
+			timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "db-watchdog");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			timer.setRemoveOnCancelPolicy(true);
+		}
+		return timer;
+	}
+	
+	/**
+	 * Starts watching a statement.
+	 * 
+	 * @param s
+	 *            The statement to cancel when the deadline passes
+	 * @param deadline
+	 *            The deadline in System.nanoTime() or 0 if there is none
+	 * @return The watch that has to be done when the statement finishes or null if there is no deadline
+	 */
+	public Watch watch(Statement s, long deadline) {
+		if(deadline == 0) {
+			return null;
+		}
+		Watch w = new Watch(s);
+		w.future = getTimer().schedule(w, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		return w;
+	}
+	
+	/**
+	 * A statement that is being watched
+	 * 
+	 * @author mlaursen
+	 * 
+	 */
+	public static class Watch implements Runnable {
+		
+		private final Statement statement;
+		private volatile ScheduledFuture<?> future;
+		private volatile boolean fired;
+		
+		private Watch(Statement statement) {
+			this.statement = statement;
+		}
+		
+		@Override
+		public void run() {
+			fired = true;
+			try {
+				statement.cancel();
+			}
+			catch(SQLException e) {
+				// The statement finished or was closed before it could be cancelled
+			}
+		}
+		
+		/**
+		 * @return true if the deadline passed and the statement was cancelled
+		 */
+		public boolean fired() {
+			return fired;
+		}
+		
+		/**
+		 * Stops watching the statement
+		 */
+		public void done() {
+			ScheduledFuture<?> f = future;
+			if(f != null) {
+				f.cancel(false);
+			}
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.logging;
+
+import java.io.PrintStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes errors to a PrintStream from a single daemon thread. Calling threads only put the error on a bounded queue, so they never wait on
+ * the stream's lock. When the queue is full the error is dropped and counted instead.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class AsyncErrorLogger implements ErrorLogger {
+	
+	public static final int DEF_CAPACITY = 1024;
+	
+	private final BlockingQueue<Entry> queue;
+	private final PrintStream out;
+	private final AtomicLong dropped = new AtomicLong();
+	private Thread writer;
+	
+	private static class Entry {
+		
+		private final ErrorCategory category;
+		private final String message;
+		private final Throwable t;
+		
+		private Entry(ErrorCategory category, String message, Throwable t) {
+			this.category = category;
+			this.message = message;
+			this.t = t;
+		}
+	}
+	
+	/**
+	 * Creates a logger that writes to System.err
+	 */
+	public AsyncErrorLogger() {
+		this(System.err, DEF_CAPACITY);
+	}
+	
+	/**
+	 * 
+	 * @param out
+	 *            The stream to write to
+	 * @param capacity
+	 *            The number of errors that can be waiting to be written
+	 */
+	public AsyncErrorLogger(PrintStream out, int capacity) {
+		this.out = out;
+		this.queue = new ArrayBlockingQueue<Entry>(Math.max(1, capacity));
+	}
+	
+	@Override
+	public boolean isEnabled(ErrorCategory category) {
+		return true;
+	}
+	
+	@Override
+	public void log(ErrorCategory category, String message, Throwable t) {
+		startWriter();
+		if(!queue.offer(new Entry(category, message, t))) {
+			dropped.incrementAndGet();
+		}
+	}
+	
+	private synchronized void startWriter() {
+		if(writer == null) {
+			writer = new Thread(new Runnable() {
+				
+				@Override
+				public void run() {
+					while(true) {
+						try {
+							write(queue.take());
+						}
+						catch(InterruptedException e) {
+							return;
+						}
+					}
+				}
+			}, "db-error-log");
+			writer.setDaemon(true);
+			writer.start();
+		}
+	}
+	
+	private void write(Entry e) {
+		long d = dropped.getAndSet(0);
+		if(d > 0) {
+			out.println("[" + e.category + "] " + d + " errors were dropped because the error log could not keep up.");
+		}
+		out.println("[" + e.category + "] " + e.message);
+		if(e.t != null) {
+			e.t.printStackTrace(out);
+		}
+	}
+	
+	/**
+	 * @return the number of errors that were dropped since the last one was written
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+	
+	/**
+	 * @return the number of errors waiting to be written
+	 */
+	public int getPending() {
+		return queue.size();
+	}
+}
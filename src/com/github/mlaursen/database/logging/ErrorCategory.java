@@ -0,0 +1,34 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.logging;
+
+/**
+ * The kinds of errors that are reported. Each category is rate limited on its own, so a storm of failed calls does not hide a mapping
+ * error.
+ * 
+ * @author mlaursen
+ * 
+ */
+public enum ErrorCategory {
+	/**
+	 * A stored procedure call failed
+	 */
+	SQL,
+	/**
+	 * A connection, statement or result set could not be closed or rolled back
+	 */
+	CONNECTION,
+	/**
+	 * A database row could not be turned into a DatabaseObject
+	 */
+	MAPPING,
+	/**
+	 * A DatabaseObject could not be turned into procedure parameters
+	 */
+	PARAMETERS,
+	/**
+	 * A call listener threw an exception
+	 */
+	LISTENER;
+}
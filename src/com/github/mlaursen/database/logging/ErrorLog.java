@@ -0,0 +1,77 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.logging;
+
+/**
+ * The logger every part of the database manager reports errors to. The default is a {@link RateLimitedErrorLogger} in front of an
+ * {@link AsyncErrorLogger} writing to System.err, so an error storm costs an atomic increment per error instead of a trip through the
+ * System.err lock.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class ErrorLog {
+	
+	private static volatile ErrorLogger logger = new RateLimitedErrorLogger();
+	
+	private ErrorLog() {}
+	
+	/**
+	 * @return the logger
+	 */
+	public static ErrorLogger getLogger() {
+		return logger;
+	}
+	
+	/**
+	 * @param logger
+	 *            The logger to report errors to
+	 */
+	public static void setLogger(ErrorLogger logger) {
+		ErrorLog.logger = logger;
+	}
+	
+	/**
+	 * {@link ErrorLogger#isEnabled(ErrorCategory)}
+	 * 
+	 * @param category
+	 *            The error category
+	 * @return True if the error should be logged
+	 */
+	public static boolean isEnabled(ErrorCategory category) {
+		return logger.isEnabled(category);
+	}
+	
+	/**
+	 * {@link ErrorLogger#log(ErrorCategory, String, Throwable)}
+	 * 
+	 * @param category
+	 *            The error category
+	 * @param message
+	 *            The message
+	 * @param t
+	 *            The exception or null
+	 */
+	public static void log(ErrorCategory category, String message, Throwable t) {
+		logger.log(category, message, t);
+	}
+	
+	/**
+	 * Logs an error if its category is enabled. Only use this when the message is a constant, otherwise check
+	 * {@link #isEnabled(ErrorCategory)} first so the message is not built for nothing.
+	 * 
+	 * @param category
+	 *            The error category
+	 * @param message
+	 *            The message
+	 * @param t
+	 *            The exception or null
+	 */
+	public static void report(ErrorCategory category, String message, Throwable t) {
+		ErrorLogger l = logger;
+		if(l.isEnabled(category)) {
+			l.log(category, message, t);
+		}
+	}
+}
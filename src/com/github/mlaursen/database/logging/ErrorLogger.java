@@ -0,0 +1,42 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.logging;
+
+/**
+ * Somewhere to send errors. Callers check {@link #isEnabled(ErrorCategory)} before building a message so that nothing is allocated for
+ * errors that are going to be dropped.
+ * 
+ * <pre>
+ * if(logger.isEnabled(ErrorCategory.SQL)) {
+ * 	logger.log(ErrorCategory.SQL, &quot;The call to &quot; + call + &quot; failed.&quot;, e);
+ * }
+ * </pre>
+ * 
+ * @author mlaursen
+ * 
+ */
+public interface ErrorLogger {
+	
+	/**
+	 * Checks if an error in the category would be logged. A rate limited logger uses up one of its permits here, so this should be called
+	 * once for each error.
+	 * 
+	 * @param category
+	 *            The error category
+	 * @return True if the error should be logged
+	 */
+	boolean isEnabled(ErrorCategory category);
+	
+	/**
+	 * Logs an error. This must not block the calling thread on output.
+	 * 
+	 * @param category
+	 *            The error category
+	 * @param message
+	 *            The message
+	 * @param t
+	 *            The exception or null
+	 */
+	void log(ErrorCategory category, String message, Throwable t);
+}
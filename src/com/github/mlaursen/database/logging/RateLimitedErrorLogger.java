@@ -0,0 +1,88 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.logging;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Only lets a number of errors per second through to another logger for each {@link ErrorCategory}. Everything past that is counted and
+ * the count is logged with the next error that gets through. Checking and counting never takes a lock or allocates.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class RateLimitedErrorLogger implements ErrorLogger {
+	
+	public static final int DEF_PER_SECOND = 10;
+	private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+	
+	private final ErrorLogger delegate;
+	private final int perSecond;
+	private final Map<ErrorCategory, Window> windows = new EnumMap<ErrorCategory, Window>(ErrorCategory.class);
+	
+	private static class Window {
+		
+		private final AtomicLong start = new AtomicLong(System.nanoTime());
+		private final AtomicInteger count = new AtomicInteger();
+		private final AtomicLong suppressed = new AtomicLong();
+	}
+	
+	/**
+	 * Creates a rate limited logger in front of an {@link AsyncErrorLogger} with the default rate
+	 */
+	public RateLimitedErrorLogger() {
+		this(new AsyncErrorLogger(), DEF_PER_SECOND);
+	}
+	
+	/**
+	 * 
+	 * @param delegate
+	 *            The logger that errors are let through to
+	 * @param perSecond
+	 *            The number of errors in each category that are let through every second
+	 */
+	public RateLimitedErrorLogger(ErrorLogger delegate, int perSecond) {
+		this.delegate = delegate;
+		this.perSecond = Math.max(1, perSecond);
+		for(ErrorCategory c : ErrorCategory.values()) {
+			windows.put(c, new Window());
+		}
+	}
+	
+	@Override
+	public boolean isEnabled(ErrorCategory category) {
+		Window w = windows.get(category);
+		long now = System.nanoTime(), start = w.start.get();
+		if(now - start >= WINDOW_NANOS && w.start.compareAndSet(start, now)) {
+			w.count.set(0);
+		}
+		if(w.count.incrementAndGet() <= perSecond && delegate.isEnabled(category)) {
+			return true;
+		}
+		w.suppressed.incrementAndGet();
+		return false;
+	}
+	
+	@Override
+	public void log(ErrorCategory category, String message, Throwable t) {
+		long s = windows.get(category).suppressed.getAndSet(0);
+		if(s > 0) {
+			delegate.log(category, s + " similar errors were suppressed.", null);
+		}
+		delegate.log(category, message, t);
+	}
+	
+	/**
+	 * @param category
+	 *            The error category
+	 * @return the number of errors in the category that have been suppressed since the last one was logged
+	 */
+	public long getSuppressed(ErrorCategory category) {
+		return windows.get(category).suppressed.get();
+	}
+}
@@ -0,0 +1,214 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.logging;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes lines to a local file from a single daemon thread. Lines are put on a bounded queue and dropped (and counted) when the queue is
+ * full, so the calling thread never waits on the disk. When the file grows past maxBytes it is renamed to file.1, file.1 to file.2 and so
+ * on, keeping at most maxFiles old files.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class RollingFileWriter {
+	
+	public static final int DEF_CAPACITY = 4096, DEF_MAX_FILES = 5;
+	public static final long DEF_MAX_BYTES = 10 * 1024 * 1024;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final byte[] NEW_LINE = System.getProperty("line.separator").getBytes(UTF8);
+	
+	private final File file;
+	private final long maxBytes;
+	private final int maxFiles;
+	private final BlockingQueue<String> queue;
+	private final AtomicLong dropped = new AtomicLong(), written = new AtomicLong();
+	private final AtomicLong queued = new AtomicLong(), handled = new AtomicLong();
+	private OutputStream out;
+	private long size;
+	private Thread writer;
+	
+	/**
+	 * Creates a writer with the default sizes
+	 * 
+	 * @param file
+	 *            The file to write to
+	 */
+	public RollingFileWriter(File file) {
+		this(file, DEF_MAX_BYTES, DEF_MAX_FILES, DEF_CAPACITY);
+	}
+	
+	/**
+	 * 
+	 * @param file
+	 *            The file to write to
+	 * @param maxBytes
+	 *            The size the file can grow to before it is rolled
+	 * @param maxFiles
+	 *            The number of rolled files to keep
+	 * @param capacity
+	 *            The number of lines that can be waiting to be written
+	 */
+	public RollingFileWriter(File file, long maxBytes, int maxFiles, int capacity) {
+		this.file = file;
+		this.maxBytes = Math.max(1, maxBytes);
+		this.maxFiles = Math.max(0, maxFiles);
+		this.queue = new ArrayBlockingQueue<String>(Math.max(1, capacity));
+	}
+	
+	/**
+	 * Queues a line to be written
+	 * 
+	 * @param line
+	 *            The line without a line separator
+	 * @return False if the queue was full and the line was dropped
+	 */
+	public boolean write(String line) {
+		startWriter();
+		if(queue.offer(line)) {
+			queued.incrementAndGet();
+			return true;
+		}
+		dropped.incrementAndGet();
+		return false;
+	}
+	
+	private synchronized void startWriter() {
+		if(writer == null) {
+			writer = new Thread(new Runnable() {
+				
+				@Override
+				public void run() {
+					try {
+						while(true) {
+							String line = queue.take();
+							int lines = 1;
+							try {
+								writeLine(line);
+								while((line = queue.poll()) != null) {
+									lines++;
+									writeLine(line);
+								}
+								out.flush();
+								written.addAndGet(lines);
+							}
+							catch(IOException e) {
+								ErrorLog.report(ErrorCategory.CONNECTION, "Could not write to " + file + ".", e);
+								close();
+							}
+							handled.addAndGet(lines);
+						}
+					}
+					catch(InterruptedException e) {
+						close();
+					}
+				}
+			}, "db-" + file.getName());
+			writer.setDaemon(true);
+			writer.start();
+		}
+	}
+	
+	private void writeLine(String line) throws IOException {
+		if(out == null) {
+			File parent = file.getAbsoluteFile().getParentFile();
+			if(parent != null) {
+				parent.mkdirs();
+			}
+			size = file.length();
+			out = new FileOutputStream(file, true);
+		}
+		byte[] bytes = line.getBytes(UTF8);
+		if(size > 0 && size + bytes.length + NEW_LINE.length > maxBytes) {
+			roll();
+		}
+		out.write(bytes);
+		out.write(NEW_LINE);
+		size += bytes.length + NEW_LINE.length;
+	}
+	
+	private void roll() throws IOException {
+		close();
+		if(maxFiles == 0) {
+			file.delete();
+		}
+		else {
+			new File(file.getPath() + "." + maxFiles).delete();
+			for(int i = maxFiles - 1; i > 0; i--) {
+				new File(file.getPath() + "." + i).renameTo(new File(file.getPath() + "." + (i + 1)));
+			}
+			file.renameTo(new File(file.getPath() + ".1"));
+		}
+		out = new FileOutputStream(file, true);
+		size = 0;
+	}
+	
+	private void close() {
+		if(out != null) {
+			try {
+				out.close();
+			}
+			catch(IOException e) {
+				ErrorLog.report(ErrorCategory.CONNECTION, "Could not close " + file + ".", e);
+			}
+			out = null;
+		}
+	}
+	
+	/**
+	 * Waits for every queued line to be written. This is mostly for tests and shutdown hooks.
+	 * 
+	 * @param timeout
+	 *            The longest time to wait
+	 * @param unit
+	 *            The unit of the timeout
+	 * @return True if the queue was emptied in time
+	 */
+	public boolean flush(long timeout, TimeUnit unit) {
+		long end = System.nanoTime() + unit.toNanos(timeout), target = queued.get();
+		while(handled.get() < target) {
+			if(System.nanoTime() - end > 0) {
+				return false;
+			}
+			try {
+				Thread.sleep(1);
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @return the file being written to
+	 */
+	public File getFile() {
+		return file;
+	}
+	
+	/**
+	 * @return the number of lines dropped because the queue was full
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+	
+	/**
+	 * @return the number of lines written
+	 */
+	public long getWritten() {
+		return written.get();
+	}
+}
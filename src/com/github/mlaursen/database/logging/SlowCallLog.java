@@ -0,0 +1,222 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.logging;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.mlaursen.database.managers.ProcedureCall;
+import com.github.mlaursen.database.metrics.Phase;
+import com.github.mlaursen.database.objects.Procedure;
+import com.github.mlaursen.database.utils.LocalSettings;
+
+/**
+ * Logs every procedure call that takes longer than a threshold to a rolling local file. Each line has the full procedure call, the bound
+ * parameters, the row count and the time spent in each phase (shown on two lines here):
+ * 
+ * <pre>
+ * 2014-03-02 10:15:01.123 PERSON_PKG.FILTER(:FIRSTNAME, :LASTNAME, :CURSOR) total=1503.2ms rows=12 failed=false
+ *     borrow=2.1ms prepare=0.4ms bind=0.1ms execute=1490.3ms fetch=10.3ms params=[firstname=Mikkel, lastname=***]
+ * </pre>
+ * 
+ * The threshold is the procedure's slow threshold when it has one, otherwise the global threshold. Parameters for fields that are marked
+ * with redact in their DatabaseField annotation, or whose names are in the redacted list, are written as ***. A procedure that is slow
+ * all of the time only gets perSecond lines a second; the calls that were skipped are counted and the count is added to the next line.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class SlowCallLog {
+	
+	public static final long DEF_THRESHOLD_MILLIS = 1000;
+	public static final int DEF_PER_SECOND = 5, MAX_VALUE_LENGTH = 200;
+	public static final String REDACTED = "***";
+	private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+	private static final ConcurrentMap<String, SlowCallLog> logs = new ConcurrentHashMap<String, SlowCallLog>();
+	
+	private final RollingFileWriter writer;
+	private final long thresholdNanos;
+	private final int perSecond;
+	private final Set<String> redacted = new HashSet<String>();
+	private final ConcurrentMap<String, Window> windows = new ConcurrentHashMap<String, Window>();
+	
+	private static class Window {
+		
+		private final AtomicLong start = new AtomicLong(System.nanoTime());
+		private final AtomicInteger count = new AtomicInteger();
+		private final AtomicLong skipped = new AtomicLong();
+	}
+	
+	/**
+	 * 
+	 * @param writer
+	 *            Where the lines are written
+	 * @param thresholdMillis
+	 *            Calls slower than this are logged unless their procedure has its own threshold
+	 * @param perSecond
+	 *            The number of lines each procedure can write every second
+	 * @param redacted
+	 *            The parameter names that are always redacted
+	 */
+	public SlowCallLog(RollingFileWriter writer, long thresholdMillis, int perSecond, String... redacted) {
+		this.writer = writer;
+		this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+		this.perSecond = Math.max(1, perSecond);
+		for(String r : redacted) {
+			if(!r.trim().isEmpty()) {
+				this.redacted.add(r.trim().toLowerCase());
+			}
+		}
+	}
+	
+	/**
+	 * Gets the slow call log for the slowlog.file in the properties. Every ConnectionManager with the same file shares one log.
+	 * 
+	 * @param properties
+	 *            The local settings
+	 * @return The slow call log or null if slowlog.file is not set
+	 */
+	public static SlowCallLog fromProperties(Properties properties) {
+		String path = properties.getProperty(LocalSettings.SLOWLOG_FILE);
+		if(path == null || path.trim().isEmpty()) {
+			return null;
+		}
+		SlowCallLog log = logs.get(path);
+		if(log == null) {
+			RollingFileWriter writer = new RollingFileWriter(new File(path.trim()), LocalSettings.getLong(properties,
+					LocalSettings.SLOWLOG_MAX_BYTES, RollingFileWriter.DEF_MAX_BYTES), LocalSettings.getInt(properties,
+					LocalSettings.SLOWLOG_MAX_FILES, RollingFileWriter.DEF_MAX_FILES), RollingFileWriter.DEF_CAPACITY);
+			String redact = properties.getProperty(LocalSettings.SLOWLOG_REDACT, "");
+			log = new SlowCallLog(writer, LocalSettings.getLong(properties, LocalSettings.SLOWLOG_THRESHOLD, DEF_THRESHOLD_MILLIS),
+					LocalSettings.getInt(properties, LocalSettings.SLOWLOG_PER_SECOND, DEF_PER_SECOND), redact.split(","));
+			SlowCallLog existing = logs.putIfAbsent(path, log);
+			if(existing != null) {
+				log = existing;
+			}
+		}
+		return log;
+	}
+	
+	/**
+	 * Checks if a call went over its threshold
+	 * 
+	 * @param call
+	 *            The procedure call
+	 * @param nanos
+	 *            How long the call took
+	 * @return True if the call is slow
+	 */
+	public boolean isSlow(ProcedureCall call, long nanos) {
+		Procedure p = call.getProcedure();
+		long threshold = p == null || p.getSlowThreshold() == 0 ? thresholdNanos : TimeUnit.MILLISECONDS.toNanos(p.getSlowThreshold());
+		return nanos > threshold;
+	}
+	
+	/**
+	 * Logs a slow call unless its procedure has already used up this second's lines.
+	 * 
+	 * @param call
+	 *            The procedure call
+	 * @param nanos
+	 *            How long the call took
+	 * @param failed
+	 *            True if the call failed
+	 * @return True if a line was queued
+	 */
+	public boolean log(ProcedureCall call, long nanos, boolean failed) {
+		String key = call.getCall();
+		Window w = windows.get(key);
+		if(w == null) {
+			w = new Window();
+			Window existing = windows.putIfAbsent(key, w);
+			if(existing != null) {
+				w = existing;
+			}
+		}
+		long now = System.nanoTime(), start = w.start.get();
+		if(now - start >= WINDOW_NANOS && w.start.compareAndSet(start, now)) {
+			w.count.set(0);
+		}
+		if(w.count.incrementAndGet() > perSecond) {
+			w.skipped.incrementAndGet();
+			return false;
+		}
+		return writer.write(format(call, nanos, failed, w.skipped.getAndSet(0)));
+	}
+	
+	/**
+	 * Builds the line for a slow call
+	 * 
+	 * @param call
+	 *            The procedure call
+	 * @param nanos
+	 *            How long the call took
+	 * @param failed
+	 *            True if the call failed
+	 * @param skipped
+	 *            The number of slow calls to the procedure that were skipped since the last line
+	 * @return The line
+	 */
+	protected String format(ProcedureCall call, long nanos, boolean failed, long skipped) {
+		StringBuilder sb = new StringBuilder(256);
+		sb.append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date())).append(' ').append(call.getCall());
+		appendMillis(sb.append(" total="), nanos);
+		sb.append(" rows=").append(call.getRows()).append(" failed=").append(failed);
+		for(Phase p : Phase.values()) {
+			if(p != Phase.MAP) {
+				appendMillis(sb.append(' ').append(p).append('='), call.getPhaseNanos(p));
+			}
+		}
+		sb.append(" params=[");
+		Object[] parameters = call.getParameters();
+		String[] names = call.getProcedure() == null ? null : call.getProcedure().getParams();
+		for(int i = 0; i < parameters.length; i++) {
+			String name = names != null && i < names.length ? names[i] : String.valueOf(i + 1);
+			sb.append(i == 0 ? "" : ", ").append(name).append('=');
+			if(isRedacted(call.getProcedure(), name)) {
+				sb.append(REDACTED);
+			}
+			else {
+				String v = String.valueOf(parameters[i]);
+				sb.append(v.length() > MAX_VALUE_LENGTH ? v.substring(0, MAX_VALUE_LENGTH) + "..." : v);
+			}
+		}
+		sb.append(']');
+		if(skipped > 0) {
+			sb.append(" skipped=").append(skipped);
+		}
+		return sb.toString();
+	}
+	
+	private static void appendMillis(StringBuilder sb, long nanos) {
+		sb.append(nanos / 1000000).append('.').append(nanos / 100000 % 10).append("ms");
+	}
+	
+	/**
+	 * @param procedure
+	 *            The procedure or null
+	 * @param name
+	 *            The parameter name
+	 * @return True if the parameter's value should not be written
+	 */
+	protected boolean isRedacted(Procedure procedure, String name) {
+		return redacted.contains(name.toLowerCase()) || (procedure != null && procedure.isRedacted(name));
+	}
+	
+	/**
+	 * @return the writer
+	 */
+	public RollingFileWriter getWriter() {
+		return writer;
+	}
+}
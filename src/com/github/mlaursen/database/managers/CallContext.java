@@ -0,0 +1,167 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.managers;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import com.github.mlaursen.database.concurrency.Priority;
+
+/**
+ * Per-call options for the current thread. Anything set here applies to every procedure call the thread makes until it is cleared, which
+ * lets options be passed through the ObjectManager without adding an overload for every method.
+ * 
+ * <pre>
+ * CallContext.setPriority(Priority.BULK);
+ * CallContext.setTimeout(30, TimeUnit.SECONDS);
+ * try {
+ * 	manager.getAll(Person.class);
+ * }
+ * finally {
+ * 	CallContext.clear();
+ * }
+ * </pre>
+ * 
+ * A deadline is shared by every call the thread makes, so a request that makes three calls with a 30 second timeout has 30 seconds for all
+ * three and not 30 seconds each.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class CallContext {
+	
+	private static final ThreadLocal<CallContext> current = new ThreadLocal<CallContext>();
+	
+	private Priority priority;
+	private long deadline;
+	private SQLException lastError;
+	
+	private CallContext() {}
+	
+	private CallContext(CallContext c) {
+		this.priority = c.priority;
+		this.deadline = c.deadline;
+	}
+	
+	private static CallContext get() {
+		CallContext c = current.get();
+		if(c == null) {
+			c = new CallContext();
+			current.set(c);
+		}
+		return c;
+	}
+	
+	/**
+	 * @return the priority for calls made on this thread or null if it has not been set
+	 */
+	public static Priority getPriority() {
+		CallContext c = current.get();
+		return c == null ? null : c.priority;
+	}
+	
+	/**
+	 * Sets the priority for calls made on this thread. This overrides the DatabasePriority annotation and the procedure's priority.
+	 * 
+	 * @param p
+	 *            The priority or null to remove it
+	 */
+	public static void setPriority(Priority p) {
+		get().priority = p;
+	}
+	
+	/**
+	 * @return the deadline in System.nanoTime() for calls made on this thread or 0 if there is none
+	 */
+	public static long getDeadline() {
+		CallContext c = current.get();
+		return c == null ? 0 : c.deadline;
+	}
+	
+	/**
+	 * Sets the deadline for calls made on this thread. Calls that are still waiting or running when it passes are cancelled.
+	 * 
+	 * @param deadline
+	 *            The deadline in System.nanoTime() or 0 to remove it
+	 */
+	public static void setDeadline(long deadline) {
+		get().deadline = deadline;
+	}
+	
+	/**
+	 * Sets the deadline for calls made on this thread to the timeout from now.
+	 * 
+	 * @param timeout
+	 *            The amount of time the calls have
+	 * @param unit
+	 *            The unit of the timeout
+	 */
+	public static void setTimeout(long timeout, TimeUnit unit) {
+		setDeadline(deadlineFromNow(timeout, unit));
+	}
+	
+	/**
+	 * Gets a deadline that is the timeout from now. This never returns 0 since 0 means there is no deadline.
+	 * 
+	 * @param timeout
+	 *            The amount of time
+	 * @param unit
+	 *            The unit of the timeout
+	 * @return The deadline in System.nanoTime()
+	 */
+	public static long deadlineFromNow(long timeout, TimeUnit unit) {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		return deadline == 0 ? 1 : deadline;
+	}
+	
+	/**
+	 * Gets the error from the last call made on this thread. The ObjectManager only returns null or false when a call fails, so this is how
+	 * a caller can tell a transient failure ({@link ConnectionManager#isTransient(SQLException)}) from a permanent one.
+	 * 
+	 * @return the error or null if the last call worked
+	 */
+	public static SQLException getLastError() {
+		CallContext c = current.get();
+		return c == null ? null : c.lastError;
+	}
+	
+	static void setLastError(SQLException e) {
+		CallContext c = e == null ? current.get() : get();
+		if(c != null) {
+			c.lastError = e;
+		}
+	}
+	
+	/**
+	 * Copies the options for this thread so they can be restored on another thread.
+	 * 
+	 * @return A copy of the options or null if none have been set
+	 */
+	public static CallContext capture() {
+		CallContext c = current.get();
+		return c == null ? null : new CallContext(c);
+	}
+	
+	/**
+	 * Replaces the options for this thread with ones that were captured.
+	 * 
+	 * @param c
+	 *            The captured options or null to clear them
+	 */
+	public static void restore(CallContext c) {
+		if(c == null) {
+			current.remove();
+		}
+		else {
+			current.set(new CallContext(c));
+		}
+	}
+	
+	/**
+	 * Removes every option for this thread
+	 */
+	public static void clear() {
+		current.remove();
+	}
+}
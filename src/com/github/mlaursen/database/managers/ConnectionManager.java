@@ -11,18 +11,51 @@ import java.sql.Date;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 import oracle.jdbc.OracleTypes;
 
+import com.github.mlaursen.annotations.DatabasePriority;
+import com.github.mlaursen.database.concurrency.AdmissionController;
+import com.github.mlaursen.database.concurrency.CallRejectedException;
+import com.github.mlaursen.database.concurrency.CircuitBreaker;
+import com.github.mlaursen.database.concurrency.CircuitBreakers;
+import com.github.mlaursen.database.concurrency.ConcurrencyLimiter;
+import com.github.mlaursen.database.concurrency.Priority;
+import com.github.mlaursen.database.concurrency.PriorityLanes;
+import com.github.mlaursen.database.concurrency.RetryPolicy;
+import com.github.mlaursen.database.concurrency.StatementWatchdog;
+import com.github.mlaursen.database.logging.ErrorCategory;
+import com.github.mlaursen.database.logging.ErrorLog;
+import com.github.mlaursen.database.logging.ErrorLogger;
+import com.github.mlaursen.database.logging.SlowCallLog;
+import com.github.mlaursen.database.metrics.AllocationAccounting;
+import com.github.mlaursen.database.metrics.ConnectionMetrics;
+import com.github.mlaursen.database.metrics.EventSink;
+import com.github.mlaursen.database.metrics.Events;
+import com.github.mlaursen.database.metrics.MappingStage;
+import com.github.mlaursen.database.metrics.MetricsRegistry;
+import com.github.mlaursen.database.metrics.Phase;
+import com.github.mlaursen.database.metrics.ProcedureMetrics;
 import com.github.mlaursen.database.objects.DatabaseObject;
 import com.github.mlaursen.database.objects.MyClob;
+import com.github.mlaursen.database.objects.MyResultRow;
 import com.github.mlaursen.database.objects.MyResultSet;
 import com.github.mlaursen.database.objects.Package;
 import com.github.mlaursen.database.objects.Procedure;
+import com.github.mlaursen.database.objects.SpillBuffer;
+import com.github.mlaursen.database.tracing.CallListener;
+import com.github.mlaursen.database.tracing.CallListeners;
+import com.github.mlaursen.database.tracing.CallRecorder;
 import com.github.mlaursen.database.utils.ClassUtil;
 import com.github.mlaursen.database.utils.LocalSettings;
 
@@ -37,41 +70,269 @@ import com.github.mlaursen.database.utils.LocalSettings;
 public class ConnectionManager {
 	
 	static enum ErrorCode {
-		UNIQUE_CONSTRAINT(1), ARGUMENT_MISMATCH(6550), NAME_IN_USE(955);
+		UNIQUE_CONSTRAINT(1), ARGUMENT_MISMATCH(6550), NAME_IN_USE(955), CANCELLED(1013), RESOURCE_BUSY(54, true), DEADLOCK(60, true),
+		SERIALIZATION_FAILURE(8177, true), END_OF_FILE_ON_CHANNEL(3113, true), NOT_CONNECTED(3114, true), NO_LISTENER(12541, true),
+		IO_ERROR(17002, true), CLOSED_CONNECTION(17008, true);
 		
 		private int code;
+		private boolean transientError;
 		
 		private ErrorCode(int code) {
+			this(code, false);
+		}
+		
+		private ErrorCode(int code, boolean transientError) {
 			this.code = code;
+			this.transientError = transientError;
 		}
 		
-		public static ErrorCode getErrorCode(int code) {
+		/**
+		 * @return true if the same call could work if it is tried again
+		 */
+		public boolean isTransient() {
+			return transientError;
+		}
+		
+		private static final int MASK = 63;
+		private static final int[] codes = new int[MASK + 1];
+		private static final ErrorCode[] lookup = new ErrorCode[MASK + 1];
+		static {
 			for(ErrorCode c : values()) {
-				if(c.code == code)
-					return c;
+				int i = c.code & MASK;
+				while(lookup[i] != null) {
+					i = (i + 1) & MASK;
+				}
+				codes[i] = c.code;
+				lookup[i] = c;
+			}
+		}
+		
+		/**
+		 * Finds the ErrorCode for an Oracle error code. This is a lookup in a small open addressed table, so it does not copy the values()
+		 * array or box the code.
+		 * 
+		 * @param code
+		 *            The vendor error code from a SQLException
+		 * @return The ErrorCode or null if it is not one of the known codes
+		 */
+		public static ErrorCode getErrorCode(int code) {
+			for(int i = code & MASK; lookup[i] != null; i = (i + 1) & MASK) {
+				if(codes[i] == code)
+					return lookup[i];
 			}
 			return null;
 		}
 	}
 	
+	/**
+	 * The part of a procedure call that is different between procedures. It is given the statement after every parameter has been bound.
+	 */
+	protected static interface CallableWork<T> {
+		
+		T execute(Connection conn, CallableStatement cs, ProcedureCall call) throws SQLException;
+	}
+	
+	private static final int PHASES = Phase.values().length;
+	
 	protected String databaseName, databaseUser, databasePswd, classForName;
+	protected AdmissionController admissionController;
+	protected PriorityLanes lanes;
+	protected StatementWatchdog watchdog = new StatementWatchdog();
+	protected int queryTimeout;
+	protected RetryPolicy retryPolicy;
+	protected CircuitBreakers circuitBreakers;
+	protected MetricsRegistry metrics = MetricsRegistry.getDefault();
+	protected ConnectionMetrics connections = ConnectionMetrics.getDefault();
+	protected SlowCallLog slowCallLog;
+	protected CursorSessions cursorSessions = CursorSessions.getDefault();
 	
 	/**
 	 * The connection manager is created by taking a dbconfig.properties file and getting the database properties stored in there.
+	 * Admission control is on unless limit.enabled=false is in the properties.
 	 */
 	public ConnectionManager() {
+		this(loadLocalSettings());
+	}
+	
+	/**
+	 * Creates a connection manager from properties that were already loaded, like a dbconfig.properties that is not on the classpath.
+	 * 
+	 * @param localProperties
+	 *            The database and connection settings. {@link LocalSettings}
+	 */
+	public ConnectionManager(Properties localProperties) {
+		databaseName = localProperties.getProperty(LocalSettings.DATABASE_NAME);
+		databaseUser = localProperties.getProperty(LocalSettings.USERNAME);
+		databasePswd = localProperties.getProperty(LocalSettings.PASSWORD);
+		classForName = localProperties.getProperty(LocalSettings.CLASS_FOR_NAME);
+		boolean limited = !"false".equalsIgnoreCase(localProperties.getProperty(LocalSettings.LIMIT_ENABLED));
+		admissionController = limited ? AdmissionController.getShared(localProperties) : null;
+		lanes = PriorityLanes.getShared(localProperties);
+		queryTimeout = LocalSettings.getInt(localProperties, LocalSettings.QUERY_TIMEOUT, 0);
+		retryPolicy = new RetryPolicy(localProperties);
+		boolean broken = !"false".equalsIgnoreCase(localProperties.getProperty(LocalSettings.BREAKER_ENABLED));
+		circuitBreakers = broken ? CircuitBreakers.getShared(localProperties) : null;
+		metrics = "false".equalsIgnoreCase(localProperties.getProperty(LocalSettings.METRICS_ENABLED)) ? null : metrics;
+		connections = metrics == null ? null : connections;
+		if(connections != null) {
+			connections.setCapacity(lanes.getShare(Priority.INTERACTIVE) + lanes.getShare(Priority.BULK));
+		}
+		slowCallLog = SlowCallLog.fromProperties(localProperties);
+		AllocationAccounting.fromProperties(localProperties);
+		CallRecorder.fromProperties(localProperties);
+		CursorSessions.fromProperties(localProperties);
+		SpillBuffer.fromProperties(localProperties);
+	}
+	
+	private static Properties loadLocalSettings() {
 		try {
-			Properties localProperties = new LocalSettings().getLocalSettings();
-			databaseName = localProperties.getProperty(LocalSettings.DATABASE_NAME);
-			databaseUser = localProperties.getProperty(LocalSettings.USERNAME);
-			databasePswd = localProperties.getProperty(LocalSettings.PASSWORD);
-			classForName = localProperties.getProperty(LocalSettings.CLASS_FOR_NAME);
+			return new LocalSettings().getLocalSettings();
 		}
 		catch(IOException e) {
 			e.printStackTrace();
+			return new Properties();
 		}
 	}
 	
+	/**
+	 * @return the admission controller or null if admission control is turned off
+	 */
+	public AdmissionController getAdmissionController() {
+		return admissionController;
+	}
+	
+	/**
+	 * Sets the admission controller that limits how many calls can be in flight for each package.
+	 * 
+	 * @param admissionController
+	 *            The admission controller or null to turn admission control off
+	 */
+	public void setAdmissionController(AdmissionController admissionController) {
+		this.admissionController = admissionController;
+	}
+	
+	/**
+	 * @return the priority lanes or null if every call shares the same connections
+	 */
+	public PriorityLanes getLanes() {
+		return lanes;
+	}
+	
+	/**
+	 * Sets the lanes that reserve connections and threads for each priority.
+	 * 
+	 * @param lanes
+	 *            The priority lanes or null to let every call share the same connections
+	 */
+	public void setLanes(PriorityLanes lanes) {
+		this.lanes = lanes;
+	}
+	
+	/**
+	 * @return the retry policy or null if calls are never retried
+	 */
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+	
+	/**
+	 * @param retryPolicy
+	 *            The retry policy or null to never retry calls
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+	
+	/**
+	 * @return the circuit breakers or null if circuit breakers are turned off
+	 */
+	public CircuitBreakers getCircuitBreakers() {
+		return circuitBreakers;
+	}
+	
+	/**
+	 * @param circuitBreakers
+	 *            The circuit breakers or null to turn them off
+	 */
+	public void setCircuitBreakers(CircuitBreakers circuitBreakers) {
+		this.circuitBreakers = circuitBreakers;
+	}
+	
+	/**
+	 * @return the registry calls are recorded to or null if metrics are turned off
+	 */
+	public MetricsRegistry getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * @param metrics
+	 *            The registry to record calls to or null to turn metrics off
+	 */
+	public void setMetrics(MetricsRegistry metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * @return the connection counts or null if they are not kept
+	 */
+	public ConnectionMetrics getConnections() {
+		return connections;
+	}
+	
+	/**
+	 * @param connections
+	 *            The connection counts to update or null to stop keeping them
+	 */
+	public void setConnections(ConnectionMetrics connections) {
+		this.connections = connections;
+	}
+	
+	/**
+	 * @return the slow call log or null if slow calls are not logged
+	 */
+	public SlowCallLog getSlowCallLog() {
+		return slowCallLog;
+	}
+	
+	/**
+	 * @param slowCallLog
+	 *            The slow call log or null to stop logging slow calls
+	 */
+	public void setSlowCallLog(SlowCallLog slowCallLog) {
+		this.slowCallLog = slowCallLog;
+	}
+	
+	/**
+	 * @return the cursor sessions that cursors opened by this manager count against
+	 */
+	public CursorSessions getCursorSessions() {
+		return cursorSessions;
+	}
+	
+	/**
+	 * @param cursorSessions
+	 *            The cursor sessions that cursors opened by this manager count against
+	 */
+	public void setCursorSessions(CursorSessions cursorSessions) {
+		this.cursorSessions = cursorSessions;
+	}
+	
+	/**
+	 * @return the default query timeout in seconds for procedures that do not have their own timeout. 0 means no timeout
+	 */
+	public int getQueryTimeout() {
+		return queryTimeout;
+	}
+	
+	/**
+	 * @param queryTimeout
+	 *            The default query timeout in seconds for procedures that do not have their own timeout. 0 means no timeout
+	 */
+	public void setQueryTimeout(int queryTimeout) {
+		this.queryTimeout = queryTimeout;
+	}
+	
 	/**
 	 * Creates a database connection from the localProperties file.
 	 * 
@@ -98,7 +359,7 @@ public class ConnectionManager {
 	 * @return True or false depending on if the stored procedure executed successfully without errors
 	 */
 	public boolean executeStoredProcedure(Package pkg, String procedureName, Object... parameters) {
-		return executeStoredProcedure(pkg.call(procedureName), parameters);
+		return executeStoredProcedure(new ProcedureCall(pkg, procedureName, parameters));
 	}
 	
 	/**
@@ -111,11 +372,11 @@ public class ConnectionManager {
 	 * @return True or false depending on if the stored procedure executed successfully without errors
 	 */
 	public boolean executeStoredProcedure(Procedure p, Object... parameters) {
-		return executeStoredProcedure(p.toString(), parameters);
+		return executeStoredProcedure(new ProcedureCall(p, parameters));
 	}
 	
 	/**
-	 * Main grunt work for executing a stored procedure that can be successful or fail.
+	 * {@link #executeStoredProcedure(ProcedureCall)}
 	 * 
 	 * @param procedureName
 	 *            Full procedure to be called, including parameters that should be bound.
@@ -124,33 +385,509 @@ public class ConnectionManager {
 	 * @return True if at least 1 row was updated in the database
 	 */
 	protected boolean executeStoredProcedure(String procedureName, Object... parameters) {
-		boolean success = false;
+		return executeStoredProcedure(new ProcedureCall(procedureName, parameters));
+	}
+	
+	/**
+	 * Executes a stored procedure that can be successful or fail. {@link #execute(ProcedureCall, CallableWork, Object)}
+	 * 
+	 * @param call
+	 *            The procedure call to execute
+	 * @return True if at least 1 row was updated in the database
+	 */
+	public boolean executeStoredProcedure(ProcedureCall call) {
+		return execute(call, new CallableWork<Boolean>() {
+			
+			@Override
+			public Boolean execute(Connection conn, CallableStatement cs, ProcedureCall call) throws SQLException {
+				long start = System.nanoTime();
+				int rows = cs.executeUpdate();
+				recordPhase(call, Phase.EXECUTE, start);
+				recordRows(call, rows);
+				return rows > 0;
+			}
+		}, false);
+	}
+	
+	/**
+	 * Executes a stored procedure once for every set of parameters in a single JDBC batch, so a bulk insert is one round trip and one
+	 * connection instead of one for every row. The call's parameters are the first set and are bound like any other call.
+	 * {@link #execute(ProcedureCall, CallableWork, Object)}
+	 * 
+	 * @param call
+	 *            The procedure call with the first set of parameters
+	 * @param batch
+	 *            The sets of parameters after the first
+	 * @return True if the whole batch ran
+	 */
+	public boolean executeBatch(ProcedureCall call, final List<Object[]> batch) {
+		return execute(call, new CallableWork<Boolean>() {
+			
+			@Override
+			public Boolean execute(Connection conn, CallableStatement cs, ProcedureCall call) throws SQLException {
+				long start = System.nanoTime();
+				cs.addBatch();
+				for(Object[] parameters : batch) {
+					for(int i = 0; i < parameters.length; i++) {
+						bindWithDatatype(parameters[i], i + 1, conn, cs);
+					}
+					cs.addBatch();
+				}
+				start = recordPhase(call, Phase.BIND, start);
+				long rows = 0;
+				for(int count : cs.executeBatch()) {
+					rows += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+				}
+				recordPhase(call, Phase.EXECUTE, start);
+				recordRows(call, rows);
+				return true;
+			}
+		}, false);
+	}
+	
+	/**
+	 * Main grunt work for executing any stored procedure. The call has to get a connection in its {@link PriorityLanes} lane and be
+	 * admitted by the package's {@link ConcurrencyLimiter} before a connection is opened. If the call has a deadline, waiting for the lane
+	 * and the limiter never goes past the deadline, the query timeout is set to the time that is left and the statement is cancelled by
+	 * the {@link StatementWatchdog} when the deadline passes.
+	 * 
+	 * Idempotent calls that fail with a transient error are tried again after the {@link RetryPolicy} backoff, and the package's
+	 * {@link CircuitBreaker} rejects calls right away while the package keeps failing.
+	 * 
+	 * @param call
+	 *            The procedure call to execute
+	 * @param work
+	 *            What to do with the statement once the parameters have been bound
+	 * @param failed
+	 *            The value to return if the call fails or is rejected
+	 * @return The result of the work or the failed value
+	 */
+	protected <T> T execute(ProcedureCall call, CallableWork<T> work, T failed) {
+		CallListener[] listeners = CallListeners.get();
+		Object[] contexts = listeners.length == 0 ? null : CallListeners.before(listeners, call);
+		long start = contexts == null ? 0 : System.nanoTime();
+		long deadline = getDeadline(call);
+		CircuitBreaker breaker = getBreaker(call);
+		for(int attempt = 1;; attempt++) {
+			try {
+				T result = attempt(call, work, breaker, deadline, contexts != null);
+				CallContext.setLastError(null);
+				if(contexts != null) {
+					CallListeners.after(listeners, contexts, call, System.nanoTime() - start);
+				}
+				return result;
+			}
+			catch(SQLException e) {
+				if(!shouldRetry(call, e, attempt, deadline)) {
+					CallContext.setLastError(e);
+					if(contexts != null) {
+						CallListeners.error(listeners, contexts, call, e, System.nanoTime() - start);
+					}
+					handleSqlException(e, call.getCall(), call.getParameters());
+					return failed;
+				}
+			}
+			catch(ClassNotFoundException e) {
+				if(contexts != null) {
+					CallListeners.error(listeners, contexts, call, new SQLException(e.getMessage(), e), System.nanoTime() - start);
+				}
+				ErrorLog.report(ErrorCategory.CONNECTION, "The database driver could not be loaded.", e);
+				return failed;
+			}
+		}
+	}
+	
+	/**
+	 * Makes a single attempt at a call. The package's circuit breaker is told how the attempt went unless it never reached the database.
+	 * 
+	 * @param call
+	 *            The procedure call to execute
+	 * @param work
+	 *            What to do with the statement once the parameters have been bound
+	 * @param breaker
+	 *            The circuit breaker for the call's package or null
+	 * @param deadline
+	 *            The deadline or 0
+	 * @param timed
+	 *            True if each phase should be timed for the call no matter what else is enabled
+	 * @return The result of the work
+	 * @throws SQLException
+	 *             If the attempt failed or was rejected
+	 * @throws ClassNotFoundException
+	 *             If the driver could not be loaded
+	 */
+	protected <T> T attempt(ProcedureCall call, CallableWork<T> work, CircuitBreaker breaker, long deadline, boolean timed)
+			throws SQLException, ClassNotFoundException {
+		Object[] parameters = call.getParameters();
+		Priority priority = getPriority(call);
+		ConcurrencyLimiter limiter = getLimiter(call);
+		EventSink sink = Events.getEnabledSink();
+		SlowCallLog slow = slowCallLog;
+		ConnectionMetrics counts = connections;
+		call.phaseNanos = sink == null && slow == null && !timed ? null : new long[PHASES];
+		call.rows = 0;
+		call.results = null;
+		call.held = false;
+		boolean allowed = false, laned = false, admitted = false, dropped = false, failed = true;
+		// healthy only tells the breaker if the database is in trouble; failed is what the caller saw
+		Boolean healthy = null;
+		long start = 0;
+		Object event = null;
 		Connection conn = null;
 		CallableStatement cs = null;
+		StatementWatchdog.Watch watch = null;
 		try {
+			checkDeadline(call, deadline);
+			if(breaker != null && !breaker.allow()) {
+				throw new CallRejectedException(call.getPackageKey(), breaker);
+			}
+			allowed = true;
+			enterLane(call, priority, deadline);
+			laned = true;
+			admit(call, limiter, deadline);
+			admitted = true;
+			start = System.nanoTime();
+			if(sink != null) {
+				event = sink.callStarted(call.getPackageKey(), call.getProcedureName());
+			}
 			conn = getConnection();
-			cs = conn.prepareCall("{call " + procedureName + "}");
+			if(counts != null) {
+				counts.opened();
+			}
+			long phase = recordPhase(call, Phase.BORROW, start);
+			cs = conn.prepareCall("{call " + call.getCall() + "}");
+			setQueryTimeout(cs, call, deadline);
+			watch = watchdog.watch(cs, deadline);
+			phase = recordPhase(call, Phase.PREPARE, phase);
 			for(int i = 1; i < parameters.length + 1; i++) {
 				Object param = parameters[i - 1];
 				bindWithDatatype(param, i, conn, cs);
 			}
-			success = cs.executeUpdate() > 0;
+			recordPhase(call, Phase.BIND, phase);
+			T result = work.execute(conn, cs, call);
+			healthy = true;
+			failed = false;
+			return result;
 		}
 		catch(SQLException e) {
-			handleSqlException(e, procedureName, parameters);
-		}
-		catch(ClassNotFoundException e) {
-			e.printStackTrace();
+			dropped = isDropped(e) || (watch != null && watch.fired());
+			if(admitted) {
+				healthy = !dropped && !isTransient(e);
+			}
+			throw e;
 		}
 		finally {
-			closeCallableStatement(cs);
-			closeConnection(conn);
+			if(watch != null) {
+				watch.done();
+			}
+			if(!call.held) {
+				closeCallableStatement(cs);
+				if(dropped) {
+					rollback(conn);
+				}
+				closeConnection(conn);
+				if(conn != null && counts != null) {
+					counts.closed();
+				}
+			}
+			long elapsed = System.nanoTime() - start;
+			if(admitted && limiter != null) {
+				limiter.release(elapsed, dropped);
+			}
+			if(admitted) {
+				ProcedureMetrics m = getMetrics(call);
+				if(m != null) {
+					m.recordCall(elapsed, failed);
+				}
+				if(sink != null) {
+					sink.callFinished(event, call.getPackageKey(), call.getProcedureName(), parameters.length, call.rows, call.phaseNanos,
+							elapsed, failed);
+				}
+				if(slow != null && slow.isSlow(call, elapsed)) {
+					slow.log(call, elapsed, failed);
+				}
+			}
+			if(laned && lanes != null) {
+				lanes.release(priority);
+			}
+			if(allowed && breaker != null) {
+				if(healthy == null) {
+					breaker.onSkipped();
+				}
+				else if(healthy) {
+					breaker.onSuccess();
+				}
+				else {
+					breaker.onFailure();
+				}
+			}
 		}
-		return success;
 	}
 	
 	/**
-	 * Helper method for dealing with SQLExceptions. It only handles the ErrorCode enums.
+	 * Checks if a failed attempt should be tried again and waits for the backoff delay if it should. Only idempotent calls are retried and
+	 * only after a transient failure. Rejected calls are never retried since retrying would only add load to a package that is already
+	 * saturated.
+	 * 
+	 * @param call
+	 *            The procedure call
+	 * @param e
+	 *            The exception from the attempt
+	 * @param attempt
+	 *            The attempt that failed, starting at 1
+	 * @param deadline
+	 *            The deadline or 0
+	 * @return True if another attempt should be made
+	 */
+	protected boolean shouldRetry(ProcedureCall call, SQLException e, int attempt, long deadline) {
+		return retryPolicy != null && call.isIdempotent() && !(e instanceof CallRejectedException) && isTransient(e)
+				&& retryPolicy.canRetry(attempt) && retryPolicy.backoff(attempt, deadline);
+	}
+	
+	/**
+	 * Gets the metrics for the call's package and procedure. They are looked up once and then kept on the call.
+	 * 
+	 * @param call
+	 *            The procedure call
+	 * @return The metrics or null if metrics are turned off
+	 */
+	protected ProcedureMetrics getMetrics(ProcedureCall call) {
+		if(metrics == null) {
+			return null;
+		}
+		if(call.metrics == null) {
+			call.metrics = metrics.get(call.getPackageKey(), call.getProcedureName());
+		}
+		return call.metrics;
+	}
+	
+	/**
+	 * Records how long a phase of a call took
+	 * 
+	 * @param call
+	 *            The procedure call
+	 * @param phase
+	 *            The phase that just finished
+	 * @param start
+	 *            When the phase started in System.nanoTime()
+	 * @return The time the phase finished, which is when the next phase starts
+	 */
+	protected long recordPhase(ProcedureCall call, Phase phase, long start) {
+		long now = System.nanoTime();
+		ProcedureMetrics m = getMetrics(call);
+		if(m != null) {
+			m.recordPhase(phase, now - start);
+		}
+		if(call.phaseNanos != null) {
+			call.phaseNanos[phase.ordinal()] += now - start;
+		}
+		return now;
+	}
+	
+	/**
+	 * Records the number of rows a call returned or updated
+	 * 
+	 * @param call
+	 *            The procedure call
+	 * @param rows
+	 *            The number of rows
+	 */
+	protected void recordRows(ProcedureCall call, long rows) {
+		call.rows += rows;
+		ProcedureMetrics m = getMetrics(call);
+		if(m != null) {
+			m.recordRows(rows);
+		}
+	}
+	
+	/**
+	 * Gets the circuit breaker for the package of the call.
+	 * 
+	 * @param call
+	 *            The procedure call
+	 * @return The breaker or null if circuit breakers have been turned off
+	 */
+	protected CircuitBreaker getBreaker(ProcedureCall call) {
+		return circuitBreakers == null ? null : circuitBreakers.getBreaker(call.getPackageKey());
+	}
+	
+	/**
+	 * Finds the deadline for a call. This is the earliest of the deadline set on the call and the deadline in the {@link CallContext}.
+	 * 
+	 * @param call
+	 *            The procedure call
+	 * @return The deadline in System.nanoTime() or 0 if there is no deadline
+	 */
+	protected long getDeadline(ProcedureCall call) {
+		long d1 = call.getDeadline(), d2 = CallContext.getDeadline();
+		if(d1 == 0 || d2 == 0) {
+			return d1 == 0 ? d2 : d1;
+		}
+		return d1 - d2 < 0 ? d1 : d2;
+	}
+	
+	/**
+	 * Fails fast if the deadline has already passed.
+	 * 
+	 * @param call
+	 *            The procedure call
+	 * @param deadline
+	 *            The deadline or 0
+	 * @throws SQLTimeoutException
+	 *             If the deadline has passed
+	 */
+	protected void checkDeadline(ProcedureCall call, long deadline) throws SQLTimeoutException {
+		if(deadline != 0 && deadline - System.nanoTime() <= 0) {
+			throw new SQLTimeoutException("The deadline passed before " + call.getCall() + " could be executed.");
+		}
+	}
+	
+	/**
+	 * Sets the query timeout on the statement. The timeout is the procedure's timeout or the default query timeout, but never longer than
+	 * the time left before the deadline.
+	 * 
+	 * @param cs
+	 *            The statement
+	 * @param call
+	 *            The procedure call
+	 * @param deadline
+	 *            The deadline or 0
+	 * @throws SQLException
+	 */
+	protected void setQueryTimeout(CallableStatement cs, ProcedureCall call, long deadline) throws SQLException {
+		int timeout = call.getProcedure() == null || call.getProcedure().getTimeout() == 0 ? queryTimeout : call.getProcedure().getTimeout();
+		if(deadline != 0) {
+			long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+			int leftSeconds = (int) Math.max(1, (left + 999) / 1000);
+			timeout = timeout == 0 ? leftSeconds : Math.min(timeout, leftSeconds);
+		}
+		if(timeout > 0) {
+			cs.setQueryTimeout(timeout);
+		}
+	}
+	
+	/**
+	 * Rolls back anything a failed call did so the connection is clean. Nothing happens if the connection is in auto commit mode.
+	 * 
+	 * @param conn
+	 *            The database connection
+	 */
+	protected void rollback(Connection conn) {
+		if(conn != null) {
+			try {
+				if(!conn.getAutoCommit()) {
+					conn.rollback();
+				}
+			}
+			catch(SQLException e) {
+				ErrorLog.report(ErrorCategory.CONNECTION, "Could not roll back the connection.", e);
+			}
+		}
+	}
+	
+	/**
+	 * Finds the priority for a call. The priority set on the call itself wins, then the priority in the {@link CallContext}, then the
+	 * {@link DatabasePriority} annotation on the DatabaseObject type and then the procedure's priority. Anything else is interactive.
+	 * 
+	 * @param call
+	 *            The procedure call
+	 * @return The priority to execute the call with
+	 */
+	protected Priority getPriority(ProcedureCall call) {
+		Priority p = call.getPriority();
+		if(p == null) {
+			p = CallContext.getPriority();
+		}
+		if(p == null && call.getType() != null && call.getType().isAnnotationPresent(DatabasePriority.class)) {
+			p = call.getType().getAnnotation(DatabasePriority.class).value();
+		}
+		if(p == null && call.getProcedure() != null) {
+			p = call.getProcedure().getPriority();
+		}
+		return p == null ? Priority.INTERACTIVE : p;
+	}
+	
+	/**
+	 * Waits for a connection in the lane for the call's priority.
+	 * 
+	 * @param call
+	 *            The procedure call
+	 * @param priority
+	 *            The priority of the call
+	 * @param deadline
+	 *            The deadline or 0. The call will not wait past the deadline
+	 * @throws CallRejectedException
+	 *             If the lane did not have a connection available in time
+	 */
+	protected void enterLane(ProcedureCall call, Priority priority, long deadline) throws CallRejectedException {
+		if(lanes != null && !lanes.acquire(priority, deadline)) {
+			throw new CallRejectedException(call.getPackageKey(), lanes);
+		}
+	}
+	
+	/**
+	 * Gets the limiter for the package of the call.
+	 * 
+	 * @param call
+	 *            The procedure call
+	 * @return The limiter or null if admission control has been turned off
+	 */
+	protected ConcurrencyLimiter getLimiter(ProcedureCall call) {
+		return admissionController == null ? null : admissionController.getLimiter(call.getPackageKey());
+	}
+	
+	/**
+	 * Waits for a permit from the limiter.
+	 * 
+	 * @param call
+	 *            The procedure call
+	 * @param limiter
+	 *            The limiter for the call's package or null
+	 * @param deadline
+	 *            The deadline or 0. The call will not wait past the deadline
+	 * @throws CallRejectedException
+	 *             If the limiter did not let the call through
+	 */
+	protected void admit(ProcedureCall call, ConcurrencyLimiter limiter, long deadline) throws CallRejectedException {
+		if(limiter != null && !limiter.acquire(deadline)) {
+			throw new CallRejectedException(call.getPackageKey(), limiter);
+		}
+	}
+	
+	/**
+	 * Checks if a SQLException means the database is struggling, like a timeout or a lost connection, instead of a problem with the call
+	 * itself.
+	 * 
+	 * @param e
+	 *            The SQL Exception
+	 * @return True if the limiter should back off
+	 */
+	protected boolean isDropped(SQLException e) {
+		return e instanceof SQLTransientException || e instanceof SQLRecoverableException;
+	}
+	
+	/**
+	 * Checks if a call that failed with the exception could work if it is tried again. Known Oracle error codes are checked first, then the
+	 * type of the exception. Rejected calls and calls that ran out of time are not transient since trying again right away will not help.
+	 * 
+	 * @param e
+	 *            The SQL Exception
+	 * @return True if the failure is transient
+	 */
+	public static boolean isTransient(SQLException e) {
+		ErrorCode c = ErrorCode.getErrorCode(e.getErrorCode());
+		if(c != null) {
+			return c.isTransient();
+		}
+		if(e instanceof CallRejectedException || e instanceof SQLTimeoutException) {
+			return false;
+		}
+		return e instanceof SQLTransientException || e instanceof SQLRecoverableException;
+	}
+	
+	/**
+	 * Helper method for dealing with SQLExceptions. The error is sent to the {@link ErrorLog} and nothing is built when the log is not
+	 * taking SQL errors right now.
 	 * 
 	 * @param e
 	 *            The SQL Exception
@@ -160,15 +897,12 @@ public class ConnectionManager {
 	 *            The parameters that were being pased to the stored procedure
 	 */
 	protected void handleSqlException(SQLException e, String procedureName, Object[] parameters) {
-		ErrorCode c = ErrorCode.getErrorCode(e.getErrorCode());
-		if(c == null) {
-			e.printStackTrace();
-		}
-		else {
-			String msg = "There was a " + c.name() + " exception when calling " + procedureName + ".\n";
+		ErrorLogger logger = ErrorLog.getLogger();
+		if(logger.isEnabled(ErrorCategory.SQL)) {
+			ErrorCode c = ErrorCode.getErrorCode(e.getErrorCode());
+			String msg = "There was a " + (c == null ? "" : c.name() + " ") + "exception when calling " + procedureName + ".\n";
 			msg += "\tThe parameters being passed were: " + Arrays.toString(parameters);
-			e.printStackTrace();
-			System.err.println(msg);
+			logger.log(ErrorCategory.SQL, msg, e);
 		}
 	}
 	
@@ -186,7 +920,7 @@ public class ConnectionManager {
 	 * @return A MyResultSet for the package procedure
 	 */
 	public MyResultSet executeCursorProcedure(Package pkg, String procedureName, Object... parameters) {
-		return executeCursorProcedure(pkg.call(procedureName), parameters);
+		return executeCursorProcedure(new ProcedureCall(pkg, procedureName, parameters));
 	}
 	
 	/**
@@ -199,7 +933,7 @@ public class ConnectionManager {
 	 * @return A MyResultSet for the procedure
 	 */
 	public MyResultSet executeCursorProcedure(Procedure procedure, Object... parameters) {
-		return executeCursorProcedure(procedure.toString(), parameters);
+		return executeCursorProcedure(new ProcedureCall(procedure, parameters));
 	}
 	
 	/**
@@ -211,35 +945,155 @@ public class ConnectionManager {
 	 * @return A MyResultSet for the procedure
 	 */
 	protected MyResultSet executeCursorProcedure(String procedureName, Object... parameters) {
-		int cursorPos = parameters.length + 1;
-		Connection conn = null;
-		CallableStatement cs = null;
-		ResultSet rs = null;
-		MyResultSet results = null;
-		try {
-			conn = getConnection();
-			cs = conn.prepareCall("{call " + procedureName + "}");
-			for(int i = 1; i <= parameters.length; i++) {
-				Object p = parameters[i - 1];
-				bindWithDatatype(p, i, conn, cs);
+		return executeCursorProcedure(new ProcedureCall(procedureName, parameters));
+	}
+	
+	/**
+	 * Executes a stored procedure that returns a cursor. {@link #execute(ProcedureCall, CallableWork, Object)}
+	 * 
+	 * @param call
+	 *            The procedure call to execute
+	 * @return A MyResultSet for the procedure or null if the call failed or was rejected
+	 */
+	public MyResultSet executeCursorProcedure(ProcedureCall call) {
+		return execute(call, new CallableWork<MyResultSet>() {
+			
+			@Override
+			public MyResultSet execute(Connection conn, CallableStatement cs, ProcedureCall call) throws SQLException {
+				int cursorPos = call.getParameters().length + 1;
+				cs.registerOutParameter(cursorPos, OracleTypes.CURSOR);
+				long start = System.nanoTime();
+				cs.execute();
+				start = recordPhase(call, Phase.EXECUTE, start);
+				ResultSet rs = null;
+				try {
+					rs = (ResultSet) cs.getObject(cursorPos);
+					long bytes = AllocationAccounting.start();
+					MyResultSet results = MyResultSet.toMyResultSet(rs);
+					AllocationAccounting.record(call.getPackageKey(), call.getProcedureName(), MappingStage.RESULT_SET, bytes, 0,
+							results.size());
+					recordPhase(call, Phase.FETCH, start);
+					recordRows(call, results.size());
+					call.results = results;
+					return results;
+				}
+				finally {
+					closeResultSet(rs);
+				}
 			}
-			cs.registerOutParameter(cursorPos, OracleTypes.CURSOR);
-			cs.execute();
-			rs = (ResultSet) cs.getObject(cursorPos);
-			results = MyResultSet.toMyResultSet(rs);
-		}
-		catch(SQLException e) {
-			handleSqlException(e, procedureName, parameters);
+		}, null);
+	}
+	
+	/**
+	 * Executes a stored procedure that returns a cursor and maps the rows on the pipeline's workers while they are still being fetched.
+	 * The connection is given back as soon as the last row is fetched, and the objects are collected from the returned run.
+	 * {@link #execute(ProcedureCall, CallableWork, Object)}
+	 * 
+	 * @param call
+	 *            The procedure call to execute
+	 * @param type
+	 *            The DatabaseObject class to construct
+	 * @param pipeline
+	 *            The pipeline that maps the rows
+	 * @return The run to collect the objects from, or null if the call failed or was rejected
+	 */
+	public <T extends DatabaseObject> MappingPipeline.Run<T> executeCursorProcedure(ProcedureCall call, final Class<T> type,
+			final MappingPipeline pipeline) {
+		return execute(call, new CallableWork<MappingPipeline.Run<T>>() {
+			
+			@Override
+			public MappingPipeline.Run<T> execute(Connection conn, CallableStatement cs, ProcedureCall call) throws SQLException {
+				int cursorPos = call.getParameters().length + 1;
+				cs.registerOutParameter(cursorPos, OracleTypes.CURSOR);
+				long start = System.nanoTime();
+				cs.execute();
+				start = recordPhase(call, Phase.EXECUTE, start);
+				ResultSet rs = null;
+				final MappingPipeline.Run<T> run = pipeline.start(type);
+				boolean fetched = false;
+				try {
+					rs = (ResultSet) cs.getObject(cursorPos);
+					MyResultSet.toMyResultSet(rs, new MyResultSet.RowHandler() {
+						
+						@Override
+						public void row(MyResultRow row) throws SQLException {
+							try {
+								run.add(row);
+							}
+							catch(InterruptedException e) {
+								Thread.currentThread().interrupt();
+								throw new SQLException("Interrupted while waiting for the mapping threads", e);
+							}
+						}
+					});
+					run.finish();
+					fetched = true;
+					recordPhase(call, Phase.FETCH, start);
+					recordRows(call, run.getRows());
+					return run;
+				}
+				catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new SQLException("Interrupted while waiting for the mapping threads", e);
+				}
+				finally {
+					if(!fetched) {
+						run.abort();
+					}
+					closeResultSet(rs);
+				}
+			}
+		}, null);
+	}
+	
+	/**
+	 * Executes a stored procedure that returns a cursor and keeps the cursor open on its connection so the rows can be fetched a chunk at
+	 * a time. The connection stays out of the priority lanes and admission control once the call returns, since it can be held for as
+	 * long as a user browses; the {@link CursorSessions} cap limits them instead. {@link #execute(ProcedureCall, CallableWork, Object)}
+	 * 
+	 * @param call
+	 *            The procedure call to execute
+	 * @param type
+	 *            The DatabaseObject class to construct
+	 * @return The open cursor or null if the call failed or was rejected
+	 */
+	public <T extends DatabaseObject> CursorSession<T> openCursor(ProcedureCall call, final Class<T> type) {
+		final CursorSessions sessions = cursorSessions;
+		if(!sessions.reserve()) {
+			CallRejectedException e = new CallRejectedException(call.getPackageKey(), sessions);
+			CallContext.setLastError(e);
+			handleSqlException(e, call.getCall(), call.getParameters());
+			return null;
 		}
-		catch(ClassNotFoundException e) {
-			e.printStackTrace();
+		final ConnectionMetrics counts = connections;
+		CursorSession<T> session = execute(call, new CallableWork<CursorSession<T>>() {
+			
+			@Override
+			public CursorSession<T> execute(Connection conn, CallableStatement cs, ProcedureCall call) throws SQLException {
+				int cursorPos = call.getParameters().length + 1;
+				cs.registerOutParameter(cursorPos, OracleTypes.CURSOR);
+				long start = System.nanoTime();
+				cs.execute();
+				recordPhase(call, Phase.EXECUTE, start);
+				ResultSet rs = (ResultSet) cs.getObject(cursorPos);
+				try {
+					CursorSession<T> s = new CursorSession<T>(ConnectionManager.this, sessions, counts, call, type, conn, cs, rs);
+					call.held = true;
+					return s;
+				}
+				catch(SQLException e) {
+					closeResultSet(rs);
+					throw e;
+				}
+			}
+		}, null);
+		if(session == null) {
+			sessions.unreserve();
 		}
-		finally {
-			closeResultSet(rs);
-			closeCallableStatement(cs);
-			closeConnection(conn);
+		else {
+			sessions.add(session);
 		}
-		return results;
+		return session;
 	}
 	
 	/**
@@ -254,7 +1108,7 @@ public class ConnectionManager {
 				conn.close();
 			}
 			catch(SQLException e) {
-				e.printStackTrace();
+				ErrorLog.report(ErrorCategory.CONNECTION, "Could not close the connection.", e);
 			}
 		}
 	}
@@ -271,7 +1125,7 @@ public class ConnectionManager {
 				cs.close();
 			}
 			catch(SQLException e) {
-				e.printStackTrace();
+				ErrorLog.report(ErrorCategory.CONNECTION, "Could not close the statement.", e);
 			}
 		}
 	}
@@ -287,7 +1141,7 @@ public class ConnectionManager {
 				s.close();
 			}
 			catch(SQLException e) {
-				e.printStackTrace();
+				ErrorLog.report(ErrorCategory.CONNECTION, "Could not close the statement.", e);
 			}
 		}
 	}
@@ -304,7 +1158,7 @@ public class ConnectionManager {
 				rs.close();
 			}
 			catch(SQLException e) {
-				e.printStackTrace();
+				ErrorLog.report(ErrorCategory.CONNECTION, "Could not close the result set.", e);
 			}
 		}
 	}
@@ -331,6 +1185,9 @@ public class ConnectionManager {
 		if(p instanceof Date) {
 			cs.setDate(i, (Date) p);
 		}
+		else if(p instanceof Timestamp) {
+			cs.setTimestamp(i, (Timestamp) p);
+		}
 		else if(p instanceof Integer) {
 			cs.setInt(i, (Integer) p);
 		}
@@ -0,0 +1,337 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.managers;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.github.mlaursen.database.logging.ErrorCategory;
+import com.github.mlaursen.database.logging.ErrorLog;
+import com.github.mlaursen.database.metrics.ConnectionMetrics;
+import com.github.mlaursen.database.objects.DatabaseObject;
+import com.github.mlaursen.database.objects.MyResultRow;
+import com.github.mlaursen.database.objects.MyResultSet;
+
+/**
+ * A cursor that stays open on its own connection so the rows can be fetched a chunk at a time while a user scrolls through them, instead
+ * of running the procedure again for every page. A REF CURSOR only moves forward, so anything the user scrolls back to has to be kept by
+ * the caller.
+ * 
+ * <pre>
+ * CursorSession&lt;Person&gt; people = manager.openCursor(Person.class, "SMITH");
+ * try {
+ * 	people.setReadAhead(true);
+ * 	List&lt;Person&gt; chunk = people.fetch(100);
+ * }
+ * finally {
+ * 	people.close();
+ * }
+ * </pre>
+ * 
+ * With read ahead on the next chunk is fetched in the background as soon as a chunk is returned. A session that is not fetched from for
+ * the idle timeout of its {@link CursorSessions} is closed for the caller, and fetching from it afterwards returns nothing and sets
+ * {@link CallContext#getLastError()}.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class CursorSession<T extends DatabaseObject> implements AutoCloseable {
+	
+	private final ConnectionManager manager;
+	private final CursorSessions sessions;
+	private final ConnectionMetrics counts;
+	private final ProcedureCall call;
+	private final Class<T> type;
+	private final Connection conn;
+	private final CallableStatement cs;
+	private final ResultSet rs;
+	private final List<String> colNames = new ArrayList<String>();
+	private final LinkedList<MyResultRow> buffer = new LinkedList<MyResultRow>();
+	private Future<List<MyResultRow>> pending;
+	private boolean readAhead, exhausted, closed, reclaimed;
+	private int fetchSize;
+	private long fetched;
+	private volatile long lastUsed = System.nanoTime();
+	
+	/**
+	 * 
+	 * @param manager
+	 *            The connection manager that opened the cursor
+	 * @param sessions
+	 *            The sessions the cursor counts against
+	 * @param counts
+	 *            The connection counts to tell when the connection is closed or null
+	 * @param call
+	 *            The call that opened the cursor
+	 * @param type
+	 *            The DatabaseObject class to construct
+	 * @param conn
+	 *            The connection the cursor is open on
+	 * @param cs
+	 *            The statement that opened the cursor
+	 * @param rs
+	 *            The cursor
+	 * @throws SQLException
+	 *             If the column names could not be read
+	 */
+	CursorSession(ConnectionManager manager, CursorSessions sessions, ConnectionMetrics counts, ProcedureCall call, Class<T> type,
+			Connection conn, CallableStatement cs, ResultSet rs) throws SQLException {
+		this.manager = manager;
+		this.sessions = sessions;
+		this.counts = counts;
+		this.call = call;
+		this.type = type;
+		this.conn = conn;
+		this.cs = cs;
+		this.rs = rs;
+		colNames.addAll(MyResultSet.columnNames(rs));
+	}
+	
+	/**
+	 * @return the call that opened the cursor
+	 */
+	public ProcedureCall getCall() {
+		return call;
+	}
+	
+	/**
+	 * @return true if the next chunk is fetched in the background
+	 */
+	public synchronized boolean isReadAhead() {
+		return readAhead;
+	}
+	
+	/**
+	 * @param readAhead
+	 *            true to fetch the next chunk in the background as soon as a chunk is returned
+	 */
+	public synchronized void setReadAhead(boolean readAhead) {
+		this.readAhead = readAhead;
+	}
+	
+	/**
+	 * Fetches the next rows and constructs them
+	 * 
+	 * @param rows
+	 *            The most rows to fetch
+	 * @return The objects, which are fewer than rows at the end of the cursor and empty once the session is closed
+	 */
+	public List<T> fetch(int rows) {
+		List<T> l = new ArrayList<T>();
+		for(MyResultRow r : fetchRows(rows)) {
+			l.add(r.construct(type));
+		}
+		return l;
+	}
+	
+	/**
+	 * Fetches the next rows without constructing them
+	 * 
+	 * @param rows
+	 *            The most rows to fetch
+	 * @return The rows, which are fewer than rows at the end of the cursor and empty once the session is closed
+	 */
+	public synchronized MyResultSet fetchRows(int rows) {
+		if(rows < 1) {
+			throw new IllegalArgumentException("A fetch needs at least 1 row but it was " + rows);
+		}
+		lastUsed = System.nanoTime();
+		List<MyResultRow> l = new ArrayList<MyResultRow>(Math.min(rows, 1024));
+		if(closed) {
+			if(reclaimed) {
+				CallContext.setLastError(new SQLException("The cursor for " + call.getCall() + " was closed after it was idle for "
+						+ TimeUnit.NANOSECONDS.toSeconds(sessions.getIdleTimeout()) + " seconds"));
+			}
+			return new MyResultSet(l, colNames);
+		}
+		try {
+			takePending();
+			if(buffer.size() < rows && !exhausted) {
+				buffer.addAll(read(rows - buffer.size()));
+			}
+			while(l.size() < rows && !buffer.isEmpty()) {
+				l.add(buffer.removeFirst());
+			}
+			fetched += l.size();
+			if(readAhead && !exhausted) {
+				final int next = rows;
+				pending = CursorSessions.getReaders().submit(new Callable<List<MyResultRow>>() {
+					
+					@Override
+					public List<MyResultRow> call() throws SQLException {
+						return read(next);
+					}
+				});
+			}
+			CallContext.setLastError(null);
+		}
+		catch(SQLException e) {
+			CallContext.setLastError(e);
+			ErrorLog.report(ErrorCategory.SQL, "The cursor for " + call.getCall() + " could not be fetched from.", e);
+			closeCursor();
+		}
+		lastUsed = System.nanoTime();
+		return new MyResultSet(l, colNames);
+	}
+	
+	/**
+	 * Reads rows from the cursor. Only one thread reads at a time since a fetch waits for the read ahead before it reads.
+	 */
+	private List<MyResultRow> read(int rows) throws SQLException {
+		if(fetchSize != rows) {
+			rs.setFetchSize(rows);
+			fetchSize = rows;
+		}
+		final List<MyResultRow> l = new ArrayList<MyResultRow>(Math.min(rows, 1024));
+		int read = MyResultSet.read(rs, colNames, rows, new MyResultSet.RowHandler() {
+			
+			@Override
+			public void row(MyResultRow row) {
+				l.add(row);
+			}
+		});
+		if(read < rows) {
+			exhausted = true;
+		}
+		manager.recordRows(call, l.size());
+		return l;
+	}
+	
+	private void takePending() throws SQLException {
+		if(pending == null) {
+			return;
+		}
+		Future<List<MyResultRow>> f = pending;
+		pending = null;
+		boolean interrupted = false;
+		try {
+			for(;;) {
+				try {
+					buffer.addAll(f.get());
+					return;
+				}
+				catch(InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		catch(ExecutionException e) {
+			if(e.getCause() instanceof SQLException) {
+				throw (SQLException) e.getCause();
+			}
+			throw new SQLException("The read ahead failed", e.getCause());
+		}
+		finally {
+			if(interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * @return true if every row has been fetched
+	 */
+	public synchronized boolean isExhausted() {
+		if(pending != null && pending.isDone()) {
+			try {
+				takePending();
+			}
+			catch(SQLException e) {
+				return false;
+			}
+		}
+		return exhausted && pending == null && buffer.isEmpty();
+	}
+	
+	/**
+	 * @return the number of rows that have been returned
+	 */
+	public synchronized long getFetched() {
+		return fetched;
+	}
+	
+	/**
+	 * @return how long it has been since the last fetch in nanoseconds
+	 */
+	public long getIdleNanos() {
+		return System.nanoTime() - lastUsed;
+	}
+	
+	/**
+	 * @return true if the session has been closed
+	 */
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+	
+	/**
+	 * @return true if the session was closed because it was idle
+	 */
+	public synchronized boolean isReclaimed() {
+		return reclaimed;
+	}
+	
+	/**
+	 * Closes the session if it has not been fetched from for the idle timeout
+	 * 
+	 * @param now
+	 *            The time in System.nanoTime()
+	 * @param idle
+	 *            The idle timeout in nanoseconds
+	 * @return True if the session was closed
+	 */
+	synchronized boolean reclaim(long now, long idle) {
+		if(closed || now - lastUsed < idle) {
+			return false;
+		}
+		reclaimed = true;
+		closeCursor();
+		return true;
+	}
+	
+	/**
+	 * Closes the cursor and gives the connection back. Closing a session twice does nothing.
+	 */
+	@Override
+	public synchronized void close() {
+		closeCursor();
+	}
+	
+	private void closeCursor() {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		if(pending != null) {
+			try {
+				takePending();
+			}
+			catch(SQLException e) {
+				// the cursor is being closed anyway
+			}
+		}
+		buffer.clear();
+		manager.closeResultSet(rs);
+		manager.closeCallableStatement(cs);
+		manager.closeConnection(conn);
+		if(counts != null) {
+			counts.closed();
+		}
+		sessions.remove(this);
+	}
+	
+	@Override
+	public String toString() {
+		return "CursorSession [call=" + call.getCall() + ", fetched=" + fetched + ", exhausted=" + exhausted + ", closed=" + closed + "]";
+	}
+}
@@ -0,0 +1,291 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.managers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.mlaursen.database.utils.LocalSettings;
+
+/**
+ * Keeps track of the {@link CursorSession}s that are open. Every session holds a connection until it is closed, so there is a cap on how
+ * many can be open at once and sessions that have not been fetched from for the idle timeout are closed by a daemon thread. Opening a
+ * cursor past the cap is rejected instead of waiting, since the sessions that hold the slots may be held by a user that went to lunch.
+ * 
+ * Every connection manager shares the default sessions so the cap is per process, which can be set with cursor.maxopen and cursor.idle
+ * (in seconds). Only the first settings that have either of them are used.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class CursorSessions {
+	
+	public static final int DEF_MAX_OPEN = 16;
+	public static final long DEF_IDLE_SECONDS = 300;
+	
+	private static final CursorSessions defaultSessions = new CursorSessions();
+	private static boolean configured;
+	private static ScheduledThreadPoolExecutor timer;
+	private static ExecutorService readers;
+	
+	private final Set<CursorSession<?>> open = Collections.newSetFromMap(new ConcurrentHashMap<CursorSession<?>, Boolean>());
+	private final AtomicInteger reserved = new AtomicInteger();
+	private final AtomicLong opened = new AtomicLong(), reclaimed = new AtomicLong(), rejected = new AtomicLong();
+	private volatile int maxOpen;
+	private volatile long idleNanos;
+	private ScheduledFuture<?> reaper;
+	
+	/**
+	 * Creates sessions with the default cap and idle timeout
+	 */
+	public CursorSessions() {
+		this(DEF_MAX_OPEN, DEF_IDLE_SECONDS, TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * 
+	 * @param maxOpen
+	 *            The most sessions that can be open at once
+	 * @param idle
+	 *            How long a session can go without a fetch before it is closed or 0 to never close it
+	 * @param unit
+	 *            The unit of the idle timeout
+	 */
+	public CursorSessions(int maxOpen, long idle, TimeUnit unit) {
+		setMaxOpen(maxOpen);
+		setIdleTimeout(idle, unit);
+	}
+	
+	/**
+	 * @return the sessions shared by every connection manager
+	 */
+	public static CursorSessions getDefault() {
+		return defaultSessions;
+	}
+	
+	/**
+	 * Sets the cap and idle timeout of the default sessions from cursor.maxopen and cursor.idle the first time it is called with
+	 * either of them. Every connection manager calls this, so later calls are ignored instead of restarting the reaper.
+	 * 
+	 * @param properties
+	 *            The local settings
+	 */
+	public static synchronized void fromProperties(Properties properties) {
+		if(configured || properties.getProperty(LocalSettings.CURSOR_MAX_OPEN) == null
+				&& properties.getProperty(LocalSettings.CURSOR_IDLE) == null) {
+			return;
+		}
+		configured = true;
+		defaultSessions.setMaxOpen(LocalSettings.getInt(properties, LocalSettings.CURSOR_MAX_OPEN, DEF_MAX_OPEN));
+		defaultSessions.setIdleTimeout(LocalSettings.getLong(properties, LocalSettings.CURSOR_IDLE, DEF_IDLE_SECONDS), TimeUnit.SECONDS);
+	}
+	
+	private static synchronized ScheduledThreadPoolExecutor getTimer() {
+		if(timer == null) {
+			timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "db-cursor-reaper");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			timer.setRemoveOnCancelPolicy(true);
+		}
+		return timer;
+	}
+	
+	/**
+	 * @return the threads that read ahead for every session
+	 */
+	static synchronized ExecutorService getReaders() {
+		if(readers == null) {
+			readers = Executors.newCachedThreadPool(new ThreadFactory() {
+				
+				private final AtomicInteger count = new AtomicInteger();
+				
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "db-cursor-reader-" + count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return readers;
+	}
+	
+	/**
+	 * @return the most sessions that can be open at once
+	 */
+	public int getMaxOpen() {
+		return maxOpen;
+	}
+	
+	/**
+	 * @param maxOpen
+	 *            the most sessions that can be open at once
+	 */
+	public void setMaxOpen(int maxOpen) {
+		this.maxOpen = Math.max(1, maxOpen);
+	}
+	
+	/**
+	 * @return the idle timeout in nanoseconds or 0 if idle sessions are never closed
+	 */
+	public long getIdleTimeout() {
+		return idleNanos;
+	}
+	
+	/**
+	 * Sets the idle timeout and checks for idle sessions every quarter of it. Setting the same timeout again keeps the reaper that is
+	 * already scheduled.
+	 * 
+	 * @param idle
+	 *            How long a session can go without a fetch before it is closed or 0 to never close it
+	 * @param unit
+	 *            The unit of the idle timeout
+	 */
+	public synchronized void setIdleTimeout(long idle, TimeUnit unit) {
+		long nanos = Math.max(0, unit.toNanos(idle));
+		if(nanos == idleNanos && (reaper != null) == (nanos > 0)) {
+			return;
+		}
+		idleNanos = nanos;
+		if(reaper != null) {
+			reaper.cancel(false);
+			reaper = null;
+		}
+		if(idleNanos > 0) {
+			long period = Math.max(TimeUnit.MILLISECONDS.toNanos(10), idleNanos / 4);
+			reaper = getTimer().scheduleWithFixedDelay(new Runnable() {
+				
+				@Override
+				public void run() {
+					closeIdle();
+				}
+			}, period, period, TimeUnit.NANOSECONDS);
+		}
+	}
+	
+	/**
+	 * Takes a slot for a session that is about to be opened
+	 * 
+	 * @return False if the cap has been reached
+	 */
+	boolean reserve() {
+		for(;;) {
+			int r = reserved.get();
+			if(r >= maxOpen) {
+				rejected.incrementAndGet();
+				return false;
+			}
+			if(reserved.compareAndSet(r, r + 1)) {
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * Gives back a slot when the session could not be opened
+	 */
+	void unreserve() {
+		reserved.decrementAndGet();
+	}
+	
+	void add(CursorSession<?> session) {
+		open.add(session);
+		opened.incrementAndGet();
+	}
+	
+	void remove(CursorSession<?> session) {
+		if(open.remove(session)) {
+			reserved.decrementAndGet();
+		}
+	}
+	
+	/**
+	 * Closes every session that has not been fetched from for the idle timeout. This is called by the reaper thread.
+	 * 
+	 * @return The number of sessions that were closed
+	 */
+	public int closeIdle() {
+		long idle = idleNanos;
+		if(idle == 0) {
+			return 0;
+		}
+		int closed = 0;
+		long now = System.nanoTime();
+		for(CursorSession<?> s : new ArrayList<CursorSession<?>>(open)) {
+			if(s.reclaim(now, idle)) {
+				reclaimed.incrementAndGet();
+				closed++;
+			}
+		}
+		return closed;
+	}
+	
+	/**
+	 * Closes every open session
+	 */
+	public void closeAll() {
+		for(CursorSession<?> s : new ArrayList<CursorSession<?>>(open)) {
+			s.close();
+		}
+	}
+	
+	/**
+	 * @return the sessions that are open
+	 */
+	public List<CursorSession<?>> getOpenSessions() {
+		return new ArrayList<CursorSession<?>>(open);
+	}
+	
+	/**
+	 * @return the number of sessions that are open
+	 */
+	public int getOpen() {
+		return open.size();
+	}
+	
+	/**
+	 * @return the number of sessions that have been opened
+	 */
+	public long getOpened() {
+		return opened.get();
+	}
+	
+	/**
+	 * @return the number of sessions that were closed for being idle
+	 */
+	public long getReclaimed() {
+		return reclaimed.get();
+	}
+	
+	/**
+	 * @return the number of sessions that were not opened because of the cap
+	 */
+	public long getRejected() {
+		return rejected.get();
+	}
+	
+	@Override
+	public String toString() {
+		return "CursorSessions [open=" + open.size() + ", maxOpen=" + maxOpen + ", idleSeconds=" + TimeUnit.NANOSECONDS.toSeconds(idleNanos)
+				+ ", reclaimed=" + reclaimed + ", rejected=" + rejected + "]";
+	}
+}
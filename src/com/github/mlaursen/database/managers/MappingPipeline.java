@@ -0,0 +1,322 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.managers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.mlaursen.database.objects.DatabaseObject;
+import com.github.mlaursen.database.objects.MyResultRow;
+
+/**
+ * Maps the rows of a cursor into DatabaseObjects on worker threads while the rows are still being fetched. The thread that made the call
+ * keeps reading the ResultSet, since the connection belongs to it, and hands the rows over in chunks through a bounded buffer. When the
+ * workers fall behind the buffer fills up and fetching waits, so a slow mapper never holds more than the buffer's rows in memory on top of
+ * the result. Waiting on the network and constructing objects overlap, and only the mapping that is left after the last row is fetched
+ * is timed as the map phase.
+ * 
+ * <pre>
+ * manager.setPipeline(new MappingPipeline(4, 4096, true));
+ * List&lt;Person&gt; people = manager.filter(Person.class, "SMITH");
+ * </pre>
+ * 
+ * An ordered pipeline returns the objects in the order of the rows. An unordered one returns them in the order they were mapped, which
+ * saves putting the chunks back together. A pipeline can be shared by any number of calls; its threads are daemons.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class MappingPipeline {
+	
+	public static final int DEF_WORKERS = 2, DEF_BUFFER_ROWS = 4096, CHUNK_ROWS = 128;
+	
+	private final int workers, chunkRows, chunks;
+	private final boolean ordered;
+	private ExecutorService executor;
+	
+	/**
+	 * Creates an ordered pipeline with the default number of workers and buffer
+	 */
+	public MappingPipeline() {
+		this(DEF_WORKERS, DEF_BUFFER_ROWS, true);
+	}
+	
+	/**
+	 * 
+	 * @param workers
+	 *            The number of threads that construct objects for a call
+	 * @param bufferRows
+	 *            The number of fetched rows that can wait to be mapped before fetching waits
+	 * @param ordered
+	 *            True to return the objects in the order of the rows
+	 */
+	public MappingPipeline(int workers, int bufferRows, boolean ordered) {
+		this.workers = Math.max(1, workers);
+		this.chunkRows = Math.max(1, Math.min(CHUNK_ROWS, bufferRows));
+		this.chunks = Math.max(1, bufferRows / chunkRows);
+		this.ordered = ordered;
+	}
+	
+	/**
+	 * @return the number of threads that construct objects for a call
+	 */
+	public int getWorkers() {
+		return workers;
+	}
+	
+	/**
+	 * @return true if objects are returned in the order of the rows
+	 */
+	public boolean isOrdered() {
+		return ordered;
+	}
+	
+	private synchronized ExecutorService getExecutor() {
+		if(executor == null) {
+			executor = Executors.newCachedThreadPool(new ThreadFactory() {
+				
+				private final AtomicInteger count = new AtomicInteger();
+				
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "db-mapper-" + count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return executor;
+	}
+	
+	/**
+	 * Starts the workers for one call
+	 * 
+	 * @param type
+	 *            The DatabaseObject class to construct
+	 * @return The run to add the fetched rows to
+	 */
+	<T extends DatabaseObject> Run<T> start(Class<T> type) {
+		return new Run<T>(type);
+	}
+	
+	/**
+	 * Stops the worker threads once the calls that are mapping have finished
+	 */
+	public synchronized void shutdown() {
+		if(executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+	}
+	
+	private static class Chunk {
+		
+		private static final Chunk END = new Chunk(-1, null);
+		
+		private final int index;
+		private final List<MyResultRow> rows;
+		
+		private Chunk(int index, List<MyResultRow> rows) {
+			this.index = index;
+			this.rows = rows;
+		}
+	}
+	
+	/**
+	 * The mapping for one call. Rows are added on the fetching thread and the objects are collected with {@link #await()}.
+	 * 
+	 * @author mlaursen
+	 * 
+	 */
+	public class Run<T extends DatabaseObject> {
+		
+		private final Class<T> type;
+		private final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<Chunk>(chunks);
+		private final ConcurrentMap<Integer, List<T>> mapped = new ConcurrentHashMap<Integer, List<T>>();
+		private final List<T> unordered = Collections.synchronizedList(new ArrayList<T>());
+		private final List<Future<?>> futures = new ArrayList<Future<?>>();
+		private volatile Throwable error;
+		private volatile boolean aborted;
+		private List<MyResultRow> chunk;
+		private int count, rows;
+		
+		private Run(Class<T> type) {
+			this.type = type;
+			for(int i = 0; i < workers; i++) {
+				futures.add(getExecutor().submit(new Runnable() {
+					
+					@Override
+					public void run() {
+						work();
+					}
+				}));
+			}
+		}
+		
+		private void work() {
+			for(;;) {
+				Chunk c;
+				try {
+					c = queue.take();
+				}
+				catch(InterruptedException e) {
+					return;
+				}
+				if(c == Chunk.END) {
+					return;
+				}
+				if(error != null || aborted) {
+					continue;
+				}
+				try {
+					List<T> l = new ArrayList<T>(c.rows.size());
+					for(MyResultRow r : c.rows) {
+						l.add(r.construct(type));
+					}
+					if(ordered) {
+						mapped.put(c.index, l);
+					}
+					else {
+						unordered.addAll(l);
+					}
+				}
+				catch(RuntimeException | Error e) {
+					// keep taking chunks so the fetching thread is never left waiting on a full buffer
+					error = e;
+				}
+			}
+		}
+		
+		/**
+		 * Adds a fetched row. This waits while the buffer is full.
+		 * 
+		 * @param row
+		 *            The row
+		 * @throws InterruptedException
+		 *             If the thread is interrupted while it waits
+		 */
+		void add(MyResultRow row) throws InterruptedException {
+			if(chunk == null) {
+				chunk = new ArrayList<MyResultRow>(chunkRows);
+			}
+			chunk.add(row);
+			rows++;
+			if(chunk.size() == chunkRows) {
+				flush();
+			}
+		}
+		
+		private void flush() throws InterruptedException {
+			if(chunk != null) {
+				queue.put(new Chunk(count++, chunk));
+				chunk = null;
+			}
+		}
+		
+		/**
+		 * Tells the workers every row has been added
+		 * 
+		 * @throws InterruptedException
+		 *             If the thread is interrupted while it waits for room in the buffer
+		 */
+		void finish() throws InterruptedException {
+			flush();
+			for(int i = 0; i < workers; i++) {
+				queue.put(Chunk.END);
+			}
+		}
+		
+		/**
+		 * Stops the workers without waiting for them after the fetch failed
+		 */
+		void abort() {
+			aborted = true;
+			queue.clear();
+			for(int i = 0; i < workers; i++) {
+				if(!queue.offer(Chunk.END)) {
+					break;
+				}
+			}
+			for(Future<?> f : futures) {
+				f.cancel(true);
+			}
+		}
+		
+		/**
+		 * @return the number of rows that were added
+		 */
+		public int getRows() {
+			return rows;
+		}
+		
+		/**
+		 * Waits for every row to be mapped
+		 * 
+		 * @return The objects
+		 * @throws RuntimeException
+		 *             An exception a row threw while it was constructed, or an IllegalStateException if a chunk of rows was never mapped
+		 * @throws Error
+		 *             An error a row threw while it was constructed, like an ExceptionInInitializerError
+		 */
+		public List<T> await() {
+			boolean interrupted = false;
+			for(Future<?> f : futures) {
+				for(;;) {
+					try {
+						f.get();
+						break;
+					}
+					catch(InterruptedException e) {
+						interrupted = true;
+					}
+					catch(ExecutionException e) {
+						if(error == null) {
+							error = e.getCause();
+						}
+						break;
+					}
+					catch(CancellationException e) {
+						break;
+					}
+				}
+			}
+			if(interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			if(error instanceof Error) {
+				throw (Error) error;
+			}
+			if(error instanceof RuntimeException) {
+				throw (RuntimeException) error;
+			}
+			if(error != null || aborted) {
+				throw new IllegalStateException("The rows of " + type.getName() + " were not all mapped", error);
+			}
+			if(!ordered) {
+				return new ArrayList<T>(unordered);
+			}
+			List<T> l = new ArrayList<T>(rows);
+			for(int i = 0; i < count; i++) {
+				List<T> c = mapped.get(i);
+				if(c == null) {
+					throw new IllegalStateException("Chunk " + i + " of the rows of " + type.getName() + " was not mapped");
+				}
+				l.addAll(c);
+			}
+			return l;
+		}
+	}
+}
@@ -3,27 +3,58 @@
  */
 package com.github.mlaursen.database.managers;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import com.github.mlaursen.annotations.DatabaseField;
 import com.github.mlaursen.annotations.DatabaseFieldType;
+import com.github.mlaursen.annotations.DatabasePartitions;
+import com.github.mlaursen.annotations.DatabaseReplicated;
 import com.github.mlaursen.annotations.MultipleDatabaseField;
+import com.github.mlaursen.database.concurrency.Priority;
+import com.github.mlaursen.database.concurrency.PriorityLanes;
+import com.github.mlaursen.database.logging.ErrorCategory;
+import com.github.mlaursen.database.logging.ErrorLog;
+import com.github.mlaursen.database.metrics.AllocationAccounting;
+import com.github.mlaursen.database.metrics.EventSink;
+import com.github.mlaursen.database.metrics.Events;
+import com.github.mlaursen.database.metrics.MappingStage;
+import com.github.mlaursen.database.metrics.Phase;
+import com.github.mlaursen.database.objects.Aggregation;
 import com.github.mlaursen.database.objects.DatabaseObject;
 import com.github.mlaursen.database.objects.DatabaseView;
+import com.github.mlaursen.database.objects.IndexedSnapshot;
+import com.github.mlaursen.database.objects.MappingException;
+import com.github.mlaursen.database.objects.MyResultRow;
+import com.github.mlaursen.database.objects.MyResultSet;
 import com.github.mlaursen.database.objects.Package;
+import com.github.mlaursen.database.objects.Procedure;
+import com.github.mlaursen.database.objects.SnapshotCodec;
 import com.github.mlaursen.database.procedures.Createable;
 import com.github.mlaursen.database.procedures.Deleteable;
 import com.github.mlaursen.database.procedures.Filterable;
 import com.github.mlaursen.database.procedures.GetAllable;
 import com.github.mlaursen.database.procedures.Getable;
+import com.github.mlaursen.database.procedures.Pageable;
 import com.github.mlaursen.database.procedures.Updateable;
+import com.github.mlaursen.database.tracing.Operation;
 import com.github.mlaursen.database.utils.ClassUtil;
+import com.github.mlaursen.database.utils.LocalSettings;
 
 /**
  * THe Object Manager class generates the packages and procedure for the database objects given. THe object manager does NOT create these
@@ -39,6 +70,7 @@ public class ObjectManager {
 	protected Map<String, Integer> packageMap = new HashMap<String, Integer>();
 	protected List<String> availablePackages = new ArrayList<String>();
 	protected List<Class<? extends DatabaseObject>> databaseObjects = new ArrayList<Class<? extends DatabaseObject>>();
+	protected MappingPipeline pipeline;
 	
 	/**
 	 * Creates a new connectionManager and generates the packages for all the databaseObjects given
@@ -48,12 +80,59 @@ public class ObjectManager {
 	 */
 	@SafeVarargs
 	public ObjectManager(Class<? extends DatabaseObject>... databaseObjects) {
-		connectionManager = new ConnectionManager();
+		this(new ConnectionManager(), databaseObjects);
+	}
+	
+	/**
+	 * Creates an ObjectManager that shares a connectionManager and generates the packages for all the databaseObjects given. Sharing one
+	 * connection manager means its admission limits and priority lanes apply to every ObjectManager that uses it.
+	 * 
+	 * @param connectionManager
+	 *            The connection manager used to execute every procedure
+	 * @param databaseObjects
+	 *            The DatabaseObjects to generate packages for
+	 */
+	@SafeVarargs
+	public ObjectManager(ConnectionManager connectionManager, Class<? extends DatabaseObject>... databaseObjects) {
+		this.connectionManager = connectionManager;
 		for(Class<? extends DatabaseObject> c : databaseObjects) {
 			addPackage(c);
 		}
 	}
 	
+	/**
+	 * @return the connection manager used to execute every procedure
+	 */
+	public ConnectionManager getConnectionManager() {
+		return connectionManager;
+	}
+	
+	/**
+	 * @param connectionManager
+	 *            The connection manager to execute every procedure with
+	 */
+	public void setConnectionManager(ConnectionManager connectionManager) {
+		this.connectionManager = connectionManager;
+	}
+	
+	/**
+	 * @return the pipeline lists are mapped with or null if they are mapped after the whole cursor is fetched
+	 */
+	public MappingPipeline getPipeline() {
+		return pipeline;
+	}
+	
+	/**
+	 * Sets how the rows of getAll, filter and custom getall calls are turned into objects. With a pipeline the rows are mapped on worker
+	 * threads while the rest of the cursor is still being fetched.
+	 * 
+	 * @param pipeline
+	 *            The pipeline or null to map every row on the calling thread after the cursor is fetched
+	 */
+	public void setPipeline(MappingPipeline pipeline) {
+		this.pipeline = pipeline;
+	}
+	
 	/**
 	 * Adds a new package or merges a package based on the class given.
 	 * 
@@ -164,7 +243,7 @@ public class ObjectManager {
 		if(packageIsAvailable(type)) {
 			Package pkg = getPackage(type);
 			if(pkg.canCallProcedure(procedureName)) {
-				return connectionManager.executeCursorProcedure(pkg, procedureName, params).getRow().construct(type);
+				return getFirst(call(Operation.CUSTOM_GET, type, pkg, procedureName, params), type);
 			}
 		}
 		return null;
@@ -185,7 +264,7 @@ public class ObjectManager {
 		if(packageIsAvailable(type)) {
 			Package pkg = getPackage(type);
 			if(pkg.canCallProcedure(procedureName)) {
-				return connectionManager.executeCursorProcedure(pkg, procedureName, params).toListOf(type);
+				return getList(call(Operation.CUSTOM_GET_ALL, type, pkg, procedureName, params), type);
 			}
 		}
 		return new ArrayList<T>();
@@ -206,7 +285,7 @@ public class ObjectManager {
 		if(packageIsAvailable(type)) {
 			Package pkg = getPackage(type);
 			if(pkg.canCallProcedure(procedureName)) {
-				return connectionManager.executeStoredProcedure(pkg, procedureName, params);
+				return connectionManager.executeStoredProcedure(call(Operation.CUSTOM, type, pkg, procedureName, params));
 			}
 		}
 		return false;
@@ -235,10 +314,14 @@ public class ObjectManager {
 	 * @return A possible database object
 	 */
 	public <T extends DatabaseObject> T get(String primaryKey, Class<T> type) {
+		Replica<T> replica = Replica.forType(this, type);
+		if(replica != null) {
+			return replica.get(primaryKey);
+		}
 		if(packageIsAvailable(type)) {
 			Package pkg = getPackage(type);
 			if(canCallProcedure(type, Getable.class, pkg, "get")) {
-				return connectionManager.executeCursorProcedure(pkg, "get", primaryKey).getRow().construct(type);
+				return getFirst(call(Operation.GET, type, pkg, "get", primaryKey), type);
 			}
 		}
 		return null;
@@ -252,15 +335,317 @@ public class ObjectManager {
 	 * @return a List of database objects or an empty List
 	 */
 	public <T extends DatabaseObject> List<T> getAll(Class<T> type) {
+		Replica<T> replica = Replica.forType(this, type);
+		if(replica != null) {
+			return replica.getAll();
+		}
 		if(packageIsAvailable(type)) {
 			Package pkg = getPackage(type);
 			if(canCallProcedure(type, GetAllable.class, pkg, "getall")) {
-				return connectionManager.executeCursorProcedure(pkg, "getall").toListOf(type);
+				return getList(call(Operation.GET_ALL, type, pkg, "getall"), type);
 			}
 		}
 		return new ArrayList<T>();
 	}
 	
+	/**
+	 * Returns every database object of a type with indexes on some of its columns, so it can be searched without going back to the
+	 * database. See {@link IndexedSnapshot}.
+	 * 
+	 * @param type
+	 *            The Database Object class to return a snapshot for
+	 * @param columns
+	 *            The columns to index or none to index the columns of the type's DatabaseFields
+	 * @return The snapshot or null if the objects could not be read
+	 */
+	public <T extends DatabaseObject> IndexedSnapshot<T> getAllIndexed(Class<T> type, String... columns) {
+		MyResultSet rs = readAll(type);
+		return rs == null ? null : new IndexedSnapshot<T>(rs, type, columns);
+	}
+	
+	/**
+	 * Reads every row of a type to compute a summary from the rows without constructing the objects. See {@link Aggregation}.
+	 * 
+	 * @param type
+	 *            The Database Object class to read the rows of
+	 * @param groupBy
+	 *            The column to group the rows by or null for one group
+	 * @return The aggregation or null if the rows could not be read
+	 */
+	public <T extends DatabaseObject> Aggregation aggregate(Class<T> type, String groupBy) {
+		MyResultSet rs = readAll(type);
+		return rs == null ? null : new Aggregation(rs, groupBy);
+	}
+	
+	/**
+	 * Returns every database object of a type by reading its partitions at the same time. A type with the {@link DatabasePartitions}
+	 * annotation has a GETPARTITION procedure that is called once for every partition, each on its own thread and connection, and each
+	 * partition is mapped on the thread that read it. The partitions are put together in order. A type without the annotation is read with
+	 * {@link #getAll(Class)}.
+	 * 
+	 * The partitions after the first are read on the bulk lane's threads, so a type can not have more partitions than the bulk lane has
+	 * connections. If any partition fails, an empty List is returned and the error is in {@link CallContext#getLastError()}.
+	 * 
+	 * @param type
+	 *            The Database Object class to return a list for
+	 * @param order
+	 *            The order to sort the whole list in, or null to keep the partition order
+	 * @return a List of database objects or an empty List
+	 * @throws IllegalStateException
+	 *             If the type has more partitions than the bulk lane has connections
+	 */
+	public <T extends DatabaseObject> List<T> getAllPartitioned(final Class<T> type, Comparator<? super T> order) {
+		final DatabasePartitions partitions = type.getAnnotation(DatabasePartitions.class);
+		List<T> l = new ArrayList<T>();
+		if(partitions == null || partitions.value() < 2) {
+			l = getAll(type);
+		}
+		else if(packageIsAvailable(type)) {
+			final Package pkg = getPackage(type);
+			if(canCallProcedure(type, GetAllable.class, pkg, "getpartition")) {
+				final int n = partitions.value();
+				PriorityLanes lanes = connectionManager.getLanes();
+				if(lanes != null && n > lanes.getShare(Priority.BULK)) {
+					throw new IllegalStateException(type.getName() + " has " + n + " partitions but the bulk lane only has "
+							+ lanes.getShare(Priority.BULK) + " connections. Lower the partitions or raise " + LocalSettings.LANE_BULK);
+				}
+				final List<List<T>> parts = new ArrayList<List<T>>(Collections.<List<T>> nCopies(n, null));
+				final SQLException[] errors = new SQLException[n];
+				List<Future<List<T>>> readers = new ArrayList<Future<List<T>>>(n - 1);
+				for(int i = 1; i < n; i++) {
+					final int partition = i;
+					readers.add(background(new Callable<List<T>>() {
+						
+						@Override
+						public List<T> call() {
+							List<T> part = getPartition(type, pkg, partitions, partition);
+							errors[partition] = CallContext.getLastError();
+							return part;
+						}
+					}, "db-partition-" + pkg.getName() + "-" + i));
+				}
+				parts.set(0, getPartition(type, pkg, partitions, 0));
+				errors[0] = CallContext.getLastError();
+				try {
+					for(int i = 1; i < n; i++) {
+						parts.set(i, readers.get(i - 1).get());
+					}
+				}
+				catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return l;
+				}
+				catch(ExecutionException e) {
+					if(e.getCause() instanceof Error) {
+						throw (Error) e.getCause();
+					}
+					if(e.getCause() instanceof RuntimeException) {
+						throw (RuntimeException) e.getCause();
+					}
+					CallContext.setLastError(new SQLException("Reading a partition of " + type.getName() + " failed", e.getCause()));
+					return l;
+				}
+				int size = 0;
+				for(int i = 0; i < n; i++) {
+					if(parts.get(i) == null) {
+						CallContext.setLastError(errors[i]);
+						return l;
+					}
+					size += parts.get(i).size();
+				}
+				l = new ArrayList<T>(size);
+				for(List<T> part : parts) {
+					l.addAll(part);
+				}
+			}
+		}
+		if(order != null) {
+			Collections.sort(l, order);
+		}
+		return l;
+	}
+	
+	/**
+	 * Reads and maps one partition of a type
+	 * 
+	 * @return The objects in the partition or null if the call failed
+	 */
+	private <T extends DatabaseObject> List<T> getPartition(Class<T> type, Package pkg, DatabasePartitions partitions, int partition) {
+		ProcedureCall call = call(Operation.GET_ALL, type, pkg, "getpartition", partitions.strategy().getBounds(partition,
+				partitions.value(), partitions.min(), partitions.max()));
+		MyResultSet results = connectionManager.executeCursorProcedure(call);
+		return results == null ? null : mapList(call, results, type);
+	}
+	
+	/**
+	 * {@link #getPage(Class, String, int, boolean)} The next page is not prefetched
+	 * 
+	 * @param type
+	 *            The Pageable Database Object class to read a page of
+	 * @param afterKey
+	 *            The primary key the page starts after or null for the first page
+	 * @param limit
+	 *            The most objects on the page
+	 * @return The page
+	 */
+	public <T extends DatabaseObject> Page<T> getPage(Class<T> type, String afterKey, int limit) {
+		return getPage(type, afterKey, limit, false);
+	}
+	
+	/**
+	 * Reads one page of a Pageable type in primary key order with the GETPAGE procedure. The procedure is asked for one more row than the
+	 * limit so the page knows if there is a next page without reading an empty one. With prefetch, the next page is read in the
+	 * background with BULK priority while the caller uses this one, and {@link Page#next()} picks it up.
+	 * 
+	 * A page that could not be read has no objects and no next page; the error is in {@link CallContext#getLastError()}.
+	 * 
+	 * @param type
+	 *            The Pageable Database Object class to read a page of
+	 * @param afterKey
+	 *            The primary key the page starts after or null for the first page
+	 * @param limit
+	 *            The most objects on the page
+	 * @param prefetch
+	 *            True to read the next page in the background
+	 * @return The page
+	 */
+	public <T extends DatabaseObject> Page<T> getPage(Class<T> type, String afterKey, int limit, boolean prefetch) {
+		Page<T> page = readPage(type, afterKey, limit, prefetch);
+		if(prefetch && page.hasNext()) {
+			prefetchNext(page, type);
+		}
+		return page;
+	}
+	
+	private <T extends DatabaseObject> Page<T> readPage(Class<T> type, String afterKey, int limit, boolean prefetch) {
+		if(limit < 1) {
+			throw new IllegalArgumentException("A page needs a limit of at least 1 but it was " + limit);
+		}
+		List<T> l = new ArrayList<T>();
+		if(packageIsAvailable(type)) {
+			Package pkg = getPackage(type);
+			if(canCallProcedure(type, Pageable.class, pkg, "getpage")) {
+				l = getList(call(Operation.GET_ALL, type, pkg, "getpage", afterKey, limit + 1), type);
+			}
+		}
+		String nextKey = null;
+		if(l.size() > limit) {
+			l = new ArrayList<T>(l.subList(0, limit));
+			nextKey = l.get(limit - 1).getPrimaryKey();
+		}
+		return new Page<T>(this, type, l, afterKey, nextKey, limit, prefetch);
+	}
+	
+	/**
+	 * Starts reading the page after a page in the background. The page is read on the bulk lane when the connection manager has lanes
+	 * and on its own thread when it does not.
+	 * 
+	 * @param page
+	 *            The page to read the next page of
+	 * @param type
+	 *            The Database Object class of the page
+	 */
+	<T extends DatabaseObject> void prefetchNext(Page<T> page, final Class<T> type) {
+		final String afterKey = page.getNextKey();
+		final int limit = page.getLimit();
+		Callable<Page<T>> task = new Callable<Page<T>>() {
+			
+			@Override
+			public Page<T> call() {
+				Page<T> p = readPage(type, afterKey, limit, true);
+				return CallContext.getLastError() == null ? p : null;
+			}
+		};
+		page.setNext(background(task, "db-prefetch-" + type.getSimpleName()));
+	}
+	
+	/**
+	 * Runs a task on the bulk lane when the connection manager has lanes and on its own daemon thread when it does not.
+	 * 
+	 * @param task
+	 *            The task
+	 * @param name
+	 *            The name of the thread if one is started
+	 * @return The task's future
+	 */
+	private <V> Future<V> background(Callable<V> task, String name) {
+		PriorityLanes lanes = connectionManager.getLanes();
+		if(lanes != null) {
+			return lanes.submit(Priority.BULK, task);
+		}
+		FutureTask<V> f = new FutureTask<V>(task);
+		Thread t = new Thread(f, name);
+		t.setDaemon(true);
+		t.start();
+		return f;
+	}
+	
+	/**
+	 * Loads every object of a type from a snapshot file so a service can start without waiting for the database. When the file is loaded
+	 * the objects are read with getall in the background, swapped into the snapshot and saved to the file for the next start. When the
+	 * file is missing, damaged or from another version the objects are read from the database right away and the file is written.
+	 * 
+	 * @param type
+	 *            The Database Object class to load
+	 * @param file
+	 *            The snapshot file
+	 * @return The snapshot, which is empty if there was no file and the database could not be read
+	 */
+	public <T extends DatabaseObject> Snapshot<T> openSnapshot(Class<T> type, File file) {
+		final Snapshot<T> snapshot = new Snapshot<T>(type, file);
+		if(file.isFile()) {
+			try {
+				snapshot.setItems(SnapshotCodec.loadList(file, type), true);
+			}
+			catch(IOException e) {
+				ErrorLog.report(ErrorCategory.MAPPING, "The snapshot " + file + " could not be loaded, so it is read from the database.", e);
+			}
+		}
+		if(!snapshot.isFromFile()) {
+			refreshSnapshot(snapshot);
+			return snapshot;
+		}
+		snapshot.setRefresh(background(new Callable<Boolean>() {
+			
+			@Override
+			public Boolean call() {
+				return refreshSnapshot(snapshot);
+			}
+		}, "db-snapshot-" + type.getSimpleName()));
+		return snapshot;
+	}
+	
+	/**
+	 * Reads every object of a snapshot's type from the database, swaps them in and saves them to the snapshot's file
+	 * 
+	 * @param snapshot
+	 *            The snapshot
+	 * @return False if the objects could not be read
+	 */
+	public <T extends DatabaseObject> boolean refreshSnapshot(Snapshot<T> snapshot) {
+		Class<T> type = snapshot.getType();
+		if(!packageIsAvailable(type)) {
+			return false;
+		}
+		Package pkg = getPackage(type);
+		if(!canCallProcedure(type, GetAllable.class, pkg, "getall")) {
+			return false;
+		}
+		ProcedureCall call = call(Operation.GET_ALL, type, pkg, "getall");
+		MyResultSet results = connectionManager.executeCursorProcedure(call);
+		if(results == null) {
+			return false;
+		}
+		snapshot.setItems(mapList(call, results, type), false);
+		try {
+			SnapshotCodec.save(results, type.getName(), snapshot.getFile());
+		}
+		catch(IOException e) {
+			ErrorLog.report(ErrorCategory.MAPPING, "The snapshot " + snapshot.getFile() + " could not be saved.", e);
+		}
+		return true;
+	}
+	
 	/**
 	 * Returns a list of Database Object for the object given. This version will also generate a list of parameters to be passed to the
 	 * getall procedure.
@@ -275,8 +660,8 @@ public class ObjectManager {
 		if(packageIsAvailable(c)) {
 			Package pkg = getPackage(c);
 			if(canCallProcedure(c, GetAllable.class, pkg, "getall")) {
-				Object[] params = getParameters(DatabaseFieldType.GETALL, object);
-				return connectionManager.executeCursorProcedure(pkg, "getall", params).toListOf(c);
+				Object[] params = getParameters(DatabaseFieldType.GETALL, object, pkg, "getall");
+				return getList(call(Operation.GET_ALL, c, pkg, "getall", params), c);
 			}
 		}
 		return new ArrayList<T>();
@@ -294,13 +679,47 @@ public class ObjectManager {
 		if(packageIsAvailable(object.getClass())) {
 			Package pkg = getPackage(object.getClass());
 			if(canCallProcedure(object.getClass(), Createable.class, pkg, "new")) {
-				Object[] params = getParameters(DatabaseFieldType.NEW, object);
+				Object[] params = getParameters(DatabaseFieldType.NEW, object, pkg, "new");
+				boolean created;
 				if(params.length == 0) {
-					return connectionManager.executeStoredProcedure(pkg, "new", object.getPrimaryKey());
+					created = connectionManager.executeStoredProcedure(call(Operation.CREATE, object.getClass(), pkg, "new",
+							object.getPrimaryKey()));
 				}
 				else {
-					return connectionManager.executeStoredProcedure(pkg, "new", params);
+					created = connectionManager.executeStoredProcedure(call(Operation.CREATE, object.getClass(), pkg, "new", params));
 				}
+				return changed(object.getClass(), created);
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Creates database objects of the same type with one batched call to the NEW procedure. {@link #create(DatabaseObject)}
+	 * 
+	 * @param objects
+	 *            The objects to create. They must all be the same class
+	 * @return True if every object was inserted, or there were no objects
+	 */
+	public <T extends DatabaseObject> boolean createAll(List<T> objects) {
+		if(objects.isEmpty()) {
+			return true;
+		}
+		Class<? extends DatabaseObject> type = objects.get(0).getClass();
+		if(packageIsAvailable(type)) {
+			Package pkg = getPackage(type);
+			if(canCallProcedure(type, Createable.class, pkg, "new")) {
+				List<Object[]> batch = new ArrayList<Object[]>(objects.size() - 1);
+				for(T object : objects) {
+					if(object.getClass() != type) {
+						throw new IllegalArgumentException("Every object passed to createAll must be a " + type.getSimpleName()
+								+ " but one is a " + object.getClass().getSimpleName());
+					}
+					Object[] params = getParameters(DatabaseFieldType.NEW, object, pkg, "new");
+					batch.add(params.length == 0 ? new Object[] { object.getPrimaryKey() } : params);
+				}
+				Object[] first = batch.remove(0);
+				return changed(type, connectionManager.executeBatch(call(Operation.CREATE, type, pkg, "new", first), batch));
 			}
 		}
 		return false;
@@ -320,8 +739,8 @@ public class ObjectManager {
 		if(packageIsAvailable(object.getClass())) {
 			Package pkg = getPackage(object.getClass());
 			if(canCallProcedure(object.getClass(), Updateable.class, pkg, update)) {
-				Object[] params = getParameters(DatabaseFieldType.UPDATE, object);
-				return connectionManager.executeStoredProcedure(pkg, update, params);
+				Object[] params = getParameters(DatabaseFieldType.UPDATE, object, pkg, update);
+				return changed(c, connectionManager.executeStoredProcedure(call(Operation.UPDATE, c, pkg, update, params)));
 			}
 		}
 		return false;
@@ -352,12 +771,85 @@ public class ObjectManager {
 		if(packageIsAvailable(type)) {
 			Package pkg = getPackage(type);
 			if(canCallProcedure(type, Deleteable.class, pkg, "delete")) {
-				return connectionManager.executeStoredProcedure(pkg, "delete", primaryKey);
+				return changed(type, connectionManager.executeStoredProcedure(call(Operation.DELETE, type, pkg, "delete", primaryKey)));
 			}
 		}
 		return false;
 	}
 	
+	/**
+	 * Reloads the {@link Replica} of a type after it was changed
+	 * 
+	 * @param type
+	 *            The type that was changed
+	 * @param success
+	 *            True if the change was made
+	 * @return The success
+	 */
+	private boolean changed(Class<?> type, boolean success) {
+		if(success) {
+			Replica.changed(this, type);
+		}
+		return success;
+	}
+	
+	/**
+	 * Gets the in memory copy of a {@link DatabaseReplicated} type, reading it from the database the first time
+	 * 
+	 * @param type
+	 *            The replicated type
+	 * @return The replica or null if the type is not replicated or could not be read
+	 */
+	public <T extends DatabaseObject> Replica<T> getReplica(Class<T> type) {
+		return Replica.forType(this, type);
+	}
+	
+	/**
+	 * @param type
+	 *            A replicated type
+	 * @return True if the type's package has a GETCHANGEDSINCE procedure
+	 */
+	boolean canReadChanges(Class<? extends DatabaseObject> type) {
+		return packageIsAvailable(type) && getPackage(type).canCallProcedure("getchangedsince");
+	}
+	
+	/**
+	 * Reads the rows of a replicated type
+	 * 
+	 * @param type
+	 *            The replicated type
+	 * @param since
+	 *            The time to read the changed rows since or null to read every row
+	 * @return The rows or null if they could not be read
+	 */
+	MyResultSet readReplica(Class<? extends DatabaseObject> type, Timestamp since) {
+		if(!packageIsAvailable(type)) {
+			return null;
+		}
+		Package pkg = getPackage(type);
+		if(since != null) {
+			return connectionManager.executeCursorProcedure(call(Operation.GET_ALL, type, pkg, "getchangedsince", since));
+		}
+		return readAll(type);
+	}
+	
+	/**
+	 * Reads every row of a type with getall
+	 * 
+	 * @param type
+	 *            The GetAllable type
+	 * @return The rows or null if they could not be read
+	 */
+	private MyResultSet readAll(Class<? extends DatabaseObject> type) {
+		if(packageIsAvailable(type)) {
+			Package pkg = getPackage(type);
+			if(canCallProcedure(type, GetAllable.class, pkg, "getall")) {
+				return connectionManager.executeCursorProcedure(call(Operation.GET_ALL, type, pkg, "getall"));
+			}
+		}
+		return null;
+	}
+	
 	/**
 	 * Filters a result set by the objects given. This is for limiting the results. each object in the filterBy is pretty much a WHERE
 	 * X=filterBy AND ....
@@ -372,22 +864,213 @@ public class ObjectManager {
 		if(packageIsAvailable(type)) {
 			Package pkg = getPackage(type);
 			if(canCallProcedure(type, Filterable.class, pkg, "filter")) {
-				return connectionManager.executeCursorProcedure(pkg, "filter", filterBy).toListOf(type);
+				Replica<T> replica = Replica.forType(this, type);
+				List<T> l = replica == null ? null : replica.filter(pkg.getProcedure("filter").getParams(), filterBy);
+				if(l != null) {
+					return l;
+				}
+				return getList(call(Operation.FILTER, type, pkg, "filter", filterBy), type);
 			}
 		}
 		return new ArrayList<T>();
 	}
 	
+	/**
+	 * Opens the filter procedure as a cursor that stays open so a large result can be fetched a chunk at a time. The session has to be
+	 * closed, or it holds a connection until the idle timeout of the {@link CursorSessions}.
+	 * 
+	 * @param type
+	 *            The database object to filter
+	 * @param filterBy
+	 *            The optional parameters to pass to the filter procedure
+	 * @return The open cursor or null if the type can not be filtered, the call failed or too many cursors are open
+	 */
+	public <T extends DatabaseObject> CursorSession<T> openCursor(Class<T> type, Object... filterBy) {
+		if(packageIsAvailable(type)) {
+			Package pkg = getPackage(type);
+			if(canCallProcedure(type, Filterable.class, pkg, "filter")) {
+				return connectionManager.openCursor(call(Operation.FILTER, type, pkg, "filter", filterBy), type);
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Creates a procedure call for a DatabaseObject type so the connection manager knows which type the call is being made for.
+	 * 
+	 * @param operation
+	 *            The ObjectManager operation the call is made for
+	 * @param type
+	 *            The DatabaseObject type
+	 * @param pkg
+	 *            The package for the type
+	 * @param procedureName
+	 *            The procedure to call
+	 * @param params
+	 *            The parameters to pass to the procedure
+	 * @return A procedure call
+	 */
+	protected ProcedureCall call(Operation operation, Class<? extends DatabaseObject> type, Package pkg, String procedureName,
+			Object... params) {
+		return new ProcedureCall(pkg, procedureName, params).setType(type).setOperation(operation);
+	}
+	
+	/**
+	 * Executes a cursor procedure and constructs the first row. The time it takes to construct the row is recorded as the map phase of
+	 * the call.
+	 * 
+	 * @param call
+	 *            The procedure call
+	 * @param type
+	 *            The database object class to construct
+	 * @return The database object or null
+	 */
+	protected <T extends DatabaseObject> T getFirst(ProcedureCall call, Class<T> type) {
+		MyResultSet results = connectionManager.executeCursorProcedure(call);
+		Object event = startMapping(call, type);
+		long start = System.nanoTime();
+		long bytes = AllocationAccounting.start();
+		AllocationAccounting.enter(call.getPackageKey(), call.getProcedureName());
+		try {
+			T o = constructFirst(results, type);
+			AllocationAccounting.record(MappingStage.CONSTRUCT, bytes, o == null ? 0 : 2, o == null ? 0 : 1);
+			recordMapping(call, type, o == null ? 0 : 1, start, event);
+			return o;
+		}
+		finally {
+			AllocationAccounting.exit();
+		}
+	}
+	
+	/**
+	 * Executes a cursor procedure and turns every row into a database object. The time it takes to construct the objects is recorded as
+	 * the map phase of the call. With a {@link MappingPipeline} only the mapping left after the last row was fetched is recorded.
+	 * 
+	 * @param call
+	 *            The procedure call
+	 * @param type
+	 *            The database object class to construct
+	 * @return A List of database objects or an empty List
+	 */
+	protected <T extends DatabaseObject> List<T> getList(ProcedureCall call, Class<T> type) {
+		if(pipeline != null) {
+			MappingPipeline.Run<T> run = connectionManager.executeCursorProcedure(call, type, pipeline);
+			if(run == null) {
+				return new ArrayList<T>();
+			}
+			Object event = startMapping(call, type);
+			long start = System.nanoTime();
+			List<T> l = run.await();
+			recordMapping(call, type, l.size(), start, event);
+			return l;
+		}
+		return mapList(call, connectionManager.executeCursorProcedure(call), type);
+	}
+	
+	/**
+	 * Turns every row of a call's results into a database object. The time it takes is recorded as the map phase of the call.
+	 * 
+	 * @param call
+	 *            The procedure call the results are from
+	 * @param results
+	 *            The results or null if the call failed
+	 * @param type
+	 *            The database object class to construct
+	 * @return A List of database objects or an empty List
+	 */
+	protected <T extends DatabaseObject> List<T> mapList(ProcedureCall call, MyResultSet results, Class<T> type) {
+		Object event = startMapping(call, type);
+		long start = System.nanoTime();
+		long bytes = AllocationAccounting.start();
+		AllocationAccounting.enter(call.getPackageKey(), call.getProcedureName());
+		try {
+			List<T> l = toListOf(results, type);
+			AllocationAccounting.record(MappingStage.CONSTRUCT, bytes, 2 * l.size(), l.size());
+			recordMapping(call, type, l.size(), start, event);
+			return l;
+		}
+		finally {
+			AllocationAccounting.exit();
+		}
+	}
+	
+	/**
+	 * Tells the {@link EventSink} if there is one that the results of a call are about to be mapped.
+	 * 
+	 * @param call
+	 *            The procedure call
+	 * @param type
+	 *            The database object class to construct
+	 * @return What the sink returned to pass to {@link #recordMapping(ProcedureCall, Class, int, long, Object)} or null
+	 */
+	protected Object startMapping(ProcedureCall call, Class<?> type) {
+		EventSink sink = Events.getEnabledSink();
+		return sink == null ? null : sink.resultMappingStarted(call.getPackageKey(), call.getProcedureName(), type);
+	}
+	
+	/**
+	 * Records the map phase of a call and sends it to the {@link EventSink} if there is one.
+	 * 
+	 * @param call
+	 *            The procedure call
+	 * @param type
+	 *            The database object class that was constructed
+	 * @param rows
+	 *            The number of objects constructed
+	 * @param start
+	 *            When mapping started in System.nanoTime()
+	 * @param event
+	 *            What {@link #startMapping(ProcedureCall, Class)} returned
+	 */
+	protected void recordMapping(ProcedureCall call, Class<?> type, int rows, long start, Object event) {
+		long end = connectionManager.recordPhase(call, Phase.MAP, start);
+		EventSink sink = Events.getEnabledSink();
+		if(sink != null) {
+			sink.resultMapped(event, call.getPackageKey(), call.getProcedureName(), type, rows, end - start);
+		}
+	}
+	
+	/**
+	 * Constructs the first row of a result set. The result set will be null if the call failed or was rejected.
+	 * 
+	 * @param results
+	 *            The result set or null
+	 * @param type
+	 *            The database object class to construct
+	 * @return The database object or null
+	 */
+	protected <T extends DatabaseObject> T constructFirst(MyResultSet results, Class<T> type) {
+		MyResultRow r = results == null ? null : results.getRow();
+		return r == null ? null : r.construct(type);
+	}
+	
+	/**
+	 * Turns a result set into a list of database objects. The result set will be null if the call failed or was rejected.
+	 * 
+	 * @param results
+	 *            The result set or null
+	 * @param type
+	 *            The database object class to construct
+	 * @return A List of database objects or an empty List
+	 */
+	protected <T extends DatabaseObject> List<T> toListOf(MyResultSet results, Class<T> type) {
+		return results == null ? new ArrayList<T>() : results.toListOf(type);
+	}
+	
 	/**
 	 * Get an array of Object to be passed to a database procedure call. The array is generated by seraching for all the DatabaseField or
 	 * MultipleDatabaseField annotations located in the class starting with the DatabaseObject and working down to the current class.
 	 * 
 	 * @param proc
 	 *            The procedure to get the parameters for
+	 * @param pkg
+	 *            The package the procedure is in
+	 * @param procedureName
+	 *            The procedure the parameters are for
 	 * @return An Array of Object Parameters
 	 */
-	private <T extends DatabaseObject> Object[] getParameters(DatabaseFieldType proc, T object) {
-		return getParameters(getParametersMap(proc, object));
+	protected <T extends DatabaseObject> Object[] getParameters(DatabaseFieldType proc, T object, Package pkg, String procedureName) {
+		return getParameters(getParametersMap(proc, object, pkg, procedureName));
 	}
 	
 	/**
@@ -411,20 +1094,29 @@ public class ObjectManager {
 	 * 
 	 * @param proc
 	 *            The Database Field Type to get the parameters for
+	 * @param pkg
+	 *            The package the procedure is in
+	 * @param procedureName
+	 *            The procedure the parameters are for
 	 * @return A Integer, Object pair for the position of the object for the procedure
 	 */
-	private <T extends DatabaseObject> Map<Integer, Object> getParametersMap(DatabaseFieldType proc, T object) {
-		int counter = 0;
+	protected <T extends DatabaseObject> Map<Integer, Object> getParametersMap(DatabaseFieldType proc, T object, Package pkg,
+			String procedureName) {
+		long bytes = AllocationAccounting.start();
+		int counter = 0, reflective = 0;
 		Map<Integer, Object> params = new HashMap<Integer, Object>();
 		List<Class<?>> classes = ClassUtil.getClassList(object.getClass());
 		for(Class<?> c : classes) {
+			reflective++;
 			for(Field f : c.getDeclaredFields()) {
 				f.setAccessible(true);
 				if(f.isAnnotationPresent(MultipleDatabaseField.class)) {
+					reflective++;
 					MultipleDatabaseField a = f.getAnnotation(MultipleDatabaseField.class);
 					if(Arrays.asList(a.values()).contains(proc)) {
 						for(String n : a.names()) {
 							try {
+								reflective += 2;
 								Object o = f.get(object);
 								Class<?> oClass = o.getClass();
 								String oClassName = oClass.getSimpleName();
@@ -432,6 +1124,7 @@ public class ObjectManager {
 								for(Method m : oClass.getMethods()) {
 									String mName = m.getName();
 									if(mName.startsWith("get") && mName.matches("(?i)get" + searchName)) {
+										reflective++;
 										Object ret = m.invoke(o);
 										params.put(counter, ret);
 										counter++;
@@ -439,22 +1132,20 @@ public class ObjectManager {
 								}
 							}
 							catch(IllegalArgumentException | IllegalAccessException e) {
-								e.printStackTrace();
+								reportParameterError(c, f, e);
 							}
 							catch(Exception e) {
-								String err = "The position for the procedure '" + proc + "' has not been initialized for the field " + "["
-										+ f.getName() + "]\nin class [" + c.getName()
-										+ "].  This error occured when seraching for the values "
-										+ "to add when calling the stored procedure. The value has not been added to the parameter map.";
-								System.err.println(err);
+								reportPositionError(proc, c, f);
 							}
 						}
 					}
 				}
 				else if(f.isAnnotationPresent(DatabaseField.class)) {
 					DatabaseField a = f.getAnnotation(DatabaseField.class);
+					reflective++;
 					if(Arrays.asList(a.values()).contains(proc)) {
 						try {
+							reflective++;
 							Object o = f.get(object);
 							int pos = a.reorder() ? DatabaseFieldType.getPosition(proc, a) : counter;
 							counter++;
@@ -466,22 +1157,60 @@ public class ObjectManager {
 							}
 						}
 						catch(IllegalArgumentException | IllegalAccessException e) {
-							e.printStackTrace();
+							reportParameterError(c, f, e);
 						}
 						catch(Exception e) {
-							String err = "The position for the procedure '" + proc + "' has not been initialized for the field " + "["
-									+ f.getName() + "]\nin class [" + c.getName() + "].  This error occured when seraching for the values "
-									+ "to add when calling the stored procedure. The value has not been added to the parameter map.";
-							System.err.println(err);
+							reportPositionError(proc, c, f);
 						}
 					}
 				}
 				f.setAccessible(false);
 			}
 		}
+		if(bytes >= 0) {
+			Procedure p = pkg.getProcedure(procedureName);
+			AllocationAccounting.record(pkg.getName().toUpperCase(), p == null ? procedureName : p.getDisplayName(), MappingStage.PARAMETERS,
+					bytes, reflective, params.size());
+		}
 		return params;
 	}
 	
+	/**
+	 * Reports a field that could not be read when building the parameters for a procedure
+	 * 
+	 * @param c
+	 *            The class the field is declared in
+	 * @param f
+	 *            The field
+	 * @param e
+	 *            The exception from reading the field
+	 */
+	private void reportParameterError(Class<?> c, Field f, Exception e) {
+		if(ErrorLog.isEnabled(ErrorCategory.PARAMETERS)) {
+			MappingException me = new MappingException(c, f.getName(), e);
+			ErrorLog.log(ErrorCategory.PARAMETERS, me.getMessage(), me);
+		}
+	}
+	
+	/**
+	 * Reports a field that does not have a position in a procedure
+	 * 
+	 * @param proc
+	 *            The Database Field Type the parameters were being built for
+	 * @param c
+	 *            The class the field is declared in
+	 * @param f
+	 *            The field
+	 */
+	private void reportPositionError(DatabaseFieldType proc, Class<?> c, Field f) {
+		if(ErrorLog.isEnabled(ErrorCategory.PARAMETERS)) {
+			String err = "The position for the procedure '" + proc + "' has not been initialized for the field " + "[" + f.getName()
+					+ "]\nin class [" + c.getName() + "].  This error occured when seraching for the values "
+					+ "to add when calling the stored procedure. The value has not been added to the parameter map.";
+			ErrorLog.log(ErrorCategory.PARAMETERS, err, null);
+		}
+	}
+	
 	/**
 	 * Checks if a database object can call the procedure. It first checks that the DatabaseObject implements the Procedure interface, and
 	 * then checks that the package can call the procedure name given
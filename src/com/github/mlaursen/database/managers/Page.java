@@ -0,0 +1,137 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.managers;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.github.mlaursen.database.objects.DatabaseObject;
+
+/**
+ * One page of a {@link com.github.mlaursen.database.procedures.Pageable} type from {@link ObjectManager#getPage(Class, String, int)}.
+ * The next page starts after the primary key of the last object on this one, so pages stay correct while rows are added or removed and
+ * reading page 1000 costs the same as reading page 1.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class Page<T extends DatabaseObject> implements Iterable<T> {
+	
+	private final ObjectManager manager;
+	private final Class<T> type;
+	private final List<T> items;
+	private final String afterKey, nextKey;
+	private final int limit;
+	private final boolean prefetch;
+	private Future<Page<T>> next;
+	
+	/**
+	 * 
+	 * @param manager
+	 *            The manager that read the page
+	 * @param type
+	 *            The DatabaseObject type
+	 * @param items
+	 *            The objects on the page
+	 * @param afterKey
+	 *            The key the page starts after or null for the first page
+	 * @param nextKey
+	 *            The key the next page starts after or null if this is the last page
+	 * @param limit
+	 *            The most objects a page has
+	 * @param prefetch
+	 *            True if the next page is read in the background
+	 */
+	Page(ObjectManager manager, Class<T> type, List<T> items, String afterKey, String nextKey, int limit, boolean prefetch) {
+		this.manager = manager;
+		this.type = type;
+		this.items = Collections.unmodifiableList(items);
+		this.afterKey = afterKey;
+		this.nextKey = nextKey;
+		this.limit = limit;
+		this.prefetch = prefetch;
+	}
+	
+	/**
+	 * @return the objects on the page
+	 */
+	public List<T> getItems() {
+		return items;
+	}
+	
+	/**
+	 * @return the key the page starts after or null for the first page
+	 */
+	public String getAfterKey() {
+		return afterKey;
+	}
+	
+	/**
+	 * @return the key the next page starts after or null if this is the last page
+	 */
+	public String getNextKey() {
+		return nextKey;
+	}
+	
+	/**
+	 * @return true if there is another page
+	 */
+	public boolean hasNext() {
+		return nextKey != null;
+	}
+	
+	/**
+	 * @return the most objects a page has
+	 */
+	public int getLimit() {
+		return limit;
+	}
+	
+	void setNext(Future<Page<T>> next) {
+		this.next = next;
+	}
+	
+	/**
+	 * Gets the next page. If it was prefetched this waits for it, and if the prefetch failed the page is read again.
+	 * 
+	 * @return the next page or null if this is the last page
+	 */
+	public Page<T> next() {
+		if(!hasNext()) {
+			return null;
+		}
+		if(next != null) {
+			try {
+				Page<T> p = next.get();
+				if(p != null) {
+					if(prefetch && p.hasNext()) {
+						manager.prefetchNext(p, type);
+					}
+					return p;
+				}
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+			catch(ExecutionException e) {
+				// read it again below
+			}
+		}
+		return manager.getPage(type, nextKey, limit, prefetch);
+	}
+	
+	@Override
+	public Iterator<T> iterator() {
+		return items.iterator();
+	}
+	
+	@Override
+	public String toString() {
+		return "Page [type=" + type.getSimpleName() + ", afterKey=" + afterKey + ", nextKey=" + nextKey + ", size=" + items.size() + "]";
+	}
+}
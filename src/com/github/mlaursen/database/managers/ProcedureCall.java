@@ -0,0 +1,296 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.managers;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import com.github.mlaursen.database.concurrency.Priority;
+import com.github.mlaursen.database.metrics.EventSink;
+import com.github.mlaursen.database.metrics.Phase;
+import com.github.mlaursen.database.metrics.ProcedureMetrics;
+import com.github.mlaursen.database.objects.DatabaseObject;
+import com.github.mlaursen.database.objects.MyResultSet;
+import com.github.mlaursen.database.objects.Package;
+import com.github.mlaursen.database.objects.Procedure;
+import com.github.mlaursen.database.tracing.Operation;
+
+/**
+ * A single call to a stored procedure. It keeps the package the procedure belongs to, the procedure itself (when it is known), the full
+ * string that is placed inside of {call ...} and the parameters that will be bound.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class ProcedureCall {
+	
+	private String packageName;
+	private Procedure procedure;
+	private String call;
+	private Object[] parameters;
+	private Class<? extends DatabaseObject> type;
+	private Priority priority;
+	private long deadline;
+	private Boolean idempotent;
+	private Operation operation = Operation.CALL;
+	ProcedureMetrics metrics;
+	long[] phaseNanos;
+	long rows;
+	MyResultSet results;
+	boolean held;
+	
+	/**
+	 * Creates a call for a procedure in a package.
+	 * 
+	 * @param pkg
+	 *            The package that holds the procedure
+	 * @param procedureName
+	 *            The display name of the procedure to call
+	 * @param parameters
+	 *            The parameters to bind
+	 */
+	public ProcedureCall(Package pkg, String procedureName, Object... parameters) {
+		this(pkg.getName().toUpperCase(), pkg.getProcedure(procedureName), pkg.call(procedureName), parameters);
+	}
+	
+	/**
+	 * Creates a call for a procedure that is not in a package.
+	 * 
+	 * @param procedure
+	 *            The procedure to call
+	 * @param parameters
+	 *            The parameters to bind
+	 */
+	public ProcedureCall(Procedure procedure, Object... parameters) {
+		this(null, procedure, procedure.toString(), parameters);
+	}
+	
+	/**
+	 * Creates a call from an already formatted procedure string. The package name is everything before the first '.' if there is one.
+	 * 
+	 * @param call
+	 *            The full formatted procedure string. I.E. PERSON_PKG.GET(:PRIMARYKEY, :CURSOR)
+	 * @param parameters
+	 *            The parameters to bind
+	 */
+	public ProcedureCall(String call, Object... parameters) {
+		this(parsePackageName(call), null, call, parameters);
+	}
+	
+	/**
+	 * 
+	 * @param packageName
+	 *            The upper case package name or null
+	 * @param procedure
+	 *            The procedure or null
+	 * @param call
+	 *            The full formatted procedure string
+	 * @param parameters
+	 *            The parameters to bind
+	 */
+	public ProcedureCall(String packageName, Procedure procedure, String call, Object[] parameters) {
+		this.packageName = packageName;
+		this.procedure = procedure;
+		this.call = call;
+		this.parameters = parameters == null ? new Object[0] : parameters;
+	}
+	
+	/**
+	 * Gets the package name from a formatted procedure string
+	 * 
+	 * @param call
+	 *            The formatted procedure string
+	 * @return The upper case package name or null if the procedure is not in a package
+	 */
+	public static String parsePackageName(String call) {
+		int paren = call.indexOf('(');
+		int dot = call.indexOf('.');
+		return dot > 0 && (paren == -1 || dot < paren) ? call.substring(0, dot).toUpperCase() : null;
+	}
+	
+	/**
+	 * The key used for anything that is tracked per package. Procedures that are not in a package are tracked by their own name.
+	 * 
+	 * @return The package name or the procedure name
+	 */
+	public String getPackageKey() {
+		if(packageName != null) {
+			return packageName;
+		}
+		int paren = call.indexOf('(');
+		return (paren == -1 ? call : call.substring(0, paren)).toUpperCase();
+	}
+	
+	/**
+	 * @return the package name or null
+	 */
+	public String getPackageName() {
+		return packageName;
+	}
+	
+	/**
+	 * @return the procedure or null if the call was created from a string
+	 */
+	public Procedure getProcedure() {
+		return procedure;
+	}
+	
+	/**
+	 * @return the procedure's display name or the part of the call between the package and the parameters if the call was created from a
+	 *         string
+	 */
+	public String getProcedureName() {
+		if(procedure != null) {
+			return procedure.getDisplayName();
+		}
+		int paren = call.indexOf('(');
+		String name = paren == -1 ? call : call.substring(0, paren);
+		return name.substring(name.indexOf('.') + 1).toLowerCase();
+	}
+	
+	/**
+	 * @return the full formatted procedure string
+	 */
+	public String getCall() {
+		return call;
+	}
+	
+	/**
+	 * @return the parameters
+	 */
+	public Object[] getParameters() {
+		return parameters;
+	}
+	
+	/**
+	 * @return the DatabaseObject type the call is for or null
+	 */
+	public Class<? extends DatabaseObject> getType() {
+		return type;
+	}
+	
+	/**
+	 * @param type
+	 *            The DatabaseObject type the call is for
+	 * @return this call
+	 */
+	public ProcedureCall setType(Class<? extends DatabaseObject> type) {
+		this.type = type;
+		return this;
+	}
+	
+	/**
+	 * @return the operation the call is made for
+	 */
+	public Operation getOperation() {
+		return operation;
+	}
+	
+	/**
+	 * @param operation
+	 *            The operation the call is made for
+	 * @return this call
+	 */
+	public ProcedureCall setOperation(Operation operation) {
+		this.operation = operation;
+		return this;
+	}
+	
+	/**
+	 * @return the priority set for this call only or null
+	 */
+	public Priority getPriority() {
+		return priority;
+	}
+	
+	/**
+	 * @param priority
+	 *            The priority for this call only. This overrides every other way of setting a priority
+	 * @return this call
+	 */
+	public ProcedureCall setPriority(Priority priority) {
+		this.priority = priority;
+		return this;
+	}
+	
+	/**
+	 * @return the deadline in System.nanoTime() for this call only or 0 if there is none
+	 */
+	public long getDeadline() {
+		return deadline;
+	}
+	
+	/**
+	 * @param deadline
+	 *            The deadline in System.nanoTime() for this call only. The statement is cancelled when it passes
+	 * @return this call
+	 */
+	public ProcedureCall setDeadline(long deadline) {
+		this.deadline = deadline;
+		return this;
+	}
+	
+	/**
+	 * Sets the deadline to the timeout from now
+	 * 
+	 * @param timeout
+	 *            The amount of time the call has
+	 * @param unit
+	 *            The unit of the timeout
+	 * @return this call
+	 */
+	public ProcedureCall setTimeout(long timeout, TimeUnit unit) {
+		return setDeadline(CallContext.deadlineFromNow(timeout, unit));
+	}
+	
+	/**
+	 * A call is idempotent if it has been marked as idempotent or if its procedure is.
+	 * 
+	 * @return true if the call can be retried after a transient failure
+	 */
+	public boolean isIdempotent() {
+		return idempotent == null ? procedure != null && procedure.isIdempotent() : idempotent;
+	}
+	
+	/**
+	 * @param idempotent
+	 *            True if the call can be retried after a transient failure. This overrides the procedure
+	 * @return this call
+	 */
+	public ProcedureCall setIdempotent(boolean idempotent) {
+		this.idempotent = idempotent;
+		return this;
+	}
+	
+	/**
+	 * Gets the time the last attempt of the call spent in a phase. Phases are only timed per call while something needs them, like an
+	 * enabled {@link EventSink}.
+	 * 
+	 * @param phase
+	 *            The phase
+	 * @return The time in nanoseconds or 0 if phases were not timed
+	 */
+	public long getPhaseNanos(Phase phase) {
+		return phaseNanos == null ? 0 : phaseNanos[phase.ordinal()];
+	}
+	
+	/**
+	 * @return the number of rows the last attempt of the call returned or updated
+	 */
+	public long getRows() {
+		return rows;
+	}
+	
+	/**
+	 * @return the rows the last attempt of a cursor call returned or null
+	 */
+	public MyResultSet getResults() {
+		return results;
+	}
+	
+	@Override
+	public String toString() {
+		return "ProcedureCall [call=" + call + ", parameters=" + Arrays.toString(parameters) + "]";
+	}
+}
@@ -0,0 +1,378 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.managers;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.github.mlaursen.annotations.DatabaseReplicated;
+import com.github.mlaursen.database.concurrency.AdmissionController;
+import com.github.mlaursen.database.logging.ErrorCategory;
+import com.github.mlaursen.database.logging.ErrorLog;
+import com.github.mlaursen.database.objects.DatabaseObject;
+import com.github.mlaursen.database.objects.MyResultRow;
+import com.github.mlaursen.database.objects.MyResultSet;
+
+/**
+ * The in memory copy of a {@link DatabaseReplicated} type. The rows are kept in an immutable state that a refresh replaces in one write,
+ * so readers never lock and never see half of a refresh. Refreshes are serialized on their own lock and read the database outside of
+ * anything a reader waits on. There is one replica for each database and type in the JVM, kept for the same reason the limiters are
+ * shared in {@link AdmissionController#getShared}.
+ * 
+ * The objects are shared by every caller, so they have to be treated as read only. getAll returns a new list each time.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class Replica<T extends DatabaseObject> {
+	
+	private static final ConcurrentMap<String, ConcurrentMap<Class<?>, Replica<?>>> replicas =
+			new ConcurrentHashMap<String, ConcurrentMap<Class<?>, Replica<?>>>();
+	private static ScheduledThreadPoolExecutor timer;
+	
+	private final Class<T> type;
+	private final String key;
+	private final long refreshMillis;
+	private final int fullEvery;
+	private volatile ObjectManager manager;
+	private volatile State<T> state;
+	private final Object refreshLock = new Object();
+	private ScheduledFuture<?> task;
+	private int refreshes;
+	private volatile long fullLoads, deltaLoads, failures;
+	
+	private static class State<T> {
+		
+		private final Map<String, Entry<T>> byKey;
+		private final List<T> items;
+		private final List<String> colNames;
+		private final long since;
+		
+		private State(Map<String, Entry<T>> byKey, List<String> colNames, long since) {
+			this.byKey = byKey;
+			this.colNames = colNames;
+			this.since = since;
+			List<T> l = new ArrayList<T>(byKey.size());
+			for(Entry<T> e : byKey.values()) {
+				l.add(e.object);
+			}
+			this.items = Collections.unmodifiableList(l);
+		}
+	}
+	
+	private static class Entry<T> {
+		
+		private final MyResultRow row;
+		private final T object;
+		
+		private Entry(MyResultRow row, T object) {
+			this.row = row;
+			this.object = object;
+		}
+	}
+	
+	private Replica(ObjectManager manager, Class<T> type, String key) {
+		DatabaseReplicated r = type.getAnnotation(DatabaseReplicated.class);
+		this.manager = manager;
+		this.type = type;
+		this.key = key;
+		this.refreshMillis = TimeUnit.SECONDS.toMillis(Math.max(1, r.refresh()));
+		this.fullEvery = Math.max(1, r.fullEvery());
+	}
+	
+	private static synchronized ScheduledThreadPoolExecutor getTimer() {
+		if(timer == null) {
+			timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "db-replica");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			timer.setRemoveOnCancelPolicy(true);
+		}
+		return timer;
+	}
+	
+	/**
+	 * Gets the replica of a type for the manager's database and loads it the first time.
+	 * 
+	 * @param manager
+	 *            The manager asking
+	 * @param type
+	 *            The replicated type
+	 * @return The replica or null if the type is not replicated or has not been loaded yet because the database could not be read
+	 */
+	static <T extends DatabaseObject> Replica<T> forType(ObjectManager manager, Class<T> type) {
+		ConcurrentMap<Class<?>, Replica<?>> byType = getReplicas(manager);
+		@SuppressWarnings("unchecked")
+		Replica<T> r = (Replica<T>) byType.get(type);
+		if(r == null) {
+			if(!type.isAnnotationPresent(DatabaseReplicated.class)) {
+				return null;
+			}
+			Replica<T> created = new Replica<T>(manager, type, manager.getConnectionManager().databaseName + ":" + type.getName());
+			@SuppressWarnings("unchecked")
+			Replica<T> existing = (Replica<T>) byType.putIfAbsent(type, created);
+			r = existing == null ? created : existing;
+		}
+		return r.state != null || r.ensureLoaded(manager) ? r : null;
+	}
+	
+	/**
+	 * Gets the replicas for the manager's database by type, so a lookup does not build a key string
+	 * 
+	 * @param manager
+	 *            The manager asking
+	 * @return The replicas of the database
+	 */
+	private static ConcurrentMap<Class<?>, Replica<?>> getReplicas(ObjectManager manager) {
+		String databaseName = String.valueOf(manager.getConnectionManager().databaseName);
+		ConcurrentMap<Class<?>, Replica<?>> byType = replicas.get(databaseName);
+		if(byType == null) {
+			byType = new ConcurrentHashMap<Class<?>, Replica<?>>();
+			ConcurrentMap<Class<?>, Replica<?>> existing = replicas.putIfAbsent(databaseName, byType);
+			if(existing != null) {
+				byType = existing;
+			}
+		}
+		return byType;
+	}
+	
+	/**
+	 * Reloads the replica of a type if it has been loaded, after the type was changed through the manager. The reload is done before
+	 * the change returns so the caller reads its own write.
+	 * 
+	 * @param manager
+	 *            The manager that changed the type
+	 * @param type
+	 *            The type
+	 */
+	static void changed(ObjectManager manager, Class<?> type) {
+		Replica<?> r = getReplicas(manager).get(type);
+		if(r != null && r.state != null) {
+			r.reload();
+		}
+	}
+	
+	/**
+	 * Closes every replica so the next use of each type reads it again
+	 */
+	public static void clearAll() {
+		for(ConcurrentMap<Class<?>, Replica<?>> byType : replicas.values()) {
+			for(Replica<?> r : byType.values()) {
+				r.stop();
+			}
+		}
+		replicas.clear();
+	}
+	
+	private boolean ensureLoaded(ObjectManager manager) {
+		synchronized(refreshLock) {
+			if(state != null) {
+				return true;
+			}
+			this.manager = manager;
+			if(!refresh(true)) {
+				return false;
+			}
+		}
+		synchronized(this) {
+			if(task == null) {
+				task = getTimer().scheduleWithFixedDelay(new Runnable() {
+					
+					@Override
+					public void run() {
+						refresh();
+					}
+				}, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+			}
+		}
+		return true;
+	}
+	
+	private synchronized void stop() {
+		if(task != null) {
+			task.cancel(false);
+			task = null;
+		}
+	}
+	
+	/**
+	 * Refreshes the replica now. Every fullEvery refreshes the whole table is read and the others only read the rows changed since the
+	 * last refresh, with one refresh period of overlap so a clock that is a little off loses nothing.
+	 * 
+	 * @return False if the database could not be read, in which case the old rows are kept
+	 */
+	public boolean refresh() {
+		synchronized(refreshLock) {
+			return refresh(state == null || ++refreshes % fullEvery == 0);
+		}
+	}
+	
+	/**
+	 * Reads the whole table again. This is done after the type is changed through an ObjectManager.
+	 * 
+	 * @return False if the database could not be read, in which case the old rows are kept
+	 */
+	public boolean reload() {
+		synchronized(refreshLock) {
+			return refresh(true);
+		}
+	}
+	
+	/**
+	 * Reads the rows and publishes the new state. Only called while holding the refresh lock, which no reader ever waits on.
+	 * 
+	 * @param full
+	 *            True to read the whole table
+	 * @return False if the database could not be read
+	 */
+	private boolean refresh(boolean full) {
+		State<T> old = state;
+		full = full || !manager.canReadChanges(type);
+		long start = System.currentTimeMillis();
+		Timestamp since = full || old == null ? null : new Timestamp(old.since - refreshMillis);
+		MyResultSet rows = manager.readReplica(type, since);
+		if(rows == null) {
+			failures++;
+			return false;
+		}
+		Map<String, Entry<T>> byKey = full ? new LinkedHashMap<String, Entry<T>>() : new LinkedHashMap<String, Entry<T>>(old.byKey);
+		try {
+			for(MyResultRow r : rows) {
+				T o = r.construct(type);
+				byKey.put(o.getPrimaryKey(), new Entry<T>(r, o));
+			}
+		}
+		catch(RuntimeException e) {
+			ErrorLog.report(ErrorCategory.MAPPING, "The replica of " + type.getName() + " could not be refreshed.", e);
+			failures++;
+			return false;
+		}
+		state = new State<T>(Collections.unmodifiableMap(byKey), rows.getColNames(), start);
+		if(full) {
+			fullLoads++;
+		}
+		else {
+			deltaLoads++;
+		}
+		return true;
+	}
+	
+	/**
+	 * @return the replicated type
+	 */
+	public Class<T> getType() {
+		return type;
+	}
+	
+	/**
+	 * @param primaryKey
+	 *            The primary key
+	 * @return the object or null
+	 */
+	public T get(String primaryKey) {
+		Entry<T> e = state.byKey.get(primaryKey);
+		return e == null ? null : e.object;
+	}
+	
+	/**
+	 * @return every object in the order they were read
+	 */
+	public List<T> getAll() {
+		return new ArrayList<T>(state.items);
+	}
+	
+	/**
+	 * Filters the objects by the columns of the filter procedure the same way the procedure would with plain equality, where a null
+	 * value matches everything.
+	 * 
+	 * @param names
+	 *            The names of the filter procedure's parameters, which are the column names
+	 * @param values
+	 *            The values to match
+	 * @return The matching objects or null if a column is not in the rows, in which case the database has to be asked
+	 */
+	public List<T> filter(String[] names, Object[] values) {
+		State<T> s = state;
+		int n = Math.min(names.length, values.length);
+		List<String> cols = new ArrayList<String>();
+		List<String> match = new ArrayList<String>();
+		for(int i = 0; i < n; i++) {
+			if(values[i] != null) {
+				String c = names[i].toLowerCase();
+				if(s.colNames == null || !s.colNames.contains(c)) {
+					return null;
+				}
+				cols.add(c);
+				match.add(values[i] instanceof DatabaseObject ? ((DatabaseObject) values[i]).getPrimaryKey() : String.valueOf(values[i]));
+			}
+		}
+		List<T> l = new ArrayList<T>();
+		for(Entry<T> e : s.byKey.values()) {
+			boolean matches = true;
+			for(int i = 0; i < cols.size() && matches; i++) {
+				matches = match.get(i).equals(e.row.get(cols.get(i)));
+			}
+			if(matches) {
+				l.add(e.object);
+			}
+		}
+		return l;
+	}
+	
+	/**
+	 * @return the number of objects
+	 */
+	public int size() {
+		return state.items.size();
+	}
+	
+	/**
+	 * @return when the last refresh started in System.currentTimeMillis()
+	 */
+	public long getRefreshedAt() {
+		return state.since;
+	}
+	
+	/**
+	 * @return the number of times the whole table was read
+	 */
+	public long getFullLoads() {
+		return fullLoads;
+	}
+	
+	/**
+	 * @return the number of times only the changed rows were read
+	 */
+	public long getDeltaLoads() {
+		return deltaLoads;
+	}
+	
+	/**
+	 * @return the number of refreshes that failed
+	 */
+	public long getFailures() {
+		return failures;
+	}
+	
+	@Override
+	public String toString() {
+		return "Replica [key=" + key + ", size=" + size() + ", fullLoads=" + fullLoads + ", deltaLoads=" + deltaLoads + ", failures="
+				+ failures + "]";
+	}
+}
@@ -0,0 +1,124 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.managers;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.github.mlaursen.database.objects.DatabaseObject;
+
+/**
+ * Every object of a type that was loaded from a local snapshot file at startup and is refreshed from the database in the background. See
+ * {@link ObjectManager#openSnapshot(Class, File)}.
+ * 
+ * <pre>
+ * Snapshot&lt;JobType&gt; types = manager.openSnapshot(JobType.class, new File(&quot;cache/jobtype.snap&quot;));
+ * List&lt;JobType&gt; l = types.getItems();
+ * </pre>
+ * 
+ * The items are swapped for the database rows once the refresh finishes, so a caller that wants the current rows reads getItems() again
+ * instead of keeping the list.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class Snapshot<T extends DatabaseObject> {
+	
+	private final Class<T> type;
+	private final File file;
+	private volatile List<T> items = Collections.emptyList();
+	private volatile boolean fromFile;
+	private volatile long loadedAt;
+	private Future<Boolean> refresh;
+	
+	/**
+	 * 
+	 * @param type
+	 *            The DatabaseObject type
+	 * @param file
+	 *            The snapshot file
+	 */
+	Snapshot(Class<T> type, File file) {
+		this.type = type;
+		this.file = file;
+	}
+	
+	/**
+	 * @return the DatabaseObject type
+	 */
+	public Class<T> getType() {
+		return type;
+	}
+	
+	/**
+	 * @return the snapshot file
+	 */
+	public File getFile() {
+		return file;
+	}
+	
+	/**
+	 * @return the objects, which are the snapshot's until the refresh finishes
+	 */
+	public List<T> getItems() {
+		return items;
+	}
+	
+	/**
+	 * @return true if the items are still the ones loaded from the file
+	 */
+	public boolean isFromFile() {
+		return fromFile;
+	}
+	
+	/**
+	 * @return when the items were last swapped in System.currentTimeMillis()
+	 */
+	public long getLoadedAt() {
+		return loadedAt;
+	}
+	
+	void setItems(List<T> items, boolean fromFile) {
+		this.items = Collections.unmodifiableList(items);
+		this.fromFile = fromFile;
+		this.loadedAt = System.currentTimeMillis();
+	}
+	
+	synchronized void setRefresh(Future<Boolean> refresh) {
+		this.refresh = refresh;
+	}
+	
+	/**
+	 * Waits for the background refresh
+	 * 
+	 * @return True if the items were refreshed from the database, and false if the refresh failed or there was none
+	 */
+	public boolean awaitRefresh() {
+		Future<Boolean> f;
+		synchronized(this) {
+			f = refresh;
+		}
+		if(f == null) {
+			return !fromFile;
+		}
+		try {
+			return f.get();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		catch(ExecutionException e) {
+			return false;
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "Snapshot [type=" + type.getSimpleName() + ", file=" + file + ", size=" + items.size() + ", fromFile=" + fromFile + "]";
+	}
+}
@@ -0,0 +1,333 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.metrics;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.github.mlaursen.database.logging.ErrorCategory;
+import com.github.mlaursen.database.logging.ErrorLog;
+import com.github.mlaursen.database.logging.RollingFileWriter;
+import com.github.mlaursen.database.utils.LocalSettings;
+
+/**
+ * An optional mode that counts the bytes allocated and the reflective calls made while mapping, for each package, procedure and
+ * {@link MappingStage}. Bytes are read from the per-thread allocation counter of the JVM's ThreadMXBean before and after each stage, so
+ * they include everything the thread allocated in between. CONSTRUCT includes the SET_ALL it triggers.
+ * 
+ * Accounting is off by default and costs a volatile read per stage while it is off. Stages that run outside of an ObjectManager call, like
+ * a MyResultSet.toListOf made by hand, are recorded under {@link #UNATTRIBUTED}.
+ * 
+ * <pre>
+ * alloc.enabled=true
+ * alloc.report=60000
+ * alloc.top=10
+ * alloc.file=logs/allocations.log
+ * </pre>
+ * 
+ * @author mlaursen
+ * 
+ */
+public class AllocationAccounting {
+	
+	public static final String UNATTRIBUTED = "(none)";
+	public static final int DEF_TOP = 10;
+	
+	private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	private static final ConcurrentMap<String, ConcurrentMap<String, AllocationStats[]>> packages =
+			new ConcurrentHashMap<String, ConcurrentMap<String, AllocationStats[]>>();
+	private static final ThreadLocal<String[]> current = new ThreadLocal<String[]>() {
+		
+		@Override
+		protected String[] initialValue() {
+			return new String[2];
+		}
+	};
+	private static volatile boolean enabled;
+	private static boolean configured;
+	private static Timer timer;
+	
+	private AllocationAccounting() {}
+	
+	/**
+	 * Turns accounting on and starts the periodic report from the properties. Does nothing unless alloc.enabled is true, and only the first
+	 * properties with it turned on are used. The report is only written when alloc.file is set; without it the stats can still be read
+	 * with {@link #report(int)}.
+	 * 
+	 * @param properties
+	 *            The local settings
+	 */
+	public static synchronized void fromProperties(Properties properties) {
+		if(configured || !"true".equalsIgnoreCase(properties.getProperty(LocalSettings.ALLOC_ENABLED))) {
+			return;
+		}
+		configured = true;
+		setEnabled(true);
+		String path = properties.getProperty(LocalSettings.ALLOC_FILE);
+		if(path != null && !path.trim().isEmpty()) {
+			startReport(LocalSettings.getLong(properties, LocalSettings.ALLOC_REPORT, 0), LocalSettings.getInt(properties,
+					LocalSettings.ALLOC_TOP, DEF_TOP), new RollingFileWriter(new File(path.trim())));
+		}
+	}
+	
+	/**
+	 * @return true if accounting is on
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	 * Turns accounting on or off. It stays off if the JVM can not count the bytes allocated by a thread.
+	 * 
+	 * @param enabled
+	 *            True to turn accounting on
+	 * @return True if accounting is on
+	 */
+	public static boolean setEnabled(boolean enabled) {
+		if(enabled && !isSupported()) {
+			ErrorLog.report(ErrorCategory.MAPPING, "This JVM can not count the bytes allocated by a thread. Allocation accounting is off.",
+					null);
+			enabled = false;
+		}
+		AllocationAccounting.enabled = enabled;
+		return enabled;
+	}
+	
+	private static boolean isSupported() {
+		if(!(threads instanceof com.sun.management.ThreadMXBean)) {
+			return false;
+		}
+		com.sun.management.ThreadMXBean t = (com.sun.management.ThreadMXBean) threads;
+		if(t.isThreadAllocatedMemorySupported() && !t.isThreadAllocatedMemoryEnabled()) {
+			t.setThreadAllocatedMemoryEnabled(true);
+		}
+		return t.isThreadAllocatedMemorySupported();
+	}
+	
+	/**
+	 * Starts a stage
+	 * 
+	 * @return The bytes the current thread has allocated so far or -1 if accounting is off
+	 */
+	public static long start() {
+		return enabled ? ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+	}
+	
+	/**
+	 * Sets the procedure that stages on this thread are recorded for until {@link #exit()}. Does nothing if accounting is off.
+	 * 
+	 * @param packageName
+	 *            The package name or the procedure name if it is not in a package
+	 * @param procedureName
+	 *            The procedure display name
+	 */
+	public static void enter(String packageName, String procedureName) {
+		if(enabled) {
+			String[] c = current.get();
+			c[0] = packageName;
+			c[1] = procedureName;
+		}
+	}
+	
+	/**
+	 * Stops recording stages on this thread for the procedure set with {@link #enter(String, String)}
+	 */
+	public static void exit() {
+		if(enabled) {
+			String[] c = current.get();
+			c[0] = null;
+			c[1] = null;
+		}
+	}
+	
+	/**
+	 * Finishes a stage for the procedure set with {@link #enter(String, String)}
+	 * 
+	 * @param stage
+	 *            The mapping stage
+	 * @param start
+	 *            What {@link #start()} returned
+	 * @param reflective
+	 *            The number of reflective calls made
+	 * @param rows
+	 *            The number of rows or objects handled
+	 */
+	public static void record(MappingStage stage, long start, long reflective, long rows) {
+		if(start >= 0) {
+			String[] c = current.get();
+			record(c[0] == null ? UNATTRIBUTED : c[0], c[1] == null ? UNATTRIBUTED : c[1], stage, start, reflective, rows);
+		}
+	}
+	
+	/**
+	 * Finishes a stage for a procedure
+	 * 
+	 * @param packageName
+	 *            The package name or the procedure name if it is not in a package
+	 * @param procedureName
+	 *            The procedure display name
+	 * @param stage
+	 *            The mapping stage
+	 * @param start
+	 *            What {@link #start()} returned
+	 * @param reflective
+	 *            The number of reflective calls made
+	 * @param rows
+	 *            The number of rows or objects handled
+	 */
+	public static void record(String packageName, String procedureName, MappingStage stage, long start, long reflective, long rows) {
+		if(start >= 0) {
+			long bytes = start() - start;
+			get(packageName, procedureName, stage).record(Math.max(0, bytes), reflective, rows);
+		}
+	}
+	
+	/**
+	 * Gets the stats for a stage of a procedure. They are created the first time they are needed.
+	 * 
+	 * @param packageName
+	 *            The package name or the procedure name if it is not in a package
+	 * @param procedureName
+	 *            The procedure display name
+	 * @param stage
+	 *            The mapping stage
+	 * @return The stats
+	 */
+	public static AllocationStats get(String packageName, String procedureName, MappingStage stage) {
+		ConcurrentMap<String, AllocationStats[]> procedures = packages.get(packageName);
+		if(procedures == null) {
+			procedures = new ConcurrentHashMap<String, AllocationStats[]>();
+			ConcurrentMap<String, AllocationStats[]> existing = packages.putIfAbsent(packageName, procedures);
+			if(existing != null) {
+				procedures = existing;
+			}
+		}
+		AllocationStats[] stages = procedures.get(procedureName);
+		if(stages == null) {
+			stages = new AllocationStats[MappingStage.values().length];
+			for(MappingStage s : MappingStage.values()) {
+				stages[s.ordinal()] = new AllocationStats(packageName, procedureName, s);
+			}
+			AllocationStats[] existing = procedures.putIfAbsent(procedureName, stages);
+			if(existing != null) {
+				stages = existing;
+			}
+		}
+		return stages[stage.ordinal()];
+	}
+	
+	/**
+	 * @return every stage of every procedure that has allocated something
+	 */
+	public static List<AllocationStats> snapshot() {
+		List<AllocationStats> l = new ArrayList<AllocationStats>();
+		for(ConcurrentMap<String, AllocationStats[]> procedures : packages.values()) {
+			for(AllocationStats[] stages : procedures.values()) {
+				for(AllocationStats s : stages) {
+					if(s.getCount() > 0) {
+						l.add(s);
+					}
+				}
+			}
+		}
+		return l;
+	}
+	
+	/**
+	 * Gets the stages that allocated the most bytes
+	 * 
+	 * @param n
+	 *            The number of stages
+	 * @return The top n stages, with the most bytes first
+	 */
+	public static List<AllocationStats> top(int n) {
+		List<AllocationStats> l = snapshot();
+		Collections.sort(l, new Comparator<AllocationStats>() {
+			
+			@Override
+			public int compare(AllocationStats a, AllocationStats b) {
+				return Long.compare(b.getBytes(), a.getBytes());
+			}
+		});
+		return l.size() > n ? new ArrayList<AllocationStats>(l.subList(0, n)) : l;
+	}
+	
+	/**
+	 * Formats the top n stages as a table
+	 * 
+	 * @param n
+	 *            The number of stages
+	 * @return The report
+	 */
+	public static String report(int n) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%-40s %-10s %10s %14s %10s %12s %12s", "procedure", "stage", "count", "bytes", "rows", "bytes/row",
+				"reflective"));
+		for(AllocationStats s : top(n)) {
+			sb.append(String.format("%n%-40s %-10s %10d %14d %10d %12d %12d", s.getPackageName() + "." + s.getProcedureName(), s.getStage(),
+					s.getCount(), s.getBytes(), s.getRows(), s.getBytesPerRow(), s.getReflective()));
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Writes the top n stages every period and then resets them, so each report covers only the last period. Any report that was already
+	 * started is stopped.
+	 * 
+	 * @param periodMillis
+	 *            How often to report or 0 to stop reporting
+	 * @param n
+	 *            The number of stages in each report
+	 * @param writer
+	 *            Where to write the report. Nothing is reported without one
+	 */
+	public static synchronized void startReport(long periodMillis, final int n, final RollingFileWriter writer) {
+		if(timer != null) {
+			timer.cancel();
+			timer = null;
+		}
+		if(periodMillis <= 0 || writer == null) {
+			return;
+		}
+		timer = new Timer("db-allocation-report", true);
+		timer.scheduleAtFixedRate(new TimerTask() {
+			
+			@Override
+			public void run() {
+				if(snapshot().isEmpty()) {
+					return;
+				}
+				String report = report(n);
+				reset();
+				for(String line : report.split(String.format("%n"))) {
+					writer.write(line);
+				}
+			}
+		}, periodMillis, periodMillis);
+	}
+	
+	/**
+	 * Sets every stat back to 0
+	 */
+	public static void reset() {
+		for(ConcurrentMap<String, AllocationStats[]> procedures : packages.values()) {
+			for(AllocationStats[] stages : procedures.values()) {
+				for(AllocationStats s : stages) {
+					s.reset();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The bytes allocated and reflective calls made by one {@link MappingStage} of one procedure.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class AllocationStats {
+	
+	private final String packageName, procedureName;
+	private final MappingStage stage;
+	private final AtomicLong count = new AtomicLong(), bytes = new AtomicLong(), reflective = new AtomicLong(),
+			rows = new AtomicLong();
+	
+	/**
+	 * 
+	 * @param packageName
+	 *            The package name or the procedure name if it is not in a package
+	 * @param procedureName
+	 *            The procedure display name
+	 * @param stage
+	 *            The mapping stage
+	 */
+	public AllocationStats(String packageName, String procedureName, MappingStage stage) {
+		this.packageName = packageName;
+		this.procedureName = procedureName;
+		this.stage = stage;
+	}
+	
+	/**
+	 * Records one run of the stage
+	 * 
+	 * @param bytes
+	 *            The bytes the thread allocated
+	 * @param reflective
+	 *            The number of reflective calls made
+	 * @param rows
+	 *            The number of rows or objects handled
+	 */
+	public void record(long bytes, long reflective, long rows) {
+		count.incrementAndGet();
+		this.bytes.addAndGet(bytes);
+		this.reflective.addAndGet(reflective);
+		this.rows.addAndGet(rows);
+	}
+	
+	/**
+	 * Sets every count back to 0
+	 */
+	public void reset() {
+		count.set(0);
+		bytes.set(0);
+		reflective.set(0);
+		rows.set(0);
+	}
+	
+	/**
+	 * @return the package name or the procedure name if it is not in a package
+	 */
+	public String getPackageName() {
+		return packageName;
+	}
+	
+	/**
+	 * @return the procedure display name
+	 */
+	public String getProcedureName() {
+		return procedureName;
+	}
+	
+	/**
+	 * @return the mapping stage
+	 */
+	public MappingStage getStage() {
+		return stage;
+	}
+	
+	/**
+	 * @return the number of times the stage ran
+	 */
+	public long getCount() {
+		return count.get();
+	}
+	
+	/**
+	 * @return the total bytes allocated
+	 */
+	public long getBytes() {
+		return bytes.get();
+	}
+	
+	/**
+	 * @return the total number of reflective calls
+	 */
+	public long getReflective() {
+		return reflective.get();
+	}
+	
+	/**
+	 * @return the total number of rows or objects handled
+	 */
+	public long getRows() {
+		return rows.get();
+	}
+	
+	/**
+	 * @return the average bytes allocated for each row or 0 if there have been no rows
+	 */
+	public long getBytesPerRow() {
+		long r = rows.get();
+		return r == 0 ? 0 : bytes.get() / r;
+	}
+	
+	@Override
+	public String toString() {
+		return packageName + "." + procedureName + " " + stage + ": count=" + getCount() + ", bytes=" + getBytes() + ", rows=" + getRows()
+				+ ", bytesPerRow=" + getBytesPerRow() + ", reflective=" + getReflective();
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.github.mlaursen.database.logging.ErrorCategory;
+import com.github.mlaursen.database.logging.ErrorLog;
+
+/**
+ * Counts the connections the ConnectionManagers have open. There is no connection pool, so this is how busy the database is from this
+ * JVM's side: every call holds one connection from borrow until it is closed, and the priority lanes cap how many can be open at once. The
+ * default instance is registered as the MBean com.github.mlaursen.database:type=Connections.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class ConnectionMetrics implements ConnectionMetricsMBean {
+	
+	private static ConnectionMetrics defaultMetrics;
+	
+	private final AtomicInteger open = new AtomicInteger(), peak = new AtomicInteger();
+	private final AtomicLong opened = new AtomicLong();
+	private volatile int capacity;
+	
+	/**
+	 * The metrics every ConnectionManager records to. They are registered with the platform MBean server.
+	 * 
+	 * @return The default metrics
+	 */
+	public static synchronized ConnectionMetrics getDefault() {
+		if(defaultMetrics == null) {
+			defaultMetrics = new ConnectionMetrics();
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				ObjectName name = getObjectName();
+				if(!server.isRegistered(name)) {
+					server.registerMBean(defaultMetrics, name);
+				}
+			}
+			catch(JMException | SecurityException e) {
+				ErrorLog.report(ErrorCategory.CONNECTION, "Could not register the connection metrics with JMX.", e);
+			}
+		}
+		return defaultMetrics;
+	}
+	
+	/**
+	 * @return the name the default metrics are registered with
+	 * @throws JMException
+	 *             If the name is not valid
+	 */
+	public static ObjectName getObjectName() throws JMException {
+		return new ObjectName(MetricsRegistry.DOMAIN + ":type=Connections");
+	}
+	
+	/**
+	 * A connection was opened
+	 */
+	public void opened() {
+		opened.incrementAndGet();
+		int n = open.incrementAndGet();
+		int p = peak.get();
+		while(n > p && !peak.compareAndSet(p, n)) {
+			p = peak.get();
+		}
+	}
+	
+	/**
+	 * A connection that was opened has been closed
+	 */
+	public void closed() {
+		open.decrementAndGet();
+	}
+	
+	/**
+	 * @param capacity
+	 *            The number of connections that can be open at once
+	 */
+	public void setCapacity(int capacity) {
+		this.capacity = capacity;
+	}
+	
+	@Override
+	public int getOpen() {
+		return open.get();
+	}
+	
+	@Override
+	public int getPeak() {
+		return peak.get();
+	}
+	
+	@Override
+	public long getOpened() {
+		return opened.get();
+	}
+	
+	@Override
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	@Override
+	public double getUtilisation() {
+		int c = capacity;
+		return c == 0 ? 0 : 100.0 * open.get() / c;
+	}
+	
+	@Override
+	public void reset() {
+		peak.set(open.get());
+		opened.set(0);
+	}
+	
+	@Override
+	public String toString() {
+		return "ConnectionMetrics [open=" + getOpen() + ", peak=" + getPeak() + ", capacity=" + getCapacity() + ", opened=" + getOpened()
+				+ "]";
+	}
+}
@@ -0,0 +1,43 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.metrics;
+
+/**
+ * The JMX view of {@link ConnectionMetrics}.
+ * 
+ * @author mlaursen
+ * 
+ */
+public interface ConnectionMetricsMBean {
+	
+	/**
+	 * @return the number of connections that are open right now
+	 */
+	int getOpen();
+	
+	/**
+	 * @return the most connections that have been open at once
+	 */
+	int getPeak();
+	
+	/**
+	 * @return the total number of connections that have been opened
+	 */
+	long getOpened();
+	
+	/**
+	 * @return the number of connections the priority lanes allow at once
+	 */
+	int getCapacity();
+	
+	/**
+	 * @return open / capacity as a percent
+	 */
+	double getUtilisation();
+	
+	/**
+	 * Resets the peak and the totals
+	 */
+	void reset();
+}
@@ -0,0 +1,108 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.metrics;
+
+/**
+ * Receives an event for every procedure call and every mapping of rows to DatabaseObjects. This is how calls are sent to a profiler
+ * such as Java Flight Recorder so database waits can be lined up with GC and thread events. Nothing is built for a sink unless
+ * {@link #isEnabled()} returns true, so it should be cheap and reflect if anything is recording right now.
+ * 
+ * @author mlaursen
+ * 
+ */
+public interface EventSink {
+	
+	/**
+	 * @return true if events should be built and sent right now
+	 */
+	boolean isEnabled();
+	
+	/**
+	 * A procedure call was admitted and is about to borrow its connection
+	 * 
+	 * @param packageName
+	 *            The package name or the procedure name if it is not in a package
+	 * @param procedureName
+	 *            The procedure display name
+	 * @return Anything the sink wants back in callFinished, like an event that has been started. Can be null
+	 */
+	Object callStarted(String packageName, String procedureName);
+	
+	/**
+	 * A procedure call finished
+	 * 
+	 * @param context
+	 *            What callStarted returned
+	 * @param packageName
+	 *            The package name or the procedure name if it is not in a package
+	 * @param procedureName
+	 *            The procedure display name
+	 * @param parameters
+	 *            The number of parameters that were bound
+	 * @param rows
+	 *            The number of rows returned or updated
+	 * @param phaseNanos
+	 *            The time spent in each {@link Phase}, indexed by the phase's ordinal
+	 * @param nanos
+	 *            How long the whole call took
+	 * @param failed
+	 *            True if the call failed
+	 */
+	void callFinished(Object context, String packageName, String procedureName, int parameters, long rows, long[] phaseNanos, long nanos,
+			boolean failed);
+	
+	/**
+	 * The rows from a procedure call are about to be turned into DatabaseObjects
+	 * 
+	 * @param packageName
+	 *            The package name or the procedure name if it is not in a package
+	 * @param procedureName
+	 *            The procedure display name
+	 * @param type
+	 *            The DatabaseObject class
+	 * @return Anything the sink wants back in resultMapped. Can be null
+	 */
+	Object resultMappingStarted(String packageName, String procedureName, Class<?> type);
+	
+	/**
+	 * The rows from a procedure call were turned into DatabaseObjects
+	 * 
+	 * @param context
+	 *            What resultMappingStarted returned or null if the sink was not enabled when mapping started
+	 * @param packageName
+	 *            The package name or the procedure name if it is not in a package
+	 * @param procedureName
+	 *            The procedure display name
+	 * @param type
+	 *            The DatabaseObject class
+	 * @param rows
+	 *            The number of rows mapped
+	 * @param nanos
+	 *            How long it took
+	 */
+	void resultMapped(Object context, String packageName, String procedureName, Class<?> type, int rows, long nanos);
+	
+	/**
+	 * A DatabaseObject's setters are about to be called by reflection
+	 * 
+	 * @param type
+	 *            The DatabaseObject class
+	 * @return Anything the sink wants back in objectMapped. Can be null
+	 */
+	Object objectMappingStarted(Class<?> type);
+	
+	/**
+	 * A DatabaseObject's setters were called by reflection
+	 * 
+	 * @param context
+	 *            What objectMappingStarted returned
+	 * @param type
+	 *            The DatabaseObject class
+	 * @param setters
+	 *            The number of setters that were invoked
+	 * @param nanos
+	 *            How long it took, including finding the setters
+	 */
+	void objectMapped(Object context, Class<?> type, int setters, long nanos);
+}
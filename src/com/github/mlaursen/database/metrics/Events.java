@@ -0,0 +1,57 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.metrics;
+
+/**
+ * Holds the {@link EventSink} that calls are reported to. There is no sink by default, and checking for one is a single volatile read.
+ * 
+ * <pre>
+ * EventSink sink = Events.getEnabledSink();
+ * Object context = sink == null ? null : sink.objectMappingStarted(getClass());
+ * ...
+ * if(sink != null) {
+ * 	sink.objectMapped(context, getClass(), setters, System.nanoTime() - start);
+ * }
+ * </pre>
+ * 
+ * @author mlaursen
+ * 
+ */
+public class Events {
+	
+	private static volatile EventSink sink;
+	
+	private Events() {}
+	
+	/**
+	 * @return true if there is a sink and it is enabled
+	 */
+	public static boolean isEnabled() {
+		EventSink s = sink;
+		return s != null && s.isEnabled();
+	}
+	
+	/**
+	 * @return the sink if it is enabled, otherwise null
+	 */
+	public static EventSink getEnabledSink() {
+		EventSink s = sink;
+		return s != null && s.isEnabled() ? s : null;
+	}
+	
+	/**
+	 * @return the sink or null
+	 */
+	public static EventSink getSink() {
+		return sink;
+	}
+	
+	/**
+	 * @param sink
+	 *            The sink to send events to or null to stop sending them
+	 */
+	public static void setSink(EventSink sink) {
+		Events.sink = sink;
+	}
+}
@@ -0,0 +1,188 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free latency histogram with log-linear buckets, the same layout HdrHistogram uses. Every power of two is split into 16 linear
+ * buckets, so a recorded value is off by at most 1/16th (6.25%) no matter how large it is. Recording is a couple of atomic increments and
+ * never allocates.
+ * 
+ * Values are in nanoseconds and anything larger than 2^40 nanoseconds (about 18 minutes) is put in the last bucket.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class LatencyHistogram {
+	
+	private static final int SUB_BUCKET_BITS = 4, SUB_BUCKETS = 1 << SUB_BUCKET_BITS, MAX_EXPONENT = 40;
+	static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+	
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong(), sum = new AtomicLong(), max = new AtomicLong();
+	
+	/**
+	 * Gets the bucket for a value
+	 * 
+	 * @param value
+	 *            The value in nanoseconds
+	 * @return The bucket index
+	 */
+	static int bucketOf(long value) {
+		if(value < SUB_BUCKETS) {
+			return value < 0 ? 0 : (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if(exponent > MAX_EXPONENT) {
+			return BUCKETS - 1;
+		}
+		int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+	}
+	
+	/**
+	 * Gets the largest value that is put in a bucket
+	 * 
+	 * @param bucket
+	 *            The bucket index
+	 * @return The largest value in nanoseconds
+	 */
+	static long highestValueOf(int bucket) {
+		if(bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1, sub = bucket % SUB_BUCKETS;
+		return ((long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+	
+	/**
+	 * Records a value
+	 * 
+	 * @param nanos
+	 *            The value in nanoseconds
+	 */
+	public void record(long nanos) {
+		counts.incrementAndGet(bucketOf(nanos));
+		count.incrementAndGet();
+		sum.addAndGet(nanos);
+		long m = max.get();
+		while(nanos > m && !max.compareAndSet(m, nanos)) {
+			m = max.get();
+		}
+	}
+	
+	/**
+	 * @return the number of values recorded
+	 */
+	public long getCount() {
+		return count.get();
+	}
+	
+	/**
+	 * Copies the histogram. Values that are recorded while the copy is being made might only be partly in it.
+	 * 
+	 * @return A snapshot of the histogram
+	 */
+	public Snapshot snapshot() {
+		long[] c = new long[BUCKETS];
+		long total = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			c[i] = counts.get(i);
+			total += c[i];
+		}
+		return new Snapshot(c, total, sum.get(), max.get());
+	}
+	
+	/**
+	 * Clears every recorded value
+	 */
+	public void reset() {
+		for(int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+	
+	/**
+	 * A copy of a histogram at one point in time
+	 * 
+	 * @author mlaursen
+	 * 
+	 */
+	public static class Snapshot {
+		
+		private final long[] counts;
+		private final long count, sum, max;
+		
+		private Snapshot(long[] counts, long count, long sum, long max) {
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+			this.max = max;
+		}
+		
+		/**
+		 * @return the number of values recorded
+		 */
+		public long getCount() {
+			return count;
+		}
+		
+		/**
+		 * @return the largest value recorded in nanoseconds
+		 */
+		public long getMax() {
+			return max;
+		}
+		
+		/**
+		 * @return the mean in nanoseconds or 0 if nothing was recorded
+		 */
+		public long getMean() {
+			return count == 0 ? 0 : sum / count;
+		}
+		
+		/**
+		 * Gets a percentile. The value is the top of the bucket the percentile falls in, so it is never lower than the real value.
+		 * 
+		 * @param percentile
+		 *            The percentile between 0 and 100
+		 * @return The value in nanoseconds or 0 if nothing was recorded
+		 */
+		public long getPercentile(double percentile) {
+			if(count == 0) {
+				return 0;
+			}
+			long target = Math.max(1, (long) Math.ceil(count * Math.min(100, percentile) / 100));
+			long seen = 0;
+			for(int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if(seen >= target) {
+					return Math.min(highestValueOf(i), max);
+				}
+			}
+			return max;
+		}
+		
+		/**
+		 * @param percentile
+		 *            The percentile between 0 and 100
+		 * @return the percentile in milliseconds
+		 */
+		public double getPercentileMillis(double percentile) {
+			return getPercentile(percentile) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+		}
+		
+		@Override
+		public String toString() {
+			return "count=" + count + ", mean=" + getMean() / 1000 + "us, p50=" + getPercentile(50) / 1000 + "us, p99="
+					+ getPercentile(99) / 1000 + "us, max=" + max / 1000 + "us";
+		}
+	}
+}
@@ -0,0 +1,34 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.metrics;
+
+/**
+ * The parts of the mapping pipeline that {@link AllocationAccounting} measures.
+ * 
+ * @author mlaursen
+ * 
+ */
+public enum MappingStage {
+	/**
+	 * MyResultSet.toMyResultSet reading a cursor into rows of Strings
+	 */
+	RESULT_SET,
+	/**
+	 * MyResultRow.construct creating DatabaseObjects. This includes their setAll
+	 */
+	CONSTRUCT,
+	/**
+	 * DatabaseObject.setAll calling every setter that takes a MyResultRow
+	 */
+	SET_ALL,
+	/**
+	 * Reading the DatabaseField and MultipleDatabaseField values of an object into procedure parameters
+	 */
+	PARAMETERS;
+	
+	@Override
+	public String toString() {
+		return name().toLowerCase();
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.github.mlaursen.database.logging.ErrorCategory;
+import com.github.mlaursen.database.logging.ErrorLog;
+
+/**
+ * Keeps the {@link ProcedureMetrics} for every package and procedure that has been called. Every ProcedureMetrics is registered as an
+ * MBean named com.github.mlaursen.database:type=ProcedureMetrics,package=PERSON_PKG,procedure=get the first time it is seen, unless
+ * registering was turned off.
+ * 
+ * <pre>
+ * for(ProcedureMetrics m : MetricsRegistry.getDefault().snapshot()) {
+ * 	System.out.println(m);
+ * }
+ * </pre>
+ * 
+ * @author mlaursen
+ * 
+ */
+public class MetricsRegistry {
+	
+	public static final String DOMAIN = "com.github.mlaursen.database";
+	
+	private static MetricsRegistry defaultRegistry;
+	
+	private final ConcurrentMap<String, ConcurrentMap<String, ProcedureMetrics>> packages =
+			new ConcurrentHashMap<String, ConcurrentMap<String, ProcedureMetrics>>();
+	private final boolean jmx;
+	
+	/**
+	 * Creates a registry that does not register anything with JMX
+	 */
+	public MetricsRegistry() {
+		this(false);
+	}
+	
+	/**
+	 * 
+	 * @param jmx
+	 *            True if every ProcedureMetrics should be registered with the platform MBean server
+	 */
+	public MetricsRegistry(boolean jmx) {
+		this.jmx = jmx;
+	}
+	
+	/**
+	 * The registry every ConnectionManager records to. It registers with the platform MBean server.
+	 * 
+	 * @return The default registry
+	 */
+	public static synchronized MetricsRegistry getDefault() {
+		if(defaultRegistry == null) {
+			defaultRegistry = new MetricsRegistry(true);
+		}
+		return defaultRegistry;
+	}
+	
+	/**
+	 * Gets the metrics for a procedure. They are created the first time a procedure is seen.
+	 * 
+	 * @param packageName
+	 *            The package name or the procedure name if it is not in a package
+	 * @param procedureName
+	 *            The procedure display name
+	 * @return The metrics
+	 */
+	public ProcedureMetrics get(String packageName, String procedureName) {
+		ConcurrentMap<String, ProcedureMetrics> procedures = packages.get(packageName);
+		if(procedures == null) {
+			procedures = new ConcurrentHashMap<String, ProcedureMetrics>();
+			ConcurrentMap<String, ProcedureMetrics> existing = packages.putIfAbsent(packageName, procedures);
+			if(existing != null) {
+				procedures = existing;
+			}
+		}
+		ProcedureMetrics m = procedures.get(procedureName);
+		if(m == null) {
+			m = new ProcedureMetrics(packageName, procedureName);
+			ProcedureMetrics existing = procedures.putIfAbsent(procedureName, m);
+			if(existing == null) {
+				register(m);
+			}
+			else {
+				m = existing;
+			}
+		}
+		return m;
+	}
+	
+	/**
+	 * @return every ProcedureMetrics that has been created so far
+	 */
+	public List<ProcedureMetrics> snapshot() {
+		List<ProcedureMetrics> l = new ArrayList<ProcedureMetrics>();
+		for(ConcurrentMap<String, ProcedureMetrics> procedures : packages.values()) {
+			l.addAll(procedures.values());
+		}
+		return l;
+	}
+	
+	/**
+	 * Resets every ProcedureMetrics
+	 */
+	public void reset() {
+		for(ProcedureMetrics m : snapshot()) {
+			m.reset();
+		}
+	}
+	
+	/**
+	 * Gets the name a ProcedureMetrics is registered with
+	 * 
+	 * @param m
+	 *            The metrics
+	 * @return The object name
+	 * @throws JMException
+	 *             If the name is not valid
+	 */
+	public static ObjectName getObjectName(ProcedureMetrics m) throws JMException {
+		return new ObjectName(DOMAIN + ":type=ProcedureMetrics,package=" + ObjectName.quote(m.getPackageName()) + ",procedure="
+				+ ObjectName.quote(m.getProcedureName()));
+	}
+	
+	private void register(ProcedureMetrics m) {
+		if(jmx) {
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				ObjectName name = getObjectName(m);
+				if(!server.isRegistered(name)) {
+					server.registerMBean(m, name);
+				}
+			}
+			catch(JMException | SecurityException e) {
+				ErrorLog.report(ErrorCategory.CONNECTION, "Could not register the metrics for " + m.getProcedureName() + " with JMX.", e);
+			}
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "MetricsRegistry " + snapshot();
+	}
+}
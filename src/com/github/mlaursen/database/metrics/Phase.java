@@ -0,0 +1,42 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.metrics;
+
+/**
+ * The phases of a procedure call that are timed separately.
+ * 
+ * @author mlaursen
+ * 
+ */
+public enum Phase {
+	/**
+	 * Getting a connection. There is no pool, so this is opening a new connection
+	 */
+	BORROW,
+	/**
+	 * Connection.prepareCall
+	 */
+	PREPARE,
+	/**
+	 * Binding every parameter
+	 */
+	BIND,
+	/**
+	 * Executing the statement
+	 */
+	EXECUTE,
+	/**
+	 * Reading the cursor into a MyResultSet
+	 */
+	FETCH,
+	/**
+	 * Turning the MyResultSet into DatabaseObjects
+	 */
+	MAP;
+	
+	@Override
+	public String toString() {
+		return name().toLowerCase();
+	}
+}
@@ -0,0 +1,204 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Everything recorded for one procedure in one package: a latency histogram for the whole call and one for every {@link Phase}, and the
+ * number of calls, errors and rows.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class ProcedureMetrics implements ProcedureMetricsMBean {
+	
+	private final String packageName, procedureName;
+	private final LatencyHistogram total = new LatencyHistogram();
+	private final LatencyHistogram[] phases = new LatencyHistogram[Phase.values().length];
+	private final AtomicLong calls = new AtomicLong(), errors = new AtomicLong(), rows = new AtomicLong();
+	
+	/**
+	 * 
+	 * @param packageName
+	 *            The package name
+	 * @param procedureName
+	 *            The procedure display name
+	 */
+	public ProcedureMetrics(String packageName, String procedureName) {
+		this.packageName = packageName;
+		this.procedureName = procedureName;
+		for(int i = 0; i < phases.length; i++) {
+			phases[i] = new LatencyHistogram();
+		}
+	}
+	
+	/**
+	 * Records a finished call
+	 * 
+	 * @param nanos
+	 *            How long the whole call took
+	 * @param failed
+	 *            True if the call failed
+	 */
+	public void recordCall(long nanos, boolean failed) {
+		calls.incrementAndGet();
+		if(failed) {
+			errors.incrementAndGet();
+		}
+		total.record(nanos);
+	}
+	
+	/**
+	 * Records how long a phase of a call took
+	 * 
+	 * @param phase
+	 *            The phase
+	 * @param nanos
+	 *            How long the phase took
+	 */
+	public void recordPhase(Phase phase, long nanos) {
+		phases[phase.ordinal()].record(nanos);
+	}
+	
+	/**
+	 * @param count
+	 *            The number of rows a call returned or updated
+	 */
+	public void recordRows(long count) {
+		rows.addAndGet(count);
+	}
+	
+	/**
+	 * @return the histogram for whole calls
+	 */
+	public LatencyHistogram getTotal() {
+		return total;
+	}
+	
+	/**
+	 * @param phase
+	 *            The phase
+	 * @return the histogram for the phase
+	 */
+	public LatencyHistogram getPhase(Phase phase) {
+		return phases[phase.ordinal()];
+	}
+	
+	/**
+	 * @return a snapshot of every phase histogram
+	 */
+	public Map<Phase, LatencyHistogram.Snapshot> getPhaseSnapshots() {
+		Map<Phase, LatencyHistogram.Snapshot> m = new EnumMap<Phase, LatencyHistogram.Snapshot>(Phase.class);
+		for(Phase p : Phase.values()) {
+			m.put(p, getPhase(p).snapshot());
+		}
+		return m;
+	}
+	
+	private static double toMillis(long nanos) {
+		return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+	
+	@Override
+	public String getPackageName() {
+		return packageName;
+	}
+	
+	@Override
+	public String getProcedureName() {
+		return procedureName;
+	}
+	
+	@Override
+	public long getCalls() {
+		return calls.get();
+	}
+	
+	@Override
+	public long getErrors() {
+		return errors.get();
+	}
+	
+	@Override
+	public long getRows() {
+		return rows.get();
+	}
+	
+	@Override
+	public double getMeanMillis() {
+		return toMillis(total.snapshot().getMean());
+	}
+	
+	@Override
+	public double getP50Millis() {
+		return total.snapshot().getPercentileMillis(50);
+	}
+	
+	@Override
+	public double getP99Millis() {
+		return total.snapshot().getPercentileMillis(99);
+	}
+	
+	@Override
+	public double getMaxMillis() {
+		return toMillis(total.snapshot().getMax());
+	}
+	
+	@Override
+	public double getBorrowP99Millis() {
+		return getPhase(Phase.BORROW).snapshot().getPercentileMillis(99);
+	}
+	
+	@Override
+	public double getPrepareP99Millis() {
+		return getPhase(Phase.PREPARE).snapshot().getPercentileMillis(99);
+	}
+	
+	@Override
+	public double getBindP99Millis() {
+		return getPhase(Phase.BIND).snapshot().getPercentileMillis(99);
+	}
+	
+	@Override
+	public double getExecuteP99Millis() {
+		return getPhase(Phase.EXECUTE).snapshot().getPercentileMillis(99);
+	}
+	
+	@Override
+	public double getFetchP99Millis() {
+		return getPhase(Phase.FETCH).snapshot().getPercentileMillis(99);
+	}
+	
+	@Override
+	public double getMapP99Millis() {
+		return getPhase(Phase.MAP).snapshot().getPercentileMillis(99);
+	}
+	
+	@Override
+	public void reset() {
+		total.reset();
+		for(LatencyHistogram h : phases) {
+			h.reset();
+		}
+		calls.set(0);
+		errors.set(0);
+		rows.set(0);
+	}
+	
+	@Override
+	public String toString() {
+		String s = packageName + "." + procedureName + " [calls=" + getCalls() + ", errors=" + getErrors() + ", rows=" + getRows() + ", "
+				+ total.snapshot();
+		for(Phase p : Phase.values()) {
+			if(getPhase(p).getCount() > 0) {
+				s += ", " + p + "{" + getPhase(p).snapshot() + "}";
+			}
+		}
+		return s + "]";
+	}
+}
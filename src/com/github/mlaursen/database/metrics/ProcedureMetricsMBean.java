@@ -0,0 +1,45 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.metrics;
+
+/**
+ * The JMX view of a {@link ProcedureMetrics}. Times are in milliseconds.
+ * 
+ * @author mlaursen
+ * 
+ */
+public interface ProcedureMetricsMBean {
+	
+	String getPackageName();
+	
+	String getProcedureName();
+	
+	long getCalls();
+	
+	long getErrors();
+	
+	long getRows();
+	
+	double getMeanMillis();
+	
+	double getP50Millis();
+	
+	double getP99Millis();
+	
+	double getMaxMillis();
+	
+	double getBorrowP99Millis();
+	
+	double getPrepareP99Millis();
+	
+	double getBindP99Millis();
+	
+	double getExecuteP99Millis();
+	
+	double getFetchP99Millis();
+	
+	double getMapP99Millis();
+	
+	void reset();
+}
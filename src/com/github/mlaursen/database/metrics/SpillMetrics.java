@@ -0,0 +1,115 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.github.mlaursen.database.logging.ErrorCategory;
+import com.github.mlaursen.database.logging.ErrorLog;
+
+/**
+ * Counts the results that were spilled to disk because they went over the memory budget of a
+ * {@link com.github.mlaursen.database.objects.MyResultSet}. The default instance is registered as the MBean
+ * com.github.mlaursen.database:type=Spill.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class SpillMetrics implements SpillMetricsMBean {
+	
+	private static SpillMetrics defaultMetrics;
+	
+	private final AtomicLong results = new AtomicLong(), rows = new AtomicLong(), bytes = new AtomicLong(), failures = new AtomicLong();
+	
+	/**
+	 * The metrics every spilled result records to. They are registered with the platform MBean server.
+	 * 
+	 * @return The default metrics
+	 */
+	public static synchronized SpillMetrics getDefault() {
+		if(defaultMetrics == null) {
+			defaultMetrics = new SpillMetrics();
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				ObjectName name = getObjectName();
+				if(!server.isRegistered(name)) {
+					server.registerMBean(defaultMetrics, name);
+				}
+			}
+			catch(JMException | SecurityException e) {
+				ErrorLog.report(ErrorCategory.MAPPING, "Could not register the spill metrics with JMX.", e);
+			}
+		}
+		return defaultMetrics;
+	}
+	
+	/**
+	 * @return the name the default metrics are registered with
+	 * @throws JMException
+	 *             If the name is not valid
+	 */
+	public static ObjectName getObjectName() throws JMException {
+		return new ObjectName(MetricsRegistry.DOMAIN + ":type=Spill");
+	}
+	
+	/**
+	 * A result was spilled to disk
+	 * 
+	 * @param rows
+	 *            The number of rows that were written
+	 * @param bytes
+	 *            The number of bytes that were written
+	 */
+	public void spilled(long rows, long bytes) {
+		this.results.incrementAndGet();
+		this.rows.addAndGet(rows);
+		this.bytes.addAndGet(bytes);
+	}
+	
+	/**
+	 * A result could not be spilled and was kept in memory
+	 */
+	public void failed() {
+		failures.incrementAndGet();
+	}
+	
+	@Override
+	public long getSpilledResults() {
+		return results.get();
+	}
+	
+	@Override
+	public long getSpilledRows() {
+		return rows.get();
+	}
+	
+	@Override
+	public long getSpilledBytes() {
+		return bytes.get();
+	}
+	
+	@Override
+	public long getFailures() {
+		return failures.get();
+	}
+	
+	@Override
+	public void reset() {
+		results.set(0);
+		rows.set(0);
+		bytes.set(0);
+		failures.set(0);
+	}
+	
+	@Override
+	public String toString() {
+		return "SpillMetrics [results=" + getSpilledResults() + ", rows=" + getSpilledRows() + ", bytes=" + getSpilledBytes() + ", failures="
+				+ getFailures() + "]";
+	}
+}
@@ -0,0 +1,38 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.metrics;
+
+/**
+ * The JMX view of {@link SpillMetrics}.
+ * 
+ * @author mlaursen
+ * 
+ */
+public interface SpillMetricsMBean {
+	
+	/**
+	 * @return the number of results that went over the memory budget and were spilled to disk
+	 */
+	long getSpilledResults();
+	
+	/**
+	 * @return the number of rows that were written to disk
+	 */
+	long getSpilledRows();
+	
+	/**
+	 * @return the number of bytes that were written to disk
+	 */
+	long getSpilledBytes();
+	
+	/**
+	 * @return the number of results that could not be spilled and were kept in memory
+	 */
+	long getFailures();
+	
+	/**
+	 * Resets the totals
+	 */
+	void reset();
+}
@@ -0,0 +1,519 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.objects;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Group by, count, sum, min, max, avg and top N over the rows of a {@link MyResultSet}, so a summary can be computed from the rows
+ * without constructing a DatabaseObject for each one.
+ * 
+ * <pre>
+ * Aggregation salaries = manager.aggregate(PersonView.class, &quot;type&quot;);
+ * Map&lt;String, Double&gt; total = salaries.sum(&quot;person_salary&quot;);
+ * Map&lt;String, Double&gt; average = salaries.avg(&quot;person_salary&quot;);
+ * Map&lt;String, List&lt;MyResultRow&gt;&gt; best = salaries.topByGroup(&quot;person_salary&quot;, 3);
+ * </pre>
+ * 
+ * The group of every row is read once into an int[] and a column is parsed once into a double[] the first time it is used, and then
+ * count, sum, min and max of the column are computed together in one loop over the arrays. A result with at least
+ * {@link #getParallelRows()} rows is parsed and summed in slices on a fork join pool. Null values are skipped, so a group with no values
+ * has a sum of 0 and a min, max and avg of NaN, and a value that is not a number throws an IllegalArgumentException.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class Aggregation {
+	
+	/**
+	 * The default number of rows where the work is split over the fork join pool
+	 */
+	public static final int PARALLEL_ROWS = 1 << 15;
+	
+	private static final int SLICE_ROWS = 1 << 12;
+	private static ForkJoinPool pool;
+	
+	private final MyResultSet rs;
+	private final String groupBy;
+	private final int size;
+	private final int[] groupIds;
+	private final List<String> groups = new ArrayList<String>();
+	private final long[] groupRows;
+	private final Map<String, double[]> columns = new HashMap<String, double[]>();
+	private final Map<String, Stats> stats = new HashMap<String, Stats>();
+	private volatile int parallelRows = PARALLEL_ROWS;
+	private int sliceRows;
+	
+	/**
+	 * Aggregates every row as one group, which has a null key
+	 * 
+	 * @param rs
+	 *            The rows
+	 */
+	public Aggregation(MyResultSet rs) {
+		this(rs, null);
+	}
+	
+	/**
+	 * 
+	 * @param rs
+	 *            The rows
+	 * @param groupBy
+	 *            The column to group the rows by or null for one group with a null key
+	 */
+	public Aggregation(MyResultSet rs, String groupBy) {
+		this.rs = rs;
+		this.groupBy = groupBy == null ? null : checkColumn(rs, groupBy);
+		this.size = rs.size();
+		this.groupIds = new int[size];
+		Map<String, Integer> ids = new HashMap<String, Integer>();
+		int i = 0;
+		for(MyResultRow r : rs) {
+			String key = groupBy == null ? null : r.get(this.groupBy);
+			Integer id = ids.get(key);
+			if(id == null) {
+				id = groups.size();
+				ids.put(key, id);
+				groups.add(key);
+			}
+			groupIds[i++] = id;
+		}
+		if(groups.isEmpty() && groupBy == null) {
+			groups.add(null);
+		}
+		this.groupRows = new long[groups.size()];
+		for(int g : groupIds) {
+			groupRows[g]++;
+		}
+	}
+	
+	private static String checkColumn(MyResultSet rs, String column) {
+		String c = column.toLowerCase();
+		if(rs.getColNames() != null && !rs.getColNames().contains(c)) {
+			throw new IllegalArgumentException("The result set does not have the column " + c);
+		}
+		return c;
+	}
+	
+	private static synchronized ForkJoinPool getPool() {
+		if(pool == null) {
+			pool = new ForkJoinPool();
+		}
+		return pool;
+	}
+	
+	/**
+	 * @return the number of rows where the work is split over the fork join pool
+	 */
+	public int getParallelRows() {
+		return parallelRows;
+	}
+	
+	/**
+	 * @param rows
+	 *            The number of rows where the work is split over the fork join pool or 0 to never split it
+	 */
+	public void setParallelRows(int rows) {
+		this.parallelRows = rows;
+	}
+	
+	private boolean parallel() {
+		return parallelRows > 0 && size >= parallelRows;
+	}
+	
+	/**
+	 * @return the column the rows are grouped by or null
+	 */
+	public String getGroupBy() {
+		return groupBy;
+	}
+	
+	/**
+	 * @return the group keys in the order they were first seen
+	 */
+	public List<String> getGroups() {
+		return Collections.unmodifiableList(groups);
+	}
+	
+	/**
+	 * @return the number of rows in each group
+	 */
+	public Map<String, Long> count() {
+		Map<String, Long> m = new LinkedHashMap<String, Long>();
+		for(int g = 0; g < groups.size(); g++) {
+			m.put(groups.get(g), groupRows[g]);
+		}
+		return m;
+	}
+	
+	/**
+	 * @param column
+	 *            A column of numbers
+	 * @return the number of values that are not null in each group
+	 */
+	public Map<String, Long> count(String column) {
+		Stats s = stats(column);
+		Map<String, Long> m = new LinkedHashMap<String, Long>();
+		for(int g = 0; g < groups.size(); g++) {
+			m.put(groups.get(g), s.count[g]);
+		}
+		return m;
+	}
+	
+	/**
+	 * @param column
+	 *            A column of numbers
+	 * @return the sum of each group
+	 */
+	public Map<String, Double> sum(String column) {
+		return byGroup(stats(column).sum);
+	}
+	
+	/**
+	 * @param column
+	 *            A column of numbers
+	 * @return the smallest value of each group
+	 */
+	public Map<String, Double> min(String column) {
+		Stats s = stats(column);
+		return byGroup(s.empty(s.min));
+	}
+	
+	/**
+	 * @param column
+	 *            A column of numbers
+	 * @return the largest value of each group
+	 */
+	public Map<String, Double> max(String column) {
+		Stats s = stats(column);
+		return byGroup(s.empty(s.max));
+	}
+	
+	/**
+	 * @param column
+	 *            A column of numbers
+	 * @return the average of each group
+	 */
+	public Map<String, Double> avg(String column) {
+		Stats s = stats(column);
+		double[] avg = new double[groups.size()];
+		for(int g = 0; g < avg.length; g++) {
+			avg[g] = s.count[g] == 0 ? Double.NaN : s.sum[g] / s.count[g];
+		}
+		return byGroup(avg);
+	}
+	
+	private Map<String, Double> byGroup(double[] values) {
+		Map<String, Double> m = new LinkedHashMap<String, Double>();
+		for(int g = 0; g < groups.size(); g++) {
+			m.put(groups.get(g), values[g]);
+		}
+		return m;
+	}
+	
+	/**
+	 * Finds the rows with the largest values of a column
+	 * 
+	 * @param column
+	 *            A column of numbers
+	 * @param n
+	 *            The most rows to return
+	 * @return The rows from the largest value down, where equal values are in row order
+	 */
+	public List<MyResultRow> top(String column, int n) {
+		int[] rows = top(column(column), n, false)[0];
+		List<MyResultRow> l = new ArrayList<MyResultRow>(rows.length);
+		for(int r : rows) {
+			l.add(rs.getRow(r));
+		}
+		return l;
+	}
+	
+	/**
+	 * Finds the rows with the largest values of a column in each group
+	 * 
+	 * @param column
+	 *            A column of numbers
+	 * @param n
+	 *            The most rows to return for each group
+	 * @return The rows of each group from the largest value down, where equal values are in row order
+	 */
+	public Map<String, List<MyResultRow>> topByGroup(String column, int n) {
+		int[][] rows = top(column(column), n, true);
+		Map<String, List<MyResultRow>> m = new LinkedHashMap<String, List<MyResultRow>>();
+		for(int g = 0; g < groups.size(); g++) {
+			List<MyResultRow> l = new ArrayList<MyResultRow>(rows[g].length);
+			for(int r : rows[g]) {
+				l.add(rs.getRow(r));
+			}
+			m.put(groups.get(g), l);
+		}
+		return m;
+	}
+	
+	/**
+	 * Keeps a min heap of row numbers for each group, where the root is the row that would be dropped first
+	 */
+	private int[][] top(final double[] values, int n, boolean byGroup) {
+		if(n < 1) {
+			throw new IllegalArgumentException("The top needs at least 1 row but it was " + n);
+		}
+		int count = byGroup ? groups.size() : 1;
+		int[][] heaps = new int[count][];
+		int[] sizes = new int[count];
+		for(int i = 0; i < size; i++) {
+			if(Double.isNaN(values[i])) {
+				continue;
+			}
+			int g = byGroup ? groupIds[i] : 0;
+			if(heaps[g] == null) {
+				heaps[g] = new int[(int) Math.min(n, byGroup ? groupRows[g] : size)];
+			}
+			int[] h = heaps[g];
+			if(sizes[g] < h.length) {
+				h[sizes[g]] = i;
+				siftUp(values, h, sizes[g]++);
+			}
+			else if(before(values, i, h[0])) {
+				h[0] = i;
+				siftDown(values, h, sizes[g]);
+			}
+		}
+		int[][] sorted = new int[count][];
+		for(int g = 0; g < count; g++) {
+			int[] h = heaps[g] == null ? new int[0] : heaps[g];
+			int[] l = new int[sizes[g]];
+			for(int k = l.length - 1; k >= 0; k--) {
+				l[k] = h[0];
+				h[0] = h[k];
+				siftDown(values, h, k);
+			}
+			sorted[g] = l;
+		}
+		return sorted;
+	}
+	
+	/**
+	 * @return true if row a comes before row b in the top
+	 */
+	private static boolean before(double[] values, int a, int b) {
+		int c = Double.compare(values[a], values[b]);
+		return c > 0 || (c == 0 && a < b);
+	}
+	
+	private static void siftUp(double[] values, int[] h, int i) {
+		while(i > 0) {
+			int parent = (i - 1) / 2;
+			if(!before(values, h[parent], h[i])) {
+				break;
+			}
+			int t = h[parent];
+			h[parent] = h[i];
+			h[i] = t;
+			i = parent;
+		}
+	}
+	
+	private static void siftDown(double[] values, int[] h, int size) {
+		int i = 0;
+		for(;;) {
+			int least = i, l = 2 * i + 1, r = l + 1;
+			if(l < size && before(values, h[least], h[l])) {
+				least = l;
+			}
+			if(r < size && before(values, h[least], h[r])) {
+				least = r;
+			}
+			if(least == i) {
+				return;
+			}
+			int t = h[least];
+			h[least] = h[i];
+			h[i] = t;
+			i = least;
+		}
+	}
+	
+	/**
+	 * Parses a column into a double[] the first time it is used, where a null value is NaN
+	 */
+	private synchronized double[] column(String column) {
+		final String c = checkColumn(rs, column);
+		double[] values = columns.get(c);
+		if(values == null) {
+			values = new double[size];
+			if(parallel()) {
+				sliceRows = Math.max(SLICE_ROWS, size / (getPool().getParallelism() * 4));
+				getPool().invoke(new Parse(c, values, 0, size));
+			}
+			else {
+				parse(c, values, 0, size);
+			}
+			columns.put(c, values);
+		}
+		return values;
+	}
+	
+	private void parse(String column, double[] values, int from, int to) {
+		for(int i = from; i < to; i++) {
+			String v = rs.getRow(i).get(column);
+			if(v == null) {
+				values[i] = Double.NaN;
+				continue;
+			}
+			try {
+				values[i] = Double.parseDouble(v);
+			}
+			catch(NumberFormatException e) {
+				throw new IllegalArgumentException("The column " + column + " is not a number in row " + i + ": " + v, e);
+			}
+		}
+	}
+	
+	private synchronized Stats stats(String column) {
+		double[] values = column(column);
+		String c = column.toLowerCase();
+		Stats s = stats.get(c);
+		if(s == null) {
+			if(parallel()) {
+				sliceRows = Math.max(SLICE_ROWS, size / (getPool().getParallelism() * 4));
+				s = getPool().invoke(new Sum(values, 0, size));
+			}
+			else {
+				s = sum(values, 0, size);
+			}
+			stats.put(c, s);
+		}
+		return s;
+	}
+	
+	private Stats sum(double[] values, int from, int to) {
+		Stats s = new Stats(groups.size());
+		double[] sum = s.sum, min = s.min, max = s.max;
+		long[] count = s.count;
+		int[] ids = groupIds;
+		for(int i = from; i < to; i++) {
+			double v = values[i];
+			if(v != v) {
+				continue;
+			}
+			int g = ids[i];
+			sum[g] += v;
+			count[g]++;
+			if(v < min[g]) {
+				min[g] = v;
+			}
+			if(v > max[g]) {
+				max[g] = v;
+			}
+		}
+		return s;
+	}
+	
+	@Override
+	public String toString() {
+		return "Aggregation [groupBy=" + groupBy + ", groups=" + groups.size() + ", size=" + size + "]";
+	}
+	
+	/**
+	 * The count, sum, min and max of every group
+	 */
+	private static class Stats {
+		
+		private final double[] sum, min, max;
+		private final long[] count;
+		
+		private Stats(int groups) {
+			sum = new double[groups];
+			count = new long[groups];
+			min = new double[groups];
+			max = new double[groups];
+			Arrays.fill(min, Double.POSITIVE_INFINITY);
+			Arrays.fill(max, Double.NEGATIVE_INFINITY);
+		}
+		
+		private Stats merge(Stats o) {
+			for(int g = 0; g < sum.length; g++) {
+				sum[g] += o.sum[g];
+				count[g] += o.count[g];
+				min[g] = Math.min(min[g], o.min[g]);
+				max[g] = Math.max(max[g], o.max[g]);
+			}
+			return this;
+		}
+		
+		/**
+		 * @return the values with NaN for the groups that have no values
+		 */
+		private double[] empty(double[] values) {
+			double[] l = values.clone();
+			for(int g = 0; g < l.length; g++) {
+				if(count[g] == 0) {
+					l[g] = Double.NaN;
+				}
+			}
+			return l;
+		}
+	}
+	
+	private class Parse extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		private final String column;
+		private final double[] values;
+		private final int from, to;
+		
+		private Parse(String column, double[] values, int from, int to) {
+			this.column = column;
+			this.values = values;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute() {
+			if(to - from <= sliceRows) {
+				parse(column, values, from, to);
+			}
+			else {
+				int mid = (from + to) >>> 1;
+				invokeAll(new Parse(column, values, from, mid), new Parse(column, values, mid, to));
+			}
+		}
+	}
+	
+	private class Sum extends RecursiveTask<Stats> {
+		
+		private static final long serialVersionUID = 1L;
+		private final double[] values;
+		private final int from, to;
+		
+		private Sum(double[] values, int from, int to) {
+			this.values = values;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected Stats compute() {
+			if(to - from <= sliceRows) {
+				return sum(values, from, to);
+			}
+			int mid = (from + to) >>> 1;
+			Sum right = new Sum(values, mid, to);
+			right.fork();
+			Stats left = new Sum(values, from, mid).compute();
+			return left.merge(right.join());
+		}
+	}
+}
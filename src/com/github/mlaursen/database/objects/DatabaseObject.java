@@ -9,6 +9,12 @@ import java.util.List;
 
 import com.github.mlaursen.annotations.DatabaseField;
 import com.github.mlaursen.annotations.DatabaseFieldType;
+import com.github.mlaursen.database.logging.ErrorCategory;
+import com.github.mlaursen.database.logging.ErrorLog;
+import com.github.mlaursen.database.metrics.AllocationAccounting;
+import com.github.mlaursen.database.metrics.EventSink;
+import com.github.mlaursen.database.metrics.Events;
+import com.github.mlaursen.database.metrics.MappingStage;
 
 /**
  * Basic outline for a DatbaseObject. Every database object must have at least a primary key
@@ -80,19 +86,34 @@ public abstract class DatabaseObject implements Serializable {
 	 *            a MyResultRow
 	 */
 	protected void setAll(MyResultRow r) {
+		EventSink sink = Events.getEnabledSink();
+		Object event = sink == null ? null : sink.objectMappingStarted(getClass());
+		long start = sink == null ? 0 : System.nanoTime();
+		long bytes = AllocationAccounting.start();
+		int setters = 0, reflective = 1;
 		Method[] methods = this.getClass().getMethods();
 		for(Method m : methods) {
 			if(m.getName().startsWith("set") && Arrays.asList(m.getParameterTypes()).contains(MyResultRow.class) && r != null) {
+				reflective++;
 				try {
 					m.setAccessible(true);
 					m.invoke(this, r);
 					m.setAccessible(false);
+					setters++;
 				}
 				catch(InvocationTargetException | IllegalAccessException | IllegalArgumentException e) {
-					System.err.println("There was a problem trying to invoke " + m.getName());
+					if(ErrorLog.isEnabled(ErrorCategory.MAPPING)) {
+						Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+						MappingException me = new MappingException(getClass(), m.getName(), cause);
+						ErrorLog.log(ErrorCategory.MAPPING, me.getMessage(), me);
+					}
 				}
 			}
 		}
+		if(sink != null) {
+			sink.objectMapped(event, getClass(), setters, System.nanoTime() - start);
+		}
+		AllocationAccounting.record(MappingStage.SET_ALL, bytes, reflective, 1);
 	}
 	
 	/**
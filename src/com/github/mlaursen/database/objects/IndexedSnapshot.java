@@ -0,0 +1,552 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.objects;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.github.mlaursen.annotations.DatabaseField;
+import com.github.mlaursen.annotations.MultipleDatabaseField;
+import com.github.mlaursen.database.utils.ClassUtil;
+
+/**
+ * A list of DatabaseObjects with indexes on some of their columns, so it can be searched in memory instead of looping over the list or
+ * going back to the database.
+ * 
+ * <pre>
+ * IndexedSnapshot&lt;PersonView&gt; people = manager.getAllIndexed(PersonView.class, &quot;type&quot;, &quot;person_salary&quot;,
+ *		&quot;last_name&quot;);
+ * List&lt;PersonView&gt; it = people.equal(&quot;type&quot;, &quot;IT&quot;);
+ * List&lt;PersonView&gt; paid = people.range(&quot;person_salary&quot;, 50000, 80000);
+ * List&lt;PersonView&gt; smiths = people.prefix(&quot;last_name&quot;, &quot;SMITH&quot;);
+ * </pre>
+ * 
+ * Every indexed column has a hash index for equality and a sorted index for prefixes, and a column where every value is a number also has
+ * a sorted double[] index for ranges. A snapshot built from a {@link MyResultSet} indexes the given columns, or else the columns that match
+ * the type's {@link DatabaseField}s, or else every column. A snapshot built from a list of objects indexes the given fields, or else every
+ * DatabaseField, and a field that is a DatabaseObject is indexed by its primary key.
+ * 
+ * Rows added later are sorted on their own and merged into the sorted indexes, so the indexes are never rebuilt from the start. Lookups
+ * can run from any number of threads and wait only while rows are being added.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class IndexedSnapshot<T extends DatabaseObject> {
+	
+	private final Class<T> type;
+	private final List<String> columns;
+	private final Field[] fields;
+	private final Map<String, Index> indexes = new LinkedHashMap<String, Index>();
+	private final List<T> items = new ArrayList<T>();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	
+	/**
+	 * Builds a snapshot from the rows of a result set
+	 * 
+	 * @param rs
+	 *            The rows, which need their column names
+	 * @param type
+	 *            The DatabaseObject class to construct
+	 * @param columns
+	 *            The columns to index or none to index the columns of the type's DatabaseFields
+	 */
+	public IndexedSnapshot(MyResultSet rs, Class<T> type, String... columns) {
+		List<String> colNames = rs.getColNames();
+		if(colNames == null) {
+			throw new IllegalArgumentException("A result set needs its column names to be indexed");
+		}
+		this.type = type;
+		this.fields = null;
+		this.columns = columns.length == 0 ? defaultColumns(type, colNames) : checkColumns(colNames, columns);
+		for(String c : this.columns) {
+			indexes.put(c, new Index());
+		}
+		add(rs);
+	}
+	
+	/**
+	 * Builds a snapshot from a list of objects
+	 * 
+	 * @param items
+	 *            The objects
+	 * @param type
+	 *            The DatabaseObject class of the objects
+	 * @param fields
+	 *            The names of the fields to index or none to index every DatabaseField
+	 */
+	public IndexedSnapshot(List<T> items, Class<T> type, String... fields) {
+		this.type = type;
+		this.fields = fields.length == 0 ? defaultFields(type) : findFields(type, fields);
+		List<String> names = new ArrayList<String>();
+		for(Field f : this.fields) {
+			names.add(f.getName());
+			indexes.put(f.getName(), new Index());
+		}
+		this.columns = Collections.unmodifiableList(names);
+		add(items);
+	}
+	
+	private static List<String> defaultColumns(Class<?> type, List<String> colNames) {
+		List<String> l = new ArrayList<String>();
+		for(Class<?> c : ClassUtil.getClassList(type)) {
+			for(Field f : c.getDeclaredFields()) {
+				List<String> names = new ArrayList<String>();
+				if(f.isAnnotationPresent(MultipleDatabaseField.class)) {
+					names.addAll(Arrays.asList(f.getAnnotation(MultipleDatabaseField.class).names()));
+				}
+				else if(f.isAnnotationPresent(DatabaseField.class)) {
+					names.add(f.getName());
+					names.add(ClassUtil.combineWith(ClassUtil.splitOnUpper(f.getName())));
+				}
+				for(String n : names) {
+					n = n.toLowerCase();
+					if(colNames.contains(n) && !l.contains(n)) {
+						l.add(n);
+					}
+				}
+			}
+		}
+		return Collections.unmodifiableList(l.isEmpty() ? new ArrayList<String>(colNames) : l);
+	}
+	
+	private static List<String> checkColumns(List<String> colNames, String[] columns) {
+		List<String> l = new ArrayList<String>();
+		for(String c : columns) {
+			c = c.toLowerCase();
+			if(!colNames.contains(c)) {
+				throw new IllegalArgumentException("The result set does not have the column " + c);
+			}
+			if(!l.contains(c)) {
+				l.add(c);
+			}
+		}
+		return Collections.unmodifiableList(l);
+	}
+	
+	private static Field[] defaultFields(Class<?> type) {
+		List<Field> l = new ArrayList<Field>();
+		for(Class<?> c : ClassUtil.getClassList(type)) {
+			for(Field f : c.getDeclaredFields()) {
+				if(f.isAnnotationPresent(DatabaseField.class) || f.isAnnotationPresent(MultipleDatabaseField.class)) {
+					f.setAccessible(true);
+					l.add(f);
+				}
+			}
+		}
+		return l.toArray(new Field[l.size()]);
+	}
+	
+	private static Field[] findFields(Class<?> type, String[] names) {
+		Field[] l = new Field[names.length];
+		for(int i = 0; i < names.length; i++) {
+			for(Class<?> c : ClassUtil.getClassList(type)) {
+				try {
+					l[i] = c.getDeclaredField(names[i]);
+				}
+				catch(NoSuchFieldException e) {
+					// it might be in a sub class
+				}
+			}
+			if(l[i] == null) {
+				throw new IllegalArgumentException(type.getName() + " does not have the field " + names[i]);
+			}
+			l[i].setAccessible(true);
+		}
+		return l;
+	}
+	
+	/**
+	 * Adds the rows of a result set to a snapshot that was built from a result set. A row that can not be constructed is left out.
+	 * 
+	 * @param rs
+	 *            The rows, which need the indexed columns
+	 */
+	public void add(MyResultSet rs) {
+		if(fields != null) {
+			throw new IllegalStateException("Objects have to be added to a snapshot that was built from objects");
+		}
+		List<T> objects = new ArrayList<T>(rs.size());
+		List<MyResultRow> rows = new ArrayList<MyResultRow>(rs.size());
+		for(MyResultRow r : rs) {
+			T o = r.construct(type);
+			if(o != null) {
+				objects.add(o);
+				rows.add(r);
+			}
+		}
+		String[][] values = new String[columns.size()][rows.size()];
+		for(int c = 0; c < values.length; c++) {
+			String column = columns.get(c);
+			for(int i = 0; i < rows.size(); i++) {
+				values[c][i] = rows.get(i).get(column);
+			}
+		}
+		append(objects, values);
+	}
+	
+	/**
+	 * Adds objects to a snapshot that was built from objects
+	 * 
+	 * @param objects
+	 *            The objects
+	 */
+	public void add(List<T> objects) {
+		if(fields == null) {
+			throw new IllegalStateException("Rows have to be added to a snapshot that was built from a result set");
+		}
+		String[][] values = new String[fields.length][objects.size()];
+		for(int c = 0; c < fields.length; c++) {
+			for(int i = 0; i < objects.size(); i++) {
+				values[c][i] = valueOf(fields[c], objects.get(i));
+			}
+		}
+		append(objects, values);
+	}
+	
+	private static String valueOf(Field f, Object o) {
+		Object v;
+		try {
+			v = f.get(o);
+		}
+		catch(IllegalAccessException e) {
+			throw new IllegalStateException("The field " + f.getName() + " could not be read", e);
+		}
+		if(v == null) {
+			return null;
+		}
+		return v instanceof DatabaseObject ? ((DatabaseObject) v).getPrimaryKey() : String.valueOf(v);
+	}
+	
+	private void append(List<T> objects, String[][] values) {
+		lock.writeLock().lock();
+		try {
+			int first = items.size();
+			items.addAll(objects);
+			for(int c = 0; c < values.length; c++) {
+				indexes.get(columns.get(c)).add(values[c], first);
+			}
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	private Index index(String column) {
+		Index i = indexes.get(fields == null ? column.toLowerCase() : column);
+		if(i == null) {
+			throw new IllegalArgumentException(column + " is not indexed");
+		}
+		return i;
+	}
+	
+	/**
+	 * Finds the objects with a value
+	 * 
+	 * @param column
+	 *            The indexed column or field
+	 * @param value
+	 *            The value, or a DatabaseObject to match its primary key. Numbers are matched as the text they were read as.
+	 * @return The objects in the order they were added
+	 */
+	public List<T> equal(String column, Object value) {
+		String v = value instanceof DatabaseObject ? ((DatabaseObject) value).getPrimaryKey() : String.valueOf(value);
+		lock.readLock().lock();
+		try {
+			Postings p = index(column).postings.get(v);
+			return p == null ? new ArrayList<T>() : items(p.rows, 0, p.size);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Finds the objects with a number between two values
+	 * 
+	 * @param column
+	 *            The indexed column or field, which has to only have numbers
+	 * @param from
+	 *            The smallest value
+	 * @param to
+	 *            The largest value
+	 * @return The objects from the smallest value up
+	 */
+	public List<T> range(String column, double from, double to) {
+		lock.readLock().lock();
+		try {
+			Index i = index(column);
+			if(!i.numeric) {
+				throw new IllegalArgumentException(column + " does not only have numbers");
+			}
+			int start = i.lowerBound(from, false);
+			int end = Math.max(start, i.lowerBound(to, true));
+			return items(i.numberRows, start, end);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Finds the objects with a value that starts with a prefix
+	 * 
+	 * @param column
+	 *            The indexed column or field
+	 * @param prefix
+	 *            The prefix, which is case sensitive
+	 * @return The objects in the order of their values
+	 */
+	public List<T> prefix(String column, String prefix) {
+		lock.readLock().lock();
+		try {
+			Index i = index(column);
+			int start = i.lowerBound(prefix);
+			int end = start;
+			while(end < i.keyCount && i.keys[end].startsWith(prefix)) {
+				end++;
+			}
+			return items(i.keyRows, start, end);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	private List<T> items(int[] rows, int from, int to) {
+		List<T> l = new ArrayList<T>(to - from);
+		for(int i = from; i < to; i++) {
+			l.add(items.get(rows[i]));
+		}
+		return l;
+	}
+	
+	/**
+	 * @param column
+	 *            The indexed column or field
+	 * @return True if every value of the column is a number, so it can be searched with {@link #range(String, double, double)}
+	 */
+	public boolean isNumeric(String column) {
+		lock.readLock().lock();
+		try {
+			return index(column).numeric;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * @return the indexed columns, or fields for a snapshot built from objects
+	 */
+	public List<String> getColumns() {
+		return columns;
+	}
+	
+	/**
+	 * @return every object in the order they were added
+	 */
+	public List<T> getItems() {
+		lock.readLock().lock();
+		try {
+			return new ArrayList<T>(items);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * @return the number of objects
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return items.size();
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "IndexedSnapshot [type=" + type.getSimpleName() + ", columns=" + columns + ", size=" + size() + "]";
+	}
+	
+	/**
+	 * The row numbers of one value
+	 */
+	private static class Postings {
+		
+		private int[] rows = new int[1];
+		private int size;
+		
+		private void add(int row) {
+			if(size == rows.length) {
+				rows = Arrays.copyOf(rows, size * 2);
+			}
+			rows[size++] = row;
+		}
+	}
+	
+	/**
+	 * Compares two of the rows being added by their position in the batch
+	 */
+	private abstract static class Order {
+		
+		abstract int compare(int a, int b);
+	}
+	
+	/**
+	 * The indexes of one column. The keys and numbers are sorted with the row numbers in the same order, and equal values are in row order.
+	 */
+	private static class Index {
+		
+		private final Map<String, Postings> postings = new HashMap<String, Postings>();
+		private String[] keys = new String[0];
+		private int[] keyRows = new int[0];
+		private int keyCount;
+		private boolean numeric = true;
+		private double[] numbers = new double[0];
+		private int[] numberRows = new int[0];
+		
+		private void add(final String[] values, int first) {
+			int[] order = new int[values.length];
+			int n = 0;
+			final double[] parsed = new double[numeric ? values.length : 0];
+			for(int i = 0; i < values.length; i++) {
+				String v = values[i];
+				if(v == null) {
+					continue;
+				}
+				Postings p = postings.get(v);
+				if(p == null) {
+					p = new Postings();
+					postings.put(v, p);
+				}
+				p.add(first + i);
+				if(numeric) {
+					try {
+						parsed[i] = Double.parseDouble(v);
+					}
+					catch(NumberFormatException e) {
+						numeric = false;
+						numbers = null;
+						numberRows = null;
+					}
+				}
+				order[n++] = i;
+			}
+			int[] byKey = sort(order, n, new Order() {
+				
+				@Override
+				int compare(int a, int b) {
+					return values[a].compareTo(values[b]);
+				}
+			});
+			String[] k = new String[keyCount + n];
+			int[] r = new int[keyCount + n];
+			for(int i = 0, j = 0, o = 0; o < k.length; o++) {
+				if(j == n || (i < keyCount && keys[i].compareTo(values[byKey[j]]) <= 0)) {
+					k[o] = keys[i];
+					r[o] = keyRows[i++];
+				}
+				else {
+					k[o] = values[byKey[j]];
+					r[o] = first + byKey[j++];
+				}
+			}
+			keys = k;
+			keyRows = r;
+			keyCount = k.length;
+			if(numeric) {
+				int[] byNumber = sort(order, n, new Order() {
+					
+					@Override
+					int compare(int a, int b) {
+						return Double.compare(parsed[a], parsed[b]);
+					}
+				});
+				double[] v = new double[numbers.length + n];
+				int[] nr = new int[v.length];
+				for(int i = 0, j = 0, o = 0; o < v.length; o++) {
+					if(j == n || (i < numbers.length && Double.compare(numbers[i], parsed[byNumber[j]]) <= 0)) {
+						v[o] = numbers[i];
+						nr[o] = numberRows[i++];
+					}
+					else {
+						v[o] = parsed[byNumber[j]];
+						nr[o] = first + byNumber[j++];
+					}
+				}
+				numbers = v;
+				numberRows = nr;
+			}
+		}
+		
+		/**
+		 * A stable merge sort of the first n positions
+		 */
+		private static int[] sort(int[] positions, int n, Order order) {
+			int[] a = Arrays.copyOf(positions, n);
+			int[] b = new int[n];
+			for(int width = 1; width < n; width *= 2) {
+				for(int lo = 0; lo < n; lo += 2 * width) {
+					int mid = Math.min(lo + width, n), hi = Math.min(lo + 2 * width, n);
+					for(int i = lo, j = mid, o = lo; o < hi; o++) {
+						b[o] = j == hi || (i < mid && order.compare(a[i], a[j]) <= 0) ? a[i++] : a[j++];
+					}
+				}
+				int[] t = a;
+				a = b;
+				b = t;
+			}
+			return a;
+		}
+		
+		/**
+		 * @return the first key that is not less than the value
+		 */
+		private int lowerBound(String value) {
+			int lo = 0, hi = keyCount;
+			while(lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if(keys[mid].compareTo(value) < 0) {
+					lo = mid + 1;
+				}
+				else {
+					hi = mid;
+				}
+			}
+			return lo;
+		}
+		
+		/**
+		 * @return the first number that is not less than the value, or with after the first number greater than it
+		 */
+		private int lowerBound(double value, boolean after) {
+			int lo = 0, hi = numbers.length;
+			while(lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				int c = Double.compare(numbers[mid], value);
+				if(c < 0 || (after && c == 0)) {
+					lo = mid + 1;
+				}
+				else {
+					hi = mid;
+				}
+			}
+			return lo;
+		}
+	}
+}
@@ -0,0 +1,48 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.objects;
+
+/**
+ * Thrown when a database row can not be turned into a DatabaseObject or a DatabaseObject can not be turned into procedure parameters. The
+ * stack trace is not filled in since the cause already has one and these can happen for every row of a result set.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class MappingException extends Exception {
+	
+	private static final long serialVersionUID = -2170545371963465018L;
+	
+	private final Class<?> type;
+	private final String member;
+	
+	/**
+	 * 
+	 * @param type
+	 *            The class that was being mapped
+	 * @param member
+	 *            The method, field or constructor that failed
+	 * @param cause
+	 *            The exception thrown while mapping
+	 */
+	public MappingException(Class<?> type, String member, Throwable cause) {
+		super("Could not map " + member + " of " + type.getName(), cause, false, false);
+		this.type = type;
+		this.member = member;
+	}
+	
+	/**
+	 * @return the class that was being mapped
+	 */
+	public Class<?> getType() {
+		return type;
+	}
+	
+	/**
+	 * @return the method, field or constructor that failed
+	 */
+	public String getMember() {
+		return member;
+	}
+}
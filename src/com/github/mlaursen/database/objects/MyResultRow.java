@@ -5,6 +5,8 @@ import java.sql.Date;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.github.mlaursen.database.logging.ErrorCategory;
+import com.github.mlaursen.database.logging.ErrorLog;
 import com.github.mlaursen.database.utils.DateUtil;
 
 /**
@@ -99,20 +101,39 @@ public class MyResultRow {
 	}
 	
 	/**
-	 * Calls the constructor for a Database Object using a MyResultRow
+	 * Calls the constructor for a Database Object using a MyResultRow. Failures are sent to the {@link ErrorLog}.
+	 * {@link #constructOrThrow(Class)}
 	 * 
 	 * @param type
 	 *            The database object class to construct
 	 * @return A database object or null
 	 */
 	public <T extends DatabaseObject> T construct(Class<T> type) {
+		try {
+			return constructOrThrow(type);
+		}
+		catch(MappingException e) {
+			ErrorLog.report(ErrorCategory.MAPPING, e.getMessage(), e);
+			return null;
+		}
+	}
+	
+	/**
+	 * Calls the constructor for a Database Object using a MyResultRow
+	 * 
+	 * @param type
+	 *            The database object class to construct
+	 * @return A database object
+	 * @throws MappingException
+	 *             If the class does not have a public MyResultRow constructor or the constructor threw an exception
+	 */
+	public <T extends DatabaseObject> T constructOrThrow(Class<T> type) throws MappingException {
 		try {
 			return type.cast(type.getConstructor(MyResultRow.class).newInstance(this));
 		}
 		catch(InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException
 				| NoSuchMethodException | SecurityException e) {
-			e.printStackTrace();
-			return null;
+			throw new MappingException(type, "the MyResultRow constructor", e instanceof InvocationTargetException ? e.getCause() : e);
 		}
 	}
 }
@@ -10,11 +10,31 @@ import java.util.List;
 /**
  * A version of a SQL ResultSet. The only difference is that this is a List of MyResultRows instead of a ResultSet that must be closed.
  * 
+ * A result read from the database that goes over the {@link SpillBuffer} memory budget keeps the rest of its rows in a memory mapped temp
+ * file, which every method reads from the same way.
+ * 
  * @author mlaursen
  * 
  */
 public class MyResultSet implements Iterable<MyResultRow> {
 	
+	/**
+	 * Gets every row of a SQL ResultSet as soon as it is read
+	 * 
+	 * @author mlaursen
+	 * 
+	 */
+	public interface RowHandler {
+		
+		/**
+		 * @param row
+		 *            The row that was just read
+		 * @throws SQLException
+		 *             If the row could not be handled
+		 */
+		void row(MyResultRow row) throws SQLException;
+	}
+	
 	private List<MyResultRow> rs;
 	private List<String> colNames;
 	private int size;
@@ -92,30 +112,94 @@ public class MyResultSet implements Iterable<MyResultRow> {
 	}
 	
 	/**
-	 * Turns a SQL ResultSet into a MyResultSet
+	 * Turns a SQL ResultSet into a MyResultSet. The rows past the memory budget are spilled to disk.
 	 * 
 	 * @param rs
 	 *            A SQL ResultSet to convert
 	 * @return a ResultSet with the rows and column names from the sql result set
 	 * @throws SQLException
-	 *             A SQLException is thrown if the resultset can not get the meta data
+	 *             A SQLException is thrown if the resultset can not get the meta data or the rows could not be spilled
 	 */
 	public static MyResultSet toMyResultSet(ResultSet rs) throws SQLException {
+		return toMyResultSet(rs, null);
+	}
+	
+	/**
+	 * Reads a SQL ResultSet. Without a handler the rows are kept the same way as {@link #toMyResultSet(ResultSet)}. With a handler every
+	 * row is given to the handler as soon as it is read and is not kept, so a result is never held twice.
+	 * 
+	 * @param rs
+	 *            A SQL ResultSet to read
+	 * @param handler
+	 *            The handler for each row or null to keep the rows
+	 * @return a ResultSet with the rows and column names, or with only the column names when there is a handler
+	 * @throws SQLException
+	 *             A SQLException is thrown if the resultset can not get the meta data, the rows could not be spilled or the handler
+	 *             failed
+	 */
+	public static MyResultSet toMyResultSet(ResultSet rs, RowHandler handler) throws SQLException {
+		List<String> colNames = columnNames(rs);
+		if(handler != null) {
+			read(rs, colNames, Integer.MAX_VALUE, handler);
+			return new MyResultSet(new ArrayList<MyResultRow>(), colNames);
+		}
+		
+		final SpillBuffer rows = new SpillBuffer(colNames);
+		read(rs, colNames, Integer.MAX_VALUE, new RowHandler() {
+			
+			@Override
+			public void row(MyResultRow row) throws SQLException {
+				rows.add(row);
+			}
+		});
+		return new MyResultSet(rows.finish(), colNames);
+	}
+	
+	/**
+	 * Gets the lower case column names of a SQL ResultSet
+	 * 
+	 * @param rs
+	 *            A SQL ResultSet
+	 * @return the column names in column order
+	 * @throws SQLException
+	 *             A SQLException is thrown if the resultset can not get the meta data
+	 */
+	public static List<String> columnNames(ResultSet rs) throws SQLException {
 		ResultSetMetaData rsmd = rs.getMetaData();
 		int cols = rsmd.getColumnCount();
 		List<String> colNames = new ArrayList<String>();
 		for(int i = 1; i <= cols; i++)
 			colNames.add(rsmd.getColumnName(i).toLowerCase());
-		
-		List<MyResultRow> rows = new ArrayList<MyResultRow>();
-		while(rs.next()) {
+		return colNames;
+	}
+	
+	/**
+	 * Reads up to max rows of a SQL ResultSet and gives each row to the handler. A cursor that is read a page at a time uses this
+	 * with the page size.
+	 * 
+	 * @param rs
+	 *            A SQL ResultSet to read
+	 * @param colNames
+	 *            The column names from {@link #columnNames(ResultSet)}
+	 * @param max
+	 *            The most rows to read
+	 * @param handler
+	 *            The handler for each row
+	 * @return the number of rows read. Less than max means the result set has no more rows
+	 * @throws SQLException
+	 *             A SQLException is thrown if a row could not be read or the handler failed
+	 */
+	public static int read(ResultSet rs, List<String> colNames, int max, RowHandler handler) throws SQLException {
+		int read = 0;
+		while(read < max && rs.next()) {
 			MyResultRow columns = new MyResultRow();
-			for(int i = 1; i <= cols; i++) {
-				columns.add(rsmd.getColumnName(i).toLowerCase(), rs.getString(i));
+			for(int i = 0; i < colNames.size(); i++) {
+				columns.add(colNames.get(i), rs.getString(i + 1));
 			}
-			rows.add(columns);
+			handler.row(columns);
+			read++;
 		}
-		return new MyResultSet(rows, colNames);
+		return read;
 	}
 	
 	/**
@@ -127,6 +211,20 @@ public class MyResultSet implements Iterable<MyResultRow> {
 		return colNames;
 	}
 	
+	/**
+	 * @return the number of rows in the result set
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @return the number of rows that were spilled to disk because the result went over the memory budget
+	 */
+	public int getSpilledRows() {
+		return rs instanceof SpillBuffer.SpilledList ? ((SpillBuffer.SpilledList) rs).getSpilledRows() : 0;
+	}
+	
 	/**
 	 * Creates an iterator for the current MyResultSet. It creates an iterator for the list of result rows;
 	 */
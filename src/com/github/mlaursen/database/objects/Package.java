@@ -12,14 +12,18 @@ import java.util.Map;
 
 import com.github.mlaursen.annotations.DatabaseField;
 import com.github.mlaursen.annotations.DatabaseFieldType;
+import com.github.mlaursen.annotations.DatabasePartitions;
+import com.github.mlaursen.annotations.DatabaseReplicated;
 import com.github.mlaursen.annotations.DatabaseViewClass;
 import com.github.mlaursen.annotations.MultipleDatabaseField;
+import com.github.mlaursen.database.concurrency.Priority;
 import com.github.mlaursen.database.procedures.Createable;
 import com.github.mlaursen.database.procedures.Deleteable;
 import com.github.mlaursen.database.procedures.Filterable;
 import com.github.mlaursen.database.procedures.GetAllable;
 import com.github.mlaursen.database.procedures.Getable;
 import com.github.mlaursen.database.procedures.NoCursor;
+import com.github.mlaursen.database.procedures.Pageable;
 import com.github.mlaursen.database.procedures.Updateable;
 import com.github.mlaursen.database.utils.ClassUtil;
 
@@ -129,6 +133,11 @@ public class Package {
 		generateProcedure(databaseObject, Updateable.class);
 		generateProcedure(databaseObject, Deleteable.class);
 		generateProcedure(databaseObject, Createable.class);
+		if(ClassUtil.objectAssignableFrom(databaseObject, Pageable.class)) {
+			Procedure p = new Procedure("getpage", "afterkey", "limit");
+			p.setIdempotent(true);
+			this.addProcedure(p);
+		}
 	}
 	
 	/**
@@ -151,12 +160,50 @@ public class Package {
 			if(ClassUtil.objectAssignableFrom(procedureType, NoCursor.class)) {
 				p.setHasCursor(false);
 			}
+			else {
+				p.setIdempotent(true);
+			}
+			p.addRedacted(getRedactedFields(databaseObject));
 			if(procedureType.equals(GetAllable.class)) {
 				p.setDisplayName("getall");
 				p.setName("get");
+				p.setPriority(Priority.BULK);
 			}
 			this.addProcedure(p);
+			if(procedureType.equals(GetAllable.class) && databaseObject.isAnnotationPresent(DatabasePartitions.class)) {
+				Procedure partition = new Procedure("getpartition", databaseObject.getAnnotation(DatabasePartitions.class).strategy()
+						.getParams());
+				partition.setIdempotent(true);
+				partition.setPriority(Priority.BULK);
+				partition.addRedacted(getRedactedFields(databaseObject));
+				this.addProcedure(partition);
+			}
+			if(procedureType.equals(GetAllable.class) && databaseObject.isAnnotationPresent(DatabaseReplicated.class)) {
+				Procedure changed = new Procedure("getchangedsince", "ts");
+				changed.setIdempotent(true);
+				changed.setPriority(Priority.BULK);
+				this.addProcedure(changed);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the names of every field in the class and its super classes that has redact set in its DatabaseField annotation
+	 * 
+	 * @param c
+	 *            The class
+	 * @return The field names
+	 */
+	private String[] getRedactedFields(Class<?> c) {
+		List<String> names = new ArrayList<String>();
+		for(Class<?> cl : ClassUtil.getClassList(c)) {
+			for(Field f : cl.getDeclaredFields()) {
+				if(f.isAnnotationPresent(DatabaseField.class) && f.getAnnotation(DatabaseField.class).redact()) {
+					names.add(f.getName());
+				}
+			}
 		}
+		return names.toArray(new String[names.size()]);
 	}
 	
 	/**
@@ -0,0 +1,57 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.objects;
+
+/**
+ * How the rows of a type are split for a partitioned getAll. {@link com.github.mlaursen.annotations.DatabasePartitions}
+ * 
+ * @author mlaursen
+ * 
+ */
+public enum PartitionStrategy {
+	/**
+	 * Every partition is a range of numeric primary keys
+	 */
+	RANGE("lowerkey", "upperkey"),
+	/**
+	 * Every partition is the rows whose primary key hashes to it
+	 */
+	HASH("partition", "partitions");
+	
+	private final String[] params;
+	
+	private PartitionStrategy(String... params) {
+		this.params = params;
+	}
+	
+	/**
+	 * @return the parameters of the GETPARTITION procedure without the cursor
+	 */
+	public String[] getParams() {
+		return params.clone();
+	}
+	
+	/**
+	 * Gets the parameters that select one partition
+	 * 
+	 * @param partition
+	 *            The partition from 0 to partitions - 1
+	 * @param partitions
+	 *            The number of partitions
+	 * @param min
+	 *            The smallest key expected for a RANGE split
+	 * @param max
+	 *            The largest key expected for a RANGE split
+	 * @return The parameters for the GETPARTITION procedure
+	 */
+	public Object[] getBounds(int partition, int partitions, long min, long max) {
+		if(this == HASH) {
+			return new Object[] { partition, partitions };
+		}
+		long step = Math.max(1, (max - min) / partitions + 1);
+		Long lower = partition == 0 ? null : min + step * partition;
+		Long upper = partition == partitions - 1 ? null : min + step * (partition + 1);
+		return new Object[] { lower, upper };
+	}
+}
@@ -3,6 +3,11 @@
  */
 package com.github.mlaursen.database.objects;
 
+import java.util.HashSet;
+import java.util.Set;
+
+import com.github.mlaursen.database.concurrency.Priority;
+
 /**
  * A Java representation of an Oracle Stored Procedure.
  * 
@@ -14,6 +19,11 @@ public class Procedure {
 	private String name, displayName;
 	private boolean hasCursor;
 	private String[] params;
+	private Priority priority;
+	private int timeout;
+	private boolean idempotent;
+	private long slowThreshold;
+	private Set<String> redacted = new HashSet<String>();
 	
 	/**
 	 * {@link #Procedure(String, String, boolean, String...)} The display name is set to the name and the procedure automatically has a
@@ -144,4 +154,86 @@ public class Procedure {
 		this.hasCursor = hasCursor;
 	}
 	
+	/**
+	 * @return the priority or null if the procedure does not have one
+	 */
+	public Priority getPriority() {
+		return priority;
+	}
+	
+	/**
+	 * @param priority
+	 *            The priority to call the procedure with when neither the call nor the DatabaseObject has one
+	 */
+	public void setPriority(Priority priority) {
+		this.priority = priority;
+	}
+	
+	/**
+	 * @return the query timeout in seconds. 0 means the connection manager's default timeout is used
+	 */
+	public int getTimeout() {
+		return timeout;
+	}
+	
+	/**
+	 * @param timeout
+	 *            The query timeout in seconds for this procedure. 0 uses the connection manager's default timeout
+	 */
+	public void setTimeout(int timeout) {
+		this.timeout = timeout;
+	}
+	
+	/**
+	 * @return true if calling the procedure more than once has the same effect as calling it once
+	 */
+	public boolean isIdempotent() {
+		return idempotent;
+	}
+	
+	/**
+	 * @param idempotent
+	 *            True if the procedure only reads. Idempotent procedures are retried after transient failures
+	 */
+	public void setIdempotent(boolean idempotent) {
+		this.idempotent = idempotent;
+	}
+	
+	/**
+	 * @return the slow call threshold in milliseconds. 0 means the slow call log's threshold is used
+	 */
+	public long getSlowThreshold() {
+		return slowThreshold;
+	}
+	
+	/**
+	 * @param slowThreshold
+	 *            Calls to this procedure that take longer than this many milliseconds are written to the slow call log. 0 uses the slow call
+	 *            log's threshold
+	 */
+	public void setSlowThreshold(long slowThreshold) {
+		this.slowThreshold = slowThreshold;
+	}
+	
+	/**
+	 * Marks parameters whose values should never be written to a log
+	 * 
+	 * @param params
+	 *            The parameter names
+	 */
+	public void addRedacted(String... params) {
+		for(String p : params) {
+			redacted.add(p.toLowerCase());
+		}
+	}
+	
+	/**
+	 * @param param
+	 *            The parameter name
+	 * @return true if the parameter's value should never be written to a log
+	 */
+	public boolean isRedacted(String param) {
+		return redacted.contains(param.toLowerCase());
+	}
+	
 }
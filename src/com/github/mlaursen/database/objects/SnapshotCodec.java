@@ -0,0 +1,275 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.objects;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Writes a {@link MyResultSet} in a compact binary format and reads it back, so reference data can be saved to a local file and loaded on
+ * the next start without going to the database. The format is:
+ * 
+ * <pre>
+ * magic          4 bytes, MRSN
+ * version        1 byte
+ * label          the type or name the snapshot was saved for
+ * columns        a count and the column names
+ * dictionary     a count and every distinct value once
+ * rows           a count and, for every row, the dictionary number of each column's value (0 for null)
+ * checksum       4 bytes, the CRC32 of everything before it
+ * </pre>
+ * 
+ * Counts, lengths and numbers are varints and strings are UTF-8. Repeated values like foreign keys and types are written once, so a
+ * snapshot is usually much smaller than the same rows with Java serialization, and the rows read from one share their Strings.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class SnapshotCodec {
+	
+	public static final int MAGIC = 0x4D52534E, VERSION = 1;
+	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int CHECK_BYTES = 1 << 16;
+	
+	private SnapshotCodec() {}
+	
+	/**
+	 * Writes a result set
+	 * 
+	 * @param rs
+	 *            The result set
+	 * @param label
+	 *            The type or name the result set is for, which has to match when it is read
+	 * @param out
+	 *            The stream to write to. It is not closed.
+	 * @throws IOException
+	 *             If the stream could not be written
+	 */
+	public static void write(MyResultSet rs, String label, OutputStream out) throws IOException {
+		List<String> colNames = rs.getColNames();
+		if(colNames == null) {
+			throw new IllegalArgumentException("A result set needs its column names to be written");
+		}
+		Map<String, Integer> ids = new HashMap<String, Integer>();
+		List<String> dictionary = new ArrayList<String>();
+		for(MyResultRow r : rs) {
+			for(String c : colNames) {
+				String v = r.get(c);
+				if(v != null && !ids.containsKey(v)) {
+					ids.put(v, dictionary.size() + 1);
+					dictionary.add(v);
+				}
+			}
+		}
+		CRC32 crc = new CRC32();
+		OutputStream o = new CheckedOutputStream(out, crc);
+		o.write(new byte[] { (byte) (MAGIC >>> 24), (byte) (MAGIC >>> 16), (byte) (MAGIC >>> 8), (byte) MAGIC, VERSION });
+		writeString(o, label);
+		writeVarint(o, colNames.size());
+		for(String c : colNames) {
+			writeString(o, c);
+		}
+		writeVarint(o, dictionary.size());
+		for(String v : dictionary) {
+			writeString(o, v);
+		}
+		writeVarint(o, rs.size());
+		for(MyResultRow r : rs) {
+			for(String c : colNames) {
+				String v = r.get(c);
+				writeVarint(o, v == null ? 0 : ids.get(v));
+			}
+		}
+		int sum = (int) crc.getValue();
+		out.write(new byte[] { (byte) (sum >>> 24), (byte) (sum >>> 16), (byte) (sum >>> 8), (byte) sum });
+		out.flush();
+	}
+	
+	/**
+	 * Reads a result set
+	 * 
+	 * @param b
+	 *            The snapshot, from its position to its limit
+	 * @param label
+	 *            The type or name the result set was written for
+	 * @return The result set
+	 * @throws IOException
+	 *             If the snapshot is for another label, another version or is damaged
+	 */
+	public static MyResultSet read(ByteBuffer b, String label) throws IOException {
+		b = b.slice();
+		if(b.remaining() < 9) {
+			throw new IOException("The snapshot is too short");
+		}
+		CRC32 crc = new CRC32();
+		byte[] chunk = new byte[Math.min(CHECK_BYTES, b.remaining() - 4)];
+		ByteBuffer check = b.duplicate();
+		check.limit(b.limit() - 4);
+		while(check.hasRemaining()) {
+			int n = Math.min(chunk.length, check.remaining());
+			check.get(chunk, 0, n);
+			crc.update(chunk, 0, n);
+		}
+		if((int) crc.getValue() != b.getInt(b.limit() - 4)) {
+			throw new IOException("The snapshot is damaged");
+		}
+		b.limit(b.limit() - 4);
+		try {
+			if(b.getInt() != MAGIC) {
+				throw new IOException("Not a snapshot");
+			}
+			int version = b.get();
+			if(version != VERSION) {
+				throw new IOException("The snapshot is version " + version + " but only version " + VERSION + " can be read");
+			}
+			String l = readString(b);
+			if(!l.equals(label)) {
+				throw new IOException("The snapshot is for " + l + " and not " + label);
+			}
+			int cols = readVarint(b);
+			List<String> colNames = new ArrayList<String>(cols);
+			for(int i = 0; i < cols; i++) {
+				colNames.add(readString(b));
+			}
+			String[] dictionary = new String[readVarint(b) + 1];
+			for(int i = 1; i < dictionary.length; i++) {
+				dictionary[i] = readString(b);
+			}
+			int size = readVarint(b);
+			List<MyResultRow> rows = new ArrayList<MyResultRow>(Math.min(size, b.remaining()));
+			for(int i = 0; i < size; i++) {
+				MyResultRow r = new MyResultRow();
+				for(int c = 0; c < cols; c++) {
+					r.add(colNames.get(c), dictionary[readVarint(b)]);
+				}
+				rows.add(r);
+			}
+			return new MyResultSet(rows, colNames);
+		}
+		catch(BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+			throw new IOException("The snapshot is damaged", e);
+		}
+	}
+	
+	/**
+	 * Saves a result set to a file. The snapshot is written next to the file and moved over it, so a reader never sees half of one.
+	 * 
+	 * @param rs
+	 *            The result set
+	 * @param label
+	 *            The type or name the result set is for
+	 * @param file
+	 *            The file
+	 * @throws IOException
+	 *             If the file could not be written
+	 */
+	public static void save(MyResultSet rs, String label, File file) throws IOException {
+		File dir = file.getAbsoluteFile().getParentFile();
+		if(dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Could not create " + dir);
+		}
+		File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+		try {
+			try(OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16)) {
+				write(rs, label, out);
+			}
+			try {
+				Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch(AtomicMoveNotSupportedException e) {
+				Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally {
+			tmp.delete();
+		}
+	}
+	
+	/**
+	 * Loads a result set from a file by memory mapping it
+	 * 
+	 * @param file
+	 *            The file
+	 * @param label
+	 *            The type or name the result set was saved for
+	 * @return The result set
+	 * @throws IOException
+	 *             If the file could not be read, is for another label, another version or is damaged
+	 */
+	public static MyResultSet load(File file, String label) throws IOException {
+		try(RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			FileChannel ch = raf.getChannel();
+			return read(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()), label);
+		}
+	}
+	
+	/**
+	 * Loads a list of DatabaseObjects from a snapshot of the rows they were made from
+	 * 
+	 * @param file
+	 *            The file
+	 * @param type
+	 *            The DatabaseObject class to construct, which is also the label
+	 * @return The objects
+	 * @throws IOException
+	 *             If the file could not be read, is for another type, another version or is damaged
+	 */
+	public static <T extends DatabaseObject> List<T> loadList(File file, Class<T> type) throws IOException {
+		return load(file, type.getName()).toListOf(type);
+	}
+	
+	private static void writeVarint(OutputStream out, int v) throws IOException {
+		while((v & ~0x7F) != 0) {
+			out.write((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		out.write(v);
+	}
+	
+	private static int readVarint(ByteBuffer b) throws IOException {
+		int v = 0;
+		for(int shift = 0; shift < 35; shift += 7) {
+			byte x = b.get();
+			v |= (x & 0x7F) << shift;
+			if(x >= 0) {
+				return v;
+			}
+		}
+		throw new IOException("The snapshot is damaged");
+	}
+	
+	private static void writeString(OutputStream out, String s) throws IOException {
+		byte[] b = s.getBytes(UTF8);
+		writeVarint(out, b.length);
+		out.write(b);
+	}
+	
+	private static String readString(ByteBuffer b) throws IOException {
+		int n = readVarint(b);
+		if(n < 0 || n > b.remaining()) {
+			throw new IOException("The snapshot is damaged");
+		}
+		byte[] s = new byte[n];
+		b.get(s);
+		return new String(s, UTF8);
+	}
+}
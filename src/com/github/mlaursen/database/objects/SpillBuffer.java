@@ -0,0 +1,355 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.objects;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.RandomAccess;
+
+import com.github.mlaursen.database.logging.ErrorCategory;
+import com.github.mlaursen.database.logging.ErrorLog;
+import com.github.mlaursen.database.metrics.SpillMetrics;
+import com.github.mlaursen.database.utils.LocalSettings;
+
+/**
+ * Collects the rows of a {@link MyResultSet} and keeps them in memory until they go over the memory budget. The rows after that are
+ * encoded into a temp file that is memory mapped once the last row is added, so a large result only takes the budget on the heap and the
+ * operating system pages the rest in as it is read. The file is deleted as soon as it is mapped and the space is given back when the
+ * result is garbage collected.
+ * 
+ * The budget is per result and is off until it is set with {@link #setBudget(long)} or spill.budget (in bytes), and the files go in
+ * spill.dir or java.io.tmpdir. If the temp file can not be created the result is kept in memory.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class SpillBuffer {
+	
+	/**
+	 * The most bytes one mapping covers. A mapping can not be larger than 2GB, so a larger file is mapped in segments that each start on
+	 * a row.
+	 */
+	public static final int SEGMENT_BYTES = 1 << 28;
+	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int ROW_BYTES = 64, COLUMN_BYTES = 48;
+	
+	private static volatile long budget;
+	private static volatile File directory;
+	
+	private final List<String> colNames;
+	private final long limit;
+	private final List<MyResultRow> head = new ArrayList<MyResultRow>();
+	private long estimate;
+	private File file;
+	private OutputStream out;
+	private byte[] encoded = new byte[256];
+	private long[] offsets = new long[1024];
+	private long position, segmentStart;
+	private final List<Long> segmentStarts = new ArrayList<Long>();
+	private final List<Integer> segmentRows = new ArrayList<Integer>();
+	private int spilled;
+	private boolean failed;
+	
+	/**
+	 * 
+	 * @param colNames
+	 *            The column names every row has, in the order they are written
+	 */
+	SpillBuffer(List<String> colNames) {
+		this.colNames = colNames;
+		this.limit = budget;
+	}
+	
+	/**
+	 * @return the memory budget of a result in bytes or 0 if results are never spilled
+	 */
+	public static long getBudget() {
+		return budget;
+	}
+	
+	/**
+	 * @param bytes
+	 *            The memory budget of a result in bytes or 0 to never spill
+	 */
+	public static void setBudget(long bytes) {
+		budget = Math.max(0, bytes);
+	}
+	
+	/**
+	 * @return the directory for the temp files or null for java.io.tmpdir
+	 */
+	public static File getDirectory() {
+		return directory;
+	}
+	
+	/**
+	 * @param dir
+	 *            The directory for the temp files or null for java.io.tmpdir
+	 */
+	public static void setDirectory(File dir) {
+		directory = dir;
+	}
+	
+	/**
+	 * Sets the budget and the directory from spill.budget and spill.dir when they are in the properties. A budget that is not a number
+	 * keeps the current budget.
+	 * 
+	 * @param properties
+	 *            The local settings
+	 */
+	public static void fromProperties(Properties properties) {
+		setBudget(LocalSettings.getLong(properties, LocalSettings.SPILL_BUDGET, budget));
+		String dir = properties.getProperty(LocalSettings.SPILL_DIR);
+		if(dir != null && !dir.trim().isEmpty()) {
+			setDirectory(new File(dir.trim()));
+		}
+	}
+	
+	/**
+	 * Adds a row
+	 * 
+	 * @param row
+	 *            The row
+	 * @throws SQLException
+	 *             If the row could not be written to the temp file
+	 */
+	void add(MyResultRow row) throws SQLException {
+		if(out == null) {
+			if(limit == 0 || failed || (estimate += estimate(row)) <= limit) {
+				head.add(row);
+				return;
+			}
+			if(!open()) {
+				head.add(row);
+				return;
+			}
+		}
+		try {
+			write(row);
+		}
+		catch(IOException e) {
+			discard();
+			throw new SQLException("The result could not be spilled to " + file, e);
+		}
+	}
+	
+	private long estimate(MyResultRow row) {
+		long bytes = ROW_BYTES;
+		for(String c : colNames) {
+			String v = row.get(c);
+			bytes += COLUMN_BYTES + (v == null ? 0 : 2 * v.length());
+		}
+		return bytes;
+	}
+	
+	private boolean open() {
+		try {
+			file = File.createTempFile("myresultset", ".spill", directory);
+			out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+			segmentStarts.add(0L);
+			segmentRows.add(0);
+			return true;
+		}
+		catch(IOException | SecurityException e) {
+			ErrorLog.report(ErrorCategory.MAPPING, "The result could not be spilled to disk, so it is kept in memory.", e);
+			SpillMetrics.getDefault().failed();
+			if(file != null) {
+				file.delete();
+				file = null;
+			}
+			failed = true;
+			return false;
+		}
+	}
+	
+	private void write(MyResultRow row) throws IOException {
+		int n = 0;
+		for(String c : colNames) {
+			String v = row.get(c);
+			byte[] b = v == null ? null : v.getBytes(UTF8);
+			n = ensure(n, 5 + (b == null ? 0 : b.length));
+			n = putVarint(n, b == null ? 0 : b.length + 1);
+			if(b != null) {
+				System.arraycopy(b, 0, encoded, n, b.length);
+				n += b.length;
+			}
+		}
+		if(position + n - segmentStart > SEGMENT_BYTES && position > segmentStart) {
+			segmentStart = position;
+			segmentStarts.add(position);
+			segmentRows.add(spilled);
+		}
+		out.write(encoded, 0, n);
+		if(spilled == offsets.length) {
+			offsets = Arrays.copyOf(offsets, spilled * 2);
+		}
+		offsets[spilled++] = position;
+		position += n;
+	}
+	
+	private int ensure(int n, int more) {
+		if(n + more > encoded.length) {
+			encoded = Arrays.copyOf(encoded, Math.max(encoded.length * 2, n + more));
+		}
+		return n;
+	}
+	
+	private int putVarint(int n, int v) {
+		while((v & ~0x7F) != 0) {
+			encoded[n++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		encoded[n++] = (byte) v;
+		return n;
+	}
+	
+	private void discard() {
+		try {
+			out.close();
+		}
+		catch(IOException e) {
+			// the file is being deleted anyway
+		}
+		out = null;
+		file.delete();
+	}
+	
+	/**
+	 * Maps the temp file if any rows were spilled
+	 * 
+	 * @return The rows
+	 * @throws SQLException
+	 *             If the temp file could not be written or mapped
+	 */
+	List<MyResultRow> finish() throws SQLException {
+		if(out == null) {
+			return head;
+		}
+		ByteBuffer[] segments = new ByteBuffer[segmentStarts.size()];
+		try {
+			out.close();
+			out = null;
+			try(RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+				FileChannel ch = raf.getChannel();
+				for(int i = 0; i < segments.length; i++) {
+					long start = segmentStarts.get(i);
+					long end = i + 1 < segments.length ? segmentStarts.get(i + 1) : position;
+					segments[i] = ch.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+				}
+			}
+		}
+		catch(IOException e) {
+			if(out != null) {
+				discard();
+			}
+			else {
+				file.delete();
+			}
+			throw new SQLException("The result could not be spilled to " + file, e);
+		}
+		if(!file.delete()) {
+			file.deleteOnExit();
+		}
+		SpillMetrics.getDefault().spilled(spilled, position);
+		int[] firstRows = new int[segments.length];
+		for(int i = 0; i < firstRows.length; i++) {
+			firstRows[i] = segmentRows.get(i);
+		}
+		long[] segmentOffsets = new long[segments.length];
+		for(int i = 0; i < segmentOffsets.length; i++) {
+			segmentOffsets[i] = segmentStarts.get(i);
+		}
+		return new SpilledList(colNames, head, segments, segmentOffsets, firstRows, Arrays.copyOf(offsets, spilled));
+	}
+	
+	/**
+	 * The rows of a spilled result. The rows that fit in the budget are kept as they are and the rest are decoded from the mapped file
+	 * each time they are read.
+	 */
+	static class SpilledList extends AbstractList<MyResultRow> implements RandomAccess {
+		
+		private final List<String> colNames;
+		private final List<MyResultRow> head;
+		private final ByteBuffer[] segments;
+		private final long[] segmentOffsets, offsets;
+		private final int[] firstRows;
+		
+		private SpilledList(List<String> colNames, List<MyResultRow> head, ByteBuffer[] segments, long[] segmentOffsets, int[] firstRows,
+				long[] offsets) {
+			this.colNames = colNames;
+			this.head = head;
+			this.segments = segments;
+			this.segmentOffsets = segmentOffsets;
+			this.firstRows = firstRows;
+			this.offsets = offsets;
+		}
+		
+		/**
+		 * @return the number of rows that are on disk
+		 */
+		int getSpilledRows() {
+			return offsets.length;
+		}
+		
+		@Override
+		public MyResultRow get(int index) {
+			if(index < head.size()) {
+				return head.get(index);
+			}
+			int i = index - head.size();
+			if(i >= offsets.length) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+			}
+			int s = Arrays.binarySearch(firstRows, i);
+			if(s < 0) {
+				s = -s - 2;
+			}
+			ByteBuffer b = segments[s].duplicate();
+			b.position((int) (offsets[i] - segmentOffsets[s]));
+			MyResultRow row = new MyResultRow();
+			for(String c : colNames) {
+				int n = getVarint(b);
+				if(n == 0) {
+					row.add(c, null);
+				}
+				else {
+					byte[] v = new byte[n - 1];
+					b.get(v);
+					row.add(c, new String(v, UTF8));
+				}
+			}
+			return row;
+		}
+		
+		private static int getVarint(ByteBuffer b) {
+			int v = 0;
+			for(int shift = 0;; shift += 7) {
+				byte x = b.get();
+				v |= (x & 0x7F) << shift;
+				if(x >= 0) {
+					return v;
+				}
+			}
+		}
+		
+		@Override
+		public int size() {
+			return head.size() + offsets.length;
+		}
+	}
+}
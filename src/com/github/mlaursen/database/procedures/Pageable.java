@@ -0,0 +1,14 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.procedures;
+
+/**
+ * Interface that lets a database object be read one page at a time in primary key order. The generated procedure is
+ * GETPAGE(:AFTERKEY, :LIMIT, :CURSOR) and returns at most :LIMIT rows with a primary key greater than :AFTERKEY, or from the first row
+ * when :AFTERKEY is null.
+ * 
+ * @author mlaursen
+ * 
+ */
+public interface Pageable {}
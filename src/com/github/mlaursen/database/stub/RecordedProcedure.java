@@ -0,0 +1,118 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.stub;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.mlaursen.database.objects.MyResultRow;
+import com.github.mlaursen.database.tracing.CallRecord;
+
+/**
+ * A procedure that answers with what a {@link com.github.mlaursen.database.tracing.CallRecorder} recorded. A call with the same parameters
+ * as a recorded call gets the recorded rows back, so a call log taken with record.rows=true can stand in for the real database.
+ * 
+ * <pre>
+ * RecordedProcedure.register(StubDriver.getDatabase(&quot;prod&quot;), CallLogReader.readAll(new File(&quot;calls.log.gz&quot;)));
+ * </pre>
+ * 
+ * Calls with parameters that were never recorded get an empty cursor, or 0 rows changed for calls without a cursor.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class RecordedProcedure implements StubProcedure {
+	
+	private final String name;
+	private final Map<List<String>, CallRecord> records = new HashMap<List<String>, CallRecord>();
+	private List<String> columns;
+	private boolean cursor;
+	
+	/**
+	 * 
+	 * @param name
+	 *            The full procedure name. I.E. PERSON_PKG.GET
+	 */
+	public RecordedProcedure(String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * Registers a RecordedProcedure for every procedure in the records. Calls that failed are skipped, and the last call with the same
+	 * parameters wins.
+	 * 
+	 * @param db
+	 *            The database
+	 * @param records
+	 *            The recorded calls
+	 * @return The number of procedures registered
+	 */
+	public static int register(StubDatabase db, Iterable<CallRecord> records) {
+		Map<String, RecordedProcedure> procedures = new HashMap<String, RecordedProcedure>();
+		for(CallRecord r : records) {
+			if(r.isError()) {
+				continue;
+			}
+			RecordedProcedure p = procedures.get(r.getProcedureName());
+			if(p == null) {
+				p = new RecordedProcedure(r.getProcedureName());
+				procedures.put(r.getProcedureName(), p);
+				db.register(r.getProcedureName(), p);
+			}
+			p.add(r);
+		}
+		return procedures.size();
+	}
+	
+	/**
+	 * @param r
+	 *            A recorded call of this procedure
+	 */
+	public synchronized void add(CallRecord r) {
+		records.put(key(r.getParameters()), r);
+		cursor |= r.isCursor();
+		if(columns == null && r.getResults() != null) {
+			columns = r.getResults().getColNames();
+		}
+	}
+	
+	/**
+	 * Parameters are compared as Strings since a String that is a number is bound as an Integer
+	 */
+	private static List<String> key(Object[] params) {
+		List<String> l = new ArrayList<String>(params.length);
+		for(Object p : params) {
+			l.add(p == null ? null : p.toString());
+		}
+		return l;
+	}
+	
+	@Override
+	public synchronized Object call(StubDatabase db, String[] names, Object[] params) throws SQLException {
+		CallRecord r = records.get(key(params));
+		if(!cursor) {
+			return r == null ? 0 : (int) r.getRows();
+		}
+		List<String> c = r == null || r.getResults() == null ? columns : r.getResults().getColNames();
+		StubTable t = new StubTable(name, c == null ? new ArrayList<String>() : c);
+		if(r != null && r.getResults() != null) {
+			for(MyResultRow row : r.getResults()) {
+				String[] values = new String[c.size()];
+				for(int i = 0; i < values.length; i++) {
+					values[i] = row.get(c.get(i));
+				}
+				t.insert(values);
+			}
+		}
+		return t;
+	}
+	
+	@Override
+	public String toString() {
+		return "RecordedProcedure [name=" + name + ", records=" + records.size() + ", columns=" + columns + "]";
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.stub;
+
+import java.lang.reflect.Method;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A connection to a {@link StubDatabase}. There are no transactions, so commit and rollback do nothing.
+ * 
+ * @author mlaursen
+ * 
+ */
+class StubConnection extends StubHandler {
+	
+	private final StubDatabase db;
+	private volatile boolean closed, autoCommit = true;
+	
+	/**
+	 * 
+	 * @param db
+	 *            The database
+	 */
+	StubConnection(StubDatabase db) {
+		this.db = db;
+	}
+	
+	@Override
+	Object invoke(Method method, Object[] args) throws Exception {
+		String name = method.getName();
+		if(closed && !name.equals("close") && !name.equals("isClosed") && !name.equals("isValid")) {
+			throw new SQLException("ORA-17008: Closed Connection", "08003", 17008);
+		}
+		switch(name) {
+			case "prepareCall":
+				return proxy(CallableStatement.class, new StubStatement(db, (String) args[0]));
+			case "createStatement":
+				return proxy(Statement.class, new StubStatement(db, null));
+			case "createClob":
+				return proxy(Clob.class, new StubClob());
+			case "getAutoCommit":
+				return autoCommit;
+			case "setAutoCommit":
+				autoCommit = (Boolean) args[0];
+				return null;
+			case "commit":
+			case "rollback":
+			case "clearWarnings":
+				return null;
+			case "getWarnings":
+				return null;
+			case "isValid":
+				return !closed;
+			case "isClosed":
+				return closed;
+			case "close":
+				closed = true;
+				return null;
+			default:
+				throw unsupported(method);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "StubConnection [db=" + db.getName() + ", closed=" + closed + "]";
+	}
+	
+	/**
+	 * A Clob that is only a String
+	 */
+	static class StubClob extends StubHandler {
+		
+		private final StringBuilder value = new StringBuilder();
+		
+		@Override
+		Object invoke(Method method, Object[] args) throws Exception {
+			switch(method.getName()) {
+				case "setString":
+					if(args.length != 2) {
+						throw unsupported(method);
+					}
+					int pos = ((Long) args[0]).intValue() - 1;
+					String s = (String) args[1];
+					value.replace(pos, Math.min(value.length(), pos + s.length()), s);
+					return s.length();
+				case "getSubString":
+					int start = ((Long) args[0]).intValue() - 1;
+					return value.substring(start, Math.min(value.length(), start + (Integer) args[1]));
+				case "length":
+					return (long) value.length();
+				case "free":
+					return null;
+				default:
+					throw unsupported(method);
+			}
+		}
+		
+		@Override
+		public String toString() {
+			return value.toString();
+		}
+	}
+}
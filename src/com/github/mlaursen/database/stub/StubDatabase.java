@@ -0,0 +1,424 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.stub;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The tables and procedures behind a jdbc:stub: URL. Procedures are either registered {@link StubProcedure}s or emulated from the tables:
+ * for PERSON_PKG the table is PERSON, and the procedure name picks what happens.
+ * 
+ * <ul>
+ * <li>GETPAGE returns the first :LIMIT rows in primary key order with a key greater than :AFTERKEY</li>
+ * <li>GETPARTITION returns the rows whose primary key is between :LOWERKEY and :UPPERKEY, or hashes to :PARTITION of :PARTITIONS</li>
+ * <li>GET..., GETALL and FILTER return the rows that match every parameter that is not null</li>
+ * <li>NEW inserts a row, giving it the next primary key if it does not have one</li>
+ * <li>UPDATE... changes the row with the PRIMARYKEY</li>
+ * <li>DELETE removes the rows that match</li>
+ * </ul>
+ * 
+ * Parameters are matched to columns by name without underscores, so :JOBID is job_id. Every call can be given latency, jitter and a
+ * chance of failing with an ORA error code, which is how the retry, breaker and limiter code can be exercised without Oracle.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class StubDatabase {
+	
+	public static final int DEF_ERROR_CODE = 17002;
+	
+	private static final Pattern CREATE_TABLE = Pattern.compile("CREATE\\s+TABLE\\s+(\\w+)\\s*\\((.*?)\\)\\s*;", Pattern.CASE_INSENSITIVE
+			| Pattern.DOTALL);
+	private static final Pattern INSERT = Pattern.compile("INSERT\\s+INTO\\s+(\\w+)\\s*(?:\\(([^)]*)\\))?\\s*VALUES\\s*\\((.*?)\\)\\s*;",
+			Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Set<Integer> RECOVERABLE = new HashSet<Integer>(Arrays.asList(3113, 3114, 12541, 17002, 17008));
+	
+	private final String name;
+	private final ConcurrentMap<String, StubTable> tables = new ConcurrentHashMap<String, StubTable>();
+	private final ConcurrentMap<String, StubProcedure> procedures = new ConcurrentHashMap<String, StubProcedure>();
+	private final Set<String> seeded = new HashSet<String>();
+	private volatile long latencyMillis, jitterMillis;
+	private volatile double errorRate;
+	private volatile int errorCode = DEF_ERROR_CODE;
+	
+	/**
+	 * 
+	 * @param name
+	 *            The name from the URL
+	 */
+	public StubDatabase(String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * @return the name from the URL
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Creates the tables and runs the INSERTs with literal values from a SQL script. Anything else in the script is skipped. A script is
+	 * only loaded once, so every connection can name the same script.
+	 * 
+	 * @param script
+	 *            The SQL script
+	 * @throws IOException
+	 *             If the script can not be read
+	 */
+	public void seed(File script) throws IOException {
+		synchronized(seeded) {
+			if(seeded.add(script.getCanonicalPath())) {
+				seed(new String(Files.readAllBytes(script.toPath()), Charset.forName("UTF-8")));
+			}
+		}
+	}
+	
+	/**
+	 * Creates the tables and runs the INSERTs with literal values from SQL. Anything else is skipped.
+	 * 
+	 * @param sql
+	 *            The SQL
+	 */
+	public void seed(String sql) {
+		Matcher m = CREATE_TABLE.matcher(sql);
+		while(m.find()) {
+			List<String> columns = new ArrayList<String>();
+			for(String line : m.group(2).split(",")) {
+				String[] words = line.trim().split("\\s+");
+				if(!words[0].isEmpty() && !"CONSTRAINT".equalsIgnoreCase(words[0]) && words.length > 1) {
+					columns.add(words[0]);
+				}
+			}
+			createTable(m.group(1), columns);
+		}
+		m = INSERT.matcher(sql);
+		while(m.find()) {
+			StubTable t = getTable(m.group(1));
+			List<String> values = parseLiterals(m.group(3));
+			if(t == null || values == null) {
+				continue;
+			}
+			if(m.group(2) == null) {
+				t.insert(values.toArray(new String[values.size()]));
+			}
+			else {
+				String[] row = new String[t.getColumns().size()];
+				String[] columns = m.group(2).split(",");
+				for(int i = 0; i < columns.length && i < values.size(); i++) {
+					int c = t.getColumns().indexOf(columns[i].trim().toLowerCase());
+					if(c != -1) {
+						row[c] = values.get(i);
+					}
+				}
+				t.insert(row);
+			}
+		}
+	}
+	
+	/**
+	 * Splits a VALUES list into its values.
+	 * 
+	 * @param s
+	 *            Everything between the parenthesis
+	 * @return The values, or null if any of them is not a number, a quoted string or NULL
+	 */
+	private static List<String> parseLiterals(String s) {
+		List<String> values = new ArrayList<String>();
+		int i = 0;
+		while(i < s.length()) {
+			char c = s.charAt(i);
+			if(Character.isWhitespace(c) || c == ',') {
+				i++;
+			}
+			else if(c == '\'') {
+				StringBuilder sb = new StringBuilder();
+				for(i++; i < s.length(); i++) {
+					if(s.charAt(i) == '\'') {
+						if(i + 1 < s.length() && s.charAt(i + 1) == '\'') {
+							sb.append('\'');
+							i++;
+						}
+						else {
+							break;
+						}
+					}
+					else {
+						sb.append(s.charAt(i));
+					}
+				}
+				values.add(sb.toString());
+				i++;
+			}
+			else {
+				int end = s.indexOf(',', i);
+				String token = (end == -1 ? s.substring(i) : s.substring(i, end)).trim();
+				if("NULL".equalsIgnoreCase(token)) {
+					values.add(null);
+				}
+				else if(token.matches("-?\\d+(\\.\\d+)?")) {
+					values.add(token);
+				}
+				else {
+					return null;
+				}
+				i = end == -1 ? s.length() : end;
+			}
+		}
+		return values;
+	}
+	
+	/**
+	 * Creates a table. An existing table with the same name is replaced.
+	 * 
+	 * @param tableName
+	 *            The table name
+	 * @param columns
+	 *            The column names
+	 * @return The new table
+	 */
+	public StubTable createTable(String tableName, List<String> columns) {
+		StubTable t = new StubTable(tableName, columns);
+		tables.put(t.getName(), t);
+		return t;
+	}
+	
+	/**
+	 * @param tableName
+	 *            The table name
+	 * @return The table or null
+	 */
+	public StubTable getTable(String tableName) {
+		return tables.get(tableName.toUpperCase());
+	}
+	
+	/**
+	 * Registers a procedure written in Java. It replaces the emulated procedure with the same name.
+	 * 
+	 * @param procedureName
+	 *            The full procedure name. I.E. PERSON_PKG.GETBYNAME
+	 * @param procedure
+	 *            The procedure
+	 */
+	public void register(String procedureName, StubProcedure procedure) {
+		procedures.put(procedureName.toUpperCase(), procedure);
+	}
+	
+	/**
+	 * Sets how long every call takes
+	 * 
+	 * @param latencyMillis
+	 *            The time every call takes
+	 * @param jitterMillis
+	 *            A random amount of time up to this is added to every call
+	 */
+	public void setLatency(long latencyMillis, long jitterMillis) {
+		this.latencyMillis = latencyMillis;
+		this.jitterMillis = jitterMillis;
+	}
+	
+	/**
+	 * Makes calls fail at random
+	 * 
+	 * @param errorRate
+	 *            The chance from 0 to 1 that a call fails
+	 * @param errorCode
+	 *            The ORA error code the calls fail with. Codes for lost connections are thrown as SQLRecoverableExceptions
+	 */
+	public void setErrors(double errorRate, int errorCode) {
+		this.errorRate = errorRate;
+		this.errorCode = errorCode;
+	}
+	
+	/**
+	 * Waits for the latency and then fails the call if it was picked to fail.
+	 * 
+	 * @param timeoutSeconds
+	 *            The statement's query timeout or 0
+	 * @throws SQLException
+	 *             If the call was picked to fail, it went past the query timeout or the thread was interrupted by a cancel
+	 */
+	void delay(int timeoutSeconds) throws SQLException {
+		long wait = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+		boolean timedOut = timeoutSeconds > 0 && wait > TimeUnit.SECONDS.toMillis(timeoutSeconds);
+		if(timedOut) {
+			wait = TimeUnit.SECONDS.toMillis(timeoutSeconds);
+		}
+		if(wait > 0) {
+			try {
+				Thread.sleep(wait);
+			}
+			catch(InterruptedException e) {
+				throw new SQLTimeoutException("ORA-01013: user requested cancel of current operation", "72000", 1013);
+			}
+		}
+		if(timedOut) {
+			throw new SQLTimeoutException("ORA-01013: user requested cancel of current operation", "72000", 1013);
+		}
+		if(errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+			int code = errorCode;
+			String msg = String.format("ORA-%05d: injected by the stub driver", code);
+			throw RECOVERABLE.contains(code) ? new SQLRecoverableException(msg, "08006", code) : new SQLException(msg, "72000", code);
+		}
+	}
+	
+	/**
+	 * Runs a procedure
+	 * 
+	 * @param procedureName
+	 *            The full procedure name. I.E. PERSON_PKG.GET
+	 * @param names
+	 *            The parameter names without the cursor
+	 * @param params
+	 *            The parameters without the cursor
+	 * @return A StubTable for the cursor or an Integer with the number of rows changed
+	 * @throws SQLException
+	 *             If the procedure does not exist or failed
+	 */
+	public Object call(String procedureName, String[] names, Object[] params) throws SQLException {
+		String key = procedureName.toUpperCase();
+		StubProcedure p = procedures.get(key);
+		if(p != null) {
+			return p.call(this, names, params);
+		}
+		int dot = key.indexOf('.');
+		StubTable t = dot == -1 ? null : getTable(key.substring(0, dot).replaceAll("_PKG$", ""));
+		if(t == null) {
+			throw notDeclared(key);
+		}
+		String proc = key.substring(dot + 1);
+		int[] indexes = new int[names.length];
+		for(int i = 0; i < names.length; i++) {
+			indexes[i] = t.getColumn(names[i]);
+		}
+		if(proc.equals("GETPAGE")) {
+			return t.copy(page(t, names, params));
+		}
+		else if(proc.equals("GETPARTITION")) {
+			return t.copy(partition(t, names, params));
+		}
+		else if(proc.startsWith("GET") || proc.equals("FILTER")) {
+			return t.copy(t.select(indexes, params));
+		}
+		else if(proc.equals("NEW")) {
+			String[] row = new String[t.getColumns().size()];
+			for(int i = 0; i < names.length; i++) {
+				if(indexes[i] != -1) {
+					row[indexes[i]] = params[i] == null ? null : String.valueOf(params[i]);
+				}
+			}
+			t.insertWithKey(row);
+			return 1;
+		}
+		else if(proc.startsWith("UPDATE")) {
+			int pk = Arrays.asList(names).indexOf("PRIMARYKEY");
+			if(pk == -1) {
+				throw notDeclared(key);
+			}
+			int n = 0;
+			int[] set = new int[names.length];
+			String[] to = new String[names.length];
+			for(int i = 0; i < names.length; i++) {
+				if(i != pk && indexes[i] != -1) {
+					set[n] = indexes[i];
+					to[n++] = params[i] == null ? null : String.valueOf(params[i]);
+				}
+			}
+			return t.update(new int[] { t.getPrimaryKey() }, new Object[] { params[pk] }, Arrays.copyOf(set, n), Arrays.copyOf(to, n));
+		}
+		else if(proc.equals("DELETE")) {
+			return t.delete(indexes, params);
+		}
+		throw notDeclared(key);
+	}
+	
+	/**
+	 * Finds the rows on one page for GETPAGE. Keys are compared as numbers when they are numbers.
+	 */
+	private static List<String[]> page(StubTable t, String[] names, Object[] params) {
+		List<String> n = Arrays.asList(names);
+		final int pk = t.getPrimaryKey();
+		Object after = params[n.indexOf("AFTERKEY")];
+		int limit = Integer.parseInt(String.valueOf(params[n.indexOf("LIMIT")]));
+		Comparator<String[]> byKey = new Comparator<String[]>() {
+			
+			@Override
+			public int compare(String[] r1, String[] r2) {
+				return compareKeys(r1[pk], r2[pk]);
+			}
+		};
+		List<String[]> l = new ArrayList<String[]>();
+		for(String[] r : t.select(new int[0], new Object[0])) {
+			if(after == null || compareKeys(r[pk], String.valueOf(after)) > 0) {
+				l.add(r);
+			}
+		}
+		Collections.sort(l, byKey);
+		return l.size() > limit ? new ArrayList<String[]>(l.subList(0, limit)) : l;
+	}
+	
+	private static int compareKeys(String k1, String k2) {
+		try {
+			return Long.compare(Long.parseLong(k1), Long.parseLong(k2));
+		}
+		catch(NumberFormatException e) {
+			return k1.compareTo(k2);
+		}
+	}
+	
+	/**
+	 * Finds the rows in one partition for GETPARTITION. A hash partition uses the String hash of the key instead of ORA_HASH.
+	 */
+	private static List<String[]> partition(StubTable t, String[] names, Object[] params) {
+		List<String> n = Arrays.asList(names);
+		int pk = t.getPrimaryKey();
+		List<String[]> l = new ArrayList<String[]>();
+		for(String[] r : t.select(new int[0], new Object[0])) {
+			if(n.contains("PARTITIONS")) {
+				int partitions = Integer.parseInt(String.valueOf(params[n.indexOf("PARTITIONS")]));
+				int partition = Integer.parseInt(String.valueOf(params[n.indexOf("PARTITION")]));
+				if((r[pk].hashCode() % partitions + partitions) % partitions == partition) {
+					l.add(r);
+				}
+			}
+			else {
+				Object lower = params[n.indexOf("LOWERKEY")], upper = params[n.indexOf("UPPERKEY")];
+				long k = Long.parseLong(r[pk]);
+				if((lower == null || k >= Long.parseLong(String.valueOf(lower)))
+						&& (upper == null || k < Long.parseLong(String.valueOf(upper)))) {
+					l.add(r);
+				}
+			}
+		}
+		return l;
+	}
+	
+	private static SQLException notDeclared(String procedureName) {
+		return new SQLException("ORA-06550: PLS-00201: identifier '" + procedureName + "' must be declared", "65000", 6550);
+	}
+	
+	@Override
+	public String toString() {
+		return "StubDatabase [name=" + name + ", tables=" + tables.values() + ", procedures=" + procedures.keySet() + "]";
+	}
+}
@@ -0,0 +1,161 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.stub;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+/**
+ * A JDBC driver that runs in the same process so the managers can be tested and benchmarked without an Oracle database. Point the
+ * dbconfig.properties at it:
+ * 
+ * <pre>
+ * className=com.github.mlaursen.database.stub.StubDriver
+ * database=jdbc:stub:people;seed=examples/sqlscripts/person_job_init.sql;latency=2;jitter=3;errors=0.01;errorcode=17002
+ * </pre>
+ * 
+ * Everything after the name is optional. Connections with the same name share a {@link StubDatabase}, which can be changed with
+ * {@link #getDatabase(String)}.
+ * 
+ * <ul>
+ * <li>seed - A SQL script with the CREATE TABLE and INSERT statements to load. Paths are relative to the working directory</li>
+ * <li>latency - The milliseconds every call takes</li>
+ * <li>jitter - Up to this many milliseconds are added to every call at random</li>
+ * <li>errors - The chance from 0 to 1 that a call fails</li>
+ * <li>errorcode - The ORA error code calls fail with. The default is 17002</li>
+ * </ul>
+ * 
+ * @author mlaursen
+ * 
+ */
+public class StubDriver implements Driver {
+	
+	public static final String PREFIX = "jdbc:stub:";
+	private static final ConcurrentMap<String, StubDatabase> databases = new ConcurrentHashMap<String, StubDatabase>();
+	
+	static {
+		try {
+			DriverManager.registerDriver(new StubDriver());
+		}
+		catch(SQLException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+	
+	/**
+	 * Gets the database for a name, creating it if it does not exist
+	 * 
+	 * @param name
+	 *            The name from the URL
+	 * @return The database
+	 */
+	public static StubDatabase getDatabase(String name) {
+		StubDatabase db = databases.get(name);
+		if(db == null) {
+			StubDatabase created = new StubDatabase(name);
+			db = databases.putIfAbsent(name, created);
+			if(db == null) {
+				db = created;
+			}
+		}
+		return db;
+	}
+	
+	/**
+	 * Removes a database so the next connection to it starts empty
+	 * 
+	 * @param name
+	 *            The name from the URL
+	 */
+	public static void dropDatabase(String name) {
+		databases.remove(name);
+	}
+	
+	@Override
+	public Connection connect(String url, Properties info) throws SQLException {
+		if(!acceptsURL(url)) {
+			return null;
+		}
+		String[] parts = url.substring(PREFIX.length()).split(";");
+		StubDatabase db = getDatabase(parts[0]);
+		long latency = 0, jitter = 0;
+		double errors = 0;
+		int errorCode = StubDatabase.DEF_ERROR_CODE;
+		try {
+			for(int i = 1; i < parts.length; i++) {
+				int eq = parts[i].indexOf('=');
+				String key = eq == -1 ? parts[i].trim() : parts[i].substring(0, eq).trim();
+				String value = eq == -1 ? "" : parts[i].substring(eq + 1).trim();
+				switch(key.toLowerCase()) {
+					case "seed":
+						db.seed(new File(value));
+						break;
+					case "latency":
+						latency = Long.parseLong(value);
+						break;
+					case "jitter":
+						jitter = Long.parseLong(value);
+						break;
+					case "errors":
+						errors = Double.parseDouble(value);
+						break;
+					case "errorcode":
+						errorCode = Integer.parseInt(value);
+						break;
+					default:
+						throw new SQLException("Unknown stub driver setting '" + key + "' in " + url, "08001");
+				}
+			}
+		}
+		catch(NumberFormatException e) {
+			throw new SQLException("Invalid stub driver URL " + url, "08001", e);
+		}
+		catch(IOException e) {
+			throw new SQLException("Unable to seed the stub database from " + url, "08001", e);
+		}
+		db.setLatency(latency, jitter);
+		db.setErrors(errors, errorCode);
+		return StubHandler.proxy(Connection.class, new StubConnection(db));
+	}
+	
+	@Override
+	public boolean acceptsURL(String url) throws SQLException {
+		return url != null && url.startsWith(PREFIX) && url.length() > PREFIX.length();
+	}
+	
+	@Override
+	public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) throws SQLException {
+		return new DriverPropertyInfo[0];
+	}
+	
+	@Override
+	public int getMajorVersion() {
+		return 1;
+	}
+	
+	@Override
+	public int getMinorVersion() {
+		return 0;
+	}
+	
+	@Override
+	public boolean jdbcCompliant() {
+		return false;
+	}
+	
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+}
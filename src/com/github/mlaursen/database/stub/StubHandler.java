@@ -0,0 +1,70 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.stub;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLFeatureNotSupportedException;
+
+/**
+ * The base for the JDBC objects of the stub driver. They are all proxies so only the methods the ConnectionManager uses have to be
+ * written, and every other method throws a SQLFeatureNotSupportedException.
+ * 
+ * @author mlaursen
+ * 
+ */
+abstract class StubHandler implements InvocationHandler {
+	
+	/**
+	 * Creates the proxy for a handler
+	 * 
+	 * @param type
+	 *            The JDBC interface
+	 * @param handler
+	 *            The handler
+	 * @return The proxy
+	 */
+	static <T> T proxy(Class<T> type, StubHandler handler) {
+		return type.cast(Proxy.newProxyInstance(StubHandler.class.getClassLoader(), new Class<?>[] { type }, handler));
+	}
+	
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if(method.getDeclaringClass() == Object.class) {
+			switch(method.getName()) {
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				default:
+					return toString();
+			}
+		}
+		return invoke(method, args == null ? new Object[0] : args);
+	}
+	
+	/**
+	 * Runs a JDBC method
+	 * 
+	 * @param method
+	 *            The method
+	 * @param args
+	 *            The arguments, which is never null
+	 * @return The result
+	 * @throws Exception
+	 *             Anything the method throws
+	 */
+	abstract Object invoke(Method method, Object[] args) throws Exception;
+	
+	/**
+	 * @param method
+	 *            The method
+	 * @return The exception for a method the stub driver does not have
+	 */
+	static SQLFeatureNotSupportedException unsupported(Method method) {
+		return new SQLFeatureNotSupportedException("The stub driver does not support " + method.getDeclaringClass().getSimpleName() + "."
+				+ method.getName());
+	}
+}
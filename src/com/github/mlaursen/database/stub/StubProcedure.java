@@ -0,0 +1,40 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.stub;
+
+import java.sql.SQLException;
+
+/**
+ * A stored procedure written in Java for the {@link StubDatabase}. Procedures that are not registered are emulated from the tables by
+ * their name: GET, GETALL, FILTER, NEW, UPDATE... and DELETE.
+ * 
+ * <pre>
+ * StubDriver.getDatabase("people").register("PERSON_PKG.GETBYNAME", new StubProcedure() {
+ * 
+ * 	public Object call(StubDatabase db, String[] names, Object[] params) {
+ * 		return db.getTable("PERSON").select("first_name", params[0]);
+ * 	}
+ * });
+ * </pre>
+ * 
+ * @author mlaursen
+ * 
+ */
+public interface StubProcedure {
+	
+	/**
+	 * Runs the procedure
+	 * 
+	 * @param db
+	 *            The database
+	 * @param names
+	 *            The upper case parameter names from the call without the colons. I.E. PRIMARYKEY. The cursor is not included
+	 * @param params
+	 *            The bound parameters without the cursor
+	 * @return A {@link StubTable} with the rows for the cursor, or an Integer with the number of rows changed
+	 * @throws SQLException
+	 *             To fail the call
+	 */
+	Object call(StubDatabase db, String[] names, Object[] params) throws SQLException;
+}
@@ -0,0 +1,101 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.stub;
+
+import java.lang.reflect.Method;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * A forward only ResultSet over the rows of a {@link StubTable}. Every value is a String.
+ * 
+ * @author mlaursen
+ * 
+ */
+class StubResultSet extends StubHandler {
+	
+	private final StubTable table;
+	private final List<String[]> rows;
+	private int row = -1;
+	private boolean wasNull, closed;
+	
+	/**
+	 * 
+	 * @param table
+	 *            The rows
+	 */
+	StubResultSet(StubTable table) {
+		this.table = table;
+		this.rows = table.getRows();
+	}
+	
+	@Override
+	Object invoke(Method method, Object[] args) throws Exception {
+		switch(method.getName()) {
+			case "next":
+				row = Math.min(row + 1, rows.size());
+				return row < rows.size();
+			case "getString":
+			case "getObject":
+				if(args.length != 1) {
+					throw unsupported(method);
+				}
+				if(row < 0 || row >= rows.size()) {
+					throw new SQLException("ORA-17289: Result set after last row", "99999", 17289);
+				}
+				String value = rows.get(row)[column(args[0])];
+				wasNull = value == null;
+				return value;
+			case "wasNull":
+				return wasNull;
+			case "getRow":
+				return row < rows.size() ? row + 1 : 0;
+			case "getMetaData":
+				return proxy(ResultSetMetaData.class, new StubHandler() {
+					
+					@Override
+					Object invoke(Method method, Object[] args) throws Exception {
+						switch(method.getName()) {
+							case "getColumnCount":
+								return table.getColumns().size();
+							case "getColumnName":
+							case "getColumnLabel":
+								return table.getColumns().get((Integer) args[0] - 1).toUpperCase();
+							default:
+								throw unsupported(method);
+						}
+					}
+				});
+			case "findColumn":
+				return column(args[0]) + 1;
+			case "close":
+				closed = true;
+				return null;
+			case "isClosed":
+				return closed;
+			case "getWarnings":
+			case "clearWarnings":
+			case "setFetchSize":
+				return null;
+			case "getFetchSize":
+				return 0;
+			default:
+				throw unsupported(method);
+		}
+	}
+	
+	private int column(Object column) throws SQLException {
+		int i = column instanceof Integer ? (Integer) column - 1 : table.getColumns().indexOf(((String) column).toLowerCase());
+		if(i < 0 || i >= table.getColumns().size()) {
+			throw new SQLException("ORA-17006: Invalid column name " + column, "99999", 17006);
+		}
+		return i;
+	}
+	
+	@Override
+	public String toString() {
+		return "StubResultSet [table=" + table.getName() + ", row=" + row + "]";
+	}
+}
@@ -0,0 +1,237 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.stub;
+
+import java.lang.reflect.Method;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A Statement or CallableStatement for a {@link StubDatabase}. A CallableStatement is parsed from {call PKG.PROC(:A, :B, :CURSOR)}, and
+ * the parameter registered as an out parameter is the cursor. A plain Statement only runs CREATE TABLE and INSERT.
+ * 
+ * @author mlaursen
+ * 
+ */
+class StubStatement extends StubHandler {
+	
+	private final StubDatabase db;
+	private final String procedureName;
+	private final String[] names;
+	private final Object[] values;
+	private final List<Object[]> batch = new ArrayList<Object[]>();
+	private int out = -1, queryTimeout;
+	private Object result;
+	private boolean closed, cancelled;
+	private Thread running;
+	
+	/**
+	 * 
+	 * @param db
+	 *            The database
+	 * @param sql
+	 *            The call or null for a plain Statement
+	 * @throws SQLException
+	 *             If the call can not be parsed
+	 */
+	StubStatement(StubDatabase db, String sql) throws SQLException {
+		this.db = db;
+		if(sql == null) {
+			procedureName = null;
+			names = new String[0];
+		}
+		else {
+			String s = sql.trim();
+			int paren = s.indexOf('(');
+			if(!s.startsWith("{call ") || !s.endsWith("}")) {
+				throw new SQLException("ORA-00900: invalid SQL statement " + sql, "42000", 900);
+			}
+			procedureName = (paren == -1 ? s.substring(6, s.length() - 1) : s.substring(6, paren)).trim().toUpperCase();
+			String params = paren == -1 ? "" : s.substring(paren + 1, s.lastIndexOf(')')).trim();
+			names = params.isEmpty() ? new String[0] : params.split("\\s*,\\s*");
+			for(int i = 0; i < names.length; i++) {
+				names[i] = names[i].replaceFirst("^:", "").toUpperCase();
+			}
+		}
+		values = new Object[names.length];
+	}
+	
+	@Override
+	Object invoke(Method method, Object[] args) throws Exception {
+		String name = method.getName();
+		if(name.equals("close")) {
+			closed = true;
+			return null;
+		}
+		else if(name.equals("isClosed")) {
+			return closed;
+		}
+		else if(name.equals("cancel")) {
+			cancel();
+			return null;
+		}
+		else if(closed) {
+			throw new SQLException("ORA-17009: Closed Statement", "HY000", 17009);
+		}
+		else if(name.startsWith("set") && args.length >= 2 && args[0] instanceof Integer && !name.equals("setQueryTimeout")) {
+			Object value = args[1];
+			if(name.equals("setNull")) {
+				value = null;
+			}
+			else if(value instanceof Clob) {
+				value = value.toString();
+			}
+			values[index(args[0])] = value;
+			return null;
+		}
+		switch(name) {
+			case "registerOutParameter":
+				out = index(args[0]);
+				return null;
+			case "setQueryTimeout":
+				queryTimeout = (Integer) args[0];
+				return null;
+			case "getQueryTimeout":
+				return queryTimeout;
+			case "execute":
+				if(args.length > 0) {
+					executeSql((String) args[0]);
+					return false;
+				}
+				return execute(true) instanceof StubTable;
+			case "executeUpdate":
+				if(args.length > 0) {
+					executeSql((String) args[0]);
+					return 0;
+				}
+				Object r = execute(true);
+				return r instanceof Integer ? r : 0;
+			case "addBatch":
+				if(args.length > 0) {
+					throw unsupported(method);
+				}
+				batch.add(values.clone());
+				return null;
+			case "clearBatch":
+				batch.clear();
+				return null;
+			case "executeBatch":
+				return executeBatch();
+			case "executeQuery":
+				return getResultSet(execute(true));
+			case "getObject":
+				return index(args[0]) == out ? getResultSet(result) : values[index(args[0])];
+			case "getResultSet":
+				return getResultSet(result);
+			case "getUpdateCount":
+				return result instanceof Integer ? result : -1;
+			case "getWarnings":
+			case "clearWarnings":
+				return null;
+			default:
+				throw unsupported(method);
+		}
+	}
+	
+	private int index(Object parameterIndex) throws SQLException {
+		int i = (Integer) parameterIndex - 1;
+		if(i < 0 || i >= values.length) {
+			throw new SQLException("ORA-17003: Invalid column index", "99999", 17003);
+		}
+		return i;
+	}
+	
+	private static ResultSet getResultSet(Object result) {
+		return result instanceof StubTable ? proxy(ResultSet.class, new StubResultSet((StubTable) result)) : null;
+	}
+	
+	private void executeSql(String sql) {
+		db.seed(sql.trim().endsWith(";") ? sql : sql + ";");
+	}
+	
+	/**
+	 * Runs the procedure after the database's latency. A cancel while the call is running fails it with ORA-01013.
+	 * 
+	 * @param wait
+	 *            False to skip the latency and the injected errors, like for every call in a batch after the first
+	 * @return The result of the procedure
+	 * @throws SQLException
+	 *             If the procedure failed, timed out or was cancelled
+	 */
+	private Object execute(boolean wait) throws SQLException {
+		if(procedureName == null) {
+			throw new SQLException("ORA-00900: invalid SQL statement", "42000", 900);
+		}
+		synchronized(this) {
+			running = Thread.currentThread();
+			cancelled = false;
+		}
+		try {
+			if(wait) {
+				db.delay(queryTimeout);
+			}
+			String[] n = new String[names.length];
+			Object[] v = new Object[values.length];
+			int size = 0;
+			for(int i = 0; i < names.length; i++) {
+				if(i != out) {
+					n[size] = names[i];
+					v[size++] = values[i];
+				}
+			}
+			result = db.call(procedureName, Arrays.copyOf(n, size), Arrays.copyOf(v, size));
+			return result;
+		}
+		finally {
+			synchronized(this) {
+				running = null;
+				if(cancelled) {
+					Thread.interrupted();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Runs the procedure once for every set of parameters added to the batch. The latency is only waited for once.
+	 * 
+	 * @return The number of rows each one changed
+	 * @throws SQLException
+	 *             If any of them failed
+	 */
+	private int[] executeBatch() throws SQLException {
+		List<Object[]> l = new ArrayList<Object[]>(batch);
+		batch.clear();
+		int[] counts = new int[l.size()];
+		Object[] saved = values.clone();
+		try {
+			for(int i = 0; i < counts.length; i++) {
+				System.arraycopy(l.get(i), 0, values, 0, values.length);
+				execute(i == 0);
+				counts[i] = result instanceof Integer ? (Integer) result : 0;
+			}
+		}
+		finally {
+			System.arraycopy(saved, 0, values, 0, values.length);
+		}
+		return counts;
+	}
+	
+	private synchronized void cancel() {
+		if(running != null) {
+			cancelled = true;
+			running.interrupt();
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "StubStatement [procedure=" + procedureName + ", names=" + Arrays.toString(names) + ", values=" + Arrays.toString(values)
+				+ "]";
+	}
+}
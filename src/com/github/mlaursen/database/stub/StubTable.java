@@ -0,0 +1,263 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.stub;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A table in the {@link StubDatabase}. Every value is kept as the String a cursor would return, since MyResultSet reads every column as a
+ * String anyway. Column names are lower case. Reads return a copy, so a cursor never sees rows change under it.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class StubTable {
+	
+	private final String name;
+	private final List<String> columns;
+	private final List<String[]> rows = new ArrayList<String[]>();
+	private long maxKey = -1;
+	
+	/**
+	 * 
+	 * @param name
+	 *            The upper case table name
+	 * @param columns
+	 *            The column names
+	 */
+	public StubTable(String name, List<String> columns) {
+		this.name = name.toUpperCase();
+		List<String> l = new ArrayList<String>();
+		for(String c : columns) {
+			l.add(c.toLowerCase());
+		}
+		this.columns = Collections.unmodifiableList(l);
+	}
+	
+	/**
+	 * @return the upper case table name
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * @return the lower case column names
+	 */
+	public List<String> getColumns() {
+		return columns;
+	}
+	
+	/**
+	 * The primary key is the id column if there is one and the first column if there is not.
+	 * 
+	 * @return the index of the primary key column
+	 */
+	public int getPrimaryKey() {
+		int id = columns.indexOf("id");
+		return id == -1 ? 0 : id;
+	}
+	
+	/**
+	 * Finds the column a parameter is for. Underscores and case are ignored, so JOBID is job_id, and a parameter that is the start of a
+	 * column name like FIRST for first_name, or that ends with a column name like JOBTYPE for type, matches when nothing else does.
+	 * PRIMARYKEY is always the primary key.
+	 * 
+	 * @param parameter
+	 *            The parameter name
+	 * @return The index of the column or -1 if there is none
+	 */
+	public int getColumn(String parameter) {
+		String p = normalize(parameter);
+		if("primarykey".equals(p)) {
+			return getPrimaryKey();
+		}
+		int prefix = -1, suffix = -1;
+		for(int i = 0; i < columns.size(); i++) {
+			String c = normalize(columns.get(i));
+			if(c.equals(p)) {
+				return i;
+			}
+			if(prefix == -1 && !p.isEmpty() && c.startsWith(p)) {
+				prefix = i;
+			}
+			if(suffix == -1 && !c.isEmpty() && p.endsWith(c)) {
+				suffix = i;
+			}
+		}
+		return prefix == -1 ? suffix : prefix;
+	}
+	
+	private static String normalize(String name) {
+		return name.replace("_", "").toLowerCase();
+	}
+	
+	/**
+	 * @return the number of rows
+	 */
+	public synchronized int size() {
+		return rows.size();
+	}
+	
+	/**
+	 * Adds a row
+	 * 
+	 * @param values
+	 *            A value for every column in order. Missing values are null
+	 */
+	public synchronized void insert(String... values) {
+		String[] row = Arrays.copyOf(values, columns.size());
+		rows.add(row);
+		String key = row[getPrimaryKey()];
+		if(key != null) {
+			try {
+				maxKey = Math.max(maxKey, Long.parseLong(key));
+			}
+			catch(NumberFormatException e) {
+				// not a numeric key
+			}
+		}
+	}
+	
+	/**
+	 * Keys work like a sequence, so a key is not given out again after its row is deleted.
+	 * 
+	 * @return the next number for the primary key, which is one more than the largest numeric key ever inserted
+	 */
+	public synchronized long nextKey() {
+		return maxKey + 1;
+	}
+	
+	/**
+	 * Inserts a row and gives it the next primary key if it does not have one, in one step so two callers can not get the same key.
+	 * 
+	 * @param values
+	 *            A value for every column in order. Missing values are null
+	 */
+	public synchronized void insertWithKey(String... values) {
+		if(values[getPrimaryKey()] == null) {
+			values[getPrimaryKey()] = String.valueOf(nextKey());
+		}
+		insert(values);
+	}
+	
+	/**
+	 * Finds the rows that match every column given. Values are compared as Strings without case, and a null value matches everything.
+	 * 
+	 * @param indexes
+	 *            The column indexes to match
+	 * @param values
+	 *            The value for each column
+	 * @return A copy of the rows that match
+	 */
+	public synchronized List<String[]> select(int[] indexes, Object[] values) {
+		List<String[]> l = new ArrayList<String[]>();
+		for(String[] r : rows) {
+			if(matches(r, indexes, values)) {
+				l.add(r.clone());
+			}
+		}
+		return l;
+	}
+	
+	/**
+	 * Finds the rows where a column has a value
+	 * 
+	 * @param column
+	 *            The column name
+	 * @param value
+	 *            The value
+	 * @return A table with a copy of the rows that match
+	 */
+	public StubTable select(String column, Object value) {
+		return copy(select(new int[] { columns.indexOf(column.toLowerCase()) }, new Object[] { value }));
+	}
+	
+	/**
+	 * Changes the rows that match
+	 * 
+	 * @param indexes
+	 *            The column indexes to match
+	 * @param values
+	 *            The value for each column
+	 * @param set
+	 *            The column indexes to change
+	 * @param to
+	 *            The new value for each column
+	 * @return The number of rows changed
+	 */
+	public synchronized int update(int[] indexes, Object[] values, int[] set, String[] to) {
+		int n = 0;
+		for(String[] r : rows) {
+			if(matches(r, indexes, values)) {
+				for(int i = 0; i < set.length; i++) {
+					r[set[i]] = to[i];
+				}
+				n++;
+			}
+		}
+		return n;
+	}
+	
+	/**
+	 * Removes the rows that match
+	 * 
+	 * @param indexes
+	 *            The column indexes to match
+	 * @param values
+	 *            The value for each column
+	 * @return The number of rows removed
+	 */
+	public synchronized int delete(int[] indexes, Object[] values) {
+		int n = 0;
+		for(int i = rows.size() - 1; i >= 0; i--) {
+			if(matches(rows.get(i), indexes, values)) {
+				rows.remove(i);
+				n++;
+			}
+		}
+		return n;
+	}
+	
+	private static boolean matches(String[] r, int[] indexes, Object[] values) {
+		for(int i = 0; i < indexes.length; i++) {
+			if(indexes[i] >= 0 && values[i] != null && !String.valueOf(values[i]).equalsIgnoreCase(r[indexes[i]])) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Creates a table with the same columns and the rows given
+	 * 
+	 * @param l
+	 *            The rows
+	 * @return The new table
+	 */
+	public StubTable copy(List<String[]> l) {
+		StubTable t = new StubTable(name, columns);
+		t.rows.addAll(l);
+		return t;
+	}
+	
+	/**
+	 * @return a copy of every row
+	 */
+	public synchronized List<String[]> getRows() {
+		List<String[]> l = new ArrayList<String[]>();
+		for(String[] r : rows) {
+			l.add(r.clone());
+		}
+		return l;
+	}
+	
+	@Override
+	public String toString() {
+		return "StubTable [name=" + name + ", columns=" + columns + ", rows=" + size() + "]";
+	}
+}
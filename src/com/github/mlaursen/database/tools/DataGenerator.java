@@ -0,0 +1,562 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.tools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.mlaursen.annotations.DatabaseField;
+import com.github.mlaursen.annotations.DatabaseFieldType;
+import com.github.mlaursen.database.managers.ConnectionManager;
+import com.github.mlaursen.database.managers.ObjectManager;
+import com.github.mlaursen.database.objects.DatabaseObject;
+import com.github.mlaursen.database.objects.MyClob;
+import com.github.mlaursen.database.procedures.GetAllable;
+import com.github.mlaursen.database.utils.ClassUtil;
+import com.github.mlaursen.database.utils.LocalSettings;
+
+/**
+ * Fills a database with made up rows for load tests. Every field with a NEW {@link DatabaseField} is given a value, and the rows are
+ * saved with batched calls to the NEW procedure ({@link ObjectManager#createAll(List)}) from several threads at once. The types are
+ * generated in the order they are listed so a row can reference the rows before it:
+ * 
+ * <pre>
+ * className=com.github.mlaursen.database.stub.StubDriver
+ * database=jdbc:stub:gen;seed=examples/sqlscripts/person_job_init.sql
+ * gen.types=com.github.mlaursen.examples.PersonJobExample.JobType:10,\
+ *     com.github.mlaursen.examples.PersonJobExample.Job:1000,\
+ *     com.github.mlaursen.examples.PersonJobExample.Person:100000
+ * gen.threads=8
+ * gen.batch=500
+ * gen.checkpoint=gen.checkpoint
+ * gen.Job.jobType=ref:JobType:1.2
+ * gen.Person.salary=normal:52000:18000
+ * 
+ * java -cp database-manager.jar com.github.mlaursen.database.tools.DataGenerator gen.properties
+ * </pre>
+ * 
+ * gen.&lt;Type&gt;.&lt;field&gt; sets how a field is made with one of the {@link ValueGenerator} hints, and gen.&lt;Type&gt;.primaryKey
+ * does the same for the primary key, which is only set when it is hinted or the type has no other NEW fields. Without a hint:
+ * <ul>
+ * <li>a field that is a DatabaseObject, or a field named like jobId where Job is one of the types, references a primary key of that
+ * type</li>
+ * <li>a String is a name if the field name has "name" in it and text otherwise</li>
+ * <li>numbers are between 0 and 1000 or 100000, and dates are between 2000 and 2020</li>
+ * </ul>
+ * The keys a type can reference are read back with getAll, or are gen.&lt;Type&gt;.keys=first-last for a type that is not GetAllable.
+ * Every row is made from gen.seed, its type and its number, so the same settings always make the same rows.
+ * <p>
+ * The rows written so far are saved to the gen.checkpoint file after every batch. Running again with the same file starts from where the
+ * last run stopped: batches that were saved are skipped and batches that failed are written again.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class DataGenerator {
+	
+	public static final int DEF_THREADS = 4, DEF_BATCH = 500, DEF_REPORT_SECONDS = 10;
+	public static final long DEF_SEED = 42;
+	private static final String DEF_DATE_FROM = "2000-01-01", DEF_DATE_TO = "2020-12-31";
+	private static final String BATCH = "batch", DONE = ".done";
+	
+	private final Properties properties;
+	private final ConnectionManager connectionManager;
+	private final Map<Class<? extends DatabaseObject>, Long> counts = new LinkedHashMap<Class<? extends DatabaseObject>, Long>();
+	private final Map<Class<?>, List<String>> keys = new HashMap<Class<?>, List<String>>();
+	private final Map<Class<?>, long[]> results = new HashMap<Class<?>, long[]>();
+	private final int threads;
+	private final long seed, reportNanos;
+	private final File checkpoint;
+	private final Properties progress = new Properties();
+	private int batch;
+	private PrintStream out = System.out;
+	
+	/**
+	 * Creates a generator from its settings
+	 * 
+	 * @param properties
+	 *            The settings and, optionally, the dbconfig settings
+	 * @throws ClassNotFoundException
+	 *             If a type in gen.types is not a class
+	 * @throws IllegalArgumentException
+	 *             If a setting is not valid
+	 */
+	public DataGenerator(Properties properties) throws ClassNotFoundException {
+		this(properties, properties.getProperty(LocalSettings.CLASS_FOR_NAME) == null ? new ConnectionManager() : new ConnectionManager(
+				properties));
+	}
+	
+	/**
+	 * Creates a generator that writes through a connection manager
+	 * 
+	 * @param properties
+	 *            The settings
+	 * @param connectionManager
+	 *            The connection manager every thread shares
+	 * @throws ClassNotFoundException
+	 *             If a type in gen.types is not a class
+	 * @throws IllegalArgumentException
+	 *             If a setting is not valid
+	 */
+	public DataGenerator(Properties properties, ConnectionManager connectionManager) throws ClassNotFoundException {
+		this.properties = properties;
+		this.connectionManager = connectionManager;
+		String types = properties.getProperty(LocalSettings.GEN_TYPES);
+		if(types == null) {
+			throw new IllegalArgumentException(LocalSettings.GEN_TYPES + " is required");
+		}
+		for(String t : types.split(",")) {
+			String[] tc = t.trim().split(":");
+			if(tc.length != 2) {
+				throw new IllegalArgumentException("'" + t.trim() + "' in " + LocalSettings.GEN_TYPES + " is not Type:count");
+			}
+			counts.put(Class.forName(tc[0].trim()).asSubclass(DatabaseObject.class), Long.parseLong(tc[1].trim()));
+		}
+		threads = Integer.parseInt(get(LocalSettings.GEN_THREADS, DEF_THREADS));
+		batch = Integer.parseInt(get(LocalSettings.GEN_BATCH, DEF_BATCH));
+		seed = Long.parseLong(get(LocalSettings.GEN_SEED, DEF_SEED));
+		reportNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(get(LocalSettings.GEN_REPORT, DEF_REPORT_SECONDS)));
+		String c = properties.getProperty(LocalSettings.GEN_CHECKPOINT);
+		checkpoint = c == null ? null : new File(c.trim());
+		if(threads < 1 || batch < 1) {
+			throw new IllegalArgumentException(LocalSettings.GEN_THREADS + " and " + LocalSettings.GEN_BATCH + " must be at least 1");
+		}
+	}
+	
+	private String get(String key, Object def) {
+		String v = properties.getProperty(key);
+		return v == null ? String.valueOf(def) : v.trim();
+	}
+	
+	/**
+	 * @param out
+	 *            Where the progress is printed, or null to print nothing
+	 */
+	public void setOut(PrintStream out) {
+		this.out = out;
+	}
+	
+	/**
+	 * Generates every type in order. A type stops at the first batch that fails so the run can be resumed from the checkpoint.
+	 * 
+	 * @return True if every row was written
+	 * @throws InterruptedException
+	 *             If the thread is interrupted while it waits for the writers
+	 * @throws IOException
+	 *             If the checkpoint can not be read or written
+	 */
+	public boolean run() throws InterruptedException, IOException {
+		loadCheckpoint();
+		long start = System.nanoTime(), total = 0;
+		boolean ok = true;
+		for(Map.Entry<Class<? extends DatabaseObject>, Long> e : counts.entrySet()) {
+			ok = generate(e.getKey(), e.getValue());
+			total += getWritten(e.getKey());
+			if(!ok) {
+				break;
+			}
+		}
+		print(String.format(Locale.ROOT, "Wrote %d rows in %.1fs%s", total, seconds(System.nanoTime() - start), ok ? "" : " and stopped"));
+		return ok;
+	}
+	
+	/**
+	 * @param type
+	 *            A generated type
+	 * @return the number of rows of the type this run wrote
+	 */
+	public long getWritten(Class<?> type) {
+		long[] r = results.get(type);
+		return r == null ? 0 : r[0];
+	}
+	
+	/**
+	 * @param type
+	 *            A generated type
+	 * @return the number of rows of the type that were in a batch that failed
+	 */
+	public long getFailed(Class<?> type) {
+		long[] r = results.get(type);
+		return r == null ? 0 : r[1];
+	}
+	
+	private boolean generate(final Class<? extends DatabaseObject> type, final long count) throws InterruptedException, IOException {
+		final String name = type.getSimpleName();
+		final Row row = new Row(type);
+		final TreeSet<Long> done = new TreeSet<Long>();
+		String d = progress.getProperty(name + DONE, "");
+		for(String s : d.split(",")) {
+			if(!s.isEmpty()) {
+				done.add(Long.parseLong(s));
+			}
+		}
+		final long[] watermark = { Math.min(count, Long.parseLong(progress.getProperty(name, "0"))) };
+		if(watermark[0] >= count) {
+			print(name + ": all " + count + " rows were already written");
+			return true;
+		}
+		final AtomicLong next = new AtomicLong(watermark[0]), written = new AtomicLong(), failed = new AtomicLong();
+		final IOException[] saveError = new IOException[1];
+		Thread[] workers = new Thread[threads];
+		for(int i = 0; i < threads; i++) {
+			workers[i] = new Thread("gen-" + name + "-" + i) {
+				
+				@Override
+				public void run() {
+					ObjectManager om = new ObjectManager(connectionManager, type);
+					List<DatabaseObject> objects = new ArrayList<DatabaseObject>(batch);
+					while(failed.get() == 0 && saveError[0] == null) {
+						long from = next.getAndAdd(batch);
+						if(from >= count) {
+							return;
+						}
+						synchronized(done) {
+							if(from < watermark[0] || done.contains(from)) {
+								continue;
+							}
+						}
+						objects.clear();
+						for(long r = from; r < Math.min(from + batch, count); r++) {
+							objects.add(row.create(r));
+						}
+						if(om.createAll(objects)) {
+							written.addAndGet(objects.size());
+							synchronized(done) {
+								done.add(from);
+								while(done.remove(watermark[0])) {
+									watermark[0] += batch;
+								}
+								watermark[0] = Math.min(watermark[0], count);
+								try {
+									saveCheckpoint(name, done, watermark);
+								}
+								catch(IOException e) {
+									saveError[0] = e;
+								}
+							}
+						}
+						else {
+							failed.addAndGet(objects.size());
+						}
+					}
+				}
+			};
+		}
+		long start = System.nanoTime(), last = start, lastWritten = 0;
+		for(Thread t : workers) {
+			t.start();
+		}
+		for(Thread t : workers) {
+			while(t.isAlive()) {
+				t.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(last + reportNanos - System.nanoTime())));
+				long now = System.nanoTime();
+				if(now - last >= reportNanos) {
+					long w = written.get();
+					print(String.format(Locale.ROOT, "%s: %d rows written, %d of %d saved in order, %.0f rows/s", name, w,
+							watermark(done, watermark), count, (w - lastWritten) / seconds(now - last)));
+					last = now;
+					lastWritten = w;
+				}
+			}
+		}
+		synchronized(done) {
+			if(saveError[0] != null) {
+				throw saveError[0];
+			}
+		}
+		saveCheckpoint(name, done, watermark);
+		results.put(type, new long[] { written.get(), failed.get() });
+		long elapsed = System.nanoTime() - start;
+		print(String.format(Locale.ROOT, "%s: wrote %d rows in %.1fs, %.0f rows/s%s", name, written.get(), seconds(elapsed), written.get()
+				/ seconds(elapsed), failed.get() == 0 ? "" : ", " + failed.get() + " rows failed"));
+		return failed.get() == 0;
+	}
+	
+	private long watermark(TreeSet<Long> done, long[] watermark) {
+		synchronized(done) {
+			return watermark[0];
+		}
+	}
+	
+	private static double seconds(long nanos) {
+		return Math.max(nanos, 1) / (double) TimeUnit.SECONDS.toNanos(1);
+	}
+	
+	private void print(String line) {
+		if(out != null) {
+			out.println(line);
+		}
+	}
+	
+	private void loadCheckpoint() throws IOException {
+		if(checkpoint != null && checkpoint.exists()) {
+			InputStream in = new FileInputStream(checkpoint);
+			try {
+				progress.load(in);
+			}
+			finally {
+				in.close();
+			}
+			String b = progress.getProperty(BATCH);
+			if(b != null) {
+				batch = Integer.parseInt(b);
+			}
+		}
+	}
+	
+	/**
+	 * Saves the rows below the watermark and the batches above it that were written. The file is replaced in one rename so a crash while
+	 * it is written does not lose the last checkpoint. Every worker saves after its batch, so the whole save holds the lock on done.
+	 */
+	private void saveCheckpoint(String name, TreeSet<Long> done, long[] watermark) throws IOException {
+		synchronized(done) {
+			progress.setProperty(BATCH, String.valueOf(batch));
+			progress.setProperty(name, String.valueOf(watermark[0]));
+			StringBuilder sb = new StringBuilder();
+			for(Long d : done) {
+				sb.append(sb.length() == 0 ? "" : ",").append(d);
+			}
+			progress.setProperty(name + DONE, sb.toString());
+			if(checkpoint != null) {
+				File tmp = new File(checkpoint.getPath() + ".tmp");
+				OutputStream os = new FileOutputStream(tmp);
+				try {
+					progress.store(os, "DataGenerator checkpoint");
+				}
+				finally {
+					os.close();
+				}
+				if(!tmp.renameTo(checkpoint) && !(checkpoint.delete() && tmp.renameTo(checkpoint))) {
+					throw new IOException("Could not replace " + checkpoint);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gets the primary keys a type can reference
+	 * 
+	 * @param type
+	 *            The referenced type
+	 * @return The keys
+	 */
+	private synchronized List<String> keysOf(Class<? extends DatabaseObject> type) {
+		List<String> l = keys.get(type);
+		if(l == null) {
+			l = new ArrayList<String>();
+			String range = properties.getProperty("gen." + type.getSimpleName() + ".keys");
+			if(range != null) {
+				String[] fl = range.trim().split("-");
+				for(long k = Long.parseLong(fl[0].trim()); k <= Long.parseLong(fl[fl.length - 1].trim()); k++) {
+					l.add(String.valueOf(k));
+				}
+			}
+			else if(ClassUtil.objectAssignableFrom(type, GetAllable.class)) {
+				for(DatabaseObject o : new ObjectManager(connectionManager, type).getAll(type)) {
+					l.add(o.getPrimaryKey());
+				}
+			}
+			else {
+				throw new IllegalArgumentException(type.getSimpleName() + " is not GetAllable so gen." + type.getSimpleName()
+						+ ".keys=first-last is needed to reference it");
+			}
+			keys.put(type, l);
+		}
+		return l;
+	}
+	
+	/**
+	 * Finds a type by its simple name in gen.types or by its full name
+	 */
+	private Class<? extends DatabaseObject> findType(String name) {
+		for(Class<? extends DatabaseObject> c : counts.keySet()) {
+			if(c.getSimpleName().equalsIgnoreCase(name)) {
+				return c;
+			}
+		}
+		try {
+			return Class.forName(name).asSubclass(DatabaseObject.class);
+		}
+		catch(ClassNotFoundException | ClassCastException e) {
+			return null;
+		}
+	}
+	
+	private ValueGenerator generator(Class<?> type, String field, Class<?> fieldType) {
+		String hint = properties.getProperty("gen." + type.getSimpleName() + "." + field);
+		if(hint != null) {
+			if(hint.trim().toLowerCase().startsWith("ref:")) {
+				String[] parts = hint.trim().split(":");
+				Class<? extends DatabaseObject> ref = findType(parts[1]);
+				if(ref == null) {
+					throw new IllegalArgumentException("'" + parts[1] + "' in gen." + type.getSimpleName() + "." + field + " is not a type");
+				}
+				return ValueGenerator.reference(keysOf(ref), parts.length > 2 ? Double.parseDouble(parts[2]) : 0);
+			}
+			return ValueGenerator.parse(hint);
+		}
+		if(DatabaseObject.class.isAssignableFrom(fieldType)) {
+			return ValueGenerator.reference(keysOf(fieldType.asSubclass(DatabaseObject.class)), 0);
+		}
+		if(field.endsWith("Id") && field.length() > 2) {
+			for(Class<? extends DatabaseObject> c : counts.keySet()) {
+				if(c.getSimpleName().equalsIgnoreCase(field.substring(0, field.length() - 2))) {
+					return ValueGenerator.reference(keysOf(c), 0);
+				}
+			}
+		}
+		if(fieldType == String.class) {
+			return field.toLowerCase().contains("name") ? ValueGenerator.name() : ValueGenerator.text(8, 32);
+		}
+		if(fieldType == MyClob.class) {
+			return ValueGenerator.text(50, 200);
+		}
+		if(Arrays.<Class<?>> asList(int.class, Integer.class, long.class, Long.class).contains(fieldType)) {
+			return ValueGenerator.integer(0, 1000);
+		}
+		if(Arrays.<Class<?>> asList(double.class, Double.class, float.class, Float.class).contains(fieldType)) {
+			return ValueGenerator.uniform(0, 100000);
+		}
+		if(fieldType == boolean.class || fieldType == Boolean.class) {
+			return ValueGenerator.list(Arrays.asList("true", "false"));
+		}
+		if(java.util.Date.class.isAssignableFrom(fieldType)) {
+			return ValueGenerator.parse("date:" + DEF_DATE_FROM + ":" + DEF_DATE_TO);
+		}
+		throw new IllegalArgumentException("gen." + type.getSimpleName() + "." + field + " is needed since there is no default for a "
+				+ fieldType.getSimpleName());
+	}
+	
+	/**
+	 * Turns a generated value into the type of the field it is set on
+	 */
+	private static Object convert(Object v, Class<?> type) throws ReflectiveOperationException {
+		if(v == null || type.isInstance(v)) {
+			return v;
+		}
+		String s = String.valueOf(v);
+		if(type == String.class) {
+			return s;
+		}
+		else if(type == int.class || type == Integer.class) {
+			return v instanceof Number ? ((Number) v).intValue() : Integer.parseInt(s);
+		}
+		else if(type == long.class || type == Long.class) {
+			return v instanceof Number ? ((Number) v).longValue() : Long.parseLong(s);
+		}
+		else if(type == double.class || type == Double.class) {
+			return v instanceof Number ? ((Number) v).doubleValue() : Double.parseDouble(s);
+		}
+		else if(type == float.class || type == Float.class) {
+			return v instanceof Number ? ((Number) v).floatValue() : Float.parseFloat(s);
+		}
+		else if(type == boolean.class || type == Boolean.class) {
+			return Boolean.parseBoolean(s);
+		}
+		else if(type == MyClob.class) {
+			return new MyClob(s);
+		}
+		else if(java.util.Date.class.isAssignableFrom(type)) {
+			return v instanceof java.util.Date ? new java.sql.Date(((java.util.Date) v).getTime()) : java.sql.Date.valueOf(s);
+		}
+		else if(DatabaseObject.class.isAssignableFrom(type)) {
+			DatabaseObject o = type.asSubclass(DatabaseObject.class).newInstance();
+			o.setPrimaryKey(s);
+			return o;
+		}
+		throw new IllegalArgumentException("A " + v.getClass().getSimpleName() + " can not be set on a " + type.getSimpleName());
+	}
+	
+	/**
+	 * Makes the rows of one type
+	 */
+	private class Row {
+		
+		private final Class<? extends DatabaseObject> type;
+		private final long typeSeed;
+		private final List<Field> fields = new ArrayList<Field>();
+		private final List<ValueGenerator> generators = new ArrayList<ValueGenerator>();
+		private final ValueGenerator primaryKey;
+		
+		Row(Class<? extends DatabaseObject> type) {
+			this.type = type;
+			typeSeed = seed * 31 + type.getName().hashCode();
+			for(Class<?> c : ClassUtil.getClassList(type)) {
+				for(Field f : c.getDeclaredFields()) {
+					DatabaseField a = f.getAnnotation(DatabaseField.class);
+					if(a != null && !Modifier.isStatic(f.getModifiers()) && Arrays.asList(a.values()).contains(DatabaseFieldType.NEW)) {
+						f.setAccessible(true);
+						fields.add(f);
+						generators.add(generator(type, f.getName(), f.getType()));
+					}
+				}
+			}
+			String pk = properties.getProperty("gen." + type.getSimpleName() + ".primaryKey");
+			primaryKey = pk != null ? ValueGenerator.parse(pk) : fields.isEmpty() ? ValueGenerator.sequence("") : null;
+		}
+		
+		/**
+		 * @param row
+		 *            The row number
+		 * @return The object for the row, which is the same every time for the same row number
+		 */
+		DatabaseObject create(long row) {
+			Random random = new Random(typeSeed * 1000003 + row);
+			try {
+				DatabaseObject o = type.newInstance();
+				if(primaryKey != null) {
+					o.setPrimaryKey(String.valueOf(primaryKey.next(random, row)));
+				}
+				for(int i = 0; i < fields.size(); i++) {
+					Field f = fields.get(i);
+					f.set(o, convert(generators.get(i).next(random, row), f.getType()));
+				}
+				return o;
+			}
+			catch(ReflectiveOperationException e) {
+				throw new IllegalStateException("Could not create a " + type.getSimpleName() + " for row " + row, e);
+			}
+		}
+	}
+	
+	public static void main(String[] args) throws Exception {
+		if(args.length != 1) {
+			System.err.println("Usage: DataGenerator gen.properties");
+			System.exit(1);
+		}
+		Properties properties = new Properties();
+		InputStream in = new FileInputStream(new File(args[0]));
+		try {
+			properties.load(in);
+		}
+		finally {
+			in.close();
+		}
+		System.exit(new DataGenerator(properties).run() ? 0 : 2);
+	}
+	
+	@Override
+	public String toString() {
+		return "DataGenerator [types=" + counts.keySet() + ", threads=" + threads + ", batch=" + batch + ", seed=" + seed + "]";
+	}
+}
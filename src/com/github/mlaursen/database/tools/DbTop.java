@@ -0,0 +1,211 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.tools;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.JMException;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+
+import com.github.mlaursen.database.metrics.ConnectionMetrics;
+import com.github.mlaursen.database.metrics.MetricsRegistry;
+
+/**
+ * A console view of the metrics of a running JVM, refreshed every few seconds like top. It reads the ProcedureMetrics and Connections
+ * MBeans over JMX, so the JVM has to be started with remote JMX turned on:
+ * 
+ * <pre>
+ * -Dcom.sun.management.jmxremote.port=9010 -Dcom.sun.management.jmxremote.authenticate=false -Dcom.sun.management.jmxremote.ssl=false
+ * 
+ * java -cp database-manager.jar com.github.mlaursen.database.tools.DbTop localhost:9010 -i 2 -n 20
+ * </pre>
+ * 
+ * Each row is a procedure with its calls per second, error rate and rows per call since the last refresh and its p50 and p99 latency since
+ * the metrics were last reset. The cache column is only filled in for procedures whose MBean has CacheHits and CacheMisses.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class DbTop {
+	
+	public static final int DEF_INTERVAL_SECONDS = 2, DEF_ROWS = 20;
+	private static final String[] ATTRIBUTES = { "PackageName", "ProcedureName", "Calls", "Errors", "Rows", "P50Millis", "P99Millis",
+			"CacheHits", "CacheMisses" };
+	private static final String CLEAR = "\033[H\033[2J";
+	
+	private final MBeanServerConnection server;
+	private final int rows;
+	private final Map<ObjectName, long[]> previous = new HashMap<ObjectName, long[]>();
+	private long previousNanos;
+	
+	/**
+	 * 
+	 * @param server
+	 *            The connection to the JVM's MBean server
+	 * @param rows
+	 *            The most procedures to show
+	 */
+	public DbTop(MBeanServerConnection server, int rows) {
+		this.server = server;
+		this.rows = rows;
+	}
+	
+	/**
+	 * Runs dbtop until it is killed.
+	 * 
+	 * @param args
+	 *            host:port or a full JMX service URL, then optionally -i seconds between refreshes and -n procedures to show
+	 * @throws Exception
+	 *             If the JVM can not be reached
+	 */
+	public static void main(String[] args) throws Exception {
+		if(args.length == 0) {
+			System.err.println("Usage: DbTop host:port|service:jmx:... [-i seconds] [-n rows]");
+			System.exit(1);
+		}
+		int interval = DEF_INTERVAL_SECONDS, rows = DEF_ROWS;
+		for(int i = 1; i + 1 < args.length; i += 2) {
+			if("-i".equals(args[i])) {
+				interval = Integer.parseInt(args[i + 1]);
+			}
+			else if("-n".equals(args[i])) {
+				rows = Integer.parseInt(args[i + 1]);
+			}
+		}
+		String url = args[0].startsWith("service:") ? args[0] : "service:jmx:rmi:///jndi/rmi://" + args[0] + "/jmxrmi";
+		JMXConnector connector = JMXConnectorFactory.connect(new JMXServiceURL(url));
+		try {
+			DbTop top = new DbTop(connector.getMBeanServerConnection(), rows);
+			PrintStream out = System.out;
+			while(!Thread.currentThread().isInterrupted()) {
+				out.print(CLEAR);
+				out.println(top.refresh());
+				out.flush();
+				Thread.sleep(TimeUnit.SECONDS.toMillis(interval));
+			}
+		}
+		finally {
+			connector.close();
+		}
+	}
+	
+	/**
+	 * Reads every MBean again and formats the screen. Rates are for the time since the last refresh, so the first refresh shows the
+	 * totals since the JVM started.
+	 * 
+	 * @return The screen
+	 * @throws IOException
+	 *             If the JVM can not be reached
+	 * @throws JMException
+	 *             If an MBean could not be read
+	 */
+	public synchronized String refresh() throws IOException, JMException {
+		long now = System.nanoTime();
+		double seconds = previousNanos == 0 ? 0 : (now - previousNanos) / 1e9;
+		previousNanos = now;
+		List<Row> l = new ArrayList<Row>();
+		for(ObjectName name : server.queryNames(new ObjectName(MetricsRegistry.DOMAIN + ":type=ProcedureMetrics,*"), null)) {
+			Map<String, Object> values = new HashMap<String, Object>();
+			for(Attribute a : server.getAttributes(name, ATTRIBUTES).asList()) {
+				values.put(a.getName(), a.getValue());
+			}
+			long[] current = { getLong(values, "Calls"), getLong(values, "Errors"), getLong(values, "Rows"), getLong(values, "CacheHits"),
+					getLong(values, "CacheMisses") };
+			long[] last = previous.put(name, current);
+			long[] delta = new long[current.length];
+			for(int i = 0; i < current.length; i++) {
+				// a reset makes the counts go backwards, so start over from them
+				delta[i] = last == null || current[i] < last[i] ? current[i] : current[i] - last[i];
+			}
+			l.add(new Row(values.get("PackageName") + "." + values.get("ProcedureName"), delta, seconds, getDouble(values, "P50Millis"),
+					getDouble(values, "P99Millis"), values.containsKey("CacheHits")));
+		}
+		Collections.sort(l, new Comparator<Row>() {
+			
+			@Override
+			public int compare(Row a, Row b) {
+				return Long.compare(b.delta[0], a.delta[0]);
+			}
+		});
+		StringBuilder sb = new StringBuilder();
+		sb.append("dbtop - ").append(new SimpleDateFormat("HH:mm:ss").format(new Date())).append("  procedures: ").append(l.size());
+		sb.append("  connections: ").append(getConnections()).append(String.format("%n%n"));
+		sb.append(String.format("%-40s %9s %9s %9s %7s %9s %7s", "procedure", "calls/s", "p50 ms", "p99 ms", "err %", "rows/call", "cache %"));
+		for(int i = 0; i < l.size() && i < rows; i++) {
+			sb.append(String.format("%n")).append(l.get(i));
+		}
+		return sb.toString();
+	}
+	
+	private String getConnections() throws IOException {
+		try {
+			AttributeList a = server.getAttributes(ConnectionMetrics.getObjectName(), new String[] { "Open", "Capacity", "Peak" });
+			if(a.size() == 3) {
+				Object open = a.asList().get(0).getValue(), capacity = a.asList().get(1).getValue(), peak = a.asList().get(2).getValue();
+				int c = (Integer) capacity;
+				return open + "/" + capacity + (c == 0 ? "" : String.format(" (%.0f%%)", 100.0 * (Integer) open / c)) + " peak " + peak;
+			}
+		}
+		catch(JMException e) {
+			// the JVM has not opened a connection yet
+		}
+		return "-";
+	}
+	
+	private static long getLong(Map<String, Object> values, String name) {
+		Object v = values.get(name);
+		return v instanceof Number ? ((Number) v).longValue() : 0;
+	}
+	
+	private static double getDouble(Map<String, Object> values, String name) {
+		Object v = values.get(name);
+		return v instanceof Number ? ((Number) v).doubleValue() : 0;
+	}
+	
+	/**
+	 * One line of the table
+	 */
+	private static class Row {
+		
+		private final String name;
+		private final long[] delta;
+		private final double seconds, p50, p99;
+		private final boolean cached;
+		
+		private Row(String name, long[] delta, double seconds, double p50, double p99, boolean cached) {
+			this.name = name;
+			this.delta = delta;
+			this.seconds = seconds;
+			this.p50 = p50;
+			this.p99 = p99;
+			this.cached = cached;
+		}
+		
+		@Override
+		public String toString() {
+			long calls = delta[0], errors = delta[1], rows = delta[2], lookups = delta[3] + delta[4];
+			String rate = seconds == 0 ? String.valueOf(calls) : String.format("%.1f", calls / seconds);
+			String errorRate = calls == 0 ? "-" : String.format("%.1f", 100.0 * errors / calls);
+			String perCall = calls == 0 ? "-" : String.format("%.1f", (double) rows / calls);
+			String cache = !cached || lookups == 0 ? "-" : String.format("%.1f", 100.0 * delta[3] / lookups);
+			return String.format("%-40s %9s %9.2f %9.2f %7s %9s %7s", name, rate, p50, p99, errorRate, perCall, cache);
+		}
+	}
+}
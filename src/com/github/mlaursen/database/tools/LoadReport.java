@@ -0,0 +1,199 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.tools;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.mlaursen.database.metrics.LatencyHistogram;
+import com.github.mlaursen.database.metrics.Phase;
+import com.github.mlaursen.database.metrics.ProcedureMetrics;
+import com.github.mlaursen.database.tracing.Operation;
+
+/**
+ * The results of a {@link LoadTest}: throughput, latency percentiles and errors for every operation, and how long calls waited for a
+ * connection in every procedure. It can be printed as a table or written as JSON. Operations that never ran are left out.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class LoadReport {
+	
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+	private static final String[] PERCENTILE_NAMES = { "p50Millis", "p90Millis", "p99Millis", "p999Millis" };
+	
+	private final Map<Operation, LatencyHistogram> latencies = new EnumMap<Operation, LatencyHistogram>(Operation.class);
+	private final Map<Operation, AtomicLong> errors = new EnumMap<Operation, AtomicLong>(Operation.class);
+	private final List<ProcedureMetrics> procedures = new ArrayList<ProcedureMetrics>();
+	private long elapsedNanos;
+	private int threads, peakConnections;
+	
+	/**
+	 * 
+	 * @param operations
+	 *            The operations in the workload
+	 */
+	LoadReport(Iterable<Operation> operations) {
+		for(Operation o : operations) {
+			latencies.put(o, new LatencyHistogram());
+			errors.put(o, new AtomicLong());
+		}
+	}
+	
+	/**
+	 * Records one operation
+	 * 
+	 * @param operation
+	 *            The operation
+	 * @param nanos
+	 *            How long it took
+	 * @param failed
+	 *            True if it failed
+	 */
+	void record(Operation operation, long nanos, boolean failed) {
+		latencies.get(operation).record(nanos);
+		if(failed) {
+			errors.get(operation).incrementAndGet();
+		}
+	}
+	
+	/**
+	 * Finishes the report
+	 * 
+	 * @param elapsedNanos
+	 *            How long the measured part of the test ran
+	 * @param threads
+	 *            The number of threads
+	 * @param peakConnections
+	 *            The most connections that were open at once
+	 * @param procedures
+	 *            The metrics for every procedure that was called
+	 */
+	void finish(long elapsedNanos, int threads, int peakConnections, List<ProcedureMetrics> procedures) {
+		this.elapsedNanos = elapsedNanos;
+		this.threads = threads;
+		this.peakConnections = peakConnections;
+		this.procedures.addAll(procedures);
+	}
+	
+	/**
+	 * @param operation
+	 *            The operation
+	 * @return the latencies of the operation or null if it was not in the workload
+	 */
+	public LatencyHistogram getLatencies(Operation operation) {
+		return latencies.get(operation);
+	}
+	
+	/**
+	 * @param operation
+	 *            The operation
+	 * @return the number of times the operation failed
+	 */
+	public long getErrors(Operation operation) {
+		AtomicLong e = errors.get(operation);
+		return e == null ? 0 : e.get();
+	}
+	
+	/**
+	 * @return the number of operations that ran
+	 */
+	public long getCount() {
+		long count = 0;
+		for(LatencyHistogram h : latencies.values()) {
+			count += h.getCount();
+		}
+		return count;
+	}
+	
+	/**
+	 * @return the operations per second of every operation together
+	 */
+	public double getThroughput() {
+		return elapsedNanos == 0 ? 0 : getCount() / (elapsedNanos / 1e9);
+	}
+	
+	private static double millis(long nanos) {
+		return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+	
+	/**
+	 * @return the report as JSON
+	 */
+	public String toJson() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(json("{%n  \"seconds\": %.3f,%n  \"threads\": %d,%n  \"operations\": %d,%n  \"throughput\": %.2f,%n", elapsedNanos / 1e9,
+				threads, getCount(), getThroughput()));
+		sb.append(json("  \"peakConnections\": %d,%n  \"latency\": {", peakConnections));
+		String separator = "";
+		for(Map.Entry<Operation, LatencyHistogram> e : latencies.entrySet()) {
+			LatencyHistogram.Snapshot s = e.getValue().snapshot();
+			long n = s.getCount(), failed = getErrors(e.getKey());
+			if(n == 0) {
+				continue;
+			}
+			sb.append(separator).append(json("%n    \"%s\": {\"count\": %d, \"errors\": %d, \"errorRate\": %.5f, \"throughput\": %.2f, ",
+					e.getKey(), n, failed, n == 0 ? 0 : failed / (double) n, elapsedNanos == 0 ? 0 : n / (elapsedNanos / 1e9)));
+			sb.append(json("\"meanMillis\": %.3f, ", millis(s.getMean())));
+			for(int i = 0; i < PERCENTILES.length; i++) {
+				sb.append(json("\"%s\": %.3f, ", PERCENTILE_NAMES[i], s.getPercentileMillis(PERCENTILES[i])));
+			}
+			sb.append(json("\"maxMillis\": %.3f}", millis(s.getMax())));
+			separator = ",";
+		}
+		sb.append(json("%n  },%n  \"connectionWait\": {"));
+		separator = "";
+		for(ProcedureMetrics m : procedures) {
+			LatencyHistogram.Snapshot s = m.getPhase(Phase.BORROW).snapshot();
+			sb.append(separator).append(json(
+					"%n    \"%s.%s\": {\"calls\": %d, \"p50Millis\": %.3f, \"p99Millis\": %.3f, \"maxMillis\": %.3f}",
+					escape(m.getPackageName()), escape(m.getProcedureName()), m.getCalls(), s.getPercentileMillis(50),
+					s.getPercentileMillis(99), millis(s.getMax())));
+			separator = ",";
+		}
+		return sb.append(json("%n  }%n}%n")).toString();
+	}
+	
+	/**
+	 * Formats without the default locale so numbers always use a '.'
+	 */
+	private static String json(String format, Object... args) {
+		return String.format(Locale.ROOT, format, args);
+	}
+	
+	private static String escape(String s) {
+		return s.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%d operations in %.1f seconds on %d threads: %.1f ops/s, peak connections %d%n%n", getCount(),
+				elapsedNanos / 1e9, threads, getThroughput(), peakConnections));
+		sb.append(String.format("%-10s %9s %9s %7s %9s %9s %9s %9s %9s%n", "operation", "count", "ops/s", "err %", "mean ms", "p50 ms",
+				"p99 ms", "p99.9 ms", "max ms"));
+		for(Map.Entry<Operation, LatencyHistogram> e : latencies.entrySet()) {
+			LatencyHistogram.Snapshot s = e.getValue().snapshot();
+			long n = s.getCount();
+			if(n == 0) {
+				continue;
+			}
+			sb.append(String.format("%-10s %9d %9.1f %7.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n", e.getKey(), n, elapsedNanos == 0 ? 0 : n
+					/ (elapsedNanos / 1e9), n == 0 ? 0 : 100.0 * getErrors(e.getKey()) / n, millis(s.getMean()), s.getPercentileMillis(50),
+					s.getPercentileMillis(99), s.getPercentileMillis(99.9), millis(s.getMax())));
+		}
+		sb.append(String.format("%n%-40s %9s %9s %9s%n", "connection wait", "calls", "p50 ms", "p99 ms"));
+		for(ProcedureMetrics m : procedures) {
+			LatencyHistogram.Snapshot s = m.getPhase(Phase.BORROW).snapshot();
+			sb.append(String.format("%-40s %9d %9.2f %9.2f%n", m.getPackageName() + "." + m.getProcedureName(), m.getCalls(),
+					s.getPercentileMillis(50), s.getPercentileMillis(99)));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,378 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.github.mlaursen.database.managers.CallContext;
+import com.github.mlaursen.database.managers.ConnectionManager;
+import com.github.mlaursen.database.managers.ObjectManager;
+import com.github.mlaursen.database.metrics.ConnectionMetrics;
+import com.github.mlaursen.database.metrics.MetricsRegistry;
+import com.github.mlaursen.database.objects.DatabaseObject;
+import com.github.mlaursen.database.procedures.Createable;
+import com.github.mlaursen.database.procedures.Filterable;
+import com.github.mlaursen.database.procedures.GetAllable;
+import com.github.mlaursen.database.procedures.Getable;
+import com.github.mlaursen.database.procedures.Updateable;
+import com.github.mlaursen.database.tracing.Operation;
+import com.github.mlaursen.database.utils.LocalSettings;
+
+/**
+ * A closed loop load generator. Every thread runs ObjectManager operations one after the other for a DatabaseObject type, picking the
+ * operation from a weighted mix and the primary key from a Zipf distribution. The workload is read from a properties file that can also
+ * have the dbconfig settings, so the same file can point at Oracle or at the stub driver:
+ * 
+ * <pre>
+ * className=com.github.mlaursen.database.stub.StubDriver
+ * database=jdbc:stub:load;seed=examples/sqlscripts/person_job_init.sql;latency=2;jitter=3
+ * load.type=com.github.mlaursen.examples.PersonJobExample.Job
+ * load.threads=8
+ * load.duration=60
+ * load.warmup=5
+ * load.mix=get=70,getall=5,create=10,update=15
+ * load.keys=0-5
+ * load.zipf=0.99
+ * load.json=load-report.json
+ * 
+ * java -cp database-manager.jar com.github.mlaursen.database.tools.LoadTest load.properties
+ * </pre>
+ * 
+ * Without a className the dbconfig.properties on the classpath is used. load.think is the milliseconds a thread waits between operations
+ * and load.filter is a comma separated list of values passed to filter. When the mix has creates or updates every key is read once
+ * before the test starts, and each create or update saves a new copy of the row for its key. Those reads are not part of the report.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class LoadTest {
+	
+	public static final int DEF_THREADS = 4, DEF_DURATION_SECONDS = 30, DEF_WARMUP_SECONDS = 5;
+	public static final double DEF_ZIPF = 0.99;
+	
+	private final Class<? extends DatabaseObject> type;
+	private final ConnectionManager connectionManager;
+	private final int threads;
+	private final long durationNanos, warmupNanos, thinkMillis;
+	private final Operation[] mix;
+	private final int firstKey;
+	private final ZipfDistribution keys;
+	private final Object[] filter;
+	private final String json;
+	
+	/**
+	 * Creates a load test from a workload
+	 * 
+	 * @param properties
+	 *            The workload and, optionally, the dbconfig settings
+	 * @throws ClassNotFoundException
+	 *             If load.type is not a class
+	 * @throws IllegalArgumentException
+	 *             If a setting is not valid or the type can not run an operation in the mix
+	 */
+	public LoadTest(Properties properties) throws ClassNotFoundException {
+		this(properties, properties.getProperty(LocalSettings.CLASS_FOR_NAME) == null ? new ConnectionManager() : new ConnectionManager(
+				properties));
+	}
+	
+	/**
+	 * Creates a load test from a workload that runs through a connection manager
+	 * 
+	 * @param properties
+	 *            The workload
+	 * @param connectionManager
+	 *            The connection manager every thread shares
+	 * @throws ClassNotFoundException
+	 *             If load.type is not a class
+	 * @throws IllegalArgumentException
+	 *             If a setting is not valid or the type can not run an operation in the mix
+	 */
+	public LoadTest(Properties properties, ConnectionManager connectionManager) throws ClassNotFoundException {
+		String typeName = properties.getProperty(LocalSettings.LOAD_TYPE);
+		if(typeName == null) {
+			throw new IllegalArgumentException(LocalSettings.LOAD_TYPE + " is required");
+		}
+		type = Class.forName(typeName.trim()).asSubclass(DatabaseObject.class);
+		this.connectionManager = connectionManager;
+		threads = Integer.parseInt(get(properties, LocalSettings.LOAD_THREADS, DEF_THREADS));
+		durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(get(properties, LocalSettings.LOAD_DURATION, DEF_DURATION_SECONDS)));
+		warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(get(properties, LocalSettings.LOAD_WARMUP, DEF_WARMUP_SECONDS)));
+		thinkMillis = Long.parseLong(get(properties, LocalSettings.LOAD_THINK, 0));
+		mix = parseMix(get(properties, LocalSettings.LOAD_MIX, "get=100"));
+		String[] range = get(properties, LocalSettings.LOAD_KEYS, "0-99").split("-");
+		firstKey = Integer.parseInt(range[0].trim());
+		int lastKey = range.length == 1 ? firstKey : Integer.parseInt(range[1].trim());
+		keys = new ZipfDistribution(lastKey - firstKey + 1, Double.parseDouble(get(properties, LocalSettings.LOAD_ZIPF, DEF_ZIPF)));
+		String f = properties.getProperty(LocalSettings.LOAD_FILTER);
+		filter = f == null ? new Object[0] : (Object[]) f.split("\\s*,\\s*");
+		json = properties.getProperty(LocalSettings.LOAD_JSON);
+	}
+	
+	private static String get(Properties properties, String key, Object def) {
+		String v = properties.getProperty(key);
+		return v == null ? String.valueOf(def) : v.trim();
+	}
+	
+	/**
+	 * Turns get=70,getall=30 into 100 operations in that ratio
+	 */
+	private Operation[] parseMix(String s) {
+		Map<Operation, Integer> weights = new EnumMap<Operation, Integer>(Operation.class);
+		int total = 0;
+		for(String part : s.split(",")) {
+			String[] kv = part.split("=");
+			Operation o = null;
+			for(Operation op : new Operation[] { Operation.GET, Operation.GET_ALL, Operation.FILTER, Operation.CREATE, Operation.UPDATE }) {
+				if(op.toString().replace("_", "").equalsIgnoreCase(kv[0].trim().replace("_", ""))) {
+					o = op;
+				}
+			}
+			if(o == null || kv.length != 2) {
+				throw new IllegalArgumentException("Unknown operation '" + part + "' in " + LocalSettings.LOAD_MIX
+						+ ". Use get, getall, filter, create and update");
+			}
+			Class<?> needed = o == Operation.GET ? Getable.class : o == Operation.GET_ALL ? GetAllable.class : o == Operation.FILTER
+					? Filterable.class : o == Operation.CREATE ? Createable.class : Updateable.class;
+			boolean reads = o == Operation.CREATE || o == Operation.UPDATE;
+			if(!needed.isAssignableFrom(type) || reads && !Getable.class.isAssignableFrom(type)) {
+				throw new IllegalArgumentException(type.getSimpleName() + " can not run " + o);
+			}
+			int w = Integer.parseInt(kv[1].trim());
+			weights.put(o, w);
+			total += w;
+		}
+		if(total <= 0) {
+			throw new IllegalArgumentException(LocalSettings.LOAD_MIX + " needs at least one operation with a weight");
+		}
+		List<Operation> l = new ArrayList<Operation>();
+		for(Map.Entry<Operation, Integer> e : weights.entrySet()) {
+			for(int i = 0; i < e.getValue(); i++) {
+				l.add(e.getKey());
+			}
+		}
+		return l.toArray(new Operation[l.size()]);
+	}
+	
+	/**
+	 * Runs the workload on every thread and waits for them to finish
+	 * 
+	 * @return The report for everything after the warm up
+	 * @throws InterruptedException
+	 *             If the thread is interrupted while waiting
+	 */
+	public LoadReport run() throws InterruptedException {
+		final MetricsRegistry registry = new MetricsRegistry();
+		final ConnectionMetrics counts = new ConnectionMetrics();
+		List<Operation> operations = new ArrayList<Operation>();
+		for(Operation o : mix) {
+			if(!operations.contains(o)) {
+				operations.add(o);
+			}
+		}
+		final Map<Integer, byte[]> rows = operations.contains(Operation.CREATE) || operations.contains(Operation.UPDATE) ? readRows()
+				: null;
+		final LoadReport report = new LoadReport(operations);
+		final long measureFrom = System.nanoTime() + warmupNanos, end = measureFrom + durationNanos;
+		Thread[] workers = new Thread[threads];
+		for(int i = 0; i < threads; i++) {
+			workers[i] = new Thread("load-" + i) {
+				
+				@Override
+				public void run() {
+					work(report, rows, measureFrom, end);
+				}
+			};
+		}
+		MetricsRegistry previousRegistry = connectionManager.getMetrics();
+		ConnectionMetrics previousCounts = connectionManager.getConnections();
+		connectionManager.setMetrics(registry);
+		connectionManager.setConnections(counts);
+		try {
+			for(Thread t : workers) {
+				t.start();
+			}
+			Thread.sleep(TimeUnit.NANOSECONDS.toMillis(warmupNanos));
+			registry.reset();
+			counts.reset();
+			for(Thread t : workers) {
+				t.join();
+			}
+		}
+		finally {
+			connectionManager.setMetrics(previousRegistry);
+			connectionManager.setConnections(previousCounts);
+		}
+		report.finish(Math.min(System.nanoTime(), end) - measureFrom, threads, counts.getPeak(), registry.snapshot());
+		return report;
+	}
+	
+	/**
+	 * Reads the row for every key before anything is measured, so creates and updates do not add gets to the report. The rows are kept
+	 * serialized and every create or update saves its own copy.
+	 */
+	private Map<Integer, byte[]> readRows() {
+		Map<Integer, byte[]> rows = new HashMap<Integer, byte[]>();
+		ObjectManager om = new ObjectManager(connectionManager, type);
+		for(int i = 0; i < keys.size(); i++) {
+			DatabaseObject o = om.get(firstKey + i, type);
+			if(o == null) {
+				continue;
+			}
+			try {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				ObjectOutputStream out = new ObjectOutputStream(bytes);
+				out.writeObject(o);
+				out.close();
+				rows.put(firstKey + i, bytes.toByteArray());
+			}
+			catch(IOException e) {
+				throw new IllegalArgumentException(type.getSimpleName() + " can not be copied for create and update", e);
+			}
+		}
+		CallContext.clear();
+		return rows;
+	}
+	
+	/**
+	 * @return a new copy of the row for a key or null if there is no row
+	 */
+	private DatabaseObject copy(Map<Integer, byte[]> rows, Integer key) {
+		byte[] row = rows.get(key);
+		if(row == null) {
+			return null;
+		}
+		try {
+			return (DatabaseObject) new ObjectInputStream(new ByteArrayInputStream(row)).readObject();
+		}
+		catch(IOException | ClassNotFoundException e) {
+			throw new IllegalStateException("The row for " + key + " could not be copied", e);
+		}
+	}
+	
+	/**
+	 * The loop every thread runs
+	 */
+	private void work(LoadReport report, Map<Integer, byte[]> rows, long measureFrom, long end) {
+		ObjectManager om = new ObjectManager(connectionManager, type);
+		Random random = ThreadLocalRandom.current();
+		long now;
+		while((now = System.nanoTime()) < end) {
+			Operation o = mix[random.nextInt(mix.length)];
+			Integer key = firstKey + keys.next(random);
+			DatabaseObject object = o == Operation.CREATE || o == Operation.UPDATE ? copy(rows, key) : null;
+			CallContext.clear();
+			long start = System.nanoTime();
+			boolean ok;
+			switch(o) {
+				case GET:
+					ok = om.get(key, type) != null;
+					break;
+				case GET_ALL:
+					om.getAll(type);
+					ok = true;
+					break;
+				case FILTER:
+					om.filter(type, filter);
+					ok = true;
+					break;
+				case CREATE:
+					ok = object != null && om.create(object);
+					break;
+				default:
+					ok = object != null && om.update(object);
+					break;
+			}
+			long elapsed = System.nanoTime() - start;
+			if(start >= measureFrom) {
+				report.record(o, elapsed, !ok || CallContext.getLastError() != null);
+			}
+			if(thinkMillis > 0) {
+				try {
+					Thread.sleep(thinkMillis);
+				}
+				catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+		CallContext.clear();
+	}
+	
+	/**
+	 * Writes the report as JSON to load.json if it was set
+	 * 
+	 * @param report
+	 *            The report
+	 * @throws IOException
+	 *             If the file can not be written
+	 */
+	public void writeJson(LoadReport report) throws IOException {
+		if(json == null) {
+			return;
+		}
+		Writer w = new OutputStreamWriter(new FileOutputStream(json), Charset.forName("UTF-8"));
+		try {
+			w.write(report.toJson());
+		}
+		finally {
+			w.close();
+		}
+	}
+	
+	/**
+	 * Runs a load test and prints the report.
+	 * 
+	 * @param args
+	 *            The properties file with the workload
+	 * @throws Exception
+	 *             If the workload can not be read or the test could not run
+	 */
+	public static void main(String[] args) throws Exception {
+		if(args.length != 1) {
+			System.err.println("Usage: LoadTest load.properties");
+			System.exit(1);
+		}
+		Properties properties = new Properties();
+		InputStream in = new FileInputStream(new File(args[0]));
+		try {
+			properties.load(in);
+		}
+		finally {
+			in.close();
+		}
+		LoadTest test = new LoadTest(properties);
+		System.out.println("Running " + test + "...");
+		LoadReport report = test.run();
+		System.out.println(report);
+		test.writeJson(report);
+	}
+	
+	@Override
+	public String toString() {
+		return "LoadTest [type=" + type.getSimpleName() + ", threads=" + threads + ", duration="
+				+ TimeUnit.NANOSECONDS.toSeconds(durationNanos) + "s, warmup=" + TimeUnit.NANOSECONDS.toSeconds(warmupNanos) + "s, keys="
+				+ firstKey + "-" + (firstKey + keys.size() - 1) + "]";
+	}
+}
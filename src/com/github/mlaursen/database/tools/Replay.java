@@ -0,0 +1,191 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.tools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.github.mlaursen.database.managers.CallContext;
+import com.github.mlaursen.database.managers.ConnectionManager;
+import com.github.mlaursen.database.managers.ProcedureCall;
+import com.github.mlaursen.database.metrics.ConnectionMetrics;
+import com.github.mlaursen.database.metrics.MetricsRegistry;
+import com.github.mlaursen.database.tracing.CallLogReader;
+import com.github.mlaursen.database.tracing.CallRecord;
+import com.github.mlaursen.database.tracing.Operation;
+import com.github.mlaursen.database.utils.LocalSettings;
+
+/**
+ * Runs a call log written by a {@link com.github.mlaursen.database.tracing.CallRecorder} against a database. Calls are started at the
+ * time they were recorded, scaled by the speed, no matter how long the calls before them take, so a slower database builds up a backlog
+ * the way it would in production. Latency is timed from when a call was due, so that backlog shows up in the percentiles.
+ * 
+ * <pre>
+ * java -cp database-manager.jar com.github.mlaursen.database.tools.Replay calls.log.gz target.properties -s 2 -t 32 -j replay.json
+ * </pre>
+ * 
+ * target.properties has the dbconfig settings of the database to replay against and is optional. -s is the speed, where 2 is twice the
+ * recorded rate and 0 runs every call as fast as the threads allow. -t is the number of threads making calls.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class Replay {
+	
+	public static final int DEF_THREADS = 16;
+	
+	private final File log;
+	private final ConnectionManager target;
+	private final double speed;
+	private final int threads;
+	
+	/**
+	 * 
+	 * @param log
+	 *            The call log
+	 * @param target
+	 *            The connection manager to make the calls with
+	 * @param speed
+	 *            How much faster than recorded to make the calls. 0 is as fast as possible
+	 * @param threads
+	 *            The number of threads making calls
+	 */
+	public Replay(File log, ConnectionManager target, double speed, int threads) {
+		this.log = log;
+		this.target = target;
+		this.speed = speed;
+		this.threads = threads;
+	}
+	
+	/**
+	 * Replays the log and waits for every call to finish
+	 * 
+	 * @return The report
+	 * @throws IOException
+	 *             If the log can not be read
+	 * @throws InterruptedException
+	 *             If the thread is interrupted while waiting
+	 */
+	public LoadReport run() throws IOException, InterruptedException {
+		List<Operation> operations = new ArrayList<Operation>();
+		for(Operation o : Operation.values()) {
+			operations.add(o);
+		}
+		final LoadReport report = new LoadReport(operations);
+		MetricsRegistry registry = new MetricsRegistry(), previousRegistry = target.getMetrics();
+		ConnectionMetrics counts = new ConnectionMetrics(), previousCounts = target.getConnections();
+		target.setMetrics(registry);
+		target.setConnections(counts);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CallLogReader reader = new CallLogReader(log);
+		long begin = System.nanoTime();
+		try {
+			for(CallRecord r = reader.next(); r != null; r = reader.next()) {
+				long due = begin + (speed <= 0 ? 0 : (long) (r.getOffsetNanos() / speed));
+				long wait = due - System.nanoTime();
+				if(wait > 0) {
+					TimeUnit.NANOSECONDS.sleep(wait);
+				}
+				final CallRecord record = r;
+				final long start = Math.max(due, begin);
+				executor.execute(new Runnable() {
+					
+					@Override
+					public void run() {
+						CallContext.clear();
+						ProcedureCall call = record.toProcedureCall();
+						boolean ok = record.isCursor() ? target.executeCursorProcedure(call) != null : target.executeStoredProcedure(call);
+						report.record(record.getOperation(), System.nanoTime() - start, !ok || CallContext.getLastError() != null);
+					}
+				});
+			}
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		}
+		finally {
+			executor.shutdownNow();
+			reader.close();
+			target.setMetrics(previousRegistry);
+			target.setConnections(previousCounts);
+		}
+		report.finish(System.nanoTime() - begin, threads, counts.getPeak(), registry.snapshot());
+		return report;
+	}
+	
+	/**
+	 * Replays a call log and prints the report.
+	 * 
+	 * @param args
+	 *            The call log, then optionally the properties file with the dbconfig settings, -s speed, -t threads and -j a JSON file
+	 *            for the report
+	 * @throws Exception
+	 *             If the log can not be read or the replay could not run
+	 */
+	public static void main(String[] args) throws Exception {
+		if(args.length == 0) {
+			System.err.println("Usage: Replay calls.log [target.properties] [-s speed] [-t threads] [-j report.json]");
+			System.exit(1);
+		}
+		double speed = 1;
+		int threads = DEF_THREADS;
+		String json = null, target = null;
+		for(int i = 1; i < args.length; i++) {
+			if("-s".equals(args[i]) && i + 1 < args.length) {
+				speed = Double.parseDouble(args[++i]);
+			}
+			else if("-t".equals(args[i]) && i + 1 < args.length) {
+				threads = Integer.parseInt(args[++i]);
+			}
+			else if("-j".equals(args[i]) && i + 1 < args.length) {
+				json = args[++i];
+			}
+			else {
+				target = args[i];
+			}
+		}
+		ConnectionManager cm;
+		if(target == null) {
+			cm = new ConnectionManager();
+		}
+		else {
+			Properties properties = new Properties();
+			InputStream in = new FileInputStream(target);
+			try {
+				properties.load(in);
+			}
+			finally {
+				in.close();
+			}
+			cm = properties.getProperty(LocalSettings.CLASS_FOR_NAME) == null ? new ConnectionManager() : new ConnectionManager(properties);
+		}
+		LoadReport report = new Replay(new File(args[0]), cm, speed, threads).run();
+		System.out.println(report);
+		if(json != null) {
+			Writer w = new OutputStreamWriter(new FileOutputStream(json), Charset.forName("UTF-8"));
+			try {
+				w.write(report.toJson());
+			}
+			finally {
+				w.close();
+			}
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "Replay [log=" + log + ", speed=" + speed + ", threads=" + threads + "]";
+	}
+}
@@ -0,0 +1,267 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.tools;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes the value of one field for a generated row. A generator is created from a hint in the {@link DataGenerator} settings:
+ * 
+ * <pre>
+ * int:min:max          a whole number between min and max
+ * double:min:max       a number with two decimals between min and max
+ * normal:mean:sd       a number with two decimals from a normal distribution, never below 0
+ * list:a|b|c           one of the values
+ * text:min:max         random lower case letters, between min and max long
+ * name                 a capitalized made up name
+ * date:from:to         a java.sql.Date between two yyyy-mm-dd dates
+ * seq[:prefix]         the row number with an optional prefix, which is unique
+ * const:value          always the value
+ * ref:Type[:skew]      a primary key of a generated or existing Type, picked with a Zipf skew (0 is uniform)
+ * </pre>
+ * 
+ * @author mlaursen
+ * 
+ */
+public abstract class ValueGenerator {
+	
+	private static final String[] SYLLABLES = { "an", "ber", "ca", "dor", "el", "fi", "ga", "hol", "in", "jo", "ka", "li", "mar", "ne",
+			"or", "pa", "ri", "sa", "ton", "vi", "wen", "ya", "zel" };
+	
+	/**
+	 * Makes a value
+	 * 
+	 * @param random
+	 *            The random numbers for the row
+	 * @param row
+	 *            The number of the row being generated
+	 * @return The value
+	 */
+	public abstract Object next(Random random, long row);
+	
+	/**
+	 * Creates a generator from a hint. A ref hint can not be parsed since it needs the keys; use
+	 * {@link #reference(List, double)} instead.
+	 * 
+	 * @param hint
+	 *            The hint
+	 * @return The generator
+	 * @throws IllegalArgumentException
+	 *             If the hint is not valid
+	 */
+	public static ValueGenerator parse(String hint) {
+		String[] parts = hint.trim().split(":", -1);
+		try {
+			switch(parts[0].toLowerCase()) {
+				case "int":
+					return integer(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+				case "double":
+					return uniform(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+				case "normal":
+					return normal(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+				case "list":
+					return list(Arrays.asList(hint.trim().substring(5).split("\\|")));
+				case "text":
+					return text(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+				case "name":
+					return name();
+				case "date":
+					return date(java.sql.Date.valueOf(parts[1]).getTime(), java.sql.Date.valueOf(parts[2]).getTime());
+				case "seq":
+					return sequence(parts.length > 1 ? parts[1] : "");
+				case "const":
+					return constant(hint.trim().substring(6));
+			}
+		}
+		catch(ArrayIndexOutOfBoundsException e) {
+			// fall through to the error below
+		}
+		throw new IllegalArgumentException("'" + hint + "' is not a valid generator hint");
+	}
+	
+	/**
+	 * @param min
+	 *            The smallest value
+	 * @param max
+	 *            The largest value
+	 * @return A generator of Integers, or Longs when the range does not fit in an int
+	 */
+	public static ValueGenerator integer(final long min, final long max) {
+		final boolean small = min >= Integer.MIN_VALUE && max <= Integer.MAX_VALUE;
+		return new ValueGenerator() {
+			
+			@Override
+			public Object next(Random random, long row) {
+				long v = min + (long) (random.nextDouble() * (max - min + 1));
+				return small ? (Object) (int) v : (Object) v;
+			}
+		};
+	}
+	
+	/**
+	 * @param min
+	 *            The smallest value
+	 * @param max
+	 *            The largest value
+	 * @return A generator of Doubles rounded to two decimals
+	 */
+	public static ValueGenerator uniform(final double min, final double max) {
+		return new ValueGenerator() {
+			
+			@Override
+			public Object next(Random random, long row) {
+				return round(min + random.nextDouble() * (max - min));
+			}
+		};
+	}
+	
+	/**
+	 * @param mean
+	 *            The mean
+	 * @param sd
+	 *            The standard deviation
+	 * @return A generator of Doubles rounded to two decimals that are never negative
+	 */
+	public static ValueGenerator normal(final double mean, final double sd) {
+		return new ValueGenerator() {
+			
+			@Override
+			public Object next(Random random, long row) {
+				return round(Math.max(0, mean + random.nextGaussian() * sd));
+			}
+		};
+	}
+	
+	private static double round(double d) {
+		return Math.round(d * 100) / 100.0;
+	}
+	
+	/**
+	 * @param values
+	 *            The values to pick from
+	 * @return A generator that picks one of the values
+	 */
+	public static ValueGenerator list(final List<String> values) {
+		return new ValueGenerator() {
+			
+			@Override
+			public Object next(Random random, long row) {
+				return values.get(random.nextInt(values.size()));
+			}
+		};
+	}
+	
+	/**
+	 * @param min
+	 *            The shortest length
+	 * @param max
+	 *            The longest length
+	 * @return A generator of random lower case letters
+	 */
+	public static ValueGenerator text(final int min, final int max) {
+		return new ValueGenerator() {
+			
+			@Override
+			public Object next(Random random, long row) {
+				char[] c = new char[min + random.nextInt(max - min + 1)];
+				for(int i = 0; i < c.length; i++) {
+					c[i] = (char) ('a' + random.nextInt(26));
+				}
+				return new String(c);
+			}
+		};
+	}
+	
+	/**
+	 * @return A generator of capitalized names made of two or three syllables
+	 */
+	public static ValueGenerator name() {
+		return new ValueGenerator() {
+			
+			@Override
+			public Object next(Random random, long row) {
+				StringBuilder sb = new StringBuilder();
+				for(int i = 2 + random.nextInt(2); i > 0; i--) {
+					sb.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+				}
+				sb.setCharAt(0, Character.toUpperCase(sb.charAt(0)));
+				return sb.toString();
+			}
+		};
+	}
+	
+	/**
+	 * @param from
+	 *            The first day in milliseconds
+	 * @param to
+	 *            The last day in milliseconds
+	 * @return A generator of dates between the two days
+	 */
+	public static ValueGenerator date(final long from, final long to) {
+		final long days = TimeUnit.MILLISECONDS.toDays(to - from) + 1;
+		return new ValueGenerator() {
+			
+			@Override
+			public Object next(Random random, long row) {
+				return new java.sql.Date(from + TimeUnit.DAYS.toMillis((long) (random.nextDouble() * days)));
+			}
+		};
+	}
+	
+	/**
+	 * @param prefix
+	 *            The text before the row number
+	 * @return A generator of unique values made from the row number
+	 */
+	public static ValueGenerator sequence(final String prefix) {
+		return new ValueGenerator() {
+			
+			@Override
+			public Object next(Random random, long row) {
+				return prefix + row;
+			}
+		};
+	}
+	
+	/**
+	 * @param value
+	 *            The value
+	 * @return A generator that always returns the value
+	 */
+	public static ValueGenerator constant(final Object value) {
+		return new ValueGenerator() {
+			
+			@Override
+			public Object next(Random random, long row) {
+				return value;
+			}
+		};
+	}
+	
+	/**
+	 * @param keys
+	 *            The primary keys that can be referenced
+	 * @param skew
+	 *            The Zipf skew. 0 picks every key as often, and a higher skew picks the first keys more often
+	 * @return A generator of foreign keys
+	 * @throws IllegalArgumentException
+	 *             If there are no keys
+	 */
+	public static ValueGenerator reference(final List<String> keys, double skew) {
+		if(keys.isEmpty()) {
+			throw new IllegalArgumentException("There are no keys to reference");
+		}
+		final ZipfDistribution zipf = skew > 0 ? new ZipfDistribution(keys.size(), skew) : null;
+		return new ValueGenerator() {
+			
+			@Override
+			public Object next(Random random, long row) {
+				return keys.get(zipf == null ? random.nextInt(keys.size()) : zipf.next(random));
+			}
+		};
+	}
+}
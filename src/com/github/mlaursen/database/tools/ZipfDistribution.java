@@ -0,0 +1,68 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.tools;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Picks numbers from 0 to n - 1 where number k is picked in proportion to 1 / (k + 1)^s. With a skew of 0 every number is as likely, and
+ * around 1 a few hot keys get most of the picks like they do in real traffic.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class ZipfDistribution {
+	
+	private final double[] cdf;
+	
+	/**
+	 * 
+	 * @param n
+	 *            The number of values
+	 * @param skew
+	 *            The skew. 0 is uniform
+	 */
+	public ZipfDistribution(int n, double skew) {
+		if(n < 1 || skew < 0) {
+			throw new IllegalArgumentException("A Zipf distribution needs at least one value and a skew that is not negative. n=" + n
+					+ ", skew=" + skew);
+		}
+		cdf = new double[n];
+		double sum = 0;
+		for(int k = 0; k < n; k++) {
+			sum += 1 / Math.pow(k + 1, skew);
+			cdf[k] = sum;
+		}
+		for(int k = 0; k < n; k++) {
+			cdf[k] /= sum;
+		}
+	}
+	
+	/**
+	 * @return the number of values
+	 */
+	public int size() {
+		return cdf.length;
+	}
+	
+	/**
+	 * @param k
+	 *            The value
+	 * @return the chance the value is picked
+	 */
+	public double probability(int k) {
+		return k == 0 ? cdf[0] : cdf[k] - cdf[k - 1];
+	}
+	
+	/**
+	 * @param random
+	 *            The random numbers to use
+	 * @return the next value
+	 */
+	public int next(Random random) {
+		int i = Arrays.binarySearch(cdf, random.nextDouble());
+		return Math.min(i < 0 ? -i - 1 : i, cdf.length - 1);
+	}
+}
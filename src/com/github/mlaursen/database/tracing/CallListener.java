@@ -0,0 +1,57 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.tracing;
+
+import java.sql.SQLException;
+
+import com.github.mlaursen.database.managers.ProcedureCall;
+
+/**
+ * Gets called around every procedure call, including calls made for ObjectManager operations. The call has the {@link Operation}, the
+ * DatabaseObject type, the Procedure and the parameters, and once it has finished the rows and the time spent in each phase. Register a
+ * listener once with {@link CallListeners#add(CallListener)}.
+ * 
+ * Listeners are called on the thread making the call, so they can read whatever trace context the thread has. Anything a listener needs to
+ * carry from before to after, like a span, is returned from before and handed back.
+ * 
+ * @author mlaursen
+ * 
+ */
+public interface CallListener {
+	
+	/**
+	 * The call is about to be made
+	 * 
+	 * @param call
+	 *            The procedure call
+	 * @return Anything the listener wants back in after or error. Can be null
+	 */
+	Object before(ProcedureCall call);
+	
+	/**
+	 * The call worked
+	 * 
+	 * @param context
+	 *            What before returned
+	 * @param call
+	 *            The procedure call
+	 * @param nanos
+	 *            How long the call took, including retries
+	 */
+	void after(Object context, ProcedureCall call, long nanos);
+	
+	/**
+	 * The call failed or was rejected
+	 * 
+	 * @param context
+	 *            What before returned
+	 * @param call
+	 *            The procedure call
+	 * @param e
+	 *            The exception from the last attempt
+	 * @param nanos
+	 *            How long the call took, including retries
+	 */
+	void error(Object context, ProcedureCall call, SQLException e, long nanos);
+}
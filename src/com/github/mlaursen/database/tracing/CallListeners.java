@@ -0,0 +1,145 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.tracing;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import com.github.mlaursen.database.logging.ErrorCategory;
+import com.github.mlaursen.database.logging.ErrorLog;
+import com.github.mlaursen.database.managers.ProcedureCall;
+
+/**
+ * Every registered {@link CallListener}. The listeners are kept in an array that is replaced when a listener is added or removed, so calls
+ * only read a volatile field and nothing is allocated when no listeners are registered. A listener that throws is reported to the
+ * {@link ErrorLog} and does not fail the call.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class CallListeners {
+	
+	private static final CallListener[] NONE = new CallListener[0];
+	private static volatile CallListener[] listeners = NONE;
+	
+	private CallListeners() {}
+	
+	/**
+	 * @param listener
+	 *            The listener to add
+	 */
+	public static synchronized void add(CallListener listener) {
+		CallListener[] l = Arrays.copyOf(listeners, listeners.length + 1);
+		l[l.length - 1] = listener;
+		listeners = l;
+	}
+	
+	/**
+	 * @param listener
+	 *            The listener to remove
+	 * @return True if it was registered
+	 */
+	public static synchronized boolean remove(CallListener listener) {
+		for(int i = 0; i < listeners.length; i++) {
+			if(listeners[i] == listener) {
+				CallListener[] l = new CallListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, l, 0, i);
+				System.arraycopy(listeners, i + 1, l, i, l.length - i);
+				listeners = l;
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Removes every listener
+	 */
+	public static synchronized void clear() {
+		listeners = NONE;
+	}
+	
+	/**
+	 * @return the registered listeners. The array must not be changed
+	 */
+	public static CallListener[] get() {
+		return listeners;
+	}
+	
+	/**
+	 * Calls before on every listener
+	 * 
+	 * @param l
+	 *            The listeners from {@link #get()}
+	 * @param call
+	 *            The procedure call
+	 * @return What each listener returned
+	 */
+	public static Object[] before(CallListener[] l, ProcedureCall call) {
+		Object[] contexts = new Object[l.length];
+		for(int i = 0; i < l.length; i++) {
+			try {
+				contexts[i] = l[i].before(call);
+			}
+			catch(RuntimeException e) {
+				report(l[i], e);
+			}
+		}
+		return contexts;
+	}
+	
+	/**
+	 * Calls after on every listener
+	 * 
+	 * @param l
+	 *            The listeners that before was called on
+	 * @param contexts
+	 *            What before returned
+	 * @param call
+	 *            The procedure call
+	 * @param nanos
+	 *            How long the call took
+	 */
+	public static void after(CallListener[] l, Object[] contexts, ProcedureCall call, long nanos) {
+		for(int i = 0; i < l.length; i++) {
+			try {
+				l[i].after(contexts[i], call, nanos);
+			}
+			catch(RuntimeException e) {
+				report(l[i], e);
+			}
+		}
+	}
+	
+	/**
+	 * Calls error on every listener
+	 * 
+	 * @param l
+	 *            The listeners that before was called on
+	 * @param contexts
+	 *            What before returned
+	 * @param call
+	 *            The procedure call
+	 * @param error
+	 *            The exception from the last attempt
+	 * @param nanos
+	 *            How long the call took
+	 */
+	public static void error(CallListener[] l, Object[] contexts, ProcedureCall call, SQLException error, long nanos) {
+		for(int i = 0; i < l.length; i++) {
+			try {
+				l[i].error(contexts[i], call, error, nanos);
+			}
+			catch(RuntimeException e) {
+				report(l[i], e);
+			}
+		}
+	}
+	
+	private static void report(CallListener listener, RuntimeException e) {
+		if(ErrorLog.isEnabled(ErrorCategory.LISTENER)) {
+			ErrorLog.log(ErrorCategory.LISTENER, "The call listener " + listener.getClass().getName() + " threw an exception.", e);
+		}
+	}
+}
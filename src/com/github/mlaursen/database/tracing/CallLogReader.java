@@ -0,0 +1,98 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.tracing;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads a call log written by a {@link CallRecorder} one record at a time.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class CallLogReader implements Closeable {
+	
+	private final DataInputStream in;
+	
+	/**
+	 * 
+	 * @param file
+	 *            The log. A name ending with .gz is read as compressed
+	 * @throws IOException
+	 *             If the file can not be opened or is not a call log
+	 */
+	public CallLogReader(File file) throws IOException {
+		InputStream is = new FileInputStream(file);
+		try {
+			if(file.getName().endsWith(".gz")) {
+				is = new GZIPInputStream(is);
+			}
+			in = new DataInputStream(new BufferedInputStream(is));
+			if(in.readInt() != CallRecorder.MAGIC) {
+				throw new IOException(file + " is not a call log");
+			}
+			int version = in.readInt();
+			if(version != CallRecorder.VERSION) {
+				throw new IOException(file + " is a version " + version + " call log. Only version " + CallRecorder.VERSION
+						+ " can be read");
+			}
+		}
+		catch(IOException e) {
+			is.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * @return the next record or null at the end of the log
+	 * @throws IOException
+	 *             If the log can not be read
+	 */
+	public CallRecord next() throws IOException {
+		try {
+			return CallRecord.readFrom(in);
+		}
+		catch(EOFException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Reads every record in a log
+	 * 
+	 * @param file
+	 *            The log
+	 * @return The records in the order they were recorded
+	 * @throws IOException
+	 *             If the log can not be read
+	 */
+	public static List<CallRecord> readAll(File file) throws IOException {
+		CallLogReader reader = new CallLogReader(file);
+		try {
+			List<CallRecord> l = new ArrayList<CallRecord>();
+			for(CallRecord r = reader.next(); r != null; r = reader.next()) {
+				l.add(r);
+			}
+			return l;
+		}
+		finally {
+			reader.close();
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
@@ -0,0 +1,298 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.tracing;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.mlaursen.database.managers.ProcedureCall;
+import com.github.mlaursen.database.objects.DatabaseObject;
+import com.github.mlaursen.database.objects.MyClob;
+import com.github.mlaursen.database.objects.MyResultRow;
+import com.github.mlaursen.database.objects.MyResultSet;
+
+/**
+ * One procedure call in a call log written by a {@link CallRecorder}. Parameters are kept the way they are bound: Strings, Integers,
+ * Doubles, Dates, MyClobs and nulls, with DatabaseObjects replaced by their primary key.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class CallRecord {
+	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int ERROR = 1, CURSOR = 2, RESULTS = 4;
+	private static final byte NULL = 0, STRING = 1, INTEGER = 2, DOUBLE = 3, DATE = 4, CLOB = 5;
+	
+	private final long offsetNanos, nanos, rows;
+	private final Operation operation;
+	private final String call;
+	private final Object[] parameters;
+	private final boolean error, cursor;
+	private final MyResultSet results;
+	
+	/**
+	 * 
+	 * @param offsetNanos
+	 *            When the call started, from the start of the log
+	 * @param nanos
+	 *            How long the call took
+	 * @param operation
+	 *            The operation
+	 * @param call
+	 *            The full formatted procedure string. I.E. PERSON_PKG.GET(:PRIMARYKEY, :CURSOR)
+	 * @param parameters
+	 *            The bound parameters
+	 * @param error
+	 *            True if the call failed
+	 * @param cursor
+	 *            True if the call returns a cursor
+	 * @param rows
+	 *            The number of rows returned or updated
+	 * @param results
+	 *            The rows of the cursor or null if they were not recorded
+	 */
+	public CallRecord(long offsetNanos, long nanos, Operation operation, String call, Object[] parameters, boolean error, boolean cursor,
+			long rows, MyResultSet results) {
+		this.offsetNanos = offsetNanos;
+		this.nanos = nanos;
+		this.operation = operation;
+		this.call = call;
+		this.parameters = new Object[parameters.length];
+		for(int i = 0; i < parameters.length; i++) {
+			Object p = parameters[i];
+			this.parameters[i] = p instanceof DatabaseObject ? ((DatabaseObject) p).getPrimaryKey() : p;
+		}
+		this.error = error;
+		this.cursor = cursor;
+		this.rows = rows;
+		this.results = results;
+	}
+	
+	/**
+	 * @return when the call started in nanoseconds from the start of the log
+	 */
+	public long getOffsetNanos() {
+		return offsetNanos;
+	}
+	
+	/**
+	 * @return how long the call took in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+	
+	/**
+	 * @return the operation
+	 */
+	public Operation getOperation() {
+		return operation;
+	}
+	
+	/**
+	 * @return the full formatted procedure string
+	 */
+	public String getCall() {
+		return call;
+	}
+	
+	/**
+	 * @return the procedure name without the parameters in upper case. I.E. PERSON_PKG.GET
+	 */
+	public String getProcedureName() {
+		int paren = call.indexOf('(');
+		return (paren == -1 ? call : call.substring(0, paren)).trim().toUpperCase();
+	}
+	
+	/**
+	 * @return the bound parameters
+	 */
+	public Object[] getParameters() {
+		return parameters;
+	}
+	
+	/**
+	 * @return true if the call failed
+	 */
+	public boolean isError() {
+		return error;
+	}
+	
+	/**
+	 * @return true if the call returns a cursor
+	 */
+	public boolean isCursor() {
+		return cursor;
+	}
+	
+	/**
+	 * @return the number of rows returned or updated
+	 */
+	public long getRows() {
+		return rows;
+	}
+	
+	/**
+	 * @return the rows of the cursor or null if they were not recorded
+	 */
+	public MyResultSet getResults() {
+		return results;
+	}
+	
+	/**
+	 * @return a new call with the same procedure, parameters and operation
+	 */
+	public ProcedureCall toProcedureCall() {
+		return new ProcedureCall(call, parameters.clone()).setOperation(operation);
+	}
+	
+	/**
+	 * Writes the record
+	 * 
+	 * @param out
+	 *            The log
+	 * @throws IOException
+	 *             If it can not be written
+	 */
+	void writeTo(DataOutputStream out) throws IOException {
+		out.writeLong(offsetNanos);
+		out.writeLong(nanos);
+		out.writeByte(operation.ordinal());
+		out.writeByte((error ? ERROR : 0) | (cursor ? CURSOR : 0) | (results != null ? RESULTS : 0));
+		writeString(out, call);
+		out.writeLong(rows);
+		out.writeInt(parameters.length);
+		for(Object p : parameters) {
+			if(p == null) {
+				out.writeByte(NULL);
+			}
+			else if(p instanceof Integer) {
+				out.writeByte(INTEGER);
+				out.writeInt((Integer) p);
+			}
+			else if(p instanceof Double) {
+				out.writeByte(DOUBLE);
+				out.writeDouble((Double) p);
+			}
+			else if(p instanceof Date) {
+				out.writeByte(DATE);
+				out.writeLong(((Date) p).getTime());
+			}
+			else if(p instanceof MyClob) {
+				out.writeByte(CLOB);
+				writeString(out, ((MyClob) p).getValue());
+			}
+			else {
+				out.writeByte(STRING);
+				writeString(out, p.toString());
+			}
+		}
+		if(results != null) {
+			List<String> columns = results.getColNames();
+			out.writeInt(columns.size());
+			for(String c : columns) {
+				writeString(out, c);
+			}
+			out.writeInt(results.size());
+			for(MyResultRow r : results) {
+				for(String c : columns) {
+					writeString(out, r.get(c));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Reads a record
+	 * 
+	 * @param in
+	 *            The log
+	 * @return The record
+	 * @throws IOException
+	 *             If it can not be read
+	 */
+	static CallRecord readFrom(DataInputStream in) throws IOException {
+		long offsetNanos = in.readLong(), nanos = in.readLong();
+		Operation operation = Operation.values()[in.readByte()];
+		int flags = in.readByte();
+		String call = readString(in);
+		long rows = in.readLong();
+		Object[] parameters = new Object[in.readInt()];
+		for(int i = 0; i < parameters.length; i++) {
+			byte type = in.readByte();
+			switch(type) {
+				case NULL:
+					break;
+				case INTEGER:
+					parameters[i] = in.readInt();
+					break;
+				case DOUBLE:
+					parameters[i] = in.readDouble();
+					break;
+				case DATE:
+					parameters[i] = new Date(in.readLong());
+					break;
+				case CLOB:
+					parameters[i] = new MyClob(readString(in));
+					break;
+				case STRING:
+					parameters[i] = readString(in);
+					break;
+				default:
+					throw new IOException("Unknown parameter type " + type + " in the call log");
+			}
+		}
+		MyResultSet results = null;
+		if((flags & RESULTS) != 0) {
+			List<String> columns = new ArrayList<String>();
+			for(int i = in.readInt(); i > 0; i--) {
+				columns.add(readString(in));
+			}
+			List<MyResultRow> l = new ArrayList<MyResultRow>();
+			for(int i = in.readInt(); i > 0; i--) {
+				MyResultRow r = new MyResultRow();
+				for(String c : columns) {
+					r.add(c, readString(in));
+				}
+				l.add(r);
+			}
+			results = new MyResultSet(l, columns);
+		}
+		return new CallRecord(offsetNanos, nanos, operation, call, parameters, (flags & ERROR) != 0, (flags & CURSOR) != 0, rows, results);
+	}
+	
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if(s == null) {
+			out.writeInt(-1);
+		}
+		else {
+			byte[] b = s.getBytes(UTF8);
+			out.writeInt(b.length);
+			out.write(b);
+		}
+	}
+	
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if(length < 0) {
+			return null;
+		}
+		byte[] b = new byte[length];
+		in.readFully(b);
+		return new String(b, UTF8);
+	}
+	
+	@Override
+	public String toString() {
+		return "CallRecord [offset=" + offsetNanos / 1000 + "us, nanos=" + nanos + ", operation=" + operation + ", call=" + call
+				+ ", parameters=" + Arrays.toString(parameters) + ", error=" + error + ", rows=" + rows + "]";
+	}
+}
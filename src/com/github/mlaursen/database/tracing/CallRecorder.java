@@ -0,0 +1,223 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.tracing;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import com.github.mlaursen.database.logging.ErrorCategory;
+import com.github.mlaursen.database.logging.ErrorLog;
+import com.github.mlaursen.database.managers.ProcedureCall;
+import com.github.mlaursen.database.utils.LocalSettings;
+
+/**
+ * A {@link CallListener} that records every call to a binary call log: the procedure string, the parameters, when the call started, how
+ * long it took and, if asked, the rows of every cursor. Records are written by a background thread, and when it can not keep up records
+ * are dropped instead of making calls wait. A log whose name ends with .gz is compressed.
+ * 
+ * <pre>
+ * CallRecorder recorder = new CallRecorder(new File(&quot;calls.log.gz&quot;), true);
+ * CallListeners.add(recorder);
+ * ...
+ * CallListeners.remove(recorder);
+ * recorder.close();
+ * </pre>
+ * 
+ * Or set record.file, and optionally record.rows=true, in the dbconfig.properties to record from the first ConnectionManager until the JVM
+ * exits. Read a log back with {@link CallLogReader} and run it again with the Replay tool.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class CallRecorder implements CallListener, Closeable {
+	
+	public static final int MAGIC = 0x44424c47, VERSION = 1, DEF_CAPACITY = 8192;
+	private static boolean configured;
+	
+	private final DataOutputStream out;
+	private final boolean recordRows;
+	private final long start = System.nanoTime();
+	private final BlockingQueue<CallRecord> queue;
+	private final AtomicLong recorded = new AtomicLong(), dropped = new AtomicLong();
+	private final Thread writer;
+	private volatile boolean closed;
+	
+	/**
+	 * 
+	 * @param file
+	 *            The log to write. It is replaced if it exists
+	 * @param recordRows
+	 *            True if the rows of every cursor should be recorded too
+	 * @throws IOException
+	 *             If the log can not be created
+	 */
+	public CallRecorder(File file, boolean recordRows) throws IOException {
+		this(file, recordRows, DEF_CAPACITY);
+	}
+	
+	/**
+	 * 
+	 * @param file
+	 *            The log to write. It is replaced if it exists
+	 * @param recordRows
+	 *            True if the rows of every cursor should be recorded too
+	 * @param capacity
+	 *            The number of records that can be waiting to be written
+	 * @throws IOException
+	 *             If the log can not be created
+	 */
+	public CallRecorder(File file, boolean recordRows, int capacity) throws IOException {
+		OutputStream os = new FileOutputStream(file);
+		if(file.getName().endsWith(".gz")) {
+			os = new GZIPOutputStream(os);
+		}
+		this.out = new DataOutputStream(new BufferedOutputStream(os));
+		this.recordRows = recordRows;
+		this.queue = new ArrayBlockingQueue<CallRecord>(Math.max(1, capacity));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		writer = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				write();
+			}
+		}, "db-call-recorder");
+		writer.setDaemon(true);
+		writer.start();
+	}
+	
+	/**
+	 * Starts recording to record.file the first time it is called with a record.file. The recorder is closed when the JVM exits.
+	 * 
+	 * @param properties
+	 *            The local settings
+	 */
+	public static synchronized void fromProperties(Properties properties) {
+		String path = properties.getProperty(LocalSettings.RECORD_FILE);
+		if(configured || path == null || path.trim().isEmpty()) {
+			return;
+		}
+		configured = true;
+		try {
+			final CallRecorder recorder = new CallRecorder(new File(path.trim()), "true".equalsIgnoreCase(properties
+					.getProperty(LocalSettings.RECORD_ROWS)));
+			CallListeners.add(recorder);
+			Runtime.getRuntime().addShutdownHook(new Thread("db-call-recorder-close") {
+				
+				@Override
+				public void run() {
+					CallListeners.remove(recorder);
+					recorder.close();
+				}
+			});
+		}
+		catch(IOException e) {
+			ErrorLog.report(ErrorCategory.LISTENER, "The call log " + path + " could not be created.", e);
+		}
+	}
+	
+	@Override
+	public Object before(ProcedureCall call) {
+		return System.nanoTime();
+	}
+	
+	@Override
+	public void after(Object context, ProcedureCall call, long nanos) {
+		record((Long) context, call, nanos, false);
+	}
+	
+	@Override
+	public void error(Object context, ProcedureCall call, SQLException e, long nanos) {
+		record((Long) context, call, nanos, true);
+	}
+	
+	private void record(long started, ProcedureCall call, long nanos, boolean error) {
+		if(closed) {
+			return;
+		}
+		boolean cursor = call.getResults() != null || call.getCall().toUpperCase().contains(":CURSOR");
+		CallRecord r = new CallRecord(started - start, nanos, call.getOperation(), call.getCall(), call.getParameters(), error, cursor,
+				call.getRows(), recordRows && !error ? call.getResults() : null);
+		if(!queue.offer(r)) {
+			dropped.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * The writer thread. It flushes whenever the queue is empty and closes the log once the recorder is closed and the queue is drained.
+	 */
+	private void write() {
+		try {
+			while(true) {
+				CallRecord r = queue.poll(100, TimeUnit.MILLISECONDS);
+				if(r != null) {
+					r.writeTo(out);
+					recorded.incrementAndGet();
+				}
+				else {
+					out.flush();
+					if(closed) {
+						break;
+					}
+				}
+			}
+		}
+		catch(IOException e) {
+			closed = true;
+			ErrorLog.report(ErrorCategory.LISTENER, "The call log could not be written. Recording has stopped.", e);
+		}
+		catch(InterruptedException e) {
+			closed = true;
+		}
+		finally {
+			try {
+				out.close();
+			}
+			catch(IOException e) {
+				ErrorLog.report(ErrorCategory.LISTENER, "The call log could not be closed.", e);
+			}
+		}
+	}
+	
+	/**
+	 * @return the number of calls written to the log
+	 */
+	public long getRecorded() {
+		return recorded.get();
+	}
+	
+	/**
+	 * @return the number of calls that were dropped because the writer could not keep up
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+	
+	/**
+	 * Stops recording, writes every call that is waiting and closes the log
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		try {
+			writer.join();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.tracing;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.mlaursen.database.managers.ProcedureCall;
+
+/**
+ * A {@link CallListener} that keeps the most recent calls in memory as {@link Span}s. It is meant for tests and as an example for writing
+ * an exporter to a real tracing system.
+ * 
+ * <pre>
+ * InMemorySpanCollector spans = new InMemorySpanCollector();
+ * CallListeners.add(spans);
+ * manager.get(1, Person.class);
+ * assertEquals(Operation.GET, spans.getSpans().get(0).getOperation());
+ * </pre>
+ * 
+ * @author mlaursen
+ * 
+ */
+public class InMemorySpanCollector implements CallListener {
+	
+	public static final int DEF_MAX_SPANS = 1000;
+	
+	private final ConcurrentLinkedQueue<Span> spans = new ConcurrentLinkedQueue<Span>();
+	private final AtomicInteger size = new AtomicInteger();
+	private final int maxSpans;
+	
+	/**
+	 * Creates a collector that keeps the default number of spans
+	 */
+	public InMemorySpanCollector() {
+		this(DEF_MAX_SPANS);
+	}
+	
+	/**
+	 * 
+	 * @param maxSpans
+	 *            The number of spans to keep. The oldest spans are dropped first
+	 */
+	public InMemorySpanCollector(int maxSpans) {
+		this.maxSpans = Math.max(1, maxSpans);
+	}
+	
+	@Override
+	public Object before(ProcedureCall call) {
+		return new Span(call);
+	}
+	
+	@Override
+	public void after(Object context, ProcedureCall call, long nanos) {
+		finish((Span) context, call, nanos, null);
+	}
+	
+	@Override
+	public void error(Object context, ProcedureCall call, SQLException e, long nanos) {
+		finish((Span) context, call, nanos, e.getClass().getSimpleName() + ": " + e.getMessage());
+	}
+	
+	private void finish(Span span, ProcedureCall call, long nanos, String error) {
+		span.finish(call, nanos, error);
+		spans.add(span);
+		if(size.incrementAndGet() > maxSpans && spans.poll() != null) {
+			size.decrementAndGet();
+		}
+	}
+	
+	/**
+	 * @return the spans in the order the calls finished
+	 */
+	public List<Span> getSpans() {
+		return new ArrayList<Span>(spans);
+	}
+	
+	/**
+	 * Removes every span
+	 */
+	public void clear() {
+		while(spans.poll() != null) {
+			size.decrementAndGet();
+		}
+	}
+}
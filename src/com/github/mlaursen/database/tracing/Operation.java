@@ -0,0 +1,23 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.tracing;
+
+/**
+ * The operation a procedure call is made for.
+ * 
+ * @author mlaursen
+ * 
+ */
+public enum Operation {
+	GET, GET_ALL, FILTER, CREATE, UPDATE, DELETE, CUSTOM_GET, CUSTOM_GET_ALL, CUSTOM,
+	/**
+	 * A call made straight through the ConnectionManager
+	 */
+	CALL;
+	
+	@Override
+	public String toString() {
+		return name().toLowerCase();
+	}
+}
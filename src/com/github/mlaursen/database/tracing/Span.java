@@ -0,0 +1,164 @@
+/**
+ * 
+ */
+package com.github.mlaursen.database.tracing;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.github.mlaursen.database.managers.ProcedureCall;
+import com.github.mlaursen.database.metrics.Phase;
+
+/**
+ * A finished procedure call as recorded by the {@link InMemorySpanCollector}.
+ * 
+ * @author mlaursen
+ * 
+ */
+public class Span {
+	
+	private final Operation operation;
+	private final Class<?> type;
+	private final String packageName, procedureName, call, thread;
+	private final Object[] parameters;
+	private final long startMillis;
+	private final Map<Phase, Long> phases = new EnumMap<Phase, Long>(Phase.class);
+	private long nanos, rows;
+	private String error;
+	
+	/**
+	 * Starts a span for a call
+	 * 
+	 * @param call
+	 *            The procedure call
+	 */
+	public Span(ProcedureCall call) {
+		this.operation = call.getOperation();
+		this.type = call.getType();
+		this.packageName = call.getPackageKey();
+		this.procedureName = call.getProcedureName();
+		this.call = call.getCall();
+		this.parameters = call.getParameters().clone();
+		this.thread = Thread.currentThread().getName();
+		this.startMillis = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Finishes the span
+	 * 
+	 * @param call
+	 *            The procedure call
+	 * @param nanos
+	 *            How long the call took
+	 * @param error
+	 *            The error message or null if the call worked
+	 */
+	void finish(ProcedureCall call, long nanos, String error) {
+		this.nanos = nanos;
+		this.rows = call.getRows();
+		this.error = error;
+		for(Phase p : Phase.values()) {
+			if(call.getPhaseNanos(p) > 0) {
+				phases.put(p, call.getPhaseNanos(p));
+			}
+		}
+	}
+	
+	/**
+	 * @return the operation
+	 */
+	public Operation getOperation() {
+		return operation;
+	}
+	
+	/**
+	 * @return the DatabaseObject type or null
+	 */
+	public Class<?> getType() {
+		return type;
+	}
+	
+	/**
+	 * @return the package name or the procedure name if it is not in a package
+	 */
+	public String getPackageName() {
+		return packageName;
+	}
+	
+	/**
+	 * @return the procedure display name
+	 */
+	public String getProcedureName() {
+		return procedureName;
+	}
+	
+	/**
+	 * @return the full formatted procedure string
+	 */
+	public String getCall() {
+		return call;
+	}
+	
+	/**
+	 * @return the parameters
+	 */
+	public Object[] getParameters() {
+		return parameters;
+	}
+	
+	/**
+	 * @return the name of the thread that made the call
+	 */
+	public String getThread() {
+		return thread;
+	}
+	
+	/**
+	 * @return when the call started in System.currentTimeMillis()
+	 */
+	public long getStartMillis() {
+		return startMillis;
+	}
+	
+	/**
+	 * @return how long the call took in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+	
+	/**
+	 * @return the number of rows returned or updated
+	 */
+	public long getRows() {
+		return rows;
+	}
+	
+	/**
+	 * @return the time spent in each phase that was timed
+	 */
+	public Map<Phase, Long> getPhases() {
+		return phases;
+	}
+	
+	/**
+	 * @return the error message or null if the call worked
+	 */
+	public String getError() {
+		return error;
+	}
+	
+	/**
+	 * @return true if the call failed
+	 */
+	public boolean isError() {
+		return error != null;
+	}
+	
+	@Override
+	public String toString() {
+		return "Span [operation=" + operation + ", call=" + call + ", parameters=" + Arrays.toString(parameters) + ", nanos=" + nanos
+				+ ", rows=" + rows + ", phases=" + phases + (error == null ? "" : ", error=" + error) + "]";
+	}
+}
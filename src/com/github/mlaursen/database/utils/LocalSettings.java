@@ -20,6 +20,68 @@ public class LocalSettings {
 	private String propertiesSource;
 	public static final String DATABASE_NAME = "database", USERNAME = "dbuser", PASSWORD = "dbpswd", CLASS_FOR_NAME = "className";
 	public static final String DEFAULT_PROPERTIES_SOURCE = "/dbconfig.properties";
+	public static final String LIMIT_ENABLED = "limit.enabled", LIMIT_INITIAL = "limit.initial", LIMIT_MIN = "limit.min",
+			LIMIT_MAX = "limit.max", LIMIT_QUEUE = "limit.queue", LIMIT_WAIT = "limit.wait", LIMIT_LATENCY = "limit.latency";
+	public static final String LANE_INTERACTIVE = "lane.interactive", LANE_BULK = "lane.bulk", LANE_WAIT = "lane.wait";
+	public static final String QUERY_TIMEOUT = "query.timeout";
+	public static final String RETRY_ATTEMPTS = "retry.attempts", RETRY_DELAY = "retry.delay", RETRY_MAX_DELAY = "retry.maxdelay";
+	public static final String BREAKER_ENABLED = "breaker.enabled", BREAKER_FAILURES = "breaker.failures", BREAKER_OPEN = "breaker.open";
+	public static final String METRICS_ENABLED = "metrics.enabled";
+	public static final String SLOWLOG_FILE = "slowlog.file", SLOWLOG_THRESHOLD = "slowlog.threshold",
+			SLOWLOG_PER_SECOND = "slowlog.persecond", SLOWLOG_REDACT = "slowlog.redact", SLOWLOG_MAX_BYTES = "slowlog.maxbytes",
+			SLOWLOG_MAX_FILES = "slowlog.maxfiles";
+	public static final String ALLOC_ENABLED = "alloc.enabled", ALLOC_REPORT = "alloc.report", ALLOC_TOP = "alloc.top",
+			ALLOC_FILE = "alloc.file";
+	public static final String LOAD_TYPE = "load.type", LOAD_THREADS = "load.threads", LOAD_DURATION = "load.duration",
+			LOAD_WARMUP = "load.warmup", LOAD_THINK = "load.think", LOAD_MIX = "load.mix", LOAD_KEYS = "load.keys", LOAD_ZIPF = "load.zipf",
+			LOAD_FILTER = "load.filter", LOAD_JSON = "load.json";
+	public static final String RECORD_FILE = "record.file", RECORD_ROWS = "record.rows";
+	public static final String GEN_TYPES = "gen.types", GEN_THREADS = "gen.threads", GEN_BATCH = "gen.batch", GEN_SEED = "gen.seed",
+			GEN_CHECKPOINT = "gen.checkpoint", GEN_REPORT = "gen.report";
+	public static final String CURSOR_MAX_OPEN = "cursor.maxopen", CURSOR_IDLE = "cursor.idle";
+	public static final String SPILL_BUDGET = "spill.budget", SPILL_DIR = "spill.dir";
+	
+	/**
+	 * Reads a whole number from the properties
+	 * 
+	 * @param properties
+	 *            The local settings
+	 * @param key
+	 *            The property name
+	 * @param def
+	 *            The value to use when the property is missing or is not a number
+	 * @return The number
+	 */
+	public static int getInt(Properties properties, String key, int def) {
+		String v = properties.getProperty(key);
+		try {
+			return v == null ? def : Integer.parseInt(v.trim());
+		}
+		catch(NumberFormatException e) {
+			return def;
+		}
+	}
+	
+	/**
+	 * Reads a whole number that can be larger than an int from the properties
+	 * 
+	 * @param properties
+	 *            The local settings
+	 * @param key
+	 *            The property name
+	 * @param def
+	 *            The value to use when the property is missing or is not a number
+	 * @return The number
+	 */
+	public static long getLong(Properties properties, String key, long def) {
+		String v = properties.getProperty(key);
+		try {
+			return v == null ? def : Long.parseLong(v.trim());
+		}
+		catch(NumberFormatException e) {
+			return def;
+		}
+	}
 	
 	public LocalSettings() {
 		propertiesSource = DEFAULT_PROPERTIES_SOURCE;
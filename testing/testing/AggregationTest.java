@@ -0,0 +1,106 @@
+/**
+ * 
+ */
+package testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.github.mlaursen.database.managers.ObjectManager;
+import com.github.mlaursen.database.objects.Aggregation;
+import com.github.mlaursen.database.objects.MyResultRow;
+import com.github.mlaursen.database.objects.MyResultSet;
+import com.github.mlaursen.examples.PersonJobExample.Person;
+
+import testing.Stubs.ListedPerson;
+
+/**
+ * @author mlaursen
+ * 
+ */
+public class AggregationTest {
+	
+	@Test
+	public void testAggregation() {
+		ObjectManager om = Stubs.seeded("stubtest");
+		om.addPackage(ListedPerson.class);
+		om.renamePackage(ListedPerson.class, Person.class);
+		Aggregation byJob = om.aggregate(ListedPerson.class, "JOB_ID");
+		List<ListedPerson> all = om.getAll(ListedPerson.class);
+		Map<String, Double> sum = byJob.sum("salary");
+		Map<String, Double> max = byJob.max("salary");
+		Map<String, Long> count = byJob.count();
+		long total = 0;
+		for(String job : byJob.getGroups()) {
+			double expectedSum = 0, expectedMax = Double.NEGATIVE_INFINITY;
+			long expectedCount = 0;
+			for(Person p : all) {
+				if(job.equals(p.getJobId())) {
+					expectedSum += p.getSalary();
+					expectedMax = Math.max(expectedMax, p.getSalary());
+					expectedCount++;
+				}
+			}
+			assertEquals(expectedSum, sum.get(job), 0.001);
+			assertEquals(expectedMax, max.get(job), 0.001);
+			assertEquals(expectedCount, (long) count.get(job));
+			assertEquals(expectedSum / expectedCount, byJob.avg("salary").get(job), 0.001);
+			total += count.get(job);
+		}
+		assertEquals(all.size(), total);
+		
+		List<MyResultRow> top = om.aggregate(ListedPerson.class, null).top("salary", 3);
+		assertEquals(3, top.size());
+		List<Double> salaries = new ArrayList<Double>();
+		for(Person p : all) {
+			salaries.add(p.getSalary());
+		}
+		Collections.sort(salaries, Collections.reverseOrder());
+		for(int i = 0; i < 3; i++) {
+			assertEquals(salaries.get(i), top.get(i).getDouble("salary"), 0.001);
+		}
+		try {
+			byJob.sum("last_name");
+			fail("A column that is not a number was summed");
+		}
+		catch(IllegalArgumentException e) {
+			// expected
+		}
+		
+		Random random = new Random(7);
+		List<MyResultRow> rows = new ArrayList<MyResultRow>();
+		for(int i = 0; i < 50000; i++) {
+			MyResultRow r = new MyResultRow();
+			r.add("grp", "G" + random.nextInt(7));
+			r.add("value", i % 101 == 0 ? null : String.valueOf(random.nextInt(1000)));
+			rows.add(r);
+		}
+		MyResultSet rs = new MyResultSet(rows, Arrays.asList("grp", "value"));
+		Aggregation sequential = new Aggregation(rs, "grp");
+		sequential.setParallelRows(0);
+		Aggregation parallel = new Aggregation(rs, "grp");
+		parallel.setParallelRows(1000);
+		assertEquals(sequential.sum("value"), parallel.sum("value"));
+		assertEquals(sequential.count("value"), parallel.count("value"));
+		assertEquals(sequential.min("value"), parallel.min("value"));
+		assertEquals(sequential.max("value"), parallel.max("value"));
+		Map<String, List<MyResultRow>> best = parallel.topByGroup("value", 5);
+		assertEquals(7, best.size());
+		for(Map.Entry<String, List<MyResultRow>> e : best.entrySet()) {
+			assertEquals(5, e.getValue().size());
+			assertEquals(sequential.max("value").get(e.getKey()), e.getValue().get(0).getDouble("value"), 0);
+			for(MyResultRow r : e.getValue()) {
+				assertEquals(e.getKey(), r.get("grp"));
+			}
+		}
+	}
+}
@@ -12,7 +12,9 @@ import org.junit.runners.Suite.SuiteClasses;
  * 
  */
 @RunWith(Suite.class)
-@SuiteClasses({ UtilTest.class})
+@SuiteClasses({ UtilTest.class, ConcurrencyTest.class, ErrorLogTest.class, MetricsTest.class, SlowCallLogTest.class, TracingTest.class,
+		StubDriverTest.class, LoadTestTest.class, DataGeneratorTest.class, PartitionTest.class, MappingPipelineTest.class, PagingTest.class,
+		SpillBufferTest.class, SnapshotTest.class, ReplicaTest.class, AggregationTest.class })
 public class AllTests {
 	
 }
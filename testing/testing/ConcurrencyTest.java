@@ -0,0 +1,281 @@
+/**
+ * 
+ */
+package testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.github.mlaursen.annotations.DatabasePriority;
+import com.github.mlaursen.database.concurrency.AdmissionController;
+import com.github.mlaursen.database.concurrency.CallRejectedException;
+import com.github.mlaursen.database.concurrency.CircuitBreaker;
+import com.github.mlaursen.database.concurrency.ConcurrencyLimiter;
+import com.github.mlaursen.database.concurrency.Priority;
+import com.github.mlaursen.database.concurrency.PriorityLanes;
+import com.github.mlaursen.database.concurrency.RetryPolicy;
+import com.github.mlaursen.database.managers.CallContext;
+import com.github.mlaursen.database.managers.ConnectionManager;
+import com.github.mlaursen.database.managers.ProcedureCall;
+import com.github.mlaursen.database.objects.Procedure;
+import com.github.mlaursen.database.stub.StubDriver;
+import com.github.mlaursen.database.utils.LocalSettings;
+import com.github.mlaursen.examples.PersonJobExample.Person;
+
+/**
+ * @author mlaursen
+ * 
+ */
+public class ConcurrencyTest {
+	
+	@Test
+	public void testLimiterRejectsWhenSaturated() {
+		ConcurrencyLimiter l = new ConcurrencyLimiter(2, 1, 10, 0, 0, 1000, 0.5);
+		assertTrue(l.acquire());
+		assertTrue(l.acquire());
+		assertFalse(l.acquire());
+		assertEquals(1, l.getRejected());
+		l.release(0, false);
+		assertTrue(l.acquire());
+	}
+	
+	@Test
+	public void testLimiterBacksOff() {
+		ConcurrencyLimiter l = new ConcurrencyLimiter(8, 1, 10, 0, 0, 10, 0.5);
+		assertTrue(l.acquire());
+		l.release(TimeUnit.MILLISECONDS.toNanos(100), false);
+		assertEquals(4, l.getLimit());
+		assertTrue(l.acquire());
+		l.release(0, true);
+		assertEquals(2, l.getLimit());
+	}
+	
+	@Test
+	public void testLimiterGrowsWhenSaturated() {
+		ConcurrencyLimiter l = new ConcurrencyLimiter(1, 1, 10, 0, 0, 1000, 0.5);
+		assertTrue(l.acquire());
+		l.release(0, false);
+		assertEquals(2, l.getLimit());
+	}
+	
+	@Test
+	public void testLimiterStopsWaitingAtDeadline() {
+		ConcurrencyLimiter l = new ConcurrencyLimiter(1, 1, 10, 1, 60000, 1000, 0.5);
+		assertTrue(l.acquire());
+		long start = System.nanoTime();
+		assertFalse(l.acquire(CallContext.deadlineFromNow(50, TimeUnit.MILLISECONDS)));
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+	}
+	
+	@Test
+	public void testContextCarriesDeadline() throws Exception {
+		PriorityLanes lanes = new PriorityLanes(1, 1, 1000);
+		final long deadline = CallContext.deadlineFromNow(1, TimeUnit.MINUTES);
+		CallContext.setDeadline(deadline);
+		try {
+			long seen = lanes.submit(Priority.BULK, new Callable<Long>() {
+				
+				@Override
+				public Long call() throws Exception {
+					assertEquals(Priority.BULK, CallContext.getPriority());
+					return CallContext.getDeadline();
+				}
+			}).get();
+			assertEquals(deadline, seen);
+			assertNull(CallContext.getPriority());
+		}
+		finally {
+			CallContext.clear();
+			lanes.shutdown();
+		}
+	}
+	
+	@Test
+	public void testBreakerOpensAndRecovers() throws InterruptedException {
+		CircuitBreaker b = new CircuitBreaker(2, 20);
+		assertTrue(b.allow());
+		b.onFailure();
+		assertTrue(b.allow());
+		b.onFailure();
+		assertEquals(CircuitBreaker.State.OPEN, b.getState());
+		assertFalse(b.allow());
+		Thread.sleep(30);
+		assertTrue(b.allow());
+		assertFalse(b.allow());
+		b.onSuccess();
+		assertEquals(CircuitBreaker.State.CLOSED, b.getState());
+		assertTrue(b.allow());
+	}
+	
+	@Test
+	public void testRetryDelayIsCapped() {
+		RetryPolicy r = new RetryPolicy(3, 10, 40);
+		for(int attempt = 1; attempt < 10; attempt++) {
+			long delay = r.getDelayMillis(attempt);
+			assertTrue(delay >= 0 && delay <= Math.min(40, 10 << (attempt - 1)));
+		}
+		assertTrue(r.canRetry(2));
+		assertFalse(r.canRetry(3));
+	}
+	
+	@Test
+	public void testErrorClassification() {
+		assertTrue(ConnectionManager.isTransient(new SQLException("deadlock", "61000", 60)));
+		assertFalse(ConnectionManager.isTransient(new SQLException("unique constraint", "23000", 1)));
+		assertTrue(ConnectionManager.isTransient(new SQLRecoverableException("reset")));
+		assertFalse(ConnectionManager.isTransient(new SQLTimeoutException("deadline")));
+	}
+	
+	@Test
+	public void testBulkheads() {
+		AdmissionController ac = new AdmissionController();
+		ConcurrencyLimiter person = ac.getLimiter("PERSON_PKG");
+		assertSame(person, ac.getLimiter("PERSON_PKG"));
+		assertNotSame(person, ac.getLimiter("JOB_TYPE_PKG"));
+	}
+	
+	@Test
+	public void testLimiterNamesAreNotCaseSensitive() {
+		AdmissionController ac = new AdmissionController();
+		ConcurrencyLimiter tight = new ConcurrencyLimiter(1, 1, 1, 0, 0, 1000, 0.5);
+		ac.setLimiter("person_pkg", tight);
+		assertSame(tight, ac.getLimiter("PERSON_PKG"));
+		assertSame(tight, ac.getLimiter("person_pkg"));
+		assertEquals(1, ac.getLimiters().size());
+	}
+	
+	@Test
+	public void testAdmissionControllerIsShared() {
+		Properties p = Stubs.settings("jdbc:stub:stubshared");
+		p.setProperty(LocalSettings.LIMIT_MAX, "7");
+		AdmissionController ac = new ConnectionManager(p).getAdmissionController();
+		assertSame(ac, new ConnectionManager(p).getAdmissionController());
+		assertSame(ac.getLimiter("PERSON_PKG"), new ConnectionManager(p).getAdmissionController().getLimiter("PERSON_PKG"));
+		p.setProperty(LocalSettings.LIMIT_MAX, "8");
+		assertNotSame(ac, new ConnectionManager(p).getAdmissionController());
+	}
+	
+	@Test
+	public void testBreakerThresholdFromProperties() {
+		Properties p = Stubs.settings("jdbc:stub:stubbreaker;errors=1");
+		p.setProperty(LocalSettings.BREAKER_FAILURES, "2");
+		p.setProperty(LocalSettings.BREAKER_OPEN, "60000");
+		ConnectionManager cm = new ConnectionManager(p);
+		assertEquals(2, cm.getCircuitBreakers().getFailureThreshold());
+		assertSame(cm.getCircuitBreakers(), new ConnectionManager(p).getCircuitBreakers());
+		try {
+			CircuitBreaker b = cm.getCircuitBreakers().getBreaker("breaker_pkg");
+			for(int i = 0; i < 2; i++) {
+				assertEquals(CircuitBreaker.State.CLOSED, b.getState());
+				assertNull(cm.executeCursorProcedure(new ProcedureCall("BREAKER_PKG.COUNT(:CURSOR)")));
+			}
+			assertEquals(CircuitBreaker.State.OPEN, b.getState());
+			assertNull(cm.executeCursorProcedure(new ProcedureCall("BREAKER_PKG.COUNT(:CURSOR)")));
+			assertTrue(CallContext.getLastError() instanceof CallRejectedException);
+		}
+		finally {
+			CallContext.clear();
+			StubDriver.dropDatabase("stubbreaker");
+		}
+	}
+	
+	@Test
+	public void testBulkDoesNotBlockInteractive() throws Exception {
+		final PriorityLanes lanes = new PriorityLanes(2, 2, 5000);
+		final CountDownLatch holding = new CountDownLatch(2), done = new CountDownLatch(1);
+		Callable<Boolean> hold = new Callable<Boolean>() {
+			
+			@Override
+			public Boolean call() throws Exception {
+				boolean acquired = lanes.acquire(Priority.BULK);
+				holding.countDown();
+				done.await();
+				lanes.release(Priority.BULK);
+				return acquired;
+			}
+		};
+		try {
+			Future<Boolean> first = lanes.submit(Priority.BULK, hold);
+			Future<Boolean> second = lanes.submit(Priority.BULK, hold);
+			assertTrue(holding.await(10, TimeUnit.SECONDS));
+			assertEquals(0, lanes.getAvailable(Priority.BULK));
+			assertFalse(lanes.acquire(Priority.BULK, CallContext.deadlineFromNow(50, TimeUnit.MILLISECONDS)));
+			long start = System.nanoTime();
+			assertTrue(lanes.acquire(Priority.INTERACTIVE));
+			assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+			lanes.release(Priority.INTERACTIVE);
+			done.countDown();
+			assertTrue(first.get() && second.get());
+		}
+		finally {
+			done.countDown();
+			lanes.shutdown();
+		}
+	}
+	
+	@Test
+	public void testLanesAreShared() {
+		Properties p = Stubs.settings("jdbc:stub:stublanes");
+		p.setProperty(LocalSettings.LANE_BULK, "3");
+		PriorityLanes lanes = new ConnectionManager(p).getLanes();
+		assertEquals(3, lanes.getShare(Priority.BULK));
+		assertSame(lanes, new ConnectionManager(p).getLanes());
+		assertSame(lanes.getExecutor(Priority.BULK), new ConnectionManager(p).getLanes().getExecutor(Priority.BULK));
+		p.setProperty(LocalSettings.LANE_BULK, "5");
+		assertNotSame(lanes, new ConnectionManager(p).getLanes());
+	}
+	
+	@DatabasePriority(Priority.INTERACTIVE)
+	public static class InteractivePerson extends Person {
+		
+		private static final long serialVersionUID = 1L;
+	}
+	
+	private static class PriorityManager extends ConnectionManager {
+		
+		PriorityManager(Properties localProperties) {
+			super(localProperties);
+		}
+		
+		Priority priorityOf(ProcedureCall call) {
+			return getPriority(call);
+		}
+	}
+	
+	@Test
+	public void testPriorityResolutionOrder() {
+		Properties p = Stubs.settings("jdbc:stub:stubpriority");
+		PriorityManager cm = new PriorityManager(p);
+		Procedure procedure = new Procedure("COUNT");
+		assertEquals(Priority.INTERACTIVE, cm.priorityOf(new ProcedureCall(procedure)));
+		procedure.setPriority(Priority.BULK);
+		ProcedureCall call = new ProcedureCall(procedure);
+		assertEquals(Priority.BULK, cm.priorityOf(call));
+		call.setType(InteractivePerson.class);
+		assertEquals(Priority.INTERACTIVE, cm.priorityOf(call));
+		CallContext.setPriority(Priority.BULK);
+		try {
+			assertEquals(Priority.BULK, cm.priorityOf(call));
+			call.setPriority(Priority.INTERACTIVE);
+			assertEquals(Priority.INTERACTIVE, cm.priorityOf(call));
+		}
+		finally {
+			CallContext.clear();
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ * 
+ */
+package testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.github.mlaursen.database.stub.StubDatabase;
+import com.github.mlaursen.database.stub.StubDriver;
+import com.github.mlaursen.database.stub.StubProcedure;
+import com.github.mlaursen.database.stub.StubTable;
+import com.github.mlaursen.database.tools.DataGenerator;
+import com.github.mlaursen.examples.PersonJobExample.Job;
+import com.github.mlaursen.examples.PersonJobExample.JobType;
+import com.github.mlaursen.examples.PersonJobExample.Person;
+
+/**
+ * @author mlaursen
+ * 
+ */
+public class DataGeneratorTest {
+	
+	private static Properties generatorSettings(String name, File checkpoint) {
+		Properties p = Stubs.settings("jdbc:stub:" + name + Stubs.SEED);
+		p.setProperty("gen.threads", "4");
+		p.setProperty("gen.batch", "50");
+		p.setProperty("gen.checkpoint", checkpoint.getPath());
+		return p;
+	}
+	
+	@Test
+	public void testDataGeneratorKeepsForeignKeys() throws Exception {
+		File checkpoint = File.createTempFile("gen", ".checkpoint");
+		checkpoint.delete();
+		Properties p = generatorSettings("stubgen", checkpoint);
+		p.setProperty("gen.types", JobType.class.getName() + ":5," + Job.class.getName() + ":200," + Person.class.getName() + ":1000");
+		p.setProperty("gen.JobType.primaryKey", "seq:GEN-");
+		p.setProperty("gen.Person.salary", "normal:52000:18000");
+		try {
+			DataGenerator generator = new DataGenerator(p);
+			generator.setOut(null);
+			assertTrue(generator.run());
+			assertEquals(1000, generator.getWritten(Person.class));
+			StubDatabase db = StubDriver.getDatabase("stubgen");
+			assertEquals(16, db.getTable("JOB_TYPE").size());
+			assertEquals(213, db.getTable("JOB").size());
+			assertEquals(1013, db.getTable("PERSON").size());
+			Set<String> jobs = new HashSet<String>();
+			for(String[] r : db.getTable("JOB").select(new int[0], new Object[0])) {
+				jobs.add(r[0]);
+			}
+			StubTable people = db.getTable("PERSON");
+			for(String[] r : people.select(new int[0], new Object[0])) {
+				assertTrue(jobs.contains(r[people.getColumn("JOBID")]));
+			}
+			
+			generator = new DataGenerator(p);
+			generator.setOut(null);
+			assertTrue(generator.run());
+			assertEquals(0, generator.getWritten(Person.class));
+			assertEquals(1013, db.getTable("PERSON").size());
+		}
+		finally {
+			checkpoint.delete();
+			StubDriver.dropDatabase("stubgen");
+		}
+	}
+	
+	@Test
+	public void testDataGeneratorResumes() throws Exception {
+		File checkpoint = File.createTempFile("gen", ".checkpoint");
+		Properties p = generatorSettings("stubresume", checkpoint);
+		p.setProperty("gen.types", Person.class.getName() + ":1000");
+		p.setProperty("gen.Person.jobId", "ref:" + Job.class.getName());
+		p.setProperty("gen.Job.keys", "0-12");
+		Files.write(checkpoint.toPath(), Arrays.asList("batch=50", "Person=500", "Person.done=600,700"), Charset.forName("ISO-8859-1"));
+		try {
+			DataGenerator generator = new DataGenerator(p);
+			generator.setOut(null);
+			assertTrue(generator.run());
+			assertEquals(400, generator.getWritten(Person.class));
+			assertEquals(413, StubDriver.getDatabase("stubresume").getTable("PERSON").size());
+			Properties saved = new Properties();
+			saved.load(Files.newInputStream(checkpoint.toPath()));
+			assertEquals("1000", saved.getProperty("Person"));
+		}
+		finally {
+			checkpoint.delete();
+			StubDriver.dropDatabase("stubresume");
+		}
+	}
+	
+	@Test
+	public void testCheckpointIsSavedAfterEveryBatch() throws Exception {
+		final File checkpoint = File.createTempFile("gen", ".checkpoint");
+		checkpoint.delete();
+		Properties p = generatorSettings("stubsave", checkpoint);
+		p.setProperty("gen.threads", "1");
+		p.setProperty("gen.report", "3600");
+		p.setProperty("gen.types", Person.class.getName() + ":1000");
+		p.setProperty("gen.Person.jobId", "ref:" + Job.class.getName());
+		p.setProperty("gen.Job.keys", "0-12");
+		final Set<String> saved = new HashSet<String>();
+		StubDriver.getDatabase("stubsave").register("PERSON_PKG.NEW", new StubProcedure() {
+			
+			@Override
+			public Object call(StubDatabase db, String[] names, Object[] params) throws SQLException {
+				Properties progress = new Properties();
+				if(checkpoint.exists()) {
+					try(InputStream in = Files.newInputStream(checkpoint.toPath())) {
+						progress.load(in);
+					}
+					catch(IOException e) {
+						throw new SQLException(e);
+					}
+				}
+				saved.add(progress.getProperty("Person"));
+				return 1;
+			}
+		});
+		try {
+			DataGenerator generator = new DataGenerator(p);
+			generator.setOut(null);
+			assertTrue(generator.run());
+			assertEquals(1000, generator.getWritten(Person.class));
+			// the last batch sees every batch before it, without waiting for gen.report
+			assertTrue(saved.toString(), saved.contains("950"));
+		}
+		finally {
+			checkpoint.delete();
+			StubDriver.dropDatabase("stubsave");
+		}
+	}
+}
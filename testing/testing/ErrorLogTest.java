@@ -0,0 +1,67 @@
+/**
+ * 
+ */
+package testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.mlaursen.database.logging.ErrorCategory;
+import com.github.mlaursen.database.logging.ErrorLogger;
+import com.github.mlaursen.database.logging.RateLimitedErrorLogger;
+import com.github.mlaursen.database.managers.ConnectionManager;
+
+/**
+ * @author mlaursen
+ * 
+ */
+public class ErrorLogTest {
+	
+	private static class ListLogger implements ErrorLogger {
+		
+		private final List<String> messages = new ArrayList<String>();
+		
+		@Override
+		public boolean isEnabled(ErrorCategory category) {
+			return true;
+		}
+		
+		@Override
+		public void log(ErrorCategory category, String message, Throwable t) {
+			messages.add(message);
+		}
+	}
+	
+	@Test
+	public void testRateLimitPerCategory() {
+		ListLogger list = new ListLogger();
+		RateLimitedErrorLogger l = new RateLimitedErrorLogger(list, 2);
+		assertTrue(l.isEnabled(ErrorCategory.SQL));
+		assertTrue(l.isEnabled(ErrorCategory.SQL));
+		assertFalse(l.isEnabled(ErrorCategory.SQL));
+		assertFalse(l.isEnabled(ErrorCategory.SQL));
+		assertEquals(2, l.getSuppressed(ErrorCategory.SQL));
+		assertTrue(l.isEnabled(ErrorCategory.MAPPING));
+		l.log(ErrorCategory.SQL, "failed", null);
+		assertEquals(2, list.messages.size());
+		assertEquals("2 similar errors were suppressed.", list.messages.get(0));
+		assertEquals(0, l.getSuppressed(ErrorCategory.SQL));
+	}
+	
+	@Test
+	public void testErrorCodeLookup() {
+		for(int code : new int[] { 54, 60, 3113, 3114, 8177, 12541, 17002, 17008 }) {
+			assertTrue(ConnectionManager.isTransient(new SQLException("", "", code)));
+		}
+		for(int code : new int[] { 1, 955, 1013, 6550, 64, 17009 }) {
+			assertFalse(ConnectionManager.isTransient(new SQLException("", "", code)));
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ * 
+ */
+package testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.github.mlaursen.database.stub.StubDriver;
+import com.github.mlaursen.database.tools.LoadReport;
+import com.github.mlaursen.database.tools.LoadTest;
+import com.github.mlaursen.database.tools.ZipfDistribution;
+import com.github.mlaursen.database.tracing.Operation;
+import com.github.mlaursen.examples.PersonJobExample.Job;
+
+/**
+ * @author mlaursen
+ * 
+ */
+public class LoadTestTest {
+	
+	@Test
+	public void testZipfDistributionIsSkewed() {
+		ZipfDistribution z = new ZipfDistribution(100, 1);
+		int[] picks = new int[100];
+		Random r = new Random(7);
+		for(int i = 0; i < 100000; i++) {
+			picks[z.next(r)]++;
+		}
+		assertTrue(picks[0] > picks[1] && picks[1] > picks[50]);
+		assertEquals(z.probability(0), picks[0] / 100000.0, 0.01);
+		assertEquals(0.01, new ZipfDistribution(100, 0).probability(42), 1e-9);
+	}
+	
+	@Test
+	public void testLoadTestReport() throws Exception {
+		File json = File.createTempFile("load", ".json");
+		Properties p = Stubs.settings("jdbc:stub:stubload" + Stubs.SEED);
+		p.setProperty("load.type", Job.class.getName());
+		p.setProperty("load.threads", "2");
+		p.setProperty("load.duration", "1");
+		p.setProperty("load.warmup", "0");
+		p.setProperty("load.mix", "get=70,getall=10,create=10,update=10");
+		p.setProperty("load.keys", "0-5");
+		p.setProperty("load.json", json.getPath());
+		try {
+			LoadTest test = new LoadTest(p);
+			LoadReport report = test.run();
+			test.writeJson(report);
+			assertTrue(report.getCount() > 0);
+			assertTrue(report.getLatencies(Operation.GET).getCount() > report.getLatencies(Operation.GET_ALL).getCount());
+			assertEquals(0, report.getErrors(Operation.GET));
+			assertNull(report.getLatencies(Operation.FILTER));
+			String s = new String(Files.readAllBytes(json.toPath()), "UTF-8");
+			assertTrue(s.contains("\"get_all\": {\"count\": " + report.getLatencies(Operation.GET_ALL).getCount()));
+			assertTrue(s.contains("\"JOB_PKG.get\""));
+		}
+		finally {
+			json.delete();
+		}
+	}
+	
+	@Test
+	public void testWritesAreMeasuredAlone() throws Exception {
+		Properties p = Stubs.settings("jdbc:stub:stubloadwrites" + Stubs.SEED);
+		p.setProperty("load.type", Job.class.getName());
+		p.setProperty("load.threads", "2");
+		p.setProperty("load.duration", "1");
+		p.setProperty("load.warmup", "0");
+		p.setProperty("load.mix", "create=50,update=50");
+		p.setProperty("load.keys", "0-5");
+		LoadReport report = new LoadTest(p).run();
+		assertTrue(report.getLatencies(Operation.CREATE).getCount() > 0);
+		assertEquals(0, report.getErrors(Operation.CREATE));
+		assertEquals(0, report.getErrors(Operation.UPDATE));
+		assertFalse(report.toJson().contains("\"JOB_PKG.get\""));
+		StubDriver.dropDatabase("stubloadwrites");
+	}
+}
@@ -0,0 +1,209 @@
+/**
+ * 
+ */
+package testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.github.mlaursen.database.managers.CallContext;
+import com.github.mlaursen.database.managers.ConnectionManager;
+import com.github.mlaursen.database.managers.MappingPipeline;
+import com.github.mlaursen.database.managers.ObjectManager;
+import com.github.mlaursen.database.managers.ProcedureCall;
+import com.github.mlaursen.database.objects.MyResultRow;
+import com.github.mlaursen.database.stub.StubDatabase;
+import com.github.mlaursen.database.stub.StubDriver;
+import com.github.mlaursen.database.stub.StubProcedure;
+import com.github.mlaursen.database.stub.StubTable;
+import com.github.mlaursen.examples.PersonJobExample.Job;
+
+/**
+ * @author mlaursen
+ * 
+ */
+public class MappingPipelineTest {
+	
+	private static final AtomicInteger fetched = new AtomicInteger(), mapped = new AtomicInteger(), lead = new AtomicInteger();
+	
+	/**
+	 * A Job that can not be loaded
+	 */
+	public static class BrokenJob extends Job {
+		
+		private static final long serialVersionUID = 1L;
+		private static final int BROKEN = Integer.parseInt("broken");
+		
+		public BrokenJob(MyResultRow r) {
+			super(r);
+		}
+	}
+	
+	/**
+	 * A Job that takes a millisecond to map and keeps track of how far fetching got ahead of it
+	 */
+	public static class SlowJob extends Job {
+		
+		private static final long serialVersionUID = 1L;
+		
+		public SlowJob(MyResultRow r) {
+			super(r);
+			int ahead = fetched.get() - mapped.incrementAndGet();
+			for(int max = lead.get(); ahead > max && !lead.compareAndSet(max, ahead); max = lead.get())
+				;
+			try {
+				Thread.sleep(1);
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * Seeds a stub database with 1000 more jobs and replaces JOB_PKG.GETALL with one that counts the rows that were fetched
+	 */
+	private static ConnectionManager countingJobs(String name) {
+		ObjectManager om = Stubs.seeded(name);
+		List<Job> jobs = new ArrayList<Job>();
+		for(int i = 0; i < 1000; i++) {
+			jobs.add(new Job("IT", "Job " + i, "Generated"));
+		}
+		assertTrue(om.createAll(jobs));
+		StubDriver.getDatabase(name).register("JOB_PKG.GETALL", new StubProcedure() {
+			
+			@Override
+			public Object call(final StubDatabase db, String[] names, Object[] params) throws SQLException {
+				return new StubTable("JOB", db.getTable("JOB").getColumns()) {
+					
+					@Override
+					public List<String[]> getRows() {
+						return new ArrayList<String[]>(db.getTable("JOB").getRows()) {
+							
+							private static final long serialVersionUID = 1L;
+							
+							@Override
+							public String[] get(int index) {
+								for(int max = fetched.get(); index + 1 > max && !fetched.compareAndSet(max, index + 1); max = fetched.get())
+									;
+								return super.get(index);
+							}
+						};
+					}
+				};
+			}
+		});
+		fetched.set(0);
+		mapped.set(0);
+		lead.set(0);
+		return om.getConnectionManager();
+	}
+	
+	@Test
+	public void testPipelinedMapping() {
+		ObjectManager om = Stubs.seeded("stubpipe");
+		List<Job> jobs = new ArrayList<Job>();
+		for(int i = 0; i < 1000; i++) {
+			jobs.add(new Job("IT", "Job " + i, "Generated"));
+		}
+		assertTrue(om.createAll(jobs));
+		List<Job> expected = om.getAll(Job.class);
+		assertEquals(1013, expected.size());
+		
+		om.setPipeline(new MappingPipeline(3, 16, true));
+		List<Job> ordered = om.getAll(Job.class);
+		assertEquals(expected.size(), ordered.size());
+		for(int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getPrimaryKey(), ordered.get(i).getPrimaryKey());
+			assertEquals(expected.get(i).getName(), ordered.get(i).getName());
+		}
+		
+		om.setPipeline(new MappingPipeline(3, 16, false));
+		List<Job> unordered = om.getAll(Job.class);
+		Collections.sort(unordered, Stubs.BY_KEY);
+		assertEquals(expected.size(), unordered.size());
+		for(int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getPrimaryKey(), unordered.get(i).getPrimaryKey());
+		}
+		StubDriver.dropDatabase("stubpipe");
+	}
+	
+	@Test
+	public void testMappingErrorIsThrown() {
+		ObjectManager om = Stubs.seeded("stubpipeerror");
+		MappingPipeline pipeline = new MappingPipeline(3, 16, true);
+		MappingPipeline.Run<BrokenJob> run = om.getConnectionManager().executeCursorProcedure(new ProcedureCall("JOB_PKG.GETALL(:CURSOR)"),
+				BrokenJob.class, pipeline);
+		assertNotNull(run);
+		try {
+			run.await();
+			fail("The mapping error was swallowed");
+		}
+		catch(ExceptionInInitializerError | NoClassDefFoundError e) {
+			// the first row to load the class gets the initializer error and the rest can not find the class
+		}
+		pipeline.shutdown();
+		StubDriver.dropDatabase("stubpipeerror");
+	}
+	
+	@Test
+	public void testBufferHoldsBackFetching() {
+		ConnectionManager cm = countingJobs("stubpipeslow");
+		MappingPipeline pipeline = new MappingPipeline(1, 16, true);
+		MappingPipeline.Run<SlowJob> run = cm.executeCursorProcedure(new ProcedureCall("JOB_PKG.GETALL(:CURSOR)"), SlowJob.class, pipeline);
+		assertEquals(1013, run.await().size());
+		assertEquals(1013, mapped.get());
+		// the chunk being mapped, the one in the buffer, the one being filled and the one waiting for room
+		assertTrue("Fetching got " + lead.get() + " rows ahead", lead.get() <= 4 * 16);
+		pipeline.shutdown();
+		StubDriver.dropDatabase("stubpipeslow");
+	}
+	
+	@Test
+	public void testInterruptedFetchAborts() throws InterruptedException {
+		ConnectionManager cm = countingJobs("stubpipeabort");
+		MappingPipeline pipeline = new MappingPipeline(1, 16, true);
+		final Thread caller = Thread.currentThread();
+		Thread interrupter = new Thread() {
+			
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(100);
+				}
+				catch(InterruptedException e) {
+					return;
+				}
+				caller.interrupt();
+			}
+		};
+		interrupter.start();
+		MappingPipeline.Run<SlowJob> run = cm.executeCursorProcedure(new ProcedureCall("JOB_PKG.GETALL(:CURSOR)"), SlowJob.class, pipeline);
+		boolean interrupted = Thread.interrupted();
+		interrupter.join();
+		assertNull(run);
+		assertTrue(interrupted);
+		assertNotNull(CallContext.getLastError());
+		assertTrue(fetched.get() < 1013);
+		CallContext.clear();
+		
+		// the worker may finish the chunk it had, but nothing after it
+		Thread.sleep(50);
+		int stopped = mapped.get();
+		Thread.sleep(50);
+		assertEquals(stopped, mapped.get());
+		pipeline.shutdown();
+		StubDriver.dropDatabase("stubpipeabort");
+	}
+}
@@ -0,0 +1,188 @@
+/**
+ * 
+ */
+package testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.github.mlaursen.database.concurrency.CircuitBreaker;
+import com.github.mlaursen.database.managers.CallContext;
+import com.github.mlaursen.database.managers.ObjectManager;
+import com.github.mlaursen.database.metrics.AllocationAccounting;
+import com.github.mlaursen.database.metrics.AllocationStats;
+import com.github.mlaursen.database.metrics.ConnectionMetrics;
+import com.github.mlaursen.database.metrics.EventSink;
+import com.github.mlaursen.database.metrics.Events;
+import com.github.mlaursen.database.metrics.LatencyHistogram;
+import com.github.mlaursen.database.metrics.MappingStage;
+import com.github.mlaursen.database.metrics.MetricsRegistry;
+import com.github.mlaursen.database.metrics.Phase;
+import com.github.mlaursen.database.metrics.ProcedureMetrics;
+import com.github.mlaursen.database.objects.MyResultRow;
+import com.github.mlaursen.database.stub.StubDriver;
+import com.github.mlaursen.database.tools.DbTop;
+import com.github.mlaursen.examples.PersonJobExample.Job;
+import com.github.mlaursen.examples.PersonJobExample.JobType;
+
+/**
+ * @author mlaursen
+ * 
+ */
+public class MetricsTest {
+	
+	@Test
+	public void testPercentilesAreWithinBucketError() {
+		LatencyHistogram h = new LatencyHistogram();
+		for(int i = 1; i <= 1000; i++) {
+			h.record(TimeUnit.MICROSECONDS.toNanos(i));
+		}
+		LatencyHistogram.Snapshot s = h.snapshot();
+		assertEquals(1000, s.getCount());
+		assertEquals(TimeUnit.MICROSECONDS.toNanos(1000), s.getMax());
+		long p50 = s.getPercentile(50), p99 = s.getPercentile(99);
+		assertTrue(p50 >= TimeUnit.MICROSECONDS.toNanos(500) && p50 <= TimeUnit.MICROSECONDS.toNanos(500) * 17 / 16);
+		assertTrue(p99 >= TimeUnit.MICROSECONDS.toNanos(990) && p99 <= TimeUnit.MICROSECONDS.toNanos(1000));
+	}
+	
+	@Test
+	public void testRegistrySnapshot() {
+		MetricsRegistry r = new MetricsRegistry();
+		ProcedureMetrics m = r.get("PERSON_PKG", "get");
+		assertSame(m, r.get("PERSON_PKG", "get"));
+		m.recordPhase(Phase.EXECUTE, 1000);
+		m.recordCall(2000, false);
+		m.recordCall(3000, true);
+		m.recordRows(5);
+		assertEquals(1, r.snapshot().size());
+		assertEquals(2, m.getCalls());
+		assertEquals(1, m.getErrors());
+		assertEquals(5, m.getRows());
+		assertEquals(1, m.getPhase(Phase.EXECUTE).getCount());
+	}
+	
+	@Test
+	public void testPermanentErrorsAreCounted() {
+		ObjectManager om = Stubs.manager("jdbc:stub:stubpermanent;errors=1;errorcode=1");
+		MetricsRegistry r = new MetricsRegistry(false);
+		om.getConnectionManager().setMetrics(r);
+		try {
+			assertNull(om.get(1, Job.class));
+			assertEquals(1, CallContext.getLastError().getErrorCode());
+			ProcedureMetrics m = r.get("JOB_PKG", "get");
+			assertEquals(1, m.getCalls());
+			assertEquals(1, m.getErrors());
+			assertEquals(CircuitBreaker.State.CLOSED, om.getConnectionManager().getCircuitBreakers().getBreaker("JOB_PKG").getState());
+		}
+		finally {
+			CallContext.clear();
+			StubDriver.dropDatabase("stubpermanent");
+		}
+	}
+	
+	@Test
+	public void testEventSinkSeesSetAll() {
+		final List<Integer> setters = new ArrayList<Integer>();
+		Events.setSink(new EventSink() {
+			
+			@Override
+			public boolean isEnabled() {
+				return true;
+			}
+			
+			@Override
+			public Object callStarted(String packageName, String procedureName) {
+				return null;
+			}
+			
+			@Override
+			public void callFinished(Object context, String packageName, String procedureName, int parameters, long rows, long[] phaseNanos,
+					long nanos, boolean failed) {}
+			
+			@Override
+			public Object resultMappingStarted(String packageName, String procedureName, Class<?> type) {
+				return null;
+			}
+			
+			@Override
+			public void resultMapped(Object context, String packageName, String procedureName, Class<?> type, int rows, long nanos) {}
+			
+			@Override
+			public Object objectMappingStarted(Class<?> type) {
+				return type;
+			}
+			
+			@Override
+			public void objectMapped(Object context, Class<?> type, int count, long nanos) {
+				assertEquals(JobType.class, type);
+				assertEquals(type, context);
+				setters.add(count);
+			}
+		});
+		try {
+			MyResultRow r = new MyResultRow();
+			r.add("name", "Developer");
+			assertEquals("Developer", r.construct(JobType.class).getPrimaryKey());
+			assertEquals(1, setters.size());
+			assertTrue(setters.get(0) > 0);
+		}
+		finally {
+			Events.setSink(null);
+		}
+	}
+	
+	@Test
+	public void testAllocationAccountingAttributesSetAll() {
+		if(!AllocationAccounting.setEnabled(true)) {
+			return;
+		}
+		try {
+			AllocationAccounting.enter("JOB_TYPE_PKG", "get");
+			MyResultRow r = new MyResultRow();
+			r.add("name", "Developer");
+			for(int i = 0; i < 10; i++) {
+				r.construct(JobType.class);
+			}
+			AllocationAccounting.exit();
+			AllocationStats s = AllocationAccounting.get("JOB_TYPE_PKG", "get", MappingStage.SET_ALL);
+			assertEquals(10, s.getCount());
+			assertTrue(s.getBytes() > 0);
+			assertTrue(s.getReflective() >= 20);
+			assertTrue(AllocationAccounting.top(1).contains(s) || AllocationAccounting.top(1).get(0).getBytes() >= s.getBytes());
+			assertTrue(AllocationAccounting.report(5).contains("JOB_TYPE_PKG.get"));
+		}
+		finally {
+			AllocationAccounting.setEnabled(false);
+			AllocationAccounting.reset();
+		}
+	}
+	
+	@Test
+	public void testDbTopReadsMBeans() throws Exception {
+		ProcedureMetrics m = MetricsRegistry.getDefault().get("DBTOP_PKG", "get");
+		m.recordCall(TimeUnit.MILLISECONDS.toNanos(5), false);
+		m.recordCall(TimeUnit.MILLISECONDS.toNanos(7), true);
+		m.recordRows(4);
+		ConnectionMetrics c = ConnectionMetrics.getDefault();
+		c.setCapacity(20);
+		c.opened();
+		try {
+			String screen = new DbTop(ManagementFactory.getPlatformMBeanServer(), 100).refresh();
+			assertTrue(screen.contains("connections: 1/20 (5%)"));
+			String line = screen.substring(screen.indexOf("DBTOP_PKG.get"));
+			assertTrue(line.matches("(?s)DBTOP_PKG\\.get\\s+2\\s.*\\s50\\.0\\s+2\\.0\\s+-.*"));
+		}
+		finally {
+			c.closed();
+		}
+	}
+}
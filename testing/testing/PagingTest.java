@@ -0,0 +1,145 @@
+/**
+ * 
+ */
+package testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.github.mlaursen.database.concurrency.CallRejectedException;
+import com.github.mlaursen.database.managers.CallContext;
+import com.github.mlaursen.database.managers.CursorSession;
+import com.github.mlaursen.database.managers.CursorSessions;
+import com.github.mlaursen.database.managers.ObjectManager;
+import com.github.mlaursen.database.managers.Page;
+import com.github.mlaursen.database.objects.MyResultRow;
+import com.github.mlaursen.database.procedures.Filterable;
+import com.github.mlaursen.examples.PersonJobExample.Job;
+
+/**
+ * @author mlaursen
+ * 
+ */
+public class PagingTest {
+	
+	@Test
+	public void testKeysetPages() {
+		ObjectManager om = Stubs.seeded("stubtest");
+		assertTrue(om.getPackage(Job.class).canCallProcedure("getpage"));
+		List<Job> all = om.getAll(Job.class);
+		Collections.sort(all, Stubs.BY_KEY);
+		for(boolean prefetch : new boolean[] { false, true }) {
+			List<String> keys = new ArrayList<String>();
+			int pages = 0;
+			for(Page<Job> p = om.getPage(Job.class, null, 5, prefetch); p != null; p = p.next()) {
+				assertTrue(p.getItems().size() <= 5);
+				for(Job j : p) {
+					keys.add(j.getPrimaryKey());
+				}
+				pages++;
+			}
+			assertEquals(3, pages);
+			assertEquals(all.size(), keys.size());
+			for(int i = 0; i < keys.size(); i++) {
+				assertEquals(all.get(i).getPrimaryKey(), keys.get(i));
+			}
+		}
+		Page<Job> last = om.getPage(Job.class, "9", 3);
+		assertEquals(3, last.getItems().size());
+		assertEquals("10", last.getItems().get(0).getPrimaryKey());
+		assertTrue(!last.hasNext());
+		assertNull(last.next());
+	}
+	
+	public static class FilterJob extends Job implements Filterable {
+		
+		private static final long serialVersionUID = 1L;
+		
+		public FilterJob() {}
+		
+		public FilterJob(MyResultRow r) {
+			super(r);
+		}
+	}
+	
+	@Test
+	public void testCursorSessions() throws InterruptedException {
+		ObjectManager om = Stubs.seeded("stubtest");
+		om.addPackage(FilterJob.class);
+		om.renamePackage(FilterJob.class, Job.class);
+		CursorSessions sessions = new CursorSessions(2, 0, TimeUnit.SECONDS);
+		om.getConnectionManager().setCursorSessions(sessions);
+		List<Job> all = om.getAll(Job.class);
+		
+		for(boolean readAhead : new boolean[] { false, true }) {
+			CursorSession<FilterJob> cursor = om.openCursor(FilterJob.class);
+			assertNotNull(cursor);
+			assertEquals(1, sessions.getOpen());
+			cursor.setReadAhead(readAhead);
+			List<FilterJob> read = new ArrayList<FilterJob>();
+			for(List<FilterJob> chunk = cursor.fetch(5); !chunk.isEmpty(); chunk = cursor.fetch(5)) {
+				assertTrue(chunk.size() <= 5);
+				read.addAll(chunk);
+			}
+			assertTrue(cursor.isExhausted());
+			assertEquals(all.size(), read.size());
+			assertEquals(all.size(), cursor.getFetched());
+			for(int i = 0; i < all.size(); i++) {
+				assertEquals(all.get(i).getPrimaryKey(), read.get(i).getPrimaryKey());
+			}
+			cursor.close();
+			assertTrue(cursor.isClosed());
+			assertEquals(0, sessions.getOpen());
+		}
+		
+		CursorSession<FilterJob> first = om.openCursor(FilterJob.class);
+		CursorSession<FilterJob> second = om.openCursor(FilterJob.class);
+		assertNotNull(second);
+		assertNull(om.openCursor(FilterJob.class));
+		assertTrue(CallContext.getLastError() instanceof CallRejectedException);
+		assertEquals(1, sessions.getRejected());
+		second.close();
+		
+		sessions.setIdleTimeout(20, TimeUnit.MILLISECONDS);
+		assertEquals(3, first.fetch(3).size());
+		for(int i = 0; i < 100 && !first.isClosed(); i++) {
+			Thread.sleep(20);
+		}
+		assertTrue(first.isReclaimed());
+		assertEquals(1, sessions.getReclaimed());
+		assertEquals(0, sessions.getOpen());
+		assertTrue(first.fetch(3).isEmpty());
+		assertNotNull(CallContext.getLastError());
+		sessions.setIdleTimeout(0, TimeUnit.SECONDS);
+		assertNotNull(om.openCursor(FilterJob.class));
+		sessions.closeAll();
+		assertEquals(0, sessions.getOpen());
+	}
+	
+	@Test
+	public void testSameIdleTimeoutKeepsReaper() throws InterruptedException {
+		ObjectManager om = Stubs.seeded("stubtest");
+		om.addPackage(FilterJob.class);
+		om.renamePackage(FilterJob.class, Job.class);
+		CursorSessions sessions = new CursorSessions(2, 100, TimeUnit.MILLISECONDS);
+		om.getConnectionManager().setCursorSessions(sessions);
+		CursorSession<FilterJob> cursor = om.openCursor(FilterJob.class);
+		assertEquals(3, cursor.fetch(3).size());
+		for(int i = 0; i < 200 && !cursor.isClosed(); i++) {
+			sessions.setIdleTimeout(100, TimeUnit.MILLISECONDS);
+			Thread.sleep(10);
+		}
+		assertTrue(cursor.isReclaimed());
+		assertEquals(1, sessions.getReclaimed());
+		sessions.setIdleTimeout(0, TimeUnit.SECONDS);
+	}
+}
@@ -0,0 +1,102 @@
+/**
+ * 
+ */
+package testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.github.mlaursen.annotations.DatabasePartitions;
+import com.github.mlaursen.database.managers.CallContext;
+import com.github.mlaursen.database.managers.ObjectManager;
+import com.github.mlaursen.database.objects.MyResultRow;
+import com.github.mlaursen.database.objects.PartitionStrategy;
+import com.github.mlaursen.examples.PersonJobExample.Job;
+
+/**
+ * @author mlaursen
+ * 
+ */
+public class PartitionTest {
+	
+	@DatabasePartitions(value = 3, strategy = PartitionStrategy.RANGE, min = 0, max = 12)
+	public static class RangeJob extends Job {
+		
+		private static final long serialVersionUID = 1L;
+		
+		public RangeJob() {}
+		
+		public RangeJob(MyResultRow r) {
+			super(r);
+		}
+	}
+	
+	@DatabasePartitions(4)
+	public static class HashJob extends Job {
+		
+		private static final long serialVersionUID = 1L;
+		
+		public HashJob() {}
+		
+		public HashJob(MyResultRow r) {
+			super(r);
+		}
+	}
+	
+	@DatabasePartitions(5)
+	public static class WideJob extends Job {
+		
+		private static final long serialVersionUID = 1L;
+		
+		public WideJob() {}
+		
+		public WideJob(MyResultRow r) {
+			super(r);
+		}
+	}
+	
+	@Test
+	public void testPartitionedGetAll() {
+		ObjectManager om = Stubs.seeded("stubtest");
+		om.addPackage(RangeJob.class);
+		om.addPackage(HashJob.class);
+		om.renamePackage(RangeJob.class, Job.class);
+		om.renamePackage(HashJob.class, Job.class);
+		assertTrue(om.getPackage(RangeJob.class).canCallProcedure("getpartition"));
+		assertEquals(Arrays.asList("lowerkey", "upperkey"), Arrays.asList(om.getPackage(RangeJob.class).getProcedure("getpartition")
+				.getParams()));
+		
+		List<Job> all = om.getAll(Job.class);
+		List<RangeJob> range = om.getAllPartitioned(RangeJob.class, null);
+		assertEquals(all.size(), range.size());
+		for(int i = 0; i < all.size(); i++) {
+			assertEquals(all.get(i).getPrimaryKey(), range.get(i).getPrimaryKey());
+		}
+		
+		List<HashJob> hash = om.getAllPartitioned(HashJob.class, Stubs.BY_KEY);
+		assertEquals(all.size(), hash.size());
+		Set<String> keys = new HashSet<String>();
+		for(int i = 0; i < hash.size(); i++) {
+			assertTrue(keys.add(hash.get(i).getPrimaryKey()));
+			assertEquals(String.valueOf(i), hash.get(i).getPrimaryKey());
+		}
+		assertNull(CallContext.getLastError());
+		assertTrue(om.getAllPartitioned(Job.class, null).size() == all.size());
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testTooManyPartitions() {
+		ObjectManager om = Stubs.seeded("stubtest");
+		om.addPackage(WideJob.class);
+		om.renamePackage(WideJob.class, Job.class);
+		om.getAllPartitioned(WideJob.class, null);
+	}
+}
@@ -0,0 +1,106 @@
+/**
+ * 
+ */
+package testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.mlaursen.annotations.DatabaseReplicated;
+import com.github.mlaursen.database.managers.ObjectManager;
+import com.github.mlaursen.database.managers.Replica;
+import com.github.mlaursen.database.objects.MyResultRow;
+import com.github.mlaursen.database.procedures.Filterable;
+import com.github.mlaursen.database.stub.StubDatabase;
+import com.github.mlaursen.database.stub.StubDriver;
+import com.github.mlaursen.database.stub.StubProcedure;
+import com.github.mlaursen.database.stub.StubTable;
+import com.github.mlaursen.examples.PersonJobExample.Job;
+
+/**
+ * @author mlaursen
+ * 
+ */
+public class ReplicaTest {
+	
+	@DatabaseReplicated(refresh = 3600, fullEvery = 100)
+	public static class ReplicatedJob extends Job implements Filterable {
+		
+		private static final long serialVersionUID = 1L;
+		
+		public ReplicatedJob() {}
+		
+		public ReplicatedJob(String jobType, String name, String description) {
+			super(jobType, name, description);
+		}
+		
+		public ReplicatedJob(MyResultRow r) {
+			super(r);
+		}
+	}
+	
+	@Test
+	public void testReplicatedType() {
+		Replica.clearAll();
+		ObjectManager om = Stubs.seeded("stubtest");
+		om.addPackage(ReplicatedJob.class);
+		om.renamePackage(ReplicatedJob.class, Job.class);
+		final List<String> changed = new ArrayList<String>();
+		StubDriver.getDatabase("stubtest").register("JOB_PKG.GETCHANGEDSINCE", new StubProcedure() {
+			
+			@Override
+			public Object call(StubDatabase db, String[] names, Object[] params) throws SQLException {
+				assertTrue(params[0] instanceof Timestamp);
+				StubTable jobs = db.getTable("JOB");
+				List<String[]> rows = new ArrayList<String[]>();
+				for(String key : changed) {
+					rows.addAll(jobs.select("id", key).getRows());
+				}
+				return jobs.copy(rows);
+			}
+		});
+		try {
+			Replica<ReplicatedJob> replica = om.getReplica(ReplicatedJob.class);
+			assertNotNull(replica);
+			assertEquals(1, replica.getFullLoads());
+			List<Job> all = om.getAll(Job.class);
+			assertEquals(all.size(), replica.size());
+			assertEquals(all.size(), om.getAll(ReplicatedJob.class).size());
+			assertEquals(all.size(), om.filter(ReplicatedJob.class).size());
+			
+			Job job = om.get("0", Job.class);
+			String name = job.getName();
+			job.setName("REPLICATED");
+			assertTrue(om.update(job));
+			assertEquals(name, om.get("0", ReplicatedJob.class).getName());
+			changed.add("0");
+			assertTrue(replica.refresh());
+			assertEquals(1, replica.getDeltaLoads());
+			assertEquals("REPLICATED", om.get("0", ReplicatedJob.class).getName());
+			assertEquals(all.size(), replica.size());
+			
+			List<ReplicatedJob> it = replica.filter(new String[] { "type" }, new Object[] { job.getJobType() });
+			assertTrue(it.contains(om.get("0", ReplicatedJob.class)));
+			for(ReplicatedJob j : it) {
+				assertEquals(job.getJobType().getPrimaryKey(), j.getJobType().getPrimaryKey());
+			}
+			assertNull(replica.filter(new String[] { "missing" }, new Object[] { "x" }));
+			
+			assertTrue(om.create(new ReplicatedJob("IT", "REPLICA TESTER", null)));
+			assertEquals(2, replica.getFullLoads());
+			assertEquals(all.size() + 1, replica.size());
+		}
+		finally {
+			Replica.clearAll();
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ * 
+ */
+package testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.github.mlaursen.database.logging.RollingFileWriter;
+import com.github.mlaursen.database.logging.SlowCallLog;
+import com.github.mlaursen.database.managers.ProcedureCall;
+import com.github.mlaursen.database.objects.Procedure;
+
+/**
+ * @author mlaursen
+ * 
+ */
+public class SlowCallLogTest {
+	
+	@Test
+	public void testSlowCallsAreLoggedAndRedacted() throws IOException {
+		File f = File.createTempFile("slowcalls", ".log");
+		f.deleteOnExit();
+		RollingFileWriter writer = new RollingFileWriter(f);
+		SlowCallLog log = new SlowCallLog(writer, 100, 1, "ssn");
+		Procedure p = new Procedure("filter", "username", "password", "ssn");
+		p.addRedacted("password");
+		p.setSlowThreshold(500);
+		ProcedureCall call = new ProcedureCall("PERSON_PKG", p, "PERSON_PKG." + p, new Object[] { "mlaursen", "hunter2", "123" });
+		assertFalse(log.isSlow(call, TimeUnit.MILLISECONDS.toNanos(200)));
+		assertTrue(log.isSlow(call, TimeUnit.MILLISECONDS.toNanos(600)));
+		assertTrue(log.log(call, TimeUnit.MILLISECONDS.toNanos(600), false));
+		assertFalse(log.log(call, TimeUnit.MILLISECONDS.toNanos(700), false));
+		assertTrue(writer.flush(5, TimeUnit.SECONDS));
+		List<String> lines = Files.readAllLines(f.toPath(), Charset.forName("UTF-8"));
+		assertEquals(1, lines.size());
+		String line = lines.get(0);
+		assertTrue(line.contains("PERSON_PKG.FILTER(:USERNAME, :PASSWORD, :SSN, :CURSOR) total=600.0ms"));
+		assertTrue(line.contains("params=[username=mlaursen, password=***, ssn=***]"));
+	}
+	
+	@Test
+	public void testFileRolls() throws IOException {
+		File f = File.createTempFile("rolling", ".log");
+		File rolled = new File(f.getPath() + ".1");
+		f.deleteOnExit();
+		rolled.deleteOnExit();
+		RollingFileWriter writer = new RollingFileWriter(f, 30, 1, 100);
+		for(int i = 0; i < 4; i++) {
+			writer.write("line " + i + " of the rolling file");
+		}
+		assertTrue(writer.flush(5, TimeUnit.SECONDS));
+		assertTrue(rolled.exists());
+		assertEquals(4, writer.getWritten());
+		assertEquals(1, Files.readAllLines(f.toPath(), Charset.forName("UTF-8")).size());
+	}
+}
@@ -0,0 +1,160 @@
+/**
+ * 
+ */
+package testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.mlaursen.database.managers.ObjectManager;
+import com.github.mlaursen.database.managers.Snapshot;
+import com.github.mlaursen.database.objects.IndexedSnapshot;
+import com.github.mlaursen.database.objects.MyResultRow;
+import com.github.mlaursen.database.objects.MyResultSet;
+import com.github.mlaursen.database.objects.SnapshotCodec;
+import com.github.mlaursen.database.stub.StubDriver;
+import com.github.mlaursen.examples.PersonJobExample.Job;
+import com.github.mlaursen.examples.PersonJobExample.JobType;
+import com.github.mlaursen.examples.PersonJobExample.Person;
+
+import testing.Stubs.ListedPerson;
+
+/**
+ * @author mlaursen
+ * 
+ */
+public class SnapshotTest {
+	
+	@Test
+	public void testSnapshots() throws IOException {
+		ObjectManager om = Stubs.seeded("stubtest");
+		om.create(new Job("IT", "Caf\u00e9 \u00e9t\u00e9", null));
+		File file = File.createTempFile("job", ".snap");
+		file.delete();
+		try {
+			Snapshot<Job> fresh = om.openSnapshot(Job.class, file);
+			assertTrue(!fresh.isFromFile());
+			assertTrue(fresh.awaitRefresh());
+			assertTrue(file.isFile());
+			List<Job> all = om.getAll(Job.class);
+			assertEquals(all.size(), fresh.getItems().size());
+			
+			MyResultSet rows = SnapshotCodec.load(file, Job.class.getName());
+			MyResultSet expected = om.getConnectionManager().executeCursorProcedure(om.getPackage(Job.class), "getall");
+			assertEquals(expected.getColNames(), rows.getColNames());
+			for(int i = 0; i < expected.size(); i++) {
+				for(String c : expected.getColNames()) {
+					assertEquals(expected.getColumn(i, c), rows.getColumn(i, c));
+				}
+			}
+			try {
+				SnapshotCodec.load(file, JobType.class.getName());
+				fail("A snapshot for another type was loaded");
+			}
+			catch(IOException e) {
+				// expected
+			}
+			byte[] b = Files.readAllBytes(file.toPath());
+			b[b.length / 2] ^= 1;
+			try {
+				SnapshotCodec.read(ByteBuffer.wrap(b), Job.class.getName());
+				fail("A damaged snapshot was read");
+			}
+			catch(IOException e) {
+				// expected
+			}
+			
+			ObjectManager down = Stubs.manager("jdbc:stub:stubempty");
+			Snapshot<Job> warm = down.openSnapshot(Job.class, file);
+			assertTrue(!warm.awaitRefresh());
+			assertTrue(warm.isFromFile());
+			assertEquals(all.size(), warm.getItems().size());
+			for(int i = 0; i < all.size(); i++) {
+				assertEquals(all.get(i).getPrimaryKey(), warm.getItems().get(i).getPrimaryKey());
+				assertEquals(all.get(i).getName(), warm.getItems().get(i).getName());
+			}
+			
+			Snapshot<Job> refreshed = om.openSnapshot(Job.class, file);
+			assertTrue(refreshed.awaitRefresh());
+			assertTrue(!refreshed.isFromFile());
+			assertEquals(all.size(), refreshed.getItems().size());
+		}
+		finally {
+			file.delete();
+			StubDriver.dropDatabase("stubempty");
+		}
+	}
+	
+	@Test
+	public void testIndexedSnapshot() {
+		ObjectManager om = Stubs.seeded("stubtest");
+		om.addPackage(ListedPerson.class);
+		om.renamePackage(ListedPerson.class, Person.class);
+		IndexedSnapshot<ListedPerson> people = om.getAllIndexed(ListedPerson.class);
+		List<ListedPerson> all = om.getAll(ListedPerson.class);
+		assertEquals(all.size(), people.size());
+		assertEquals(Arrays.asList("job_id", "first_name", "last_name", "salary"), people.getColumns());
+		assertTrue(people.isNumeric("salary"));
+		assertTrue(!people.isNumeric("last_name"));
+		
+		ListedPerson first = all.get(0);
+		List<ListedPerson> sameJob = people.equal("job_id", first.getJobId());
+		assertTrue(sameJob.contains(first));
+		List<ListedPerson> paid = people.range("SALARY", 40000, 80000);
+		int expected = 0;
+		for(ListedPerson p : all) {
+			if(p.getSalary() >= 40000 && p.getSalary() <= 80000) {
+				expected++;
+			}
+		}
+		assertEquals(expected, paid.size());
+		for(int i = 1; i < paid.size(); i++) {
+			assertTrue(paid.get(i - 1).getSalary() <= paid.get(i).getSalary());
+		}
+		String prefix = first.getLastName().substring(0, 1);
+		for(ListedPerson p : people.prefix("last_name", prefix)) {
+			assertTrue(p.getLastName().startsWith(prefix));
+		}
+		try {
+			people.range("last_name", 0, 1);
+			fail("A range was read from a column that is not numeric");
+		}
+		catch(IllegalArgumentException e) {
+			// expected
+		}
+		
+		IndexedSnapshot<ListedPerson> objects = new IndexedSnapshot<ListedPerson>(all.subList(0, 5), ListedPerson.class, "lastName",
+				"salary");
+		assertEquals(5, objects.size());
+		objects.add(all.subList(5, all.size()));
+		assertEquals(all.size(), objects.size());
+		assertEquals(paid.size(), objects.range("salary", 40000, 80000).size());
+		assertEquals(people.prefix("last_name", prefix).size(), objects.prefix("lastName", prefix).size());
+		assertEquals(people.equal("last_name", first.getLastName()), objects.equal("lastName", first.getLastName()));
+		
+		List<MyResultRow> rows = new ArrayList<MyResultRow>();
+		MyResultRow row = new MyResultRow();
+		row.add("id", "100");
+		row.add("job_id", "0");
+		row.add("first_name", "ADDED");
+		row.add("last_name", "AARDVARK");
+		row.add("salary", "-1");
+		rows.add(row);
+		people.add(new MyResultSet(rows, Arrays.asList("id", "job_id", "first_name", "last_name", "salary")));
+		assertEquals(all.size() + 1, people.size());
+		assertEquals("ADDED", people.range("salary", -1, -1).get(0).getFirstName());
+		assertEquals("ADDED", people.prefix("last_name", "AA").get(0).getFirstName());
+		assertEquals("ADDED", people.equal("first_name", "ADDED").get(0).getFirstName());
+	}
+}
@@ -0,0 +1,65 @@
+/**
+ * 
+ */
+package testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.mlaursen.database.managers.ConnectionManager;
+import com.github.mlaursen.database.managers.ObjectManager;
+import com.github.mlaursen.database.metrics.SpillMetrics;
+import com.github.mlaursen.database.objects.MyResultRow;
+import com.github.mlaursen.database.objects.MyResultSet;
+import com.github.mlaursen.database.objects.SpillBuffer;
+import com.github.mlaursen.database.stub.StubDriver;
+import com.github.mlaursen.examples.PersonJobExample.Job;
+
+/**
+ * @author mlaursen
+ * 
+ */
+public class SpillBufferTest {
+	
+	@Test
+	public void testSpilledResults() {
+		ObjectManager om = Stubs.seeded("stubspill");
+		List<Job> jobs = new ArrayList<Job>();
+		for(int i = 0; i < 500; i++) {
+			jobs.add(new Job("IT", "Job " + i + " \u00e9t\u00e9", i % 3 == 0 ? null : "Generated"));
+		}
+		assertTrue(om.createAll(jobs));
+		ConnectionManager cm = om.getConnectionManager();
+		MyResultSet expected = cm.executeCursorProcedure(om.getPackage(Job.class), "getall");
+		assertEquals(0, expected.getSpilledRows());
+		long bytes = SpillMetrics.getDefault().getSpilledBytes();
+		SpillBuffer.setBudget(2000);
+		try {
+			MyResultSet spilled = cm.executeCursorProcedure(om.getPackage(Job.class), "getall");
+			assertEquals(expected.size(), spilled.size());
+			assertTrue(spilled.getSpilledRows() > 500);
+			assertTrue(SpillMetrics.getDefault().getSpilledBytes() > bytes);
+			int i = 0;
+			for(MyResultRow r : spilled) {
+				for(String c : expected.getColNames()) {
+					assertEquals(expected.getColumn(i, c), r.get(c));
+					assertEquals(expected.getColumn(i, c), spilled.getColumn(i, c));
+				}
+				i++;
+			}
+			List<Job> l = spilled.toListOf(Job.class);
+			assertEquals("Job 499 \u00e9t\u00e9", l.get(l.size() - 1).getName());
+			assertNull(spilled.getColumn(13, "description"));
+		}
+		finally {
+			SpillBuffer.setBudget(0);
+			StubDriver.dropDatabase("stubspill");
+		}
+	}
+}
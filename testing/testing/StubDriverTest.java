@@ -0,0 +1,110 @@
+/**
+ * 
+ */
+package testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.github.mlaursen.database.managers.CallContext;
+import com.github.mlaursen.database.managers.ConnectionManager;
+import com.github.mlaursen.database.managers.ObjectManager;
+import com.github.mlaursen.database.managers.ProcedureCall;
+import com.github.mlaursen.database.objects.MyResultSet;
+import com.github.mlaursen.database.stub.StubDatabase;
+import com.github.mlaursen.database.stub.StubDriver;
+import com.github.mlaursen.database.stub.StubProcedure;
+import com.github.mlaursen.database.stub.StubTable;
+import com.github.mlaursen.examples.PersonJobExample.Job;
+import com.github.mlaursen.examples.PersonJobExample.Person;
+
+/**
+ * @author mlaursen
+ * 
+ */
+public class StubDriverTest {
+	
+	@Test
+	public void testSeededTables() {
+		ObjectManager om = Stubs.seeded("stubtest");
+		Job j = om.get(1, Job.class);
+		assertNotNull(j);
+		assertEquals("ENTRY LEVEL JAVA DEVELOPER", j.getName());
+		assertEquals("IT", j.getJobType().getPrimaryKey());
+		assertEquals(StubDriver.getDatabase("stubtest").getTable("JOB").size(), om.getAll(Job.class).size());
+		Person p = om.executeCustomGetProcedure("getbyname", Person.class, "LANA", null);
+		assertEquals("KANE", p.getLastName());
+	}
+	
+	@Test
+	public void testEmulatedChanges() {
+		ObjectManager om = Stubs.seeded("stubtest");
+		int size = om.getAll(Job.class).size();
+		StubTable jobs = StubDriver.getDatabase("stubtest").getTable("JOB");
+		assertTrue(om.create(new Job("IT", "STUB TESTER", "Tests without a database")));
+		assertEquals(size + 1, jobs.size());
+		Job created = om.get((int) jobs.nextKey() - 1, Job.class);
+		assertEquals("STUB TESTER", created.getName());
+		created.setName("STUB MAINTAINER");
+		assertTrue(om.update(created));
+		assertEquals("STUB MAINTAINER", om.get(created.getPrimaryKey(), Job.class).getName());
+		assertTrue(om.delete(created));
+		assertEquals(size, jobs.size());
+	}
+	
+	@Test
+	public void testRegisteredProcedureAndInjectedErrors() {
+		StubDatabase db = StubDriver.getDatabase("stubfail");
+		db.register("STUB_PKG.COUNT", new StubProcedure() {
+			
+			@Override
+			public Object call(StubDatabase db, String[] names, Object[] params) throws SQLException {
+				StubTable t = new StubTable("COUNT", Arrays.asList("value"));
+				t.insert(String.valueOf(params[0]));
+				return t;
+			}
+		});
+		ConnectionManager cm = Stubs.manager("jdbc:stub:stubfail").getConnectionManager();
+		MyResultSet rs = cm.executeCursorProcedure(new ProcedureCall("STUB_PKG.COUNT(:VALUE, :CURSOR)", 42));
+		assertEquals("42", rs.getColumn(0, "value"));
+		
+		cm = Stubs.manager("jdbc:stub:stubfail;errors=1;errorcode=942").getConnectionManager();
+		assertNull(cm.executeCursorProcedure(new ProcedureCall("STUB_PKG.COUNT(:VALUE, :CURSOR)", 42)));
+		assertEquals(942, CallContext.getLastError().getErrorCode());
+		CallContext.clear();
+	}
+	
+	@Test
+	public void testQueryTimeout() throws ClassNotFoundException, SQLException {
+		Class.forName(StubDriver.class.getName());
+		Connection conn = DriverManager.getConnection("jdbc:stub:stubslow;latency=5000");
+		try {
+			CallableStatement cs = conn.prepareCall("{call STUB_PKG.SLOW(:CURSOR)}");
+			cs.setQueryTimeout(1);
+			long start = System.currentTimeMillis();
+			try {
+				cs.execute();
+				fail("The call should have timed out");
+			}
+			catch(SQLTimeoutException e) {
+				assertEquals(1013, e.getErrorCode());
+			}
+			assertTrue(System.currentTimeMillis() - start < 3000);
+		}
+		finally {
+			conn.close();
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/**
+ * 
+ */
+package testing;
+
+import java.util.Comparator;
+import java.util.Properties;
+
+import com.github.mlaursen.database.managers.ConnectionManager;
+import com.github.mlaursen.database.managers.ObjectManager;
+import com.github.mlaursen.database.objects.MyResultRow;
+import com.github.mlaursen.database.procedures.GetAllable;
+import com.github.mlaursen.database.stub.StubDriver;
+import com.github.mlaursen.database.utils.LocalSettings;
+import com.github.mlaursen.examples.PersonJobExample.Job;
+import com.github.mlaursen.examples.PersonJobExample.Person;
+
+/**
+ * The stub database setup that the tests share
+ * 
+ * @author mlaursen
+ * 
+ */
+public class Stubs {
+	
+	/**
+	 * Add to a stub url to seed the database with the example tables
+	 */
+	public static final String SEED = ";seed=examples/sqlscripts/person_job_init.sql";
+	
+	/**
+	 * Orders jobs by their number primary key
+	 */
+	public static final Comparator<Job> BY_KEY = new Comparator<Job>() {
+		
+		@Override
+		public int compare(Job j1, Job j2) {
+			return Integer.compare(Integer.parseInt(j1.getPrimaryKey()), Integer.parseInt(j2.getPrimaryKey()));
+		}
+	};
+	
+	/**
+	 * A Person that can be read with getall
+	 */
+	public static class ListedPerson extends Person implements GetAllable {
+		
+		private static final long serialVersionUID = 1L;
+		
+		public ListedPerson() {}
+		
+		public ListedPerson(MyResultRow r) {
+			super(r);
+		}
+	}
+	
+	private Stubs() {}
+	
+	/**
+	 * @param url
+	 *            The stub url. I.E. jdbc:stub:name;errors=0.5
+	 * @return the local settings for a connection manager on the stub driver
+	 */
+	public static Properties settings(String url) {
+		Properties p = new Properties();
+		p.setProperty(LocalSettings.CLASS_FOR_NAME, StubDriver.class.getName());
+		p.setProperty(LocalSettings.DATABASE_NAME, url);
+		return p;
+	}
+	
+	/**
+	 * @param url
+	 *            The stub url
+	 * @return a manager for the example Job and Person types on the stub database
+	 */
+	public static ObjectManager manager(String url) {
+		ObjectManager om = new ObjectManager(Job.class, Person.class);
+		om.setConnectionManager(new ConnectionManager(settings(url)));
+		return om;
+	}
+	
+	/**
+	 * Drops what an earlier test left in a stub database and seeds it again with the example tables
+	 * 
+	 * @param name
+	 *            The name of the stub database
+	 * @return a manager for the example Job and Person types on the fresh database
+	 */
+	public static ObjectManager seeded(String name) {
+		StubDriver.dropDatabase(name);
+		return manager("jdbc:stub:" + name + SEED);
+	}
+}
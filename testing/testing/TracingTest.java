@@ -0,0 +1,141 @@
+/**
+ * 
+ */
+package testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.mlaursen.database.managers.ConnectionManager;
+import com.github.mlaursen.database.managers.ObjectManager;
+import com.github.mlaursen.database.managers.ProcedureCall;
+import com.github.mlaursen.database.objects.Procedure;
+import com.github.mlaursen.database.stub.RecordedProcedure;
+import com.github.mlaursen.database.stub.StubDriver;
+import com.github.mlaursen.database.tools.LoadReport;
+import com.github.mlaursen.database.tools.Replay;
+import com.github.mlaursen.database.tracing.CallListener;
+import com.github.mlaursen.database.tracing.CallListeners;
+import com.github.mlaursen.database.tracing.CallLogReader;
+import com.github.mlaursen.database.tracing.CallRecord;
+import com.github.mlaursen.database.tracing.CallRecorder;
+import com.github.mlaursen.database.tracing.InMemorySpanCollector;
+import com.github.mlaursen.database.tracing.Operation;
+import com.github.mlaursen.database.tracing.Span;
+import com.github.mlaursen.examples.PersonJobExample.Job;
+
+/**
+ * @author mlaursen
+ * 
+ */
+public class TracingTest {
+	
+	@Test
+	public void testSpansAreCollected() {
+		InMemorySpanCollector spans = new InMemorySpanCollector(2);
+		Procedure p = new Procedure("get", "primarykey");
+		CallListener[] l = new CallListener[] { spans };
+		for(int i = 0; i < 3; i++) {
+			ProcedureCall call = new ProcedureCall("PERSON_PKG", p, "PERSON_PKG." + p, new Object[] { i }).setOperation(Operation.GET);
+			Object[] contexts = CallListeners.before(l, call);
+			if(i == 2) {
+				CallListeners.error(l, contexts, call, new SQLException("deadlock", "61000", 60), 100);
+			}
+			else {
+				CallListeners.after(l, contexts, call, 100);
+			}
+		}
+		List<Span> collected = spans.getSpans();
+		assertEquals(2, collected.size());
+		assertEquals(Operation.GET, collected.get(0).getOperation());
+		assertEquals(1, collected.get(0).getParameters()[0]);
+		assertFalse(collected.get(0).isError());
+		assertTrue(collected.get(1).isError());
+		spans.clear();
+		assertTrue(spans.getSpans().isEmpty());
+	}
+	
+	@Test
+	public void testThrowingListenerIsIsolated() {
+		InMemorySpanCollector spans = new InMemorySpanCollector();
+		CallListener broken = new CallListener() {
+			
+			@Override
+			public Object before(ProcedureCall call) {
+				throw new IllegalStateException("broken");
+			}
+			
+			@Override
+			public void after(Object context, ProcedureCall call, long nanos) {
+				throw new IllegalStateException("broken");
+			}
+			
+			@Override
+			public void error(Object context, ProcedureCall call, SQLException e, long nanos) {}
+		};
+		CallListeners.add(broken);
+		CallListeners.add(spans);
+		try {
+			CallListener[] l = CallListeners.get();
+			ProcedureCall call = new ProcedureCall("PERSON_PKG.GETALL(:CURSOR)");
+			CallListeners.after(l, CallListeners.before(l, call), call, 100);
+			assertEquals(Operation.CALL, spans.getSpans().get(0).getOperation());
+			assertTrue(CallListeners.remove(broken));
+			assertFalse(CallListeners.remove(broken));
+		}
+		finally {
+			CallListeners.clear();
+		}
+		assertEquals(0, CallListeners.get().length);
+	}
+	
+	private static ConnectionManager stub(String url) {
+		return new ConnectionManager(Stubs.settings(url));
+	}
+	
+	@Test
+	public void testRecordAndReplay() throws Exception {
+		File log = File.createTempFile("calls", ".log.gz");
+		try {
+			CallRecorder recorder = new CallRecorder(log, true);
+			CallListeners.add(recorder);
+			try {
+				ObjectManager om = new ObjectManager(stub("jdbc:stub:tracerecord;seed=examples/sqlscripts/person_job_init.sql"), Job.class);
+				om.get(1, Job.class);
+				om.get(2, Job.class);
+				om.getAll(Job.class);
+				om.update(om.get(3, Job.class));
+			}
+			finally {
+				CallListeners.remove(recorder);
+				recorder.close();
+			}
+			assertEquals(5, recorder.getRecorded());
+			List<CallRecord> records = CallLogReader.readAll(log);
+			assertEquals(5, records.size());
+			assertEquals(Operation.GET, records.get(0).getOperation());
+			assertEquals("JOB_PKG.GET", records.get(0).getProcedureName());
+			assertEquals("ENTRY LEVEL JAVA DEVELOPER", records.get(0).getResults().getColumn(0, "name"));
+			assertFalse(records.get(4).isCursor());
+			assertEquals(1, records.get(4).getRows());
+			
+			assertEquals(2, RecordedProcedure.register(StubDriver.getDatabase("tracereplay"), records));
+			ConnectionManager served = stub("jdbc:stub:tracereplay");
+			assertEquals("MECHANIC", new ObjectManager(served, Job.class).get(2, Job.class).getName());
+			LoadReport report = new Replay(log, served, 0, 2).run();
+			assertEquals(5, report.getCount());
+			assertEquals(3, report.getLatencies(Operation.GET).getCount());
+			assertEquals(0, report.getErrors(Operation.GET) + report.getErrors(Operation.UPDATE));
+		}
+		finally {
+			log.delete();
+		}
+	}
+}